@@ -225,6 +225,10 @@ class Account(override val uuid: String) : BaseAccount {
     @set:Synchronized
     var maxPushFolders = 0
 
+    @get:Synchronized
+    @set:Synchronized
+    var maxSyncConnections = 0
+
     @get:Synchronized
     @set:Synchronized
     var idleRefreshMinutes = 0
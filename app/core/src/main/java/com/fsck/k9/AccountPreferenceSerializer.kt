@@ -106,6 +106,7 @@ class AccountPreferenceSerializer(
             isSyncRemoteDeletions = storage.getBoolean("$accountUuid.syncRemoteDeletions", true)
 
             maxPushFolders = storage.getInt("$accountUuid.maxPushFolders", 10)
+            maxSyncConnections = storage.getInt("$accountUuid.maxSyncConnections", DEFAULT_MAX_SYNC_CONNECTIONS)
             isSubscribedFoldersOnly = storage.getBoolean("$accountUuid.subscribedFoldersOnly", false)
             maximumPolledMessageAge = storage.getInt("$accountUuid.maximumPolledMessageAge", -1)
             maximumAutoDownloadMessageSize = storage.getInt("$accountUuid.maximumAutoDownloadMessageSize", 320768)
@@ -295,6 +296,7 @@ class AccountPreferenceSerializer(
             editor.putString("$accountUuid.expungePolicy", expungePolicy.name)
             editor.putBoolean("$accountUuid.syncRemoteDeletions", isSyncRemoteDeletions)
             editor.putInt("$accountUuid.maxPushFolders", maxPushFolders)
+            editor.putInt("$accountUuid.maxSyncConnections", maxSyncConnections)
             editor.putString("$accountUuid.searchableFolders", searchableFolders.name)
             editor.putInt("$accountUuid.chipColor", chipColor)
             editor.putBoolean("$accountUuid.subscribedFoldersOnly", isSubscribedFoldersOnly)
@@ -411,6 +413,7 @@ class AccountPreferenceSerializer(
         editor.remove("$accountUuid.expungePolicy")
         editor.remove("$accountUuid.syncRemoteDeletions")
         editor.remove("$accountUuid.maxPushFolders")
+        editor.remove("$accountUuid.maxSyncConnections")
         editor.remove("$accountUuid.searchableFolders")
         editor.remove("$accountUuid.chipColor")
         editor.remove("$accountUuid.notificationLight")
@@ -568,6 +571,7 @@ class AccountPreferenceSerializer(
             importedAutoExpandFolder = null
             legacyInboxFolder = null
             maxPushFolders = 10
+            maxSyncConnections = DEFAULT_MAX_SYNC_CONNECTIONS
             isSubscribedFoldersOnly = false
             maximumPolledMessageAge = -1
             maximumAutoDownloadMessageSize = 32768
@@ -644,6 +648,7 @@ class AccountPreferenceSerializer(
         const val DEFAULT_REPLY_AFTER_QUOTE = false
         const val DEFAULT_STRIP_SIGNATURE = true
         const val DEFAULT_REMOTE_SEARCH_NUM_RESULTS = 25
+        const val DEFAULT_MAX_SYNC_CONNECTIONS = 3
         const val DEFAULT_RINGTONE_URI = "content://settings/system/notification_sound"
     }
 }
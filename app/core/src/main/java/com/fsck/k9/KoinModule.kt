@@ -28,8 +28,9 @@ val mainModule = module {
     single { Contacts.getInstance(get()) }
     single { LocalKeyStore(directoryProvider = get()) }
     single { TrustManagerFactory.createInstance(get()) }
-    single { LocalKeyStoreManager(get()) }
-    single<TrustedSocketFactory> { DefaultTrustedSocketFactory(get(), get()) }
+    single { LocalKeyStoreManager(get(), get()) }
+    single { DefaultTrustedSocketFactory(get(), get(), get()) }
+    single<TrustedSocketFactory> { get<DefaultTrustedSocketFactory>() }
     single<Clock> { RealClock() }
     factory { ServerNameSuggester() }
     factory { EmailAddressValidator() }
@@ -1,12 +1,14 @@
 package com.fsck.k9
 
+import com.fsck.k9.helper.DefaultTrustedSocketFactory
 import com.fsck.k9.mail.MailServerDirection
 import com.fsck.k9.mail.ssl.LocalKeyStore
 import java.security.cert.CertificateException
 import java.security.cert.X509Certificate
 
 class LocalKeyStoreManager(
-    private val localKeyStore: LocalKeyStore
+    private val localKeyStore: LocalKeyStore,
+    private val trustedSocketFactory: DefaultTrustedSocketFactory
 ) {
     /**
      * Add a new certificate for the incoming or outgoing server to the local key store.
@@ -19,6 +21,7 @@ class LocalKeyStoreManager(
             account.outgoingServerSettings
         }
         localKeyStore.addCertificate(serverSettings.host!!, serverSettings.port, certificate)
+        trustedSocketFactory.invalidateSslContexts(serverSettings.host!!, serverSettings.port)
     }
 
     /**
@@ -39,7 +42,7 @@ class LocalKeyStoreManager(
             return
         }
         if (newHost != oldHost || newPort != oldPort) {
-            localKeyStore.deleteCertificate(oldHost, oldPort)
+            deleteCertificate(oldHost, oldPort)
         }
     }
 
@@ -49,11 +52,16 @@ class LocalKeyStoreManager(
      */
     fun deleteCertificates(account: Account) {
         account.incomingServerSettings?.let { serverSettings ->
-            localKeyStore.deleteCertificate(serverSettings.host!!, serverSettings.port)
+            deleteCertificate(serverSettings.host!!, serverSettings.port)
         }
 
         account.outgoingServerSettings?.let { serverSettings ->
-            localKeyStore.deleteCertificate(serverSettings.host!!, serverSettings.port)
+            deleteCertificate(serverSettings.host!!, serverSettings.port)
         }
     }
+
+    private fun deleteCertificate(host: String, port: Int) {
+        localKeyStore.deleteCertificate(host, port)
+        trustedSocketFactory.invalidateSslContexts(host, port)
+    }
 }
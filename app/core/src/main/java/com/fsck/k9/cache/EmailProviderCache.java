@@ -1,13 +1,17 @@
 package com.fsck.k9.cache;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import android.content.Context;
 import android.net.Uri;
+import androidx.annotation.Nullable;
 
+import com.fsck.k9.DI;
 import com.fsck.k9.mailstore.LocalMessage;
+import com.fsck.k9.mailstore.MessageChangeFeed;
 import com.fsck.k9.provider.EmailProvider;
 
 /**
@@ -70,7 +74,7 @@ public class EmailProviderCache {
             }
         }
 
-        notifyChange();
+        notifyChange(messageIds);
     }
 
     public void setValueForThreads(List<Long> threadRootIds, String columnName, String value) {
@@ -85,7 +89,8 @@ public class EmailProviderCache {
             }
         }
 
-        notifyChange();
+        // The messages of the threads aren't known here
+        notifyChange(null);
     }
 
     public void removeValueForMessages(List<Long> messageIds, String columnName) {
@@ -117,14 +122,16 @@ public class EmailProviderCache {
     }
 
     public void hideMessages(List<LocalMessage> messages) {
+        List<Long> messageIds = new ArrayList<>(messages.size());
         synchronized (mHiddenMessageCache) {
             for (LocalMessage message : messages) {
                 long messageId = message.getDatabaseId();
                 mHiddenMessageCache.put(messageId, message.getFolder().getDatabaseId());
+                messageIds.add(messageId);
             }
         }
 
-        notifyChange();
+        notifyChange(messageIds);
     }
 
     public boolean isMessageHidden(Long messageId, long folderId) {
@@ -148,7 +155,9 @@ public class EmailProviderCache {
         }
     }
 
-    private void notifyChange() {
+    private void notifyChange(@Nullable List<Long> messageIds) {
+        DI.get(MessageChangeFeed.class).recordChange(mAccountUuid, messageIds);
+
         Uri uri = Uri.withAppendedPath(EmailProvider.CONTENT_URI, "account/" + mAccountUuid +
                 "/messages");
         sContext.getContentResolver().notifyChange(uri, null);
@@ -0,0 +1,60 @@
+package com.fsck.k9.controller
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.locks.Condition
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Makes sure a folder is only synced by one thread at a time.
+ *
+ * A sync that is requested while the folder is already being synced waits for the running sync to finish. If another
+ * request has started a sync in the meantime, that sync covers this request as well and it is skipped.
+ */
+internal class FolderSyncCoordinator {
+    private val folderStates = ConcurrentHashMap<FolderKey, FolderState>()
+
+    /**
+     * Runs [sync] unless a sync of the same folder that started after this call has completed in the meantime.
+     *
+     * @return `true` if [sync] was run, `false` if the request was coalesced with another sync.
+     */
+    fun runSync(accountUuid: String, folderId: Long, sync: Runnable): Boolean {
+        val state = folderStates.getOrPut(FolderKey(accountUuid, folderId)) { FolderState() }
+
+        state.lock.withLock {
+            val requestNumber = ++state.requestCount
+            while (state.isRunning) {
+                state.syncFinished.awaitUninterruptibly()
+            }
+
+            if (state.coveredRequestCount >= requestNumber) return false
+
+            state.isRunning = true
+            state.runningCoversRequestCount = state.requestCount
+        }
+
+        try {
+            sync.run()
+        } finally {
+            state.lock.withLock {
+                state.isRunning = false
+                state.coveredRequestCount = state.runningCoversRequestCount
+                state.syncFinished.signalAll()
+            }
+        }
+
+        return true
+    }
+
+    private data class FolderKey(val accountUuid: String, val folderId: Long)
+
+    private class FolderState {
+        val lock = ReentrantLock()
+        val syncFinished: Condition = lock.newCondition()
+        var isRunning = false
+        var requestCount = 0L
+        var runningCoversRequestCount = 0L
+        var coveredRequestCount = 0L
+    }
+}
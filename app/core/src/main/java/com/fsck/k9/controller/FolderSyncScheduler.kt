@@ -0,0 +1,88 @@
+package com.fsck.k9.controller
+
+import android.os.Process
+import androidx.annotation.VisibleForTesting
+import com.fsck.k9.Account
+import com.fsck.k9.mailstore.LocalFolder
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import timber.log.Timber
+
+/**
+ * Syncs multiple folders of an account concurrently. Every running sync uses its own connection to the server, so at
+ * most [Account.maxSyncConnections] folders of an account are synced at the same time.
+ *
+ * Folders are started in order of priority: pushed folders first, then folders containing unread messages, then the
+ * folders that have been checked least recently.
+ *
+ * [syncFolders] returns right away. The folders are synced on threads of their own, so the calling thread is free to
+ * do other work in the meantime.
+ */
+internal class FolderSyncScheduler {
+    private val threadNumber = AtomicInteger()
+
+    /**
+     * Starts syncing [folders]. [onFinished] is called once after all folders have been synced, on the thread that
+     * synced the last folder, or on the calling thread if [folders] is empty.
+     */
+    fun syncFolders(account: Account, folders: List<LocalFolder>, folderSync: FolderSync, onFinished: Runnable) {
+        if (folders.isEmpty()) {
+            onFinished.run()
+            return
+        }
+
+        val prioritizedFolders = prioritizeFolders(account, folders)
+        val workerCount = account.maxSyncConnections.coerceIn(1, folders.size)
+
+        Timber.v("Syncing %d folders of %s using %d connections", folders.size, account, workerCount)
+
+        val executor = Executors.newFixedThreadPool(workerCount) { runnable ->
+            Thread(runnable, "FolderSync-" + threadNumber.incrementAndGet())
+        }
+
+        val remainingFolderCount = AtomicInteger(prioritizedFolders.size)
+        for (folder in prioritizedFolders) {
+            executor.execute {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+                try {
+                    folderSync.syncFolder(folder)
+                } catch (e: Exception) {
+                    Timber.e(e, "Error while syncing folder of %s", account)
+                } finally {
+                    if (remainingFolderCount.decrementAndGet() == 0) {
+                        executor.shutdown()
+                        onFinished.run()
+                    }
+                }
+            }
+        }
+    }
+
+    @VisibleForTesting
+    fun prioritizeFolders(account: Account, folders: List<LocalFolder>): List<LocalFolder> {
+        val foldersWithUnreadMessages = folders.filter { it.getUnreadMessageCountOrZero() > 0 }.toSet()
+
+        return folders.sortedWith(
+            compareByDescending<LocalFolder> { isPushFolder(account, it) }
+                .thenByDescending { it in foldersWithUnreadMessages }
+                .thenBy { it.lastChecked }
+        )
+    }
+
+    private fun isPushFolder(account: Account, folder: LocalFolder): Boolean {
+        return !LocalFolder.isModeMismatch(account.folderPushMode, folder.pushClass)
+    }
+
+    private fun LocalFolder.getUnreadMessageCountOrZero(): Int {
+        return try {
+            unreadMessageCount
+        } catch (e: Exception) {
+            Timber.w(e, "Couldn't get unread message count of folder %s", serverId)
+            0
+        }
+    }
+
+    fun interface FolderSync {
+        fun syncFolder(folder: LocalFolder)
+    }
+}
@@ -58,7 +58,9 @@ import com.fsck.k9.controller.MessagingControllerCommands.PendingMoveOrCopy;
 import com.fsck.k9.controller.MessagingControllerCommands.PendingReplace;
 import com.fsck.k9.controller.MessagingControllerCommands.PendingSetFlag;
 import com.fsck.k9.controller.ProgressBodyFactory.ProgressListener;
+import com.fsck.k9.crypto.PQSignatureVerifier;
 import com.fsck.k9.helper.MutableBoolean;
+import com.fsck.k9.mail.Address;
 import com.fsck.k9.mail.AuthType;
 import com.fsck.k9.mail.AuthenticationFailedException;
 import com.fsck.k9.mail.Body;
@@ -67,6 +69,7 @@ import com.fsck.k9.mail.FetchProfile;
 import com.fsck.k9.mail.Flag;
 import com.fsck.k9.mail.FolderClass;
 import com.fsck.k9.mail.Message;
+import com.fsck.k9.mail.Message.RecipientType;
 import com.fsck.k9.mail.MessageDownloadState;
 import com.fsck.k9.mail.MessagingException;
 import com.fsck.k9.mail.Part;
@@ -136,6 +139,11 @@ public class MessagingController {
     private final MessageCountsProvider messageCountsProvider;
     private final DraftOperations draftOperations;
     private final NotificationOperations notificationOperations;
+    private final PQSignatureSyncVerifier pqSignatureSyncVerifier;
+    private final PQSignatureBulkVerifier pqSignatureBulkVerifier;
+    private final FolderSyncScheduler folderSyncScheduler = new FolderSyncScheduler();
+    private final FolderSyncCoordinator folderSyncCoordinator = new FolderSyncCoordinator();
+    private final Map<String, Object> pendingCommandsLocks = new HashMap<>();
 
 
     private MessagingListener checkMailListener = null;
@@ -178,6 +186,8 @@ public class MessagingController {
 
         draftOperations = new DraftOperations(this, messageStoreManager, saveMessageDataCreator);
         notificationOperations = new NotificationOperations(notificationController, preferences, messageStoreManager);
+        pqSignatureSyncVerifier = new PQSignatureSyncVerifier(localStoreProvider);
+        pqSignatureBulkVerifier = new PQSignatureBulkVerifier(preferences, localStoreProvider);
     }
 
     private void initializeControllerExtensions(List<ControllerExtension> controllerExtensions) {
@@ -209,6 +219,7 @@ public class MessagingController {
         stopped = true;
         controllerThread.interrupt();
         controllerThread.join(1000L);
+        pqSignatureSyncVerifier.stop();
     }
 
     private void runInBackground() {
@@ -497,6 +508,25 @@ public class MessagingController {
 
     }
 
+    /**
+     * Re-verifies the post-quantum signatures of all messages matching the search, e.g. a single folder. The results
+     * are stored with the messages. Cancel the returned future to stop the verification.
+     */
+    public Future<?> verifyPQSignatures(LocalSearch search, MessagingListener listener) {
+        Timber.i("verifyPQSignatures (search = %s)", search.getId());
+
+        return threadPool.submit(() -> {
+            // Only references are kept, the workers load each message when it's verified
+            List<MessageReference> messageReferences = new ArrayList<>();
+            for (LocalMessage message : searchLocalMessages(search)) {
+                if (PQSignatureSyncVerifier.isSignedMessage(message)) {
+                    messageReferences.add(message.makeMessageReference());
+                }
+            }
+            pqSignatureBulkVerifier.verify(messageReferences, listener);
+        });
+    }
+
     public void loadSearchResults(Account account, long folderId, List<String> messageServerIds,
             MessagingListener listener) {
         threadPool.execute(() -> {
@@ -583,10 +613,18 @@ public class MessagingController {
 
     private void synchronizeMailboxSynchronous(Account account, long folderId, boolean notify,
             MessagingListener listener, NotificationState notificationState) {
-        refreshFolderListIfStale(account);
+        // Manual refreshes, push and the folder sync scheduler all end up here. Make sure they never sync the same
+        // folder at the same time.
+        boolean synced = folderSyncCoordinator.runSync(account.getUuid(), folderId, () -> {
+            refreshFolderListIfStale(account);
 
-        Backend backend = getBackend(account);
-        syncFolder(account, folderId, notify, listener, backend, notificationState);
+            Backend backend = getBackend(account);
+            syncFolder(account, folderId, notify, listener, backend, notificationState);
+        });
+
+        if (!synced) {
+            Timber.d("Folder %d of %s has just been synced by a concurrent request. Skipping.", folderId, account);
+        }
     }
 
     private void refreshFolderListIfStale(Account account) {
@@ -716,6 +754,24 @@ public class MessagingController {
     }
 
     public void processPendingCommandsSynchronous(Account account) throws MessagingException {
+        // Folders of an account may be synced concurrently, make sure every pending command is only executed once
+        synchronized (getPendingCommandsLock(account)) {
+            processPendingCommandsLocked(account);
+        }
+    }
+
+    private Object getPendingCommandsLock(Account account) {
+        synchronized (pendingCommandsLocks) {
+            Object lock = pendingCommandsLocks.get(account.getUuid());
+            if (lock == null) {
+                lock = new Object();
+                pendingCommandsLocks.put(account.getUuid(), lock);
+            }
+            return lock;
+        }
+    }
+
+    private void processPendingCommandsLocked(Account account) throws MessagingException {
         LocalStore localStore = localStoreProvider.getInstance(account);
         List<PendingCommand> commands = localStore.getPendingCommands();
 
@@ -1422,7 +1478,7 @@ public class MessagingController {
 
             MessageStore messageStore = messageStoreManager.getMessageStore(account);
             SaveMessageData messageData = saveMessageDataCreator.createSaveMessageData(
-                    message, MessageDownloadState.FULL, plaintextSubject);
+                    message, MessageDownloadState.FULL, plaintextSubject, false);
             long messageId = messageStore.saveLocalMessage(outboxFolderId, messageData, null);
 
             LocalStore localStore = localStoreProvider.getInstance(account);
@@ -1565,6 +1621,7 @@ public class MessagingController {
                         Timber.i("Sending message with UID %s", message.getUid());
 
                         backend.sendMessage(message);
+                        rememberPQKeyRecipients(localStore, message);
 
                         message.setFlag(Flag.X_SEND_IN_PROGRESS, false);
                         message.setFlag(Flag.SEEN, true);
@@ -1631,6 +1688,30 @@ public class MessagingController {
         }
     }
 
+    /**
+     * Remembers that the recipients of a sent PQ signed message have our public key, so later messages to them only
+     * have to reference it. A failure here must not turn the sent message into a failed one.
+     */
+    private void rememberPQKeyRecipients(LocalStore localStore, LocalMessage message) {
+        try {
+            String[] fingerprintHeader = message.getHeader(PQSignatureVerifier.PQ_KEY_FINGERPRINT_HEADER);
+            if (fingerprintHeader == null || fingerprintHeader.length == 0) {
+                return;
+            }
+
+            List<String> recipientAddresses = new ArrayList<>();
+            for (RecipientType recipientType : Arrays.asList(RecipientType.TO, RecipientType.CC, RecipientType.BCC)) {
+                for (Address address : message.getRecipients(recipientType)) {
+                    recipientAddresses.add(address.getAddress());
+                }
+            }
+
+            localStore.getPQSenderKeyRepository().setKeySentTo(recipientAddresses, fingerprintHeader[0].trim());
+        } catch (Exception e) {
+            Timber.w(e, "Unable to remember recipients of post-quantum public key");
+        }
+    }
+
     private void moveOrDeleteSentMessage(Account account, LocalStore localStore, LocalMessage message)
             throws MessagingException {
         if (!account.hasSentFolder() || !account.isUploadSentMessages()) {
@@ -2304,6 +2385,15 @@ public class MessagingController {
             @Override
             public void run() {
 
+                // Folders are synced off the controller thread. The mail check is finished once the folder syncs of
+                // all accounts are done.
+                AtomicInteger pendingAccounts = new AtomicInteger(1);
+                Runnable onAccountFinished = () -> {
+                    if (pendingAccounts.decrementAndGet() == 0) {
+                        finalizeCheckMail(account, wakeLock, listener);
+                    }
+                };
+
                 try {
                     Timber.i("Starting mail check");
 
@@ -2316,48 +2406,80 @@ public class MessagingController {
                     }
 
                     for (final Account account : accounts) {
-                        checkMailForAccount(account, ignoreLastCheckedTime, notify, listener);
+                        pendingAccounts.incrementAndGet();
+                        checkMailForAccount(account, ignoreLastCheckedTime, notify, listener, onAccountFinished);
                     }
 
                 } catch (Exception e) {
                     Timber.e(e, "Unable to synchronize mail");
                 }
-                putBackground("finalize sync", null, new Runnable() {
-                            @Override
-                            public void run() {
 
-                                Timber.i("Finished mail sync");
+                onAccountFinished.run();
+            }
+        });
+    }
 
-                                if (wakeLock != null) {
-                                    wakeLock.release();
-                                }
-                                for (MessagingListener l : getListeners(listener)) {
-                                    l.checkMailFinished(context, account);
-                                }
+    private void finalizeCheckMail(Account account, WakeLock wakeLock, MessagingListener listener) {
+        putBackground("finalize sync", null, new Runnable() {
+                    @Override
+                    public void run() {
 
-                            }
+                        Timber.i("Finished mail sync");
+
+                        if (wakeLock != null) {
+                            wakeLock.release();
                         }
-                );
-            }
-        });
+                        for (MessagingListener l : getListeners(listener)) {
+                            l.checkMailFinished(context, account);
+                        }
+
+                    }
+                }
+        );
     }
 
 
+    /**
+     * Starts the sync of the folders of an account that are due. The folders are synced by {@link FolderSyncScheduler}
+     * so the controller thread is free to run other commands in the meantime.
+     *
+     * @param onFinished
+     *         Called once after all folders of the account have been synced, or right away if none needed a sync.
+     */
     private void checkMailForAccount(Account account, boolean ignoreLastCheckedTime, boolean notify,
-            MessagingListener listener) {
+            MessagingListener listener, Runnable onFinished) {
         Timber.i("Synchronizing account %s", account);
 
         NotificationState notificationState = new NotificationState();
 
-        sendPendingMessages(account, listener);
+        Runnable onFolderSyncFinished = () -> {
+            putBackground("clear notification flag for " + account, null, new Runnable() {
+                        @Override
+                        public void run() {
+                            Timber.v("Clearing notification flag for %s", account);
 
-        refreshFolderListIfStale(account);
+                            clearFetchingMailNotification(account);
 
+                            if (getUnreadMessageCount(account) == 0) {
+                                notificationController.clearNewMailNotifications(account, false);
+                            }
+                        }
+                    }
+            );
+            onFinished.run();
+        };
+
+        boolean folderSyncStarted = false;
         try {
+            sendPendingMessages(account, listener);
+
+            refreshFolderListIfStale(account);
+
             Account.FolderMode aDisplayMode = account.getFolderDisplayMode();
             Account.FolderMode aSyncMode = account.getFolderSyncMode();
 
             LocalStore localStore = localStoreProvider.getInstance(account);
+            List<LocalFolder> foldersToSync = new ArrayList<>();
             for (final LocalFolder folder : localStore.getPersonalNamespaces(false)) {
                 folder.open();
 
@@ -2373,57 +2495,95 @@ public class MessagingController {
                     // Do not sync folders in the wrong class
                     continue;
                 }
-                synchronizeFolder(account, folder, ignoreLastCheckedTime, notify, listener, notificationState);
+
+                if (!ignoreLastCheckedTime && !isFolderSyncDue(account, folder)) {
+                    continue;
+                }
+                foldersToSync.add(folder);
             }
+
+            List<LocalFolder> changedFolders = removeUnchangedFolders(account, foldersToSync);
+            folderSyncScheduler.syncFolders(account, changedFolders, folder ->
+                    synchronizeFolderInBackground(account, folder, notify, listener, notificationState),
+                    onFolderSyncFinished);
+            folderSyncStarted = true;
         } catch (MessagingException e) {
             Timber.e(e, "Unable to synchronize account %s", account);
         } finally {
-            putBackground("clear notification flag for " + account, null, new Runnable() {
-                        @Override
-                        public void run() {
-                            Timber.v("Clearing notification flag for %s", account);
+            if (!folderSyncStarted) {
+                onFolderSyncFinished.run();
+            }
+        }
+    }
 
-                            clearFetchingMailNotification(account);
+    private boolean isFolderSyncDue(Account account, LocalFolder folder) {
+        Timber.v("Folder %s was last synced @ %tc", folder.getServerId(), folder.getLastChecked());
 
-                            if (getUnreadMessageCount(account) == 0) {
-                                notificationController.clearNewMailNotifications(account, false);
-                            }
-                        }
-                    }
-            );
+        long lastCheckedTime = folder.getLastChecked();
+        long now = System.currentTimeMillis();
+
+        if (lastCheckedTime > now) {
+            // The time this folder was last checked lies in the future. We better ignore this and sync now.
+            return true;
         }
 
+        long syncInterval = account.getAutomaticCheckIntervalMinutes() * 60L * 1000L;
+        long nextSyncTime = lastCheckedTime + syncInterval;
+        if (nextSyncTime > now) {
+            Timber.v("Not syncing folder %s, previously synced @ %tc which would be too recent for the " +
+                    "account sync interval", folder.getServerId(), lastCheckedTime);
+            return false;
+        }
 
+        return true;
     }
 
-    private void synchronizeFolder(Account account, LocalFolder folder, boolean ignoreLastCheckedTime,
-            boolean notify, MessagingListener listener, NotificationState notificationState) {
-        putBackground("sync" + folder.getServerId(), null, () -> {
-            synchronizeFolderInBackground(account, folder, ignoreLastCheckedTime, notify, listener, notificationState);
-        });
-    }
+    /**
+     * Asks the server which folders changed since they were last synced, so unchanged folders don't have to be opened.
+     * Unchanged folders count as checked.
+     */
+    private List<LocalFolder> removeUnchangedFolders(Account account, List<LocalFolder> folders) {
+        if (folders.isEmpty() || isAuthenticationProblem(account, true)) {
+            return folders;
+        }
 
-    private void synchronizeFolderInBackground(Account account, LocalFolder folder, boolean ignoreLastCheckedTime,
-            boolean notify, MessagingListener listener, NotificationState notificationState) {
-        Timber.v("Folder %s was last synced @ %tc", folder.getServerId(), folder.getLastChecked());
+        List<String> folderServerIds = new ArrayList<>(folders.size());
+        for (LocalFolder folder : folders) {
+            folderServerIds.add(folder.getServerId());
+        }
 
-        if (!ignoreLastCheckedTime) {
-            long lastCheckedTime = folder.getLastChecked();
-            long now = System.currentTimeMillis();
+        Set<String> changedFolderServerIds;
+        try {
+            Backend backend = getBackend(account);
+            changedFolderServerIds = backend.getChangedFolders(folderServerIds, createSyncConfig(account));
+        } catch (Exception e) {
+            Timber.w(e, "Unable to check for changed folders of %s, synchronizing all folders", account);
+            return folders;
+        }
+
+        if (changedFolderServerIds == null) {
+            return folders;
+        }
+
+        MessageStore messageStore = messageStoreManager.getMessageStore(account);
+        long now = System.currentTimeMillis();
 
-            if (lastCheckedTime > now) {
-                // The time this folder was last checked lies in the future. We better ignore this and sync now.
+        List<LocalFolder> changedFolders = new ArrayList<>();
+        for (LocalFolder folder : folders) {
+            if (changedFolderServerIds.contains(folder.getServerId())) {
+                changedFolders.add(folder);
             } else {
-                long syncInterval = account.getAutomaticCheckIntervalMinutes() * 60L * 1000L;
-                long nextSyncTime = lastCheckedTime + syncInterval;
-                if (nextSyncTime > now) {
-                    Timber.v("Not syncing folder %s, previously synced @ %tc which would be too recent for the " +
-                            "account sync interval", folder.getServerId(), lastCheckedTime);
-                    return;
-                }
+                Timber.v("Not syncing folder %s, it didn't change since the last sync", folder.getServerId());
+                messageStore.setLastChecked(folder.getDatabaseId(), now);
             }
         }
 
+        Timber.d("%d of %d folders of %s changed", changedFolders.size(), folders.size(), account);
+        return changedFolders;
+    }
+
+    private void synchronizeFolderInBackground(Account account, LocalFolder folder, boolean notify,
+            MessagingListener listener, NotificationState notificationState) {
         try {
             showFetchingMailNotificationIfNecessary(account, folder);
             try {
@@ -2625,6 +2785,8 @@ public class MessagingController {
         private final LocalStore localStore;
         private final boolean suppressNotifications;
         private final NotificationState notificationState;
+        private final List<String> pqSignedMessageServerIds = new ArrayList<>();
+        private String pqSignedMessagesFolderServerId;
         boolean syncFailed = false;
 
 
@@ -2702,6 +2864,10 @@ public class MessagingController {
                     messagingListener.synchronizeMailboxNewMessage(account, folderServerId, message);
                 }
             }
+
+            if (pqSignatureSyncVerifier.isCandidate(message)) {
+                queuePQSignatureVerification(folderServerId, messageServerId);
+            }
         }
 
         @Override
@@ -2738,6 +2904,8 @@ public class MessagingController {
 
         @Override
         public void syncFinished(@NotNull String folderServerId) {
+            flushPQSignatureVerification();
+
             long folderId = getFolderId(account, folderServerId);
             for (MessagingListener messagingListener : getListeners(listener)) {
                 messagingListener.synchronizeMailboxFinished(account, folderId);
@@ -2747,6 +2915,7 @@ public class MessagingController {
         @Override
         public void syncFailed(@NotNull String folderServerId, @NotNull String message, Exception exception) {
             syncFailed = true;
+            flushPQSignatureVerification();
 
             if (exception instanceof AuthenticationFailedException) {
                 handleAuthenticationFailure(account, true);
@@ -2768,6 +2937,28 @@ public class MessagingController {
             }
         }
 
+        private void queuePQSignatureVerification(String folderServerId, String messageServerId) {
+            if (!folderServerId.equals(pqSignedMessagesFolderServerId)) {
+                flushPQSignatureVerification();
+                pqSignedMessagesFolderServerId = folderServerId;
+            }
+
+            pqSignedMessageServerIds.add(messageServerId);
+            if (pqSignedMessageServerIds.size() >= PQSignatureSyncVerifier.BATCH_SIZE) {
+                flushPQSignatureVerification();
+            }
+        }
+
+        private void flushPQSignatureVerification() {
+            if (pqSignedMessageServerIds.isEmpty()) {
+                return;
+            }
+
+            pqSignatureSyncVerifier.verifyInBackground(account, pqSignedMessagesFolderServerId,
+                    new ArrayList<>(pqSignedMessageServerIds));
+            pqSignedMessageServerIds.clear();
+        }
+
         private LocalMessage loadMessage(String folderServerId, String messageServerId) {
             try {
                 LocalFolder localFolder = localStore.getFolder(folderServerId);
@@ -42,6 +42,10 @@ public interface MessagingListener {
     void remoteSearchFinished(long folderId, int numResults, int maxResults, List<String> extraResults);
     void remoteSearchFailed(String folderServerId, String err);
 
+    void pqSignatureVerificationStarted(int total);
+    void pqSignatureVerificationProgress(int completed, int total);
+    void pqSignatureVerificationFinished(int numVerified, int numValid);
+
     void enableProgressIndicator(boolean enable);
 
     void updateProgress(int progress);
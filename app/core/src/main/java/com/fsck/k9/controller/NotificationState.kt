@@ -1,6 +1,7 @@
 package com.fsck.k9.controller
 
 class NotificationState {
+    @Volatile
     @get:JvmName("wasNotified")
     var wasNotified: Boolean = false
 }
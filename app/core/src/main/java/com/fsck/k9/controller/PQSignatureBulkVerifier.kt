@@ -0,0 +1,120 @@
+package com.fsck.k9.controller
+
+import android.os.Process
+import com.fsck.k9.Preferences
+import com.fsck.k9.crypto.PQSignatureResult
+import com.fsck.k9.crypto.PQSignatureVerifier
+import com.fsck.k9.mail.FetchProfile
+import com.fsck.k9.mailstore.LocalStoreProvider
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import timber.log.Timber
+
+/**
+ * Re-verifies the post-quantum signatures of many messages at once, e.g. all messages of a folder or search result
+ * after keys have been imported or the supported algorithms have changed.
+ *
+ * Messages are verified in parallel by one worker thread per CPU core. Every worker loads the message it verifies
+ * with its own [com.fsck.k9.mailstore.LocalFolder] instance and drops it afterwards, so only the messages currently
+ * being verified are held in memory. Native signature contexts are borrowed from
+ * [org.openquantumsafe.SignatureContextPool] for each message, so contexts are reused but never shared between
+ * threads. Results are stored with the message, ignoring any previously stored result.
+ *
+ * [verify] blocks until all messages have been verified. Interrupting the calling thread cancels the verification,
+ * results that have already been computed are kept.
+ */
+internal class PQSignatureBulkVerifier(
+    private val preferences: Preferences,
+    private val localStoreProvider: LocalStoreProvider
+) {
+    private val threadNumber = AtomicInteger()
+
+    /**
+     * @param messageReferences The messages to verify, see [PQSignatureSyncVerifier.isSignedMessage]
+     */
+    fun verify(messageReferences: List<MessageReference>, listener: MessagingListener?) {
+        val total = messageReferences.size
+        var completed = 0
+        var numValid = 0
+
+        listener?.pqSignatureVerificationStarted(total)
+        if (total == 0) {
+            listener?.pqSignatureVerificationFinished(0, 0)
+            return
+        }
+
+        val workerCount = Runtime.getRuntime().availableProcessors().coerceIn(1, total)
+        val executor = Executors.newFixedThreadPool(workerCount) { runnable ->
+            Thread(runnable, "PQSignatureBulkVerifier-" + threadNumber.incrementAndGet()).apply {
+                priority = Thread.MIN_PRIORITY
+            }
+        }
+
+        try {
+            val completionService = ExecutorCompletionService<PQSignatureResult?>(executor)
+            for (messageReference in messageReferences) {
+                completionService.submit {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+                    verifyMessage(messageReference)
+                }
+            }
+
+            while (completed < total) {
+                val result = completionService.take().get()
+                completed++
+                if (result?.isValidSigned == true) {
+                    numValid++
+                }
+
+                listener?.pqSignatureVerificationProgress(completed, total)
+            }
+        } catch (e: InterruptedException) {
+            Timber.i("Post-quantum signature verification cancelled after %d of %d messages", completed, total)
+        } catch (e: Exception) {
+            Timber.e(e, "Error while verifying post-quantum signatures")
+        } finally {
+            executor.shutdownNow()
+
+            if (completed > 0) {
+                notifyChange(messageReferences)
+            }
+
+            listener?.pqSignatureVerificationFinished(completed, numValid)
+        }
+    }
+
+    private fun verifyMessage(messageReference: MessageReference): PQSignatureResult? {
+        if (Thread.currentThread().isInterrupted) return null
+
+        return try {
+            val account = preferences.getAccount(messageReference.accountUuid) ?: return null
+            val localFolder = localStoreProvider.getInstance(account).getFolder(messageReference.folderId)
+            localFolder.open()
+
+            val message = localFolder.getMessage(messageReference.uid) ?: return null
+            val fetchProfile = FetchProfile().apply { add(FetchProfile.Item.BODY) }
+            localFolder.fetch(listOf(message), fetchProfile, null)
+
+            if (PQSignatureVerifier.isPQSignedMessage(message)) {
+                PQSignatureVerifier.verifyAndStore(message, account.pqSupportedAlgs)
+            } else {
+                null
+            }
+        } catch (e: Exception) {
+            Timber.w(e, "Error while verifying post-quantum signature of message %s", messageReference.uid)
+            null
+        }
+    }
+
+    private fun notifyChange(messageReferences: List<MessageReference>) {
+        messageReferences.map { it.accountUuid }.distinct().forEach { accountUuid ->
+            val account = preferences.getAccount(accountUuid) ?: return@forEach
+            try {
+                localStoreProvider.getInstance(account).notifyChange()
+            } catch (e: Exception) {
+                Timber.w(e, "Error while notifying about changed post-quantum signature results")
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.fsck.k9.controller
+
+import android.os.Process
+import com.fsck.k9.Account
+import com.fsck.k9.crypto.PQSignatureVerifier
+import com.fsck.k9.mail.FetchProfile
+import com.fsck.k9.mail.Flag
+import com.fsck.k9.mail.internet.MimeUtility
+import com.fsck.k9.mailstore.LocalMessage
+import com.fsck.k9.mailstore.LocalStoreProvider
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import timber.log.Timber
+
+/**
+ * Verifies post-quantum signed messages after they have been downloaded during sync, so the message list can show
+ * the verification result without the user having to open each message.
+ *
+ * New messages are collected by the sync listener and handed over in batches of [BATCH_SIZE]. Batches are processed
+ * one after another by a single low-priority thread, so a large initial sync doesn't compete with message downloads
+ * for CPU time or database access.
+ */
+internal class PQSignatureSyncVerifier(private val localStoreProvider: LocalStoreProvider) {
+    private val executor = ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, LinkedBlockingQueue()) { runnable ->
+        Thread(runnable, "PQSignatureSyncVerifier").apply { priority = Thread.MIN_PRIORITY }
+    }
+
+    /**
+     * Checks whether a freshly synced message needs to be queued for verification. Only the database columns loaded
+     * with the message are used here, the body is loaded later on the verification thread.
+     */
+    fun isCandidate(message: LocalMessage): Boolean = isSignedMessage(message)
+
+    fun verifyInBackground(account: Account, folderServerId: String, messageServerIds: List<String>) {
+        if (messageServerIds.isEmpty()) return
+
+        executor.execute {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+            verifyBatch(account, folderServerId, messageServerIds)
+        }
+    }
+
+    fun stop() {
+        executor.shutdownNow()
+    }
+
+    private fun verifyBatch(account: Account, folderServerId: String, messageServerIds: List<String>) {
+        try {
+            val localStore = localStoreProvider.getInstance(account)
+            val localFolder = localStore.getFolder(folderServerId)
+            localFolder.open()
+
+            val messages = localFolder.getMessagesByUids(messageServerIds)
+            val fetchProfile = FetchProfile().apply { add(FetchProfile.Item.BODY) }
+            localFolder.fetch(messages, fetchProfile, null)
+
+            val verifiedMessageIds = mutableListOf<Long>()
+            for (message in messages) {
+                if (Thread.currentThread().isInterrupted) break
+
+                if (PQSignatureVerifier.isPQSignedMessage(message)) {
+                    verifyMessage(account, message)
+                    verifiedMessageIds.add(message.databaseId)
+                }
+            }
+
+            if (verifiedMessageIds.isNotEmpty()) {
+                localStore.notifyChange(verifiedMessageIds)
+            }
+        } catch (e: Exception) {
+            Timber.e(e, "Error while verifying post-quantum signatures in %s:%s", account, folderServerId)
+        }
+    }
+
+    private fun verifyMessage(account: Account, message: LocalMessage) {
+        try {
+            PQSignatureVerifier.getOrVerify(message, account.pqSupportedAlgs)
+        } catch (e: Exception) {
+            Timber.w(e, "Error while verifying post-quantum signature of message %s", message.uid)
+        }
+    }
+
+    companion object {
+        const val BATCH_SIZE = 20
+
+        /**
+         * Checks the database columns of a fully downloaded message for a multipart/signed structure.
+         */
+        @JvmStatic
+        fun isSignedMessage(message: LocalMessage): Boolean {
+            return message.isSet(Flag.X_DOWNLOADED_FULL) &&
+                MimeUtility.isSameMimeType(message.mimeType, MULTIPART_SIGNED)
+        }
+
+        private const val MULTIPART_SIGNED = "multipart/signed"
+    }
+}
@@ -97,6 +97,18 @@ public abstract class SimpleMessagingListener implements MessagingListener {
     public void remoteSearchFailed(String folderServerId, String err) {
     }
 
+    @Override
+    public void pqSignatureVerificationStarted(int total) {
+    }
+
+    @Override
+    public void pqSignatureVerificationProgress(int completed, int total) {
+    }
+
+    @Override
+    public void pqSignatureVerificationFinished(int numVerified, int numValid) {
+    }
+
     @Override
     public void enableProgressIndicator(boolean enable) {
     }
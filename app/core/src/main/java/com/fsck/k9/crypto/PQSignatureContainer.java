@@ -0,0 +1,143 @@
+package com.fsck.k9.crypto;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.fsck.k9.mail.MessagingException;
+
+
+/**
+ * Binary container for the signature and public key parts of a post-quantum signed message. Compared to the older
+ * ASCII armored text format the raw bytes are only Base64 encoded once, by the transfer encoding of the part.
+ * <p>
+ * Layout (all integers big-endian):
+ * <pre>
+ * magic            4 bytes  "PQSC"
+ * version          1 byte   {@link #VERSION}
+ * type             1 byte   {@link #TYPE_SIGNATURE}, {@link #TYPE_PUBLIC_KEY} or {@link #TYPE_KEY_REFERENCE}
+ * algorithm length 1 byte
+ * algorithm        US-ASCII liboqs algorithm name, e.g. "Dilithium2"
+ * data length      4 bytes
+ * data             raw signature, public key or US-ASCII key fingerprint
+ * </pre>
+ * A key reference is sent instead of the public key to recipients that already received the key, see
+ * {@link com.fsck.k9.mailstore.PQSenderKeyRepository}.
+ */
+public class PQSignatureContainer {
+    public static final byte VERSION = 1;
+    public static final byte TYPE_SIGNATURE = 1;
+    public static final byte TYPE_PUBLIC_KEY = 2;
+    public static final byte TYPE_KEY_REFERENCE = 3;
+
+    private static final byte[] MAGIC = { 'P', 'Q', 'S', 'C' };
+    private static final int MAX_ALGORITHM_LENGTH = 255;
+
+
+    public final byte type;
+    @NonNull
+    public final String algorithm;
+    @NonNull
+    public final byte[] data;
+
+
+    public PQSignatureContainer(byte type, @NonNull String algorithm, @NonNull byte[] data) {
+        this.type = type;
+        this.algorithm = algorithm;
+        this.data = data;
+    }
+
+    @NonNull
+    public byte[] encode() {
+        byte[] algorithmBytes = algorithm.getBytes(StandardCharsets.US_ASCII);
+        if (algorithmBytes.length > MAX_ALGORITHM_LENGTH) {
+            throw new IllegalArgumentException("Algorithm name too long: " + algorithm);
+        }
+
+        ByteArrayOutputStream outputStream =
+                new ByteArrayOutputStream(MAGIC.length + 3 + algorithmBytes.length + 4 + data.length);
+        try (DataOutputStream dataOutputStream = new DataOutputStream(outputStream)) {
+            dataOutputStream.write(MAGIC);
+            dataOutputStream.writeByte(VERSION);
+            dataOutputStream.writeByte(type);
+            dataOutputStream.writeByte(algorithmBytes.length);
+            dataOutputStream.write(algorithmBytes);
+            dataOutputStream.writeInt(data.length);
+            dataOutputStream.write(data);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    public static boolean isContainer(@NonNull byte[] content) {
+        if (content.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (content[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param content decoded content of the part
+     * @param expectedType the type the part must have
+     * @return the decoded container, or {@code null} if the content isn't a container
+     * @throws MessagingException if the content is a container, but can't be decoded or has a different type
+     */
+    @Nullable
+    public static PQSignatureContainer decode(@NonNull byte[] content, byte expectedType) throws MessagingException {
+        PQSignatureContainer container = decode(content);
+        if (container != null && container.type != expectedType) {
+            throw new MessagingException("Unexpected PQ signature container type: " + container.type);
+        }
+        return container;
+    }
+
+    /**
+     * @param content decoded content of the part
+     * @return the decoded container of any type, or {@code null} if the content isn't a container
+     * @throws MessagingException if the content is a container, but can't be decoded
+     */
+    @Nullable
+    public static PQSignatureContainer decode(@NonNull byte[] content) throws MessagingException {
+        if (!isContainer(content)) {
+            return null;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            buffer.position(MAGIC.length);
+
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new MessagingException("Unsupported PQ signature container version: " + version);
+            }
+
+            byte type = buffer.get();
+            byte[] algorithmBytes = new byte[buffer.get() & 0xFF];
+            buffer.get(algorithmBytes);
+
+            int dataLength = buffer.getInt();
+            if (dataLength < 0 || dataLength != buffer.remaining()) {
+                throw new MessagingException("Invalid PQ signature container data length: " + dataLength);
+            }
+            byte[] data = new byte[dataLength];
+            buffer.get(data);
+
+            return new PQSignatureContainer(type, new String(algorithmBytes, StandardCharsets.US_ASCII), data);
+        } catch (BufferUnderflowException e) {
+            throw new MessagingException("Truncated PQ signature container", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.fsck.k9.crypto;
+
+
+import androidx.annotation.NonNull;
+
+
+/**
+ * Outcome of verifying the post-quantum signature of a single message.
+ */
+public class PQSignatureResult {
+    public final boolean isValidSigned;
+    @NonNull
+    public final String algorithm;
+    /**
+     * The sender's key doesn't match the key that was seen first for the address, see
+     * {@link PQSignatureVerifier#trustSenderKey(com.fsck.k9.mailstore.LocalMessage, String[])}.
+     */
+    public final boolean isKeyMismatch;
+    private final boolean isKeyUnknown;
+
+
+    public PQSignatureResult(boolean isValidSigned, @NonNull String algorithm) {
+        this(isValidSigned, algorithm, false, false);
+    }
+
+    private PQSignatureResult(boolean isValidSigned, @NonNull String algorithm, boolean isKeyMismatch,
+            boolean isKeyUnknown) {
+        this.isValidSigned = isValidSigned;
+        this.algorithm = algorithm;
+        this.isKeyMismatch = isKeyMismatch;
+        this.isKeyUnknown = isKeyUnknown;
+    }
+
+    /**
+     * The message only references a key that isn't in the keyring (yet).
+     */
+    public static PQSignatureResult keyUnknown(@NonNull String algorithm) {
+        return new PQSignatureResult(false, algorithm, false, true);
+    }
+
+    public static PQSignatureResult keyMismatch(@NonNull String algorithm) {
+        return new PQSignatureResult(false, algorithm, true, false);
+    }
+
+    /**
+     * Returns {@code false} if the outcome depends on more than the message itself: the algorithm isn't supported,
+     * or the sender's key is unknown or doesn't match the keyring. Such a result can change without the message
+     * changing, so it must not be stored.
+     */
+    public boolean isConclusive() {
+        return !PQSignatureVerifier.NO_MATCH.equals(algorithm) && !isKeyUnknown && !isKeyMismatch;
+    }
+}
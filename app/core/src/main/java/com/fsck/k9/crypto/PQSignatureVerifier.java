@@ -0,0 +1,364 @@
+package com.fsck.k9.crypto;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import com.fsck.k9.mail.Address;
+import com.fsck.k9.mail.Body;
+import com.fsck.k9.mail.BodyPart;
+import com.fsck.k9.mail.MessagingException;
+import com.fsck.k9.mail.Multipart;
+import com.fsck.k9.mail.filter.Base64;
+import com.fsck.k9.mail.filter.Hex;
+import com.fsck.k9.mail.internet.MessageExtractor;
+import com.fsck.k9.mail.internet.MimeUtility;
+import com.fsck.k9.mailstore.LocalMessage;
+import com.fsck.k9.mailstore.PQSenderKeyRepository;
+import com.fsck.k9.mailstore.TrustOnFirstUseResult;
+import org.apache.commons.io.IOUtils;
+import org.openquantumsafe.SignatureContextPool;
+import timber.log.Timber;
+
+
+/**
+ * Verifies post-quantum signed messages. A PQ signed message is a multipart/signed message with exactly three parts:
+ * the signed content, the signature and the public key of the sender.
+ * <p>
+ * Verification involves Base64 decoding the signature and key as well as a native verify call, which can take a
+ * considerable amount of time for some algorithms (e.g. SPHINCS+). It must never be run on the main thread.
+ * Conclusive results are stored in the database together with a hash of the verified data, see
+ * {@link #getOrVerify(LocalMessage, String[])}.
+ * <p>
+ * Public keys of valid signatures are added to the account's {@link PQSenderKeyRepository} on first use. Messages
+ * from a known sender are verified with the stored key, a different key for the same sender is not accepted until the
+ * user trusts it with {@link #trustSenderKey(LocalMessage, String[])}.
+ */
+public class PQSignatureVerifier {
+    public static final String NO_MATCH = "NO_MATCH";
+    /**
+     * Fingerprint of the sender's public key, see {@link PQSenderKeyRepository#computeFingerprint(byte[])}.
+     */
+    public static final String PQ_KEY_FINGERPRINT_HEADER = "X-PQ-Key-Fingerprint";
+
+    private static final String MULTIPART_SIGNED = "multipart/signed";
+    private static final String PROTOCOL_PARAMETER = "protocol";
+    private static final String PQ_SIGNATURE_PROTOCOL = "application/pq-signature";
+    private static final int PQ_SIGNED_PART_COUNT = 3;
+    private static final int SIGNED_PART_INDEX = 0;
+    private static final int SIGNATURE_PART_INDEX = 1;
+    private static final int PUBLIC_KEY_PART_INDEX = 2;
+    private static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+    private static final Pattern ALGORITHM_PATTERN =
+            Pattern.compile("------ begin post quantum signature using ([a-z0-9-+]+) ------");
+
+
+    /**
+     * Checks the protocol and structure of a message whose body has been loaded. Other messages with three parts, e.g.
+     * a multipart/mixed message with two attachments, are not PQ signed.
+     */
+    public static boolean isPQSignedMessage(LocalMessage message) {
+        if (!MimeUtility.isSameMimeType(message.getMimeType(), MULTIPART_SIGNED)) {
+            return false;
+        }
+
+        String protocol = MimeUtility.getHeaderParameter(message.getContentType(), PROTOCOL_PARAMETER);
+        if (!MimeUtility.isSameMimeType(protocol, PQ_SIGNATURE_PROTOCOL)) {
+            return false;
+        }
+
+        Body body = message.getBody();
+        return body instanceof Multipart && ((Multipart) body).getCount() == PQ_SIGNED_PART_COUNT;
+    }
+
+    /**
+     * Returns the stored verification result of the message if it was computed for the current content, signature
+     * and public key. Otherwise the message is verified and the result is stored for the next time.
+     *
+     * @param message The message to verify, must be a PQ signed message
+     * @param supportedAlgorithms The algorithms that are accepted
+     * @return the stored or freshly computed verification result
+     */
+    @WorkerThread
+    @NonNull
+    public static PQSignatureResult getOrVerify(LocalMessage message, String[] supportedAlgorithms)
+            throws MessagingException {
+        byte[] signedData = getSignedData(message);
+        String contentHash = computeContentHash(message, signedData);
+
+        PQSignatureResult storedResult = message.getStoredPQSignatureResult(contentHash);
+        if (storedResult != null && isStillSupported(storedResult, supportedAlgorithms)) {
+            return storedResult;
+        }
+
+        return verifyAndStore(message, supportedAlgorithms, signedData, contentHash);
+    }
+
+    /**
+     * Verifies the message, ignoring any stored result, and stores the new result. Used to re-check messages after
+     * the keys or supported algorithms of the account have changed.
+     *
+     * @param message The message to verify, must be a PQ signed message
+     * @param supportedAlgorithms The algorithms that are accepted
+     * @return the freshly computed verification result
+     */
+    @WorkerThread
+    @NonNull
+    public static PQSignatureResult verifyAndStore(LocalMessage message, String[] supportedAlgorithms)
+            throws MessagingException {
+        byte[] signedData = getSignedData(message);
+        return verifyAndStore(message, supportedAlgorithms, signedData, computeContentHash(message, signedData));
+    }
+
+    /**
+     * Replaces the keys stored for the sender with the key included in the message, e.g. after the sender generated
+     * new keys, and stores the new result. The key is only replaced if the message has a valid signature made with it.
+     *
+     * @param message The message to verify, must be a PQ signed message
+     * @param supportedAlgorithms The algorithms that are accepted
+     * @return the freshly computed verification result
+     */
+    @WorkerThread
+    @NonNull
+    public static PQSignatureResult trustSenderKey(LocalMessage message, String[] supportedAlgorithms)
+            throws MessagingException {
+        byte[] signedData = getSignedData(message);
+        PQSignatureResult result = verify(message, supportedAlgorithms, signedData, true);
+        storeResult(message, result, computeContentHash(message, signedData));
+        return result;
+    }
+
+    private static PQSignatureResult verifyAndStore(LocalMessage message, String[] supportedAlgorithms,
+            byte[] signedData, String contentHash) throws MessagingException {
+        PQSignatureResult result = verify(message, supportedAlgorithms, signedData, false);
+        storeResult(message, result, contentHash);
+        return result;
+    }
+
+    private static void storeResult(LocalMessage message, PQSignatureResult result, String contentHash) {
+        try {
+            // A signature we can't check isn't invalid, it must not be shown as such in the message list
+            if (result.isConclusive()) {
+                message.setStoredPQSignatureResult(result, contentHash);
+            } else {
+                message.clearStoredPQSignatureResult();
+            }
+        } catch (MessagingException e) {
+            Timber.w(e, "Unable to store post-quantum signature verification result");
+        }
+    }
+
+    /**
+     * Main part of PQ signature detection. Here the public key and signature are extracted from the body, either from
+     * a {@link PQSignatureContainer} or, for messages sent by older versions, from the ASCII armored text by removing
+     * the headers/footers and new lines. Finally a pooled signature is used to verify the message.
+     * <p>
+     * Signatures that declare a digest on their part are checked against the {@link PQSignedContentDigest} of the
+     * signed part. Older signatures were made over the message text and are checked against the preview.
+     *
+     * @param message The message to verify, must be a PQ signed message
+     * @param supportedAlgorithms The algorithms that are accepted
+     * @return the verification result, containing the algorithm that was detected from the signature header
+     */
+    @WorkerThread
+    @NonNull
+    public static PQSignatureResult verify(LocalMessage message, String[] supportedAlgorithms)
+            throws MessagingException {
+        return verify(message, supportedAlgorithms, getSignedData(message), false);
+    }
+
+    private static PQSignatureResult verify(LocalMessage message, String[] supportedAlgorithms, byte[] signedData,
+            boolean replaceSenderKey) throws MessagingException {
+        Multipart body = (Multipart) message.getBody();
+        BodyPart signaturePart = body.getBodyPart(SIGNATURE_PART_INDEX);
+        BodyPart keyPart = body.getBodyPart(PUBLIC_KEY_PART_INDEX);
+        byte[] signatureContent = readPartContent(signaturePart);
+
+        String senderAddress = getSenderAddress(message);
+        PQSenderKeyRepository keyRepository = message.getLocalStore().getPQSenderKeyRepository();
+
+        String algorithm;
+        byte[] pqSigBytes;
+        byte[] pqKeyBytes;
+        boolean isKeyFromMessage;
+        PQSignatureContainer signatureContainer =
+                PQSignatureContainer.decode(signatureContent, PQSignatureContainer.TYPE_SIGNATURE);
+        if (signatureContainer != null) {
+            algorithm = findSupportedAlgorithm(signatureContainer.algorithm, supportedAlgorithms);
+            if (NO_MATCH.equals(algorithm)) {
+                return new PQSignatureResult(false, algorithm);
+            }
+            pqSigBytes = signatureContainer.data;
+
+            // A key that is already in the keyring doesn't have to be read from the message
+            String[] fingerprintHeader = message.getHeader(PQ_KEY_FINGERPRINT_HEADER);
+            String fingerprint = fingerprintHeader.length > 0 ? fingerprintHeader[0].trim() : null;
+            pqKeyBytes = replaceSenderKey ? null : getKnownKey(keyRepository, senderAddress, fingerprint, algorithm);
+            isKeyFromMessage = false;
+
+            if (pqKeyBytes == null) {
+                PQSignatureContainer keyContainer = PQSignatureContainer.decode(readPartContent(keyPart));
+                if (keyContainer == null || !algorithm.equalsIgnoreCase(keyContainer.algorithm)) {
+                    return new PQSignatureResult(false, algorithm);
+                }
+
+                if (keyContainer.type == PQSignatureContainer.TYPE_PUBLIC_KEY) {
+                    pqKeyBytes = keyContainer.data;
+                    isKeyFromMessage = true;
+                } else if (keyContainer.type == PQSignatureContainer.TYPE_KEY_REFERENCE) {
+                    String referencedFingerprint = new String(keyContainer.data, StandardCharsets.US_ASCII);
+                    pqKeyBytes = getKnownKey(keyRepository, senderAddress, referencedFingerprint, algorithm);
+                }
+
+                if (pqKeyBytes == null) {
+                    Timber.d("Public key of post-quantum signed message is unknown");
+                    return PQSignatureResult.keyUnknown(algorithm);
+                }
+            }
+        } else {
+            String pqSigFile = new String(signatureContent);
+            algorithm = getSignatureAlgorithm(pqSigFile, supportedAlgorithms);
+            if (NO_MATCH.equals(algorithm)) {
+                return new PQSignatureResult(false, algorithm);
+            }
+
+            String pqKey = MessageExtractor.extractPQKey(new String(readPartContent(keyPart)), supportedAlgorithms);
+            String pqSig = MessageExtractor.extractPQSignature(pqSigFile, supportedAlgorithms);
+
+            pqKeyBytes = Base64.decodeBase64(pqKey.getBytes());
+            pqSigBytes = Base64.decodeBase64(pqSig.getBytes());
+            isKeyFromMessage = true;
+        }
+
+        boolean isValidSigned;
+        try (SignatureContextPool.Lease lease = SignatureContextPool.get_instance().acquire(algorithm)) {
+            isValidSigned = lease.get_signature().verify(signedData, pqSigBytes, pqKeyBytes);
+        }
+
+        // Only keys that produced a valid signature make it into the keyring
+        if (isValidSigned && isKeyFromMessage && senderAddress != null) {
+            if (replaceSenderKey) {
+                keyRepository.replaceKey(senderAddress, algorithm, pqKeyBytes);
+            } else {
+                TrustOnFirstUseResult trustResult =
+                        keyRepository.addKeyOnFirstUse(senderAddress, algorithm, pqKeyBytes);
+                if (trustResult == TrustOnFirstUseResult.KEY_MISMATCH) {
+                    Timber.w("Post-quantum key of %s doesn't match the key seen first", senderAddress);
+                    return PQSignatureResult.keyMismatch(algorithm);
+                }
+            }
+        }
+
+        return new PQSignatureResult(isValidSigned, algorithm);
+    }
+
+    @Nullable
+    private static byte[] getKnownKey(PQSenderKeyRepository keyRepository, @Nullable String senderAddress,
+            @Nullable String fingerprint, String algorithm) {
+        if (senderAddress == null || fingerprint == null) {
+            return null;
+        }
+        return keyRepository.getPublicKey(senderAddress, fingerprint, algorithm);
+    }
+
+    @Nullable
+    private static String getSenderAddress(LocalMessage message) {
+        Address[] from = message.getFrom();
+        return from != null && from.length > 0 ? from[0].getAddress() : null;
+    }
+
+    /**
+     * Returns the data the signature was made over. Signatures that declare a digest on their part are made over the
+     * {@link PQSignedContentDigest} of the signed part, older signatures over the message text.
+     */
+    private static byte[] getSignedData(LocalMessage message) throws MessagingException {
+        Multipart body = (Multipart) message.getBody();
+        if (isContentDigestSignature(body.getBodyPart(SIGNATURE_PART_INDEX))) {
+            return PQSignedContentDigest.compute(body.getBodyPart(SIGNED_PART_INDEX));
+        }
+
+        String preview = message.getPreview();
+        return preview != null ? preview.getBytes() : new byte[0];
+    }
+
+    /**
+     * Hashes everything the verification result depends on: the signed data, the signature and the public key.
+     */
+    @NonNull
+    private static String computeContentHash(LocalMessage message, byte[] signedData) throws MessagingException {
+        Multipart body = (Multipart) message.getBody();
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+
+        digest.update(signedData);
+        digest.update(readPartContent(body.getBodyPart(SIGNATURE_PART_INDEX)));
+        digest.update(readPartContent(body.getBodyPart(PUBLIC_KEY_PART_INDEX)));
+
+        return Hex.encodeHex(digest.digest());
+    }
+
+    /**
+     * A stored result for an algorithm that has been removed from the supported algorithms must not be reused. A
+     * stored {@link #NO_MATCH} is re-checked as well, because the algorithm might have become supported since.
+     */
+    private static boolean isStillSupported(PQSignatureResult result, String[] supportedAlgorithms) {
+        for (String supportedAlg : supportedAlgorithms) {
+            if (supportedAlg.equals(result.algorithm)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isContentDigestSignature(BodyPart signaturePart) {
+        String digestAlgorithm =
+                MimeUtility.getHeaderParameter(signaturePart.getContentType(), PQSignedContentDigest.DIGEST_PARAMETER);
+        return PQSignedContentDigest.DIGEST_ALGORITHM.equalsIgnoreCase(digestAlgorithm);
+    }
+
+    /**
+     * Fetches the algorithm type from the header of the PQ signature. This is done by comparing it to the supported
+     * algorithms.
+     */
+    private static String getSignatureAlgorithm(String pqSigFile, String[] supportedAlgorithms) {
+        Matcher m = ALGORITHM_PATTERN.matcher(pqSigFile.toLowerCase());
+        if (m.find()) {
+            return findSupportedAlgorithm(m.group(1), supportedAlgorithms);
+        }
+        return NO_MATCH;
+    }
+
+    private static String findSupportedAlgorithm(String algorithm, String[] supportedAlgorithms) {
+        for (String supportedAlg : supportedAlgorithms) {
+            if (supportedAlg.equalsIgnoreCase(algorithm)) {
+                return supportedAlg;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * Reads the content of the part with the transfer encoding removed.
+     */
+    private static byte[] readPartContent(BodyPart part) throws MessagingException {
+        try (InputStream inputStream = MimeUtility.decodeBody(part.getBody())) {
+            return IOUtils.toByteArray(inputStream);
+        } catch (IOException e) {
+            throw new MessagingException("Unable to read post-quantum signature part", e);
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.fsck.k9.crypto;
+
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+
+import androidx.annotation.WorkerThread;
+import com.fsck.k9.mail.MessagingException;
+import com.fsck.k9.mail.Part;
+import com.fsck.k9.mail.filter.EOLConvertingOutputStream;
+import org.openquantumsafe.SHA3Digest;
+
+
+/**
+ * Computes the digest that is signed for a post-quantum signed message. Like RFC 3156 does for PGP/MIME, the signed
+ * part is written including its headers and in its transfer encoding, with all line endings converted to CRLF. The
+ * part is hashed while it is written, so it never has to be held in memory as a whole.
+ */
+public class PQSignedContentDigest {
+    /**
+     * Value of the {@code digest} parameter of the signature part's content type for signatures over this digest.
+     */
+    public static final String DIGEST_ALGORITHM = "sha3-512";
+    public static final String DIGEST_PARAMETER = "digest";
+
+    private static final int BUFFER_SIZE = 8192;
+
+
+    @WorkerThread
+    public static byte[] compute(Part signedPart) throws MessagingException {
+        try (SHA3Digest digest = new SHA3Digest()) {
+            // EOLConvertingOutputStream writes byte by byte, let the digest absorb whole blocks instead
+            EOLConvertingOutputStream outputStream =
+                    new EOLConvertingOutputStream(new BufferedOutputStream(digest, BUFFER_SIZE));
+            signedPart.writeTo(outputStream);
+            outputStream.flush();
+
+            return digest.digest();
+        } catch (IOException e) {
+            throw new MessagingException("Unable to compute digest of signed part", e);
+        }
+    }
+}
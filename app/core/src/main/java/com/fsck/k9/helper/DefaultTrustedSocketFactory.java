@@ -7,13 +7,21 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import android.content.Context;
 import android.net.SSLCertificateSocketFactory;
 import android.text.TextUtils;
 
+import com.fsck.k9.Account;
+import com.fsck.k9.Preferences;
 import com.fsck.k9.mail.MessagingException;
+import com.fsck.k9.mail.ServerSettings;
 import com.fsck.k9.mail.ssl.TrustManagerFactory;
 import com.fsck.k9.mail.ssl.TrustedSocketFactory;
 import javax.net.ssl.KeyManager;
@@ -30,6 +38,11 @@ import timber.log.Timber;
  * remove the insecure ciphers and reorder them so the latest more secure ciphers are at the top.
  *
  * On more modern versions of Android we keep the system configuration.
+ *
+ * One {@link SSLContext} is kept per server and client certificate, so new connections to the same server can resume
+ * the TLS session of a previous connection instead of doing a full handshake. Resumed sessions skip the certificate
+ * check, so contexts are dropped when the accepted certificates of a server change or when no account uses the
+ * server and client certificate anymore.
  */
 public class DefaultTrustedSocketFactory implements TrustedSocketFactory {
     private static final String[] ENABLED_CIPHERS;
@@ -90,10 +103,55 @@ public class DefaultTrustedSocketFactory implements TrustedSocketFactory {
 
     private final Context context;
     private final TrustManagerFactory trustManagerFactory;
+    private final Preferences preferences;
+    private final Map<String, SSLContext> sslContexts = new HashMap<>();
 
-    public DefaultTrustedSocketFactory(Context context, TrustManagerFactory trustManagerFactory) {
+    public DefaultTrustedSocketFactory(Context context, TrustManagerFactory trustManagerFactory,
+            Preferences preferences) {
         this.context = context;
         this.trustManagerFactory = trustManagerFactory;
+        this.preferences = preferences;
+
+        preferences.addOnAccountsChangeListener(this::removeUnusedSslContexts);
+    }
+
+    /**
+     * Drops the cached {@link SSLContext}s for the given server, e.g. because a certificate was added to or removed
+     * from the local key store.
+     */
+    public void invalidateSslContexts(String host, int port) {
+        String keyPrefix = host + ":" + port + ":";
+        synchronized (sslContexts) {
+            Iterator<String> iterator = sslContexts.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().startsWith(keyPrefix)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private void removeUnusedSslContexts() {
+        Set<String> usedKeys = new HashSet<>();
+        for (Account account : preferences.getAccounts()) {
+            // Server settings of accounts that are still being set up might not be available yet
+            if (account.isFinishedSetup()) {
+                addSslContextKey(usedKeys, account.getIncomingServerSettings());
+                addSslContextKey(usedKeys, account.getOutgoingServerSettings());
+            }
+        }
+
+        synchronized (sslContexts) {
+            sslContexts.keySet().retainAll(usedKeys);
+        }
+    }
+
+    private static void addSslContextKey(Set<String> keys, ServerSettings serverSettings) {
+        keys.add(getSslContextKey(serverSettings.host, serverSettings.port, serverSettings.clientCertificateAlias));
+    }
+
+    private static String getSslContextKey(String host, int port, String clientCertificateAlias) {
+        return host + ":" + port + ":" + clientCertificateAlias;
     }
 
     protected static String[] remove(String[] enabled, String[] disallowed) {
@@ -112,14 +170,7 @@ public class DefaultTrustedSocketFactory implements TrustedSocketFactory {
     public Socket createSocket(Socket socket, String host, int port, String clientCertificateAlias)
             throws NoSuchAlgorithmException, KeyManagementException, MessagingException, IOException {
 
-        TrustManager[] trustManagers = new TrustManager[] { trustManagerFactory.getTrustManagerForDomain(host, port) };
-        KeyManager[] keyManagers = null;
-        if (!TextUtils.isEmpty(clientCertificateAlias)) {
-            keyManagers = new KeyManager[] { new KeyChainKeyManager(context, clientCertificateAlias) };
-        }
-
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(keyManagers, trustManagers, null);
+        SSLContext sslContext = getSslContext(host, port, clientCertificateAlias);
         SSLSocketFactory socketFactory = sslContext.getSocketFactory();
         Socket trustedSocket;
         if (socket == null) {
@@ -137,6 +188,29 @@ public class DefaultTrustedSocketFactory implements TrustedSocketFactory {
         return trustedSocket;
     }
 
+    private SSLContext getSslContext(String host, int port, String clientCertificateAlias)
+            throws NoSuchAlgorithmException, KeyManagementException, MessagingException {
+
+        String key = getSslContextKey(host, port, clientCertificateAlias);
+        synchronized (sslContexts) {
+            SSLContext sslContext = sslContexts.get(key);
+            if (sslContext == null) {
+                TrustManager[] trustManagers =
+                        new TrustManager[] { trustManagerFactory.getTrustManagerForDomain(host, port) };
+                KeyManager[] keyManagers = null;
+                if (!TextUtils.isEmpty(clientCertificateAlias)) {
+                    keyManagers = new KeyManager[] { new KeyChainKeyManager(context, clientCertificateAlias) };
+                }
+
+                sslContext = SSLContext.getInstance("TLS");
+                sslContext.init(keyManagers, trustManagers, null);
+                sslContexts.put(key, sslContext);
+            }
+
+            return sslContext;
+        }
+    }
+
     private static void hardenSocket(SSLSocket sock) {
         if (ENABLED_CIPHERS != null) {
             sock.setEnabledCipherSuites(ENABLED_CIPHERS);
@@ -0,0 +1,31 @@
+package com.fsck.k9.job
+
+import android.content.Context
+import androidx.work.Worker
+import androidx.work.WorkerParameters
+import com.fsck.k9.Preferences
+import com.fsck.k9.mailstore.FulltextIndexer
+import timber.log.Timber
+
+/**
+ * Creates the full-text search entries for messages that were saved during sync.
+ */
+class FulltextIndexWorker(
+    private val preferences: Preferences,
+    private val fulltextIndexer: FulltextIndexer,
+    context: Context,
+    parameters: WorkerParameters
+) : Worker(context, parameters) {
+
+    override fun doWork(): Result {
+        Timber.d("Executing full-text search indexing")
+
+        for (account in preferences.accounts) {
+            if (isStopped) break
+
+            fulltextIndexer.indexPendingMessages(account)
+        }
+
+        return Result.success()
+    }
+}
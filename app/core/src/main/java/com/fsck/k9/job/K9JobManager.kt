@@ -1,8 +1,12 @@
 package com.fsck.k9.job
 
+import androidx.work.Constraints
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.PeriodicWorkRequestBuilder
 import androidx.work.WorkManager
 import com.fsck.k9.Account
 import com.fsck.k9.Preferences
+import java.util.concurrent.TimeUnit
 import timber.log.Timber
 
 class K9JobManager(
@@ -13,6 +17,7 @@ class K9JobManager(
     fun scheduleAllMailJobs() {
         Timber.v("scheduling all jobs")
         scheduleMailSync()
+        scheduleFulltextIndexing()
     }
 
     fun scheduleMailSync(account: Account) {
@@ -32,4 +37,36 @@ class K9JobManager(
         Timber.v("canceling mail sync job")
         workManager.cancelAllWorkByTag(MailSyncWorkerManager.MAIL_SYNC_TAG)
     }
+
+    /**
+     * Messages saved during sync are added to the full-text search index later, while the device is charging.
+     * Searches index pending messages on demand, so this only makes sure the queue doesn't grow indefinitely.
+     */
+    private fun scheduleFulltextIndexing() {
+        Timber.v("scheduling full-text search indexing job")
+
+        val constraints = Constraints.Builder()
+            .setRequiresCharging(true)
+            .setRequiresStorageNotLow(true)
+            .build()
+
+        val fulltextIndexRequest = PeriodicWorkRequestBuilder<FulltextIndexWorker>(
+            FULLTEXT_INDEX_INTERVAL_HOURS,
+            TimeUnit.HOURS
+        )
+            .setConstraints(constraints)
+            .addTag(FULLTEXT_INDEX_TAG)
+            .build()
+
+        workManager.enqueueUniquePeriodicWork(
+            FULLTEXT_INDEX_TAG,
+            ExistingPeriodicWorkPolicy.KEEP,
+            fulltextIndexRequest
+        )
+    }
+
+    companion object {
+        private const val FULLTEXT_INDEX_TAG = "FulltextIndex"
+        private const val FULLTEXT_INDEX_INTERVAL_HOURS = 6L
+    }
 }
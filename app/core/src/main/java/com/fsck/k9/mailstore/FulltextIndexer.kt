@@ -0,0 +1,73 @@
+package com.fsck.k9.mailstore
+
+import com.fsck.k9.Account
+import com.fsck.k9.mail.FetchProfile
+import com.fsck.k9.message.extractors.MessageFulltextCreator
+import kotlin.math.min
+import timber.log.Timber
+
+/**
+ * Creates the full-text search entries for messages whose indexing was deferred when they were saved during sync.
+ */
+class FulltextIndexer(
+    private val localStoreProvider: LocalStoreProvider,
+    private val messageStoreManager: MessageStoreManager,
+    private val messageFulltextCreator: MessageFulltextCreator
+) {
+    /**
+     * Index up to [maxMessageCount] pending messages of the given account.
+     *
+     * @return The number of messages that have been processed.
+     */
+    fun indexPendingMessages(account: Account, maxMessageCount: Int = Int.MAX_VALUE): Int {
+        val messageStore = messageStoreManager.getMessageStore(account)
+        val localStore = localStoreProvider.getInstance(account)
+
+        var processedMessageCount = 0
+        while (processedMessageCount < maxMessageCount) {
+            val batchSize = min(BATCH_SIZE, maxMessageCount - processedMessageCount)
+            val pendingMessages = messageStore.getMessagesPendingFulltextIndexing(batchSize)
+            if (pendingMessages.isEmpty()) break
+
+            val fulltextEntries = pendingMessages.associateWith { pendingMessage ->
+                createFulltext(localStore, pendingMessage.folderId, pendingMessage.messageId)
+            }
+            messageStore.saveFulltextEntries(fulltextEntries)
+
+            processedMessageCount += pendingMessages.size
+        }
+
+        if (processedMessageCount > 0) {
+            Timber.v("Created full-text search entries for %d messages of %s", processedMessageCount, account)
+        }
+
+        return processedMessageCount
+    }
+
+    /**
+     * Returns the number of messages of the given account that are not yet covered by the full-text search index.
+     */
+    fun getPendingMessageCount(account: Account): Int {
+        return messageStoreManager.getMessageStore(account).getPendingFulltextIndexCount()
+    }
+
+    private fun createFulltext(localStore: LocalStore, folderId: Long, messageId: Long): String? {
+        return try {
+            val folder = localStore.getFolder(folderId)
+            val message = folder.getMessage(messageId) ?: return null
+
+            val fetchProfile = FetchProfile().apply { add(FetchProfile.Item.BODY) }
+            folder.fetch(listOf(message), fetchProfile, null)
+
+            messageFulltextCreator.createFulltext(message)
+        } catch (e: Exception) {
+            // Don't keep the message in the queue. Otherwise we'd try (and fail) to index it over and over again.
+            Timber.w(e, "Error creating full-text search entry for message %d", messageId)
+            null
+        }
+    }
+
+    companion object {
+        private const val BATCH_SIZE = 50
+    }
+}
@@ -85,10 +85,26 @@ class K9BackendFolder(
     override fun saveMessage(message: Message, downloadState: MessageDownloadState) {
         requireMessageServerId(message)
 
-        val messageData = saveMessageDataCreator.createSaveMessageData(message, downloadState)
+        val messageData = saveMessageDataCreator.createSaveMessageData(
+            message,
+            downloadState,
+            deferFulltextIndexing = true
+        )
         messageStore.saveRemoteMessage(folderId, message.uid, messageData)
     }
 
+    override fun saveMessages(messages: List<Message>, downloadState: MessageDownloadState) {
+        val messageDataMap = messages.associate { message ->
+            requireMessageServerId(message)
+            message.uid to saveMessageDataCreator.createSaveMessageData(
+                message,
+                downloadState,
+                deferFulltextIndexing = true
+            )
+        }
+        messageStore.saveRemoteMessages(folderId, messageDataMap)
+    }
+
     override fun getOldestMessageDate(): Date? {
         return messageStore.getOldestMessageDate(folderId)
     }
@@ -10,6 +10,7 @@ val mailStoreModule = module {
     single { MessageViewInfoExtractorFactory(get(), get(), get()) }
     single { StorageManager.getInstance(get()) }
     single { SearchStatusManager() }
+    single { MessageChangeFeed() }
     single { SpecialFolderSelectionStrategy() }
     single {
         K9BackendStorageFactory(
@@ -26,6 +27,13 @@ val mailStoreModule = module {
     factory { MessagePreviewCreator.newInstance() }
     factory { MessageFulltextCreator.newInstance() }
     factory { AttachmentCounter.newInstance() }
+    single {
+        FulltextIndexer(
+            localStoreProvider = get(),
+            messageStoreManager = get(),
+            messageFulltextCreator = get()
+        )
+    }
     factory {
         SaveMessageDataCreator(
             encryptionExtractor = get(),
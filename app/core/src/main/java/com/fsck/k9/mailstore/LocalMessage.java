@@ -4,17 +4,20 @@ package com.fsck.k9.mailstore;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Objects;
 
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.fsck.k9.Account;
 import com.fsck.k9.K9;
 import com.fsck.k9.controller.MessageReference;
+import com.fsck.k9.crypto.PQSignatureResult;
 import com.fsck.k9.mail.Address;
 import com.fsck.k9.mail.Flag;
 import com.fsck.k9.mail.MessagingException;
@@ -259,7 +262,69 @@ public class LocalMessage extends MimeMessage {
             }
         });
 
-        this.localStore.notifyChange();
+        this.localStore.notifyChange(Collections.singletonList(databaseId));
+    }
+
+    /**
+     * Returns the stored result of a previous post-quantum signature verification of this message.
+     *
+     * @param contentHash hash of the signed content, signature and public key the result must have been computed for
+     * @return the stored result, or {@code null} if there is none or it was computed for different content
+     */
+    @Nullable
+    public PQSignatureResult getStoredPQSignatureResult(final String contentHash) throws MessagingException {
+        return this.localStore.getDatabase().execute(false, new DbCallback<PQSignatureResult>() {
+            @Override
+            public PQSignatureResult doDbWork(final SQLiteDatabase db) {
+                try (Cursor cursor = db.query("messages",
+                        new String[] { "pq_signature_valid", "pq_signature_algorithm" },
+                        "id = ? AND pq_signature_content_hash = ?",
+                        new String[] { Long.toString(databaseId), contentHash },
+                        null, null, null)) {
+                    if (!cursor.moveToFirst() || cursor.isNull(0) || cursor.isNull(1)) {
+                        return null;
+                    }
+
+                    return new PQSignatureResult(cursor.getInt(0) == 1, cursor.getString(1));
+                }
+            }
+        });
+    }
+
+    public void setStoredPQSignatureResult(final PQSignatureResult result, final String contentHash)
+            throws MessagingException {
+        this.localStore.getDatabase().execute(true, new DbCallback<Void>() {
+            @Override
+            public Void doDbWork(final SQLiteDatabase db) {
+                ContentValues cv = new ContentValues();
+                cv.put("pq_signature_valid", result.isValidSigned ? 1 : 0);
+                cv.put("pq_signature_algorithm", result.algorithm);
+                cv.put("pq_signature_content_hash", contentHash);
+
+                db.update("messages", cv, "id = ?", new String[] { Long.toString(databaseId) });
+
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Removes a stored post-quantum signature verification result, e.g. because the signature can no longer be checked.
+     */
+    public void clearStoredPQSignatureResult() throws MessagingException {
+        this.localStore.getDatabase().execute(true, new DbCallback<Void>() {
+            @Override
+            public Void doDbWork(final SQLiteDatabase db) {
+                ContentValues cv = new ContentValues();
+                cv.putNull("pq_signature_valid");
+                cv.putNull("pq_signature_algorithm");
+                cv.putNull("pq_signature_content_hash");
+
+                db.update("messages", cv, "id = ?", new String[] { Long.toString(databaseId) });
+
+                return null;
+            }
+        });
     }
 
     @Override
@@ -289,7 +354,7 @@ public class LocalMessage extends MimeMessage {
             }
         });
 
-        this.localStore.notifyChange();
+        this.localStore.notifyChange(Collections.singletonList(databaseId));
     }
 
     /*
@@ -332,7 +397,7 @@ public class LocalMessage extends MimeMessage {
             }
         });
 
-        localStore.notifyChange();
+        localStore.notifyChange(Collections.singletonList(databaseId));
     }
 
     public void debugClearLocalData() throws MessagingException {
@@ -357,7 +422,7 @@ public class LocalMessage extends MimeMessage {
             }
         });
 
-        localStore.notifyChange();
+        localStore.notifyChange(Collections.singletonList(databaseId));
     }
 
     /*
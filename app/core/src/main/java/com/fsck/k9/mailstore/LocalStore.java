@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -169,10 +170,12 @@ public class LocalStore {
     private final ContentResolver contentResolver;
     private final PendingCommandSerializer pendingCommandSerializer;
     private final AttachmentInfoExtractor attachmentInfoExtractor;
+    private final MessageChangeFeed messageChangeFeed;
 
     private final Account account;
     private final LockableDatabase database;
     private final OutboxStateRepository outboxStateRepository;
+    private final PQSenderKeyRepository pqSenderKeyRepository;
 
     static LocalStore createInstance(Account account, Context context) throws MessagingException {
         return new LocalStore(account, context);
@@ -188,6 +191,7 @@ public class LocalStore {
 
         pendingCommandSerializer = PendingCommandSerializer.getInstance();
         attachmentInfoExtractor = DI.get(AttachmentInfoExtractor.class);
+        messageChangeFeed = DI.get(MessageChangeFeed.class);
 
         this.account = account;
 
@@ -201,6 +205,7 @@ public class LocalStore {
 
         Clock clock = DI.get(Clock.class);
         outboxStateRepository = new OutboxStateRepository(database, clock);
+        pqSenderKeyRepository = new PQSenderKeyRepository(database, clock);
 
         // If "External storage" is selected as storage location, move database to internal storage
         //TODO: Remove this code after 2020-12-31.
@@ -234,6 +239,10 @@ public class LocalStore {
         return outboxStateRepository;
     }
 
+    public PQSenderKeyRepository getPQSenderKeyRepository() {
+        return pqSenderKeyRepository;
+    }
+
     public LocalFolder getFolder(String serverId) {
         return new LocalFolder(this, serverId);
     }
@@ -726,6 +735,18 @@ public class LocalStore {
     }
 
     public void notifyChange() {
+        notifyChange(null);
+    }
+
+    /**
+     * Notify observers of the message list that messages have been changed.
+     *
+     * @param messageIds
+     *         The database IDs of the inserted, updated, or deleted messages. {@code null} if they are not known.
+     */
+    public void notifyChange(@Nullable Collection<Long> messageIds) {
+        messageChangeFeed.recordChange(account.getUuid(), messageIds);
+
         Uri uri = Uri.withAppendedPath(EmailProvider.CONTENT_URI, "account/" + account.getUuid() + "/messages");
         contentResolver.notifyChange(uri, null);
     }
@@ -869,7 +890,7 @@ public class LocalStore {
 
             @Override
             public void postDbWork() {
-                notifyChange();
+                notifyChange(messageIds);
             }
         }, FLAG_UPDATE_BATCH_SIZE);
     }
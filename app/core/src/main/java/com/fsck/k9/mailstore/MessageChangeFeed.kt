@@ -0,0 +1,70 @@
+package com.fsck.k9.mailstore
+
+/**
+ * Keeps track of which messages have been inserted, updated, or deleted, so a message list can update the affected
+ * entries instead of reloading the whole list.
+ *
+ * Every change is recorded with a sequence number before the observers of
+ * [EmailProvider.getNotificationUri][com.fsck.k9.provider.EmailProvider.getNotificationUri] are notified. Observers
+ * remember the sequence number they have last processed and ask for the changes that happened since. Only the most
+ * recent changes are kept. If changes have been dropped, or a change didn't include the affected messages, observers
+ * have to reload everything.
+ */
+class MessageChangeFeed(private val maxChangeCount: Int = MAX_CHANGE_COUNT) {
+    private val changes = ArrayDeque<MessageChange>()
+    private var lastSequenceNumber = 0L
+
+    /**
+     * The sequence number of the last recorded change.
+     */
+    val sequenceNumber: Long
+        @Synchronized get() = lastSequenceNumber
+
+    /**
+     * Record a change to messages of the account with the UUID [accountUuid].
+     *
+     * @param messageIds The database IDs of the inserted, updated, or deleted messages. `null` if they are not known.
+     *
+     * @return the sequence number of the change
+     */
+    @Synchronized
+    fun recordChange(accountUuid: String, messageIds: Collection<Long>?): Long {
+        lastSequenceNumber++
+
+        changes.addLast(MessageChange(lastSequenceNumber, accountUuid, messageIds?.toSet()))
+        if (changes.size > maxChangeCount) {
+            changes.removeFirst()
+        }
+
+        return lastSequenceNumber
+    }
+
+    /**
+     * Get the database IDs of all messages of the given accounts that have been changed after the change with the
+     * sequence number [sequenceNumber].
+     *
+     * @return the IDs of changed messages by account UUID, or `null` if they are not known. Accounts without changes
+     * are not included.
+     */
+    @Synchronized
+    fun getChangedMessageIds(accountUuids: Collection<String>, sequenceNumber: Long): Map<String, Set<Long>>? {
+        val oldestSequenceNumber = changes.firstOrNull()?.sequenceNumber ?: (lastSequenceNumber + 1)
+        if (sequenceNumber + 1 < oldestSequenceNumber) return null
+
+        val changedMessageIds = mutableMapOf<String, MutableSet<Long>>()
+        for (change in changes) {
+            if (change.sequenceNumber <= sequenceNumber || change.accountUuid !in accountUuids) continue
+
+            val messageIds = change.messageIds ?: return null
+            changedMessageIds.getOrPut(change.accountUuid) { mutableSetOf() }.addAll(messageIds)
+        }
+
+        return changedMessageIds
+    }
+
+    private class MessageChange(val sequenceNumber: Long, val accountUuid: String, val messageIds: Set<Long>?)
+
+    companion object {
+        private const val MAX_CHANGE_COUNT = 100
+    }
+}
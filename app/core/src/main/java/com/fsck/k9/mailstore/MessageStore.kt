@@ -19,6 +19,13 @@ interface MessageStore {
      */
     fun saveRemoteMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData)
 
+    /**
+     * Save multiple remote messages in this store using a single transaction.
+     *
+     * @param messages A mapping of message server ID to the message data.
+     */
+    fun saveRemoteMessages(folderId: Long, messages: Map<String, SaveMessageData>)
+
     /**
      * Save a local message in this store.
      *
@@ -100,6 +107,13 @@ interface MessageStore {
      */
     fun getMessageServerIds(messageIds: Collection<Long>): Map<Long, String>
 
+    /**
+     * Retrieve the database IDs for the given messages in a folder.
+     *
+     * @return A mapping of the message server ID to the message database ID.
+     */
+    fun getMessageIds(folderId: Long, messageServerIds: Collection<String>): Map<String, Long>
+
     /**
      * Retrieve server IDs for all remote messages in the given folder.
      */
@@ -293,6 +307,27 @@ interface MessageStore {
      */
     fun setFolderExtraNumber(folderId: Long, name: String, value: Long)
 
+    /**
+     * Retrieve messages whose full-text search entry still needs to be created, newest messages first.
+     */
+    fun getMessagesPendingFulltextIndexing(limit: Int): List<PendingFulltextMessage>
+
+    /**
+     * Retrieve the number of messages whose full-text search entry still needs to be created.
+     */
+    fun getPendingFulltextIndexCount(): Int
+
+    /**
+     * Save full-text search entries and remove the messages from the indexing queue.
+     *
+     * Entries for messages that have been replaced or deleted since they were retrieved are skipped. Replaced messages
+     * stay in the indexing queue.
+     *
+     * @param fulltextEntries A mapping of pending message to the text to index. `null` means there's no text to index
+     * for the message.
+     */
+    fun saveFulltextEntries(fulltextEntries: Map<PendingFulltextMessage, String?>)
+
     /**
      * Optimize the message store with the goal of using the minimal amount of disk space.
      */
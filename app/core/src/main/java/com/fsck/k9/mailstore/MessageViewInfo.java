@@ -23,7 +23,9 @@ public class MessageViewInfo {
     public final String text;
     public final CryptoResultAnnotation cryptoResultAnnotation;
     public boolean isPQValidSigned;
+    public boolean isPQVerificationPending;
     public String pqSignatureAlgorithm;
+    public boolean isPQKeyMismatch;
     public final List<AttachmentViewInfo> attachments;
     public final String extraText;
     public final List<AttachmentViewInfo> extraAttachments;
@@ -51,7 +53,9 @@ public class MessageViewInfo {
         this.extraAttachments = extraAttachments;
         this.preferredUnsubscribeUri = preferredUnsubscribeUri;
         this.isPQValidSigned = false;
+        this.isPQVerificationPending = false;
         this.pqSignatureAlgorithm = "";
+        this.isPQKeyMismatch = false;
     }
 
     static MessageViewInfo createWithExtractedContent(Message message, Part rootPart, boolean isMessageIncomplete,
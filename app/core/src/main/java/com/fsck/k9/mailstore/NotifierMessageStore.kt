@@ -4,6 +4,9 @@ import com.fsck.k9.mail.Flag
 
 /**
  * [MessageStore] wrapper that triggers notifications on certain changes to the message store.
+ *
+ * Notifications include the database IDs of the changed messages where they are known, so the message list can update
+ * only the affected entries.
  */
 class NotifierMessageStore(
     private val messageStore: MessageStore,
@@ -12,53 +15,60 @@ class NotifierMessageStore(
 
     override fun saveRemoteMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData) {
         messageStore.saveRemoteMessage(folderId, messageServerId, messageData)
-        notifyChange()
+        notifyChange(messageStore.getMessageIds(folderId, listOf(messageServerId)).values.toList())
+    }
+
+    override fun saveRemoteMessages(folderId: Long, messages: Map<String, SaveMessageData>) {
+        messageStore.saveRemoteMessages(folderId, messages)
+        notifyChange(messageStore.getMessageIds(folderId, messages.keys).values.toList())
     }
 
     override fun saveLocalMessage(folderId: Long, messageData: SaveMessageData, existingMessageId: Long?): Long {
-        return messageStore.saveLocalMessage(folderId, messageData, existingMessageId).also {
-            notifyChange()
+        return messageStore.saveLocalMessage(folderId, messageData, existingMessageId).also { messageId ->
+            notifyChange(listOfNotNull(messageId, existingMessageId))
         }
     }
 
     override fun copyMessage(messageId: Long, destinationFolderId: Long): Long {
-        return messageStore.copyMessage(messageId, destinationFolderId).also {
-            notifyChange()
+        return messageStore.copyMessage(messageId, destinationFolderId).also { newMessageId ->
+            notifyChange(listOf(newMessageId))
         }
     }
 
     override fun moveMessage(messageId: Long, destinationFolderId: Long): Long {
-        return messageStore.moveMessage(messageId, destinationFolderId).also {
-            notifyChange()
+        return messageStore.moveMessage(messageId, destinationFolderId).also { newMessageId ->
+            notifyChange(listOf(messageId, newMessageId))
         }
     }
 
     override fun setFlag(messageIds: Collection<Long>, flag: Flag, set: Boolean) {
         messageStore.setFlag(messageIds, flag, set)
-        notifyChange()
+        notifyChange(messageIds)
     }
 
     override fun setMessageFlag(folderId: Long, messageServerId: String, flag: Flag, set: Boolean) {
         messageStore.setMessageFlag(folderId, messageServerId, flag, set)
-        notifyChange()
+        notifyChange(messageStore.getMessageIds(folderId, listOf(messageServerId)).values.toList())
     }
 
     override fun setNewMessageState(folderId: Long, messageServerId: String, newMessage: Boolean) {
         messageStore.setNewMessageState(folderId, messageServerId, newMessage)
-        notifyChange()
+        notifyChange(messageStore.getMessageIds(folderId, listOf(messageServerId)).values.toList())
     }
 
     override fun clearNewMessageState() {
         messageStore.clearNewMessageState()
-        notifyChange()
+        notifyChange(messageIds = null)
     }
 
     override fun destroyMessages(folderId: Long, messageServerIds: Collection<String>) {
+        // The database IDs can't be looked up once the messages are gone
+        val messageIds = messageStore.getMessageIds(folderId, messageServerIds).values.toList()
         messageStore.destroyMessages(folderId, messageServerIds)
-        notifyChange()
+        notifyChange(messageIds)
     }
 
-    private fun notifyChange() {
-        localStore.notifyChange()
+    private fun notifyChange(messageIds: Collection<Long>?) {
+        localStore.notifyChange(messageIds)
     }
 }
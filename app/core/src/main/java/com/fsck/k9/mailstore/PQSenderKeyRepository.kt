@@ -0,0 +1,157 @@
+package com.fsck.k9.mailstore
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import com.fsck.k9.Clock
+import com.fsck.k9.helper.getStringOrThrow
+import com.fsck.k9.mail.filter.Hex
+import java.security.MessageDigest
+
+/**
+ * Keyring of post-quantum public keys of senders, filled trust-on-first-use: the first key seen for an address is
+ * stored and trusted, a different key for the same address is rejected until the user replaces the stored key.
+ *
+ * It also keeps track of the recipients our own public key has been sent to, so later messages to them only need to
+ * reference the key by its fingerprint.
+ */
+class PQSenderKeyRepository(private val database: LockableDatabase, private val clock: Clock) {
+
+    /**
+     * Returns the stored public key of the sender with the given fingerprint, or `null` if it isn't known.
+     */
+    fun getPublicKey(address: String, fingerprint: String, algorithm: String): ByteArray? {
+        return database.execute(false) { db ->
+            db.query(
+                TABLE_SENDER_KEYS,
+                arrayOf(COLUMN_ALGORITHM, COLUMN_PUBLIC_KEY),
+                "$COLUMN_ADDRESS = ? AND $COLUMN_FINGERPRINT = ?",
+                arrayOf(normalizeAddress(address), fingerprint), null, null, null
+            ).use { cursor ->
+                if (cursor.moveToFirst() && cursor.getStringOrThrow(COLUMN_ALGORITHM).equals(algorithm, true)) {
+                    cursor.getBlob(cursor.getColumnIndexOrThrow(COLUMN_PUBLIC_KEY))
+                } else {
+                    null
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the key if it's the first key seen for the address.
+     */
+    fun addKeyOnFirstUse(address: String, algorithm: String, publicKey: ByteArray): TrustOnFirstUseResult {
+        val normalizedAddress = normalizeAddress(address)
+        val fingerprint = computeFingerprint(publicKey)
+
+        return database.execute(true) { db ->
+            val knownFingerprints = getFingerprints(db, normalizedAddress)
+            when {
+                fingerprint in knownFingerprints -> TrustOnFirstUseResult.KNOWN_KEY
+                knownFingerprints.isNotEmpty() -> TrustOnFirstUseResult.KEY_MISMATCH
+                else -> {
+                    insertKey(db, normalizedAddress, fingerprint, algorithm, publicKey)
+                    TrustOnFirstUseResult.NEW_KEY
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces all keys of the address with the given key. Used when the user explicitly trusts a new key of a sender,
+     * e.g. after the sender generated new keys.
+     */
+    fun replaceKey(address: String, algorithm: String, publicKey: ByteArray) {
+        val normalizedAddress = normalizeAddress(address)
+        val fingerprint = computeFingerprint(publicKey)
+
+        database.execute(true) { db ->
+            db.delete(TABLE_SENDER_KEYS, "$COLUMN_ADDRESS = ?", arrayOf(normalizedAddress))
+            insertKey(db, normalizedAddress, fingerprint, algorithm, publicKey)
+        }
+    }
+
+    fun hasKeyBeenSentTo(address: String, fingerprint: String): Boolean {
+        return database.execute(false) { db ->
+            db.query(
+                TABLE_KEY_RECIPIENTS,
+                arrayOf(COLUMN_ID),
+                "$COLUMN_ADDRESS = ? AND $COLUMN_FINGERPRINT = ?",
+                arrayOf(normalizeAddress(address), fingerprint), null, null, null
+            ).use { cursor ->
+                cursor.moveToFirst()
+            }
+        }
+    }
+
+    fun setKeySentTo(addresses: Collection<String>, fingerprint: String) {
+        database.execute(true) { db ->
+            for (address in addresses) {
+                val contentValues = ContentValues().apply {
+                    put(COLUMN_ADDRESS, normalizeAddress(address))
+                    put(COLUMN_FINGERPRINT, fingerprint)
+                }
+                db.insertWithOnConflict(TABLE_KEY_RECIPIENTS, null, contentValues, SQLiteDatabase.CONFLICT_IGNORE)
+            }
+        }
+    }
+
+    private fun insertKey(
+        db: SQLiteDatabase,
+        normalizedAddress: String,
+        fingerprint: String,
+        algorithm: String,
+        publicKey: ByteArray
+    ) {
+        val contentValues = ContentValues().apply {
+            put(COLUMN_ADDRESS, normalizedAddress)
+            put(COLUMN_FINGERPRINT, fingerprint)
+            put(COLUMN_ALGORITHM, algorithm)
+            put(COLUMN_PUBLIC_KEY, publicKey)
+            put(COLUMN_FIRST_SEEN, clock.time)
+        }
+        db.insert(TABLE_SENDER_KEYS, null, contentValues)
+    }
+
+    private fun getFingerprints(db: SQLiteDatabase, normalizedAddress: String): Set<String> {
+        return db.query(
+            TABLE_SENDER_KEYS,
+            arrayOf(COLUMN_FINGERPRINT),
+            "$COLUMN_ADDRESS = ?",
+            arrayOf(normalizedAddress), null, null, null
+        ).use { cursor ->
+            buildSet {
+                while (cursor.moveToNext()) {
+                    add(cursor.getString(0))
+                }
+            }
+        }
+    }
+
+    private fun normalizeAddress(address: String) = address.lowercase()
+
+    companion object {
+        private const val TABLE_SENDER_KEYS = "pq_sender_keys"
+        private const val TABLE_KEY_RECIPIENTS = "pq_key_recipients"
+        private const val COLUMN_ID = "id"
+        private const val COLUMN_ADDRESS = "address"
+        private const val COLUMN_FINGERPRINT = "fingerprint"
+        private const val COLUMN_ALGORITHM = "algorithm"
+        private const val COLUMN_PUBLIC_KEY = "public_key"
+        private const val COLUMN_FIRST_SEEN = "first_seen"
+
+        /**
+         * Hex encoded SHA-256 hash of the raw public key.
+         */
+        @JvmStatic
+        fun computeFingerprint(publicKey: ByteArray): String {
+            val digest = MessageDigest.getInstance("SHA-256").digest(publicKey)
+            return Hex.encodeHex(digest)
+        }
+    }
+}
+
+enum class TrustOnFirstUseResult {
+    NEW_KEY,
+    KNOWN_KEY,
+    KEY_MISMATCH
+}
@@ -0,0 +1,8 @@
+package com.fsck.k9.mailstore
+
+/**
+ * A message whose full-text search entry still needs to be created.
+ *
+ * [messagePartId] is the ID of the message's root part. It changes when the message content is replaced.
+ */
+data class PendingFulltextMessage(val messageId: Long, val folderId: Long, val messagePartId: Long?)
@@ -13,5 +13,6 @@ data class SaveMessageData(
     val attachmentCount: Int,
     val previewResult: PreviewResult,
     val textForSearchIndex: String? = null,
-    val encryptionType: String?
+    val encryptionType: String?,
+    val isFulltextIndexingDeferred: Boolean = false
 )
@@ -16,7 +16,8 @@ class SaveMessageDataCreator(
     fun createSaveMessageData(
         message: Message,
         downloadState: MessageDownloadState,
-        subject: String? = null
+        subject: String? = null,
+        deferFulltextIndexing: Boolean = false
     ): SaveMessageData {
         val now = System.currentTimeMillis()
         val date = message.sentDate?.time ?: now
@@ -45,9 +46,15 @@ class SaveMessageDataCreator(
                 downloadState = downloadState,
                 attachmentCount = attachmentCounter.getAttachmentCount(message),
                 previewResult = messagePreviewCreator.createPreview(message),
-                textForSearchIndex = messageFulltextCreator.createFulltext(message),
-                encryptionType = null
+                textForSearchIndex = createFulltextIfNecessary(message, deferFulltextIndexing),
+                encryptionType = null,
+                isFulltextIndexingDeferred = deferFulltextIndexing
             )
         }
     }
+
+    // Creating the full-text search entry requires converting HTML to text. This can be deferred to FulltextIndexer.
+    private fun createFulltextIfNecessary(message: Message, deferFulltextIndexing: Boolean): String? {
+        return if (deferFulltextIndexing) null else messageFulltextCreator.createFulltext(message)
+    }
 }
@@ -7,7 +7,7 @@ import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
+import java.util.List;
 import java.util.Objects;
 
 import android.annotation.SuppressLint;
@@ -27,12 +27,16 @@ import com.fsck.k9.K9;
 import com.fsck.k9.autocrypt.AutocryptDraftStateHeader;
 import com.fsck.k9.autocrypt.AutocryptOpenPgpApiInteractor;
 import com.fsck.k9.autocrypt.AutocryptOperations;
+import com.fsck.k9.crypto.PQSignatureContainer;
+import com.fsck.k9.crypto.PQSignatureVerifier;
+import com.fsck.k9.crypto.PQSignedContentDigest;
 import com.fsck.k9.mail.Address;
 import com.fsck.k9.mail.Body;
 import com.fsck.k9.mail.BodyPart;
 import com.fsck.k9.mail.BoundaryGenerator;
 import com.fsck.k9.mail.Message.RecipientType;
 import com.fsck.k9.mail.MessagingException;
+import com.fsck.k9.mail.filter.Base64;
 import com.fsck.k9.mail.filter.EOLConvertingOutputStream;
 import com.fsck.k9.mail.internet.BinaryTempFileBody;
 import com.fsck.k9.mail.internet.MessageIdGenerator;
@@ -44,12 +48,15 @@ import com.fsck.k9.mail.internet.MimeMultipart;
 import com.fsck.k9.mail.internet.MimeUtility;
 import com.fsck.k9.mail.internet.TextBody;
 import com.fsck.k9.mailstore.BinaryMemoryBody;
+import com.fsck.k9.mailstore.LocalStoreProvider;
+import com.fsck.k9.mailstore.PQSenderKeyRepository;
 import org.apache.commons.io.IOUtils;
 import org.apache.james.mime4j.util.MimeUtil;
 import org.openintents.openpgp.OpenPgpError;
 import org.openintents.openpgp.util.OpenPgpApi;
 import org.openintents.openpgp.util.OpenPgpApi.OpenPgpDataSource;
-import org.openquantumsafe.Signature;
+import org.openquantumsafe.Common;
+import org.openquantumsafe.SignatureContextPool;
 import timber.log.Timber;
 
 
@@ -59,6 +66,7 @@ public class PgpMessageBuilder extends MessageBuilder {
 
     private final AutocryptOperations autocryptOperations;
     private final AutocryptOpenPgpApiInteractor autocryptOpenPgpApiInteractor;
+    private final LocalStoreProvider localStoreProvider;
 
 
     private OpenPgpApi openPgpApi;
@@ -74,18 +82,20 @@ public class PgpMessageBuilder extends MessageBuilder {
         AutocryptOperations autocryptOperations = AutocryptOperations.getInstance();
         AutocryptOpenPgpApiInteractor autocryptOpenPgpApiInteractor = AutocryptOpenPgpApiInteractor.getInstance();
         CoreResourceProvider resourceProvider = DI.get(CoreResourceProvider.class);
+        LocalStoreProvider localStoreProvider = DI.get(LocalStoreProvider.class);
         return new PgpMessageBuilder(messageIdGenerator, boundaryGenerator, autocryptOperations,
-                autocryptOpenPgpApiInteractor, resourceProvider);
+                autocryptOpenPgpApiInteractor, resourceProvider, localStoreProvider);
     }
 
     @VisibleForTesting
     PgpMessageBuilder(MessageIdGenerator messageIdGenerator, BoundaryGenerator boundaryGenerator,
             AutocryptOperations autocryptOperations, AutocryptOpenPgpApiInteractor autocryptOpenPgpApiInteractor,
-            CoreResourceProvider resourceProvider) {
+            CoreResourceProvider resourceProvider, LocalStoreProvider localStoreProvider) {
         super(messageIdGenerator, boundaryGenerator, resourceProvider);
 
         this.autocryptOperations = autocryptOperations;
         this.autocryptOpenPgpApiInteractor = autocryptOpenPgpApiInteractor;
+        this.localStoreProvider = localStoreProvider;
     }
 
 
@@ -414,12 +424,15 @@ public class PgpMessageBuilder extends MessageBuilder {
         multipartSigned.setSubType("signed");
         multipartSigned.addBodyPart(signedBodyPart);
         multipartSigned.addBodyPart(
-                MimeBodyPart.create(new BinaryMemoryBody(generateSignatureText(), MimeUtil.ENC_7BIT),
-                        "application/pq-signature; name=\"signature.asc\""));
+                MimeBodyPart.create(
+                        new BinaryMemoryBody(generateSignatureContainer(signedBodyPart), MimeUtil.ENC_BASE64),
+                        String.format("application/pq-signature; name=\"signature.bin\"; %s=\"%s\"",
+                                PQSignedContentDigest.DIGEST_PARAMETER, PQSignedContentDigest.DIGEST_ALGORITHM)));
         multipartSigned.addBodyPart(
-                MimeBodyPart.create(new BinaryMemoryBody(generateKey(), MimeUtil.ENC_7BIT),
-                        "application/pq-signature; name=\"public_key.asc\""));
+                MimeBodyPart.create(new BinaryMemoryBody(generateKeyContainer(), MimeUtil.ENC_BASE64),
+                        "application/pq-signature; name=\"public_key.bin\""));
         MimeMessageHelper.setBody(currentProcessedMimeMessage, multipartSigned);
+        currentProcessedMimeMessage.setHeader(PQSignatureVerifier.PQ_KEY_FINGERPRINT_HEADER, getPQKeyFingerprint());
         String contentType = String.format(
                 "multipart/signed; boundary=\"%s\";\r\n  protocol=\"application/pq-signature\"",
                 multipartSigned.getBoundary());
@@ -432,48 +445,87 @@ public class PgpMessageBuilder extends MessageBuilder {
         currentProcessedMimeMessage.setHeader(MimeHeader.HEADER_CONTENT_TYPE, contentType);
     }
 
-    @SuppressLint("NewApi")
-    private byte[] generateSignatureText() {
-        Signature signature = generateSignature();
-        StringBuilder output = new StringBuilder();
-        byte[] signatureArray = signature.sign(getText().getBytes());
-        output.append("------ BEGIN POST QUANTUM SIGNATURE USING ").append(
-                        Objects.requireNonNull(getAccount().getPqAlgorithm()).toUpperCase())
-                .append(" ------");
-        output.append("\r\n");
-        // Old way - changes the array
-        //output.append(new String(
-        //        Base64.encode(signatureArray, Base64.DEFAULT),
-        //        StandardCharsets.UTF_8));
-        output.append(java.util.Base64.getMimeEncoder().encodeToString(signatureArray));
-        output.append("\r\n");
-        output.append("------ END POST QUANTUM SIGNATURE USING ").append(getAccount().getPqAlgorithm().toUpperCase())
-                .append(" ------");
-        return output.toString().getBytes();
+    /**
+     * Signs the digest of the signed part, see {@link PQSignedContentDigest}. The signing cost doesn't depend on the
+     * size of the message.
+     */
+    private byte[] generateSignatureContainer(BodyPart signedBodyPart) throws MessagingException {
+        byte[] signatureArray = generateSignature(PQSignedContentDigest.compute(signedBodyPart));
+        return encodePQSignatureContainer(PQSignatureContainer.TYPE_SIGNATURE, signatureArray);
+    }
+
+    /**
+     * Recipients that already received our public key only get a reference to it. For everyone else the key is
+     * included. The recipients are remembered once the message has been sent, see
+     * {@link com.fsck.k9.controller.MessagingController}.
+     */
+    private byte[] generateKeyContainer() throws MessagingException {
+        String fingerprint = getPQKeyFingerprint();
+        List<String> recipientAddresses = getPQRecipientAddresses();
+        PQSenderKeyRepository keyRepository =
+                localStoreProvider.getInstance(getAccount()).getPQSenderKeyRepository();
+
+        if (!recipientAddresses.isEmpty() && haveAllReceivedKey(keyRepository, recipientAddresses, fingerprint)) {
+            return encodePQSignatureContainer(PQSignatureContainer.TYPE_KEY_REFERENCE,
+                    fingerprint.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        return encodePQSignatureContainer(PQSignatureContainer.TYPE_PUBLIC_KEY, getPQPublicKey());
+    }
+
+    private boolean haveAllReceivedKey(PQSenderKeyRepository keyRepository, List<String> recipientAddresses,
+            String fingerprint) {
+        for (String recipientAddress : recipientAddresses) {
+            if (!keyRepository.hasKeyBeenSentTo(recipientAddress, fingerprint)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<String> getPQRecipientAddresses() {
+        List<String> recipientAddresses = new ArrayList<>();
+        for (Address address : currentProcessedMimeMessage.getRecipients(RecipientType.TO)) {
+            recipientAddresses.add(address.getAddress());
+        }
+        for (Address address : currentProcessedMimeMessage.getRecipients(RecipientType.CC)) {
+            recipientAddresses.add(address.getAddress());
+        }
+        for (Address address : currentProcessedMimeMessage.getRecipients(RecipientType.BCC)) {
+            recipientAddresses.add(address.getAddress());
+        }
+        return recipientAddresses;
+    }
+
+    private String getPQKeyFingerprint() {
+        return PQSenderKeyRepository.computeFingerprint(getPQPublicKey());
     }
 
     @SuppressLint("NewApi")
-    private byte[] generateKey() {
-        StringBuilder output = new StringBuilder();
-        output.append("------ BEGIN POST QUANTUM PUBLIC KEY USING ").append(
-                        Objects.requireNonNull(getAccount().getPqAlgorithm()).toUpperCase())
-                .append(" ------");
-        output.append("\r\n");
-        output.append(getAccount().getPqPublicKey());
-        output.append("\r\n");
-        output.append("------ END POST QUANTUM PUBLIC KEY USING ").append(getAccount().getPqAlgorithm().toUpperCase())
-                .append(" ------");
-        return output.toString().getBytes();
+    private byte[] getPQPublicKey() {
+        return SignatureContextPool.get_instance().get_decoded_key(getAccount().getPqPublicKey());
+    }
+
+    /**
+     * Wraps the data in a {@link PQSignatureContainer}. The result is already Base64 encoded, it's used as the body
+     * of a part with base64 transfer encoding.
+     */
+    private byte[] encodePQSignatureContainer(byte type, byte[] data) {
+        String algorithm = Objects.requireNonNull(getAccount().getPqAlgorithm());
+        PQSignatureContainer container = new PQSignatureContainer(type, algorithm, data);
+        return Base64.encodeBase64Chunked(container.encode());
     }
 
     @SuppressLint("NewApi")
-    private Signature generateSignature() {
+    private byte[] generateSignature(byte[] data) {
         Account account = getAccount();
-        String publicKeyStr = MimeUtility.unfold(account.getPqPublicKey());
-        String privateKeyStr = MimeUtility.unfold(account.getPqPrivateKey());
-        byte[] publicKey = Base64.getDecoder().decode(publicKeyStr);
-        byte[] privateKey = Base64.getDecoder().decode(privateKeyStr);
-        return new Signature(account.getPqAlgorithm(), privateKey, publicKey);
+        SignatureContextPool signatureContextPool = SignatureContextPool.get_instance();
+        byte[] privateKey = signatureContextPool.get_decoded_key(account.getPqPrivateKey());
+        try (SignatureContextPool.Lease lease = signatureContextPool.acquire(account.getPqAlgorithm())) {
+            return lease.get_signature().sign(data, privateKey);
+        } finally {
+            Common.wipe(privateKey);
+        }
     }
 
     private void mimeBuildEncryptedMessage(@NonNull Body encryptedBodyPart) throws MessagingException {
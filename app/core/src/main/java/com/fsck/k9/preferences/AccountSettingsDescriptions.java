@@ -128,6 +128,10 @@ public class AccountSettingsDescriptions {
         s.put("maxPushFolders", Settings.versions(
                 new V(1, new IntegerRangeSetting(0, 100, 10))
         ));
+        s.put("maxSyncConnections", Settings.versions(
+                new V(82, new IntegerResourceSetting(AccountPreferenceSerializer.DEFAULT_MAX_SYNC_CONNECTIONS,
+                        R.array.sync_connections_values))
+        ));
         s.put("maximumAutoDownloadMessageSize", Settings.versions(
                 new V(1, new IntegerResourceSetting(32768, R.array.autodownload_message_size_values))
         ));
@@ -46,6 +46,11 @@ public class EmailProvider extends ContentProvider {
     public static String AUTHORITY;
     public static Uri CONTENT_URI;
 
+    /**
+     * Optional URI query parameter that limits the number of rows returned for message (list) queries.
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
     public static Uri getNotificationUri(String accountUuid) {
         return Uri.withAppendedPath(CONTENT_URI, "account/" + accountUuid + "/messages");
     }
@@ -141,6 +146,7 @@ public class EmailProvider extends ContentProvider {
         String FLAGGED = "flagged";
         String ANSWERED = "answered";
         String FORWARDED = "forwarded";
+        String PQ_SIGNATURE_VALID = "pq_signature_valid";
     }
 
     private interface InternalMessageColumns extends MessageColumns {
@@ -228,11 +234,13 @@ public class EmailProvider extends ContentProvider {
                 }
 
                 String[] dbProjection = dbColumnNames.toArray(new String[0]);
+                String limit = getLimit(uri);
 
                 if (match == MESSAGES) {
-                    cursor = getMessages(accountUuid, dbProjection, selection, selectionArgs, sortOrder);
+                    cursor = getMessages(accountUuid, dbProjection, selection, selectionArgs, sortOrder, limit);
                 } else if (match == MESSAGES_THREADED) {
-                    cursor = getThreadedMessages(accountUuid, dbProjection, selection, selectionArgs, sortOrder);
+                    cursor = getThreadedMessages(accountUuid, dbProjection, selection, selectionArgs, sortOrder,
+                            limit);
                 } else if (match == MESSAGES_THREAD) {
                     String threadId = segments.get(3);
                     cursor = getThread(accountUuid, dbProjection, threadId, sortOrder);
@@ -251,6 +259,19 @@ public class EmailProvider extends ContentProvider {
         return cursor;
     }
 
+    private static String getLimit(Uri uri) {
+        String limit = uri.getQueryParameter(QUERY_PARAMETER_LIMIT);
+        if (limit == null) {
+            return null;
+        }
+
+        try {
+            return Integer.toString(Integer.parseInt(limit));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+    }
+
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
         throw new RuntimeException("not implemented yet");
@@ -267,7 +288,7 @@ public class EmailProvider extends ContentProvider {
     }
 
     protected Cursor getMessages(String accountUuid, final String[] projection, final String selection,
-            final String[] selectionArgs, final String sortOrder) {
+            final String[] selectionArgs, final String sortOrder, final String limit) {
 
         Account account = getAccount(accountUuid);
         LockableDatabase database = getDatabase(account);
@@ -315,9 +336,14 @@ public class EmailProvider extends ContentProvider {
                         query.append(" ORDER BY ");
                         query.append(SqlQueryBuilder.addPrefixToSelection(FIXUP_MESSAGES_COLUMNS, "m.", sortOrder));
 
+                        if (limit != null) {
+                            query.append(" LIMIT ").append(limit);
+                        }
+
                         cursor = db.rawQuery(query.toString(), selectionArgs);
                     } else {
-                        cursor = db.query(MESSAGES_TABLE, projection, where, selectionArgs, null, null, sortOrder);
+                        cursor = db.query(MESSAGES_TABLE, projection, where, selectionArgs, null, null, sortOrder,
+                                limit);
                     }
 
                     return cursor;
@@ -329,7 +355,7 @@ public class EmailProvider extends ContentProvider {
     }
 
     protected Cursor getThreadedMessages(String accountUuid, final String[] projection, final String selection,
-            final String[] selectionArgs, final String sortOrder) {
+            final String[] selectionArgs, final String sortOrder, final String limit) {
 
         Account account = getAccount(accountUuid);
         LockableDatabase database = getDatabase(account);
@@ -392,6 +418,10 @@ public class EmailProvider extends ContentProvider {
                                 FIXUP_AGGREGATED_MESSAGES_COLUMNS, "a.", sortOrder));
                     }
 
+                    if (limit != null) {
+                        query.append(" LIMIT ").append(limit);
+                    }
+
                     return db.rawQuery(query.toString(), selectionArgs);
                 }
             });
@@ -429,25 +459,16 @@ public class EmailProvider extends ContentProvider {
                     "ON (m." + MessageColumns.FOLDER_ID + " = f." + FolderColumns.ID + ")");
         }
 
-        query.append(" WHERE (t." + ThreadColumns.ROOT + " IN (" +
-                "SELECT " + ThreadColumns.ROOT + " " +
-                "FROM " + MESSAGES_TABLE + " m " +
-                "JOIN " + THREADS_TABLE + " t " +
-                "ON (t." + ThreadColumns.MESSAGE_ID + " = m." + MessageColumns.ID + ") " +
-                "WHERE " +
-                "m." + InternalMessageColumns.EMPTY + " = 0 AND " +
-                "m." + InternalMessageColumns.DELETED + " = 0)");
-
+        query.append(" WHERE ");
 
         if (!TextUtils.isEmpty(selection)) {
-            query.append(" AND (");
+            query.append("(");
             query.append(selection);
-            query.append(")");
+            query.append(") AND ");
         }
 
         query.append(
-                ") AND " +
-                InternalMessageColumns.DELETED + " = 0 AND " + InternalMessageColumns.EMPTY + " = 0");
+                "m." + InternalMessageColumns.DELETED + " = 0 AND m." + InternalMessageColumns.EMPTY + " = 0");
 
         query.append(" GROUP BY t." + ThreadColumns.ROOT);
     }
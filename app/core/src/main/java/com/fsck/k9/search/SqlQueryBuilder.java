@@ -1,5 +1,6 @@
 package com.fsck.k9.search;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.fsck.k9.DI;
@@ -66,8 +67,10 @@ public class SqlQueryBuilder {
                     if (condition.attribute != Attribute.CONTAINS) {
                         Timber.e("message contents can only be matched!");
                     }
-                    query.append("m.id IN (SELECT docid FROM messages_fulltext WHERE fulltext MATCH ?)");
+                    query.append("(m.id IN (SELECT docid FROM messages_fulltext WHERE fulltext MATCH ?)");
                     selectionArgs.add(fulltextQueryString);
+                    appendPendingFulltextCondition(fulltextQueryString, query, selectionArgs);
+                    query.append(")");
                     break;
                 }
                 default: {
@@ -85,6 +88,41 @@ public class SqlQueryBuilder {
         }
     }
 
+    /**
+     * Messages that haven't been added to the full-text search index yet are matched by preview.
+     *
+     * <p>Like the full-text query every term has to be found, but not necessarily next to each other.</p>
+     */
+    private static void appendPendingFulltextCondition(String fulltextQueryString, StringBuilder query,
+            List<String> selectionArgs) {
+        List<String> terms = new ArrayList<>();
+        for (String token : fulltextQueryString.split("\\s+")) {
+            String term = token.replace("\"", "").replace("*", "");
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+
+        if (terms.isEmpty()) {
+            return;
+        }
+
+        query.append(" OR m.id IN (SELECT message_id FROM fulltext_index_queue " +
+                "JOIN messages ON (messages.id = fulltext_index_queue.message_id) WHERE ");
+        for (int i = 0; i < terms.size(); i++) {
+            if (i > 0) {
+                query.append(" AND ");
+            }
+            query.append("messages.preview LIKE ? ESCAPE '\\'");
+            selectionArgs.add("%" + escapeLikePattern(terms.get(i)) + "%");
+        }
+        query.append(")");
+    }
+
+    private static String escapeLikePattern(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     private static void appendCondition(SearchCondition condition, StringBuilder query,
             List<String> selectionArgs) {
         query.append(getColumnName(condition));
@@ -6,7 +6,7 @@ import java.util.UUID;
 
 import android.net.Uri;
 
-import com.fsck.k9.RobolectricTest;
+import com.fsck.k9.K9RobolectricTest;
 import com.fsck.k9.mailstore.LocalFolder;
 import com.fsck.k9.mailstore.LocalMessage;
 import com.fsck.k9.provider.EmailProvider;
@@ -25,7 +25,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 
-public class EmailProviderCacheTest extends RobolectricTest {
+public class EmailProviderCacheTest extends K9RobolectricTest {
 
     private EmailProviderCache cache;
     @Mock
@@ -0,0 +1,100 @@
+package com.fsck.k9.controller
+
+import com.google.common.truth.Truth.assertThat
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+import org.junit.Test
+
+private const val ACCOUNT_UUID = "00000000-0000-4000-0000-000000000000"
+
+class FolderSyncCoordinatorTest {
+    private val coordinator = FolderSyncCoordinator()
+    private val runningSyncs = AtomicInteger()
+    private val maxRunningSyncs = AtomicInteger()
+    private val syncCount = AtomicInteger()
+
+    @Test
+    fun runSync_withOverlappingSyncsOfSameFolder_shouldRunThemOneAfterAnother() {
+        val firstSyncStarted = CountDownLatch(1)
+        val continueFirstSync = CountDownLatch(1)
+
+        val firstSync = thread {
+            coordinator.runSync(ACCOUNT_UUID, 1L) {
+                countSync { firstSyncStarted.countDown(); continueFirstSync.await(5, TimeUnit.SECONDS) }
+            }
+        }
+        assertThat(firstSyncStarted.await(5, TimeUnit.SECONDS)).isTrue()
+
+        var secondSyncResult: Boolean? = null
+        val secondSync = thread {
+            secondSyncResult = coordinator.runSync(ACCOUNT_UUID, 1L) { countSync { } }
+        }
+        // Give the second request a chance to (wrongly) start while the first sync is still running
+        Thread.sleep(100)
+        assertThat(syncCount.get()).isEqualTo(1)
+
+        continueFirstSync.countDown()
+        firstSync.join(5000)
+        secondSync.join(5000)
+
+        assertThat(maxRunningSyncs.get()).isEqualTo(1)
+        // The second request came in after the first sync had started, so it has to be run
+        assertThat(secondSyncResult).isTrue()
+        assertThat(syncCount.get()).isEqualTo(2)
+    }
+
+    @Test
+    fun runSync_withMultipleRequestsWhileSyncing_shouldCoalesceThem() {
+        val firstSyncStarted = CountDownLatch(1)
+        val continueFirstSync = CountDownLatch(1)
+
+        val firstSync = thread {
+            coordinator.runSync(ACCOUNT_UUID, 1L) {
+                countSync { firstSyncStarted.countDown(); continueFirstSync.await(5, TimeUnit.SECONDS) }
+            }
+        }
+        assertThat(firstSyncStarted.await(5, TimeUnit.SECONDS)).isTrue()
+
+        val waitingSyncs = List(3) {
+            thread { coordinator.runSync(ACCOUNT_UUID, 1L) { countSync { Thread.sleep(50) } } }
+        }
+        Thread.sleep(100)
+
+        continueFirstSync.countDown()
+        firstSync.join(5000)
+        waitingSyncs.forEach { it.join(5000) }
+
+        assertThat(maxRunningSyncs.get()).isEqualTo(1)
+        assertThat(syncCount.get()).isEqualTo(2)
+    }
+
+    @Test
+    fun runSync_withDifferentFolders_shouldRunConcurrently() {
+        val bothStarted = CountDownLatch(2)
+
+        val syncs = listOf(1L, 2L).map { folderId ->
+            thread {
+                coordinator.runSync(ACCOUNT_UUID, folderId) {
+                    bothStarted.countDown()
+                    bothStarted.await(5, TimeUnit.SECONDS)
+                }
+            }
+        }
+
+        assertThat(bothStarted.await(5, TimeUnit.SECONDS)).isTrue()
+        syncs.forEach { it.join(5000) }
+    }
+
+    private fun countSync(block: () -> Unit) {
+        syncCount.incrementAndGet()
+        val running = runningSyncs.incrementAndGet()
+        maxRunningSyncs.accumulateAndGet(running) { a, b -> maxOf(a, b) }
+        try {
+            block()
+        } finally {
+            runningSyncs.decrementAndGet()
+        }
+    }
+}
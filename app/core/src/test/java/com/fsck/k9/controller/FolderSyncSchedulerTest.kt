@@ -0,0 +1,121 @@
+package com.fsck.k9.controller
+
+import com.fsck.k9.Account
+import com.fsck.k9.Account.FolderMode
+import com.fsck.k9.RobolectricTest
+import com.fsck.k9.mail.FolderClass
+import com.fsck.k9.mailstore.LocalFolder
+import com.google.common.truth.Truth.assertThat
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+
+class FolderSyncSchedulerTest : RobolectricTest() {
+    private val scheduler = FolderSyncScheduler()
+    private val account = Account("00000000-0000-4000-0000-000000000000").apply {
+        folderPushMode = FolderMode.FIRST_CLASS
+        maxSyncConnections = 2
+    }
+
+    @Test
+    fun prioritizeFolders_shouldOrderByPushThenUnreadThenLastChecked() {
+        val recentlyChecked = createFolder("recent", lastChecked = 2000L)
+        val longAgoChecked = createFolder("longAgo", lastChecked = 1000L)
+        val unread = createFolder("unread", unreadCount = 3, lastChecked = 3000L)
+        val pushed = createFolder("pushed", pushClass = FolderClass.FIRST_CLASS, lastChecked = 4000L)
+
+        val result = scheduler.prioritizeFolders(account, listOf(recentlyChecked, longAgoChecked, unread, pushed))
+
+        assertThat(result).containsExactly(pushed, unread, longAgoChecked, recentlyChecked).inOrder()
+    }
+
+    @Test
+    fun syncFolders_shouldSyncAllFoldersConcurrently() {
+        val folders = listOf(createFolder("one"), createFolder("two"), createFolder("three"))
+        val syncedFolders = Collections.synchronizedList(mutableListOf<LocalFolder>())
+        val firstTwoStarted = CountDownLatch(2)
+        val finished = CountDownLatch(1)
+
+        scheduler.syncFolders(
+            account,
+            folders,
+            { folder ->
+                firstTwoStarted.countDown()
+                // Only returns if a second folder is synced at the same time
+                assertThat(firstTwoStarted.await(5, TimeUnit.SECONDS)).isTrue()
+                syncedFolders.add(folder)
+            },
+            { finished.countDown() }
+        )
+
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue()
+        assertThat(syncedFolders).containsExactlyElementsIn(folders)
+    }
+
+    @Test
+    fun syncFolders_shouldNotBlockCallingThread() {
+        val syncStarted = CountDownLatch(1)
+        val continueSync = CountDownLatch(1)
+        val finished = CountDownLatch(1)
+
+        scheduler.syncFolders(
+            account,
+            listOf(createFolder("one")),
+            {
+                syncStarted.countDown()
+                continueSync.await(5, TimeUnit.SECONDS)
+            },
+            { finished.countDown() }
+        )
+
+        assertThat(syncStarted.await(5, TimeUnit.SECONDS)).isTrue()
+        assertThat(finished.count).isEqualTo(1)
+        continueSync.countDown()
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue()
+    }
+
+    @Test
+    fun syncFolders_withoutFolders_shouldCallOnFinishedRightAway() {
+        var finished = false
+
+        scheduler.syncFolders(account, emptyList(), { error("unexpected sync") }, { finished = true })
+
+        assertThat(finished).isTrue()
+    }
+
+    @Test
+    fun syncFolders_withSingleConnection_shouldSyncFoldersInOrderOfPriority() {
+        account.maxSyncConnections = 1
+        val checkedLater = createFolder("later", lastChecked = 2000L)
+        val checkedEarlier = createFolder("earlier", lastChecked = 1000L)
+        val syncedFolders = Collections.synchronizedList(mutableListOf<LocalFolder>())
+        val finished = CountDownLatch(1)
+
+        scheduler.syncFolders(
+            account,
+            listOf(checkedLater, checkedEarlier),
+            { folder -> syncedFolders.add(folder) },
+            { finished.countDown() }
+        )
+
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue()
+        assertThat(syncedFolders).containsExactly(checkedEarlier, checkedLater).inOrder()
+    }
+
+    private fun createFolder(
+        serverId: String,
+        pushClass: FolderClass = FolderClass.NO_CLASS,
+        unreadCount: Int = 0,
+        lastChecked: Long = 0L
+    ): LocalFolder {
+        return mock {
+            on { this.serverId } doReturn serverId
+            on { this.pushClass } doReturn pushClass
+            on { unreadMessageCount } doReturn unreadCount
+            on { this.lastChecked } doReturn lastChecked
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.fsck.k9.controller
+
+import com.fsck.k9.Account
+import com.fsck.k9.RobolectricTest
+import com.fsck.k9.crypto.PQSignatureVerifier
+import com.fsck.k9.mail.Flag
+import com.fsck.k9.mail.internet.MimeBodyPart
+import com.fsck.k9.mail.internet.MimeMultipart
+import com.fsck.k9.mailstore.LocalFolder
+import com.fsck.k9.mailstore.LocalMessage
+import com.fsck.k9.mailstore.LocalStore
+import com.fsck.k9.mailstore.LocalStoreProvider
+import com.google.common.truth.Truth.assertThat
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.After
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+
+private const val PQ_SIGNED_CONTENT_TYPE =
+    "multipart/signed; boundary=\"boundary\"; protocol=\"application/pq-signature\""
+
+class PQSignatureSyncVerifierTest : RobolectricTest() {
+    private val account = Account("00000000-0000-4000-0000-000000000000")
+    private val localFolder = mock<LocalFolder>()
+    private val localStore = mock<LocalStore> {
+        on { getFolder("folder") } doReturn localFolder
+    }
+    private val localStoreProvider = mock<LocalStoreProvider> {
+        on { getInstance(account) } doReturn localStore
+    }
+    private val syncVerifier = PQSignatureSyncVerifier(localStoreProvider)
+
+    @After
+    fun tearDown() {
+        syncVerifier.stop()
+    }
+
+    @Test
+    fun isCandidate_withDownloadedSignedMessage_shouldReturnTrue() {
+        val message = createMessage(PQ_SIGNED_CONTENT_TYPE, downloaded = true)
+
+        assertThat(syncVerifier.isCandidate(message)).isTrue()
+    }
+
+    @Test
+    fun isCandidate_withPartiallyDownloadedSignedMessage_shouldReturnFalse() {
+        val message = createMessage(PQ_SIGNED_CONTENT_TYPE, downloaded = false)
+
+        assertThat(syncVerifier.isCandidate(message)).isFalse()
+    }
+
+    @Test
+    fun isCandidate_withMixedMessage_shouldReturnFalse() {
+        val message = createMessage("multipart/mixed; boundary=\"boundary\"", downloaded = true)
+
+        assertThat(syncVerifier.isCandidate(message)).isFalse()
+    }
+
+    @Test
+    fun isPQSignedMessage_withPQSignedMessage_shouldReturnTrue() {
+        val message = createMessage(PQ_SIGNED_CONTENT_TYPE)
+
+        assertThat(PQSignatureVerifier.isPQSignedMessage(message)).isTrue()
+    }
+
+    @Test
+    fun isPQSignedMessage_withThreePartMixedMessage_shouldReturnFalse() {
+        val message = createMessage("multipart/mixed; boundary=\"boundary\"")
+
+        assertThat(PQSignatureVerifier.isPQSignedMessage(message)).isFalse()
+    }
+
+    @Test
+    fun isPQSignedMessage_withPgpSignedMessage_shouldReturnFalse() {
+        val message = createMessage(
+            "multipart/signed; boundary=\"boundary\"; protocol=\"application/pgp-signature\""
+        )
+
+        assertThat(PQSignatureVerifier.isPQSignedMessage(message)).isFalse()
+    }
+
+    @Test
+    fun isPQSignedMessage_withWrongPartCount_shouldReturnFalse() {
+        val message = createMessage(PQ_SIGNED_CONTENT_TYPE, partCount = 2)
+
+        assertThat(PQSignatureVerifier.isPQSignedMessage(message)).isFalse()
+    }
+
+    @Test
+    fun verifyInBackground_withoutPQSignedMessages_shouldNotStoreResults() {
+        val message = createMessage("multipart/mixed; boundary=\"boundary\"")
+        whenever(localFolder.getMessagesByUids(listOf("1"))).thenReturn(listOf(message))
+        val firstBatchDone = CountDownLatch(1)
+        val otherFolder = mock<LocalFolder> {
+            on { open() } doAnswer { firstBatchDone.countDown() }
+        }
+        whenever(localStore.getFolder("other")).thenReturn(otherFolder)
+
+        syncVerifier.verifyInBackground(account, "folder", listOf("1"))
+        // Batches run one after another, so the second one only starts once the first one is done
+        syncVerifier.verifyInBackground(account, "other", listOf("2"))
+
+        assertThat(firstBatchDone.await(5, TimeUnit.SECONDS)).isTrue()
+        verify(localFolder).fetch(any(), any(), anyOrNull())
+        verify(message, never()).setStoredPQSignatureResult(any(), any())
+        verify(localStore, never()).notifyChange(anyOrNull())
+    }
+
+    private fun createMessage(contentType: String, downloaded: Boolean = true, partCount: Int = 3): LocalMessage {
+        val multipart = MimeMultipart("boundary").apply {
+            repeat(partCount) { addBodyPart(MimeBodyPart()) }
+        }
+
+        return mock {
+            on { mimeType } doReturn contentType.substringBefore(';')
+            on { this.contentType } doReturn contentType
+            on { body } doReturn multipart
+            on { isSet(Flag.X_DOWNLOADED_FULL) } doReturn downloaded
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.fsck.k9.crypto
+
+import com.fsck.k9.mail.MessagingException
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class PQSignatureContainerTest {
+
+    @Test
+    fun encodeAndDecode_shouldRoundTrip() {
+        val container = PQSignatureContainer(PQSignatureContainer.TYPE_SIGNATURE, "Dilithium2", byteArrayOf(1, 2, 3))
+
+        val result = PQSignatureContainer.decode(container.encode(), PQSignatureContainer.TYPE_SIGNATURE)!!
+
+        assertEquals(PQSignatureContainer.TYPE_SIGNATURE, result.type)
+        assertEquals("Dilithium2", result.algorithm)
+        assertArrayEquals(byteArrayOf(1, 2, 3), result.data)
+    }
+
+    @Test
+    fun decode_withArmoredText_shouldReturnNull() {
+        val content = "------ BEGIN POST QUANTUM SIGNATURE USING DILITHIUM2 ------\r\nAQID".toByteArray()
+
+        val result = PQSignatureContainer.decode(content, PQSignatureContainer.TYPE_SIGNATURE)
+
+        assertNull(result)
+    }
+
+    @Test(expected = MessagingException::class)
+    fun decode_withUnexpectedType_shouldThrow() {
+        val container = PQSignatureContainer(PQSignatureContainer.TYPE_PUBLIC_KEY, "Dilithium2", byteArrayOf(1, 2, 3))
+
+        PQSignatureContainer.decode(container.encode(), PQSignatureContainer.TYPE_SIGNATURE)
+    }
+
+    @Test(expected = MessagingException::class)
+    fun decode_withTruncatedData_shouldThrow() {
+        val container = PQSignatureContainer(PQSignatureContainer.TYPE_SIGNATURE, "Dilithium2", byteArrayOf(1, 2, 3))
+        val encoded = container.encode()
+
+        PQSignatureContainer.decode(encoded.copyOf(encoded.size - 1), PQSignatureContainer.TYPE_SIGNATURE)
+    }
+}
@@ -0,0 +1,34 @@
+package com.fsck.k9.crypto
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class PQSignatureResultTest {
+    @Test
+    fun isConclusive_withVerifiedSignature_shouldReturnTrue() {
+        assertThat(PQSignatureResult(true, "Falcon-1024").isConclusive).isTrue()
+        assertThat(PQSignatureResult(false, "Falcon-1024").isConclusive).isTrue()
+    }
+
+    @Test
+    fun isConclusive_withUnsupportedAlgorithm_shouldReturnFalse() {
+        assertThat(PQSignatureResult(false, PQSignatureVerifier.NO_MATCH).isConclusive).isFalse()
+    }
+
+    @Test
+    fun isConclusive_withUnknownKey_shouldReturnFalse() {
+        val result = PQSignatureResult.keyUnknown("Falcon-1024")
+
+        assertThat(result.isValidSigned).isFalse()
+        assertThat(result.isConclusive).isFalse()
+    }
+
+    @Test
+    fun isConclusive_withKeyMismatch_shouldReturnFalse() {
+        val result = PQSignatureResult.keyMismatch("Falcon-1024")
+
+        assertThat(result.isValidSigned).isFalse()
+        assertThat(result.isKeyMismatch).isTrue()
+        assertThat(result.isConclusive).isFalse()
+    }
+}
@@ -0,0 +1,62 @@
+package com.fsck.k9.crypto
+
+import com.fsck.k9.mail.Part
+import java.io.OutputStream
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.mock
+import org.openquantumsafe.SHA3Digest
+
+class PQSignedContentDigestTest {
+
+    @Test
+    fun compute_shouldHashPartWithCrlfLineEndings() {
+        val part = partWithContent("line1\nline2\r\n")
+
+        val result = PQSignedContentDigest.compute(part)
+
+        assertEquals(
+            "d3a85d3edfdf4c5d8ea133661ed9423bccfbfd4645821b0263972f5e897c15c0" +
+                "43ce12dc3f16885ba4c122ee9c2c2dfd13f5edefb77964d0d649b3b419c8e44e",
+            result.toHex()
+        )
+    }
+
+    @Test
+    fun sha3Digest_withEmptyInput() {
+        val result = SHA3Digest().digest()
+
+        assertEquals(
+            "a69f73cca23a9ac5c8b567dc185a756e97c982164fe25859e0d1dcc1475c80a6" +
+                "15b2123af1f5f94c11e3e9402c3ac558f500199d95b6d3e301758586281dcd26",
+            result.toHex()
+        )
+    }
+
+    @Test
+    fun sha3Digest_withInputSpanningSeveralBlocks() {
+        val digest = SHA3Digest()
+        digest.write('a'.code)
+        digest.write("a".repeat(199).toByteArray())
+
+        val result = digest.digest()
+
+        assertEquals(
+            "eae6c85c6904f11075de9f9d5e1064371d000510fa3d2d79d40cf9be34892fb0" +
+                "1859d0a0234e138bcb0ad5c84f6c0dca226a414b0c9a2897cb695f5185fe36ec",
+            result.toHex()
+        )
+    }
+
+    private fun partWithContent(content: String): Part {
+        return mock {
+            on { writeTo(any()) } doAnswer { invocation ->
+                invocation.getArgument<OutputStream>(0).write(content.toByteArray())
+            }
+        }
+    }
+
+    private fun ByteArray.toHex() = joinToString(separator = "") { "%02x".format(it) }
+}
@@ -0,0 +1,125 @@
+package com.fsck.k9.mailstore
+
+import android.net.Uri
+import com.fsck.k9.Account
+import com.fsck.k9.K9RobolectricTest
+import com.fsck.k9.Preferences
+import com.fsck.k9.backend.api.BackendFolder
+import com.fsck.k9.backend.api.FolderInfo
+import com.fsck.k9.backend.api.updateFolders
+import com.fsck.k9.mail.Address
+import com.fsck.k9.mail.FolderType
+import com.fsck.k9.mail.Message
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.internet.MimeMessage
+import com.fsck.k9.mail.internet.MimeMessageHelper
+import com.fsck.k9.mail.internet.TextBody
+import com.fsck.k9.provider.EmailProvider
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.koin.core.component.inject
+
+class FulltextIndexerTest : K9RobolectricTest() {
+    val preferences: Preferences by inject()
+    val localStoreProvider: LocalStoreProvider by inject()
+    val messageStoreManager: MessageStoreManager by inject()
+    val saveMessageDataCreator: SaveMessageDataCreator by inject()
+    val fulltextIndexer: FulltextIndexer by inject()
+
+    val account: Account = createAccount()
+    val backendFolder = createBackendFolder()
+    val database: LockableDatabase = localStoreProvider.getInstance(account).database
+
+    @Before
+    fun setUp() {
+        // Set EmailProvider.CONTENT_URI so LocalStore.notifyChange() won't crash
+        EmailProvider.CONTENT_URI = Uri.parse("content://dummy")
+    }
+
+    @After
+    fun tearDown() {
+        preferences.deleteAccount(account)
+    }
+
+    @Test
+    fun saveMessage_shouldDeferFulltextIndexing() {
+        backendFolder.saveMessage(createMessage("uid1", "Hello Bob!"), MessageDownloadState.FULL)
+
+        assertThat(fulltextIndexer.getPendingMessageCount(account)).isEqualTo(1)
+        assertThat(readFulltext()).isEmpty()
+    }
+
+    @Test
+    fun indexPendingMessages() {
+        backendFolder.saveMessage(createMessage("uid1", "Hello Bob!"), MessageDownloadState.FULL)
+        backendFolder.saveMessage(createMessage("uid2", "Hello Alice!"), MessageDownloadState.FULL)
+
+        val processedMessageCount = fulltextIndexer.indexPendingMessages(account)
+
+        assertThat(processedMessageCount).isEqualTo(2)
+        assertThat(fulltextIndexer.getPendingMessageCount(account)).isEqualTo(0)
+        assertThat(readFulltext()).containsExactly("Hello Bob!", "Hello Alice!")
+    }
+
+    @Test
+    fun indexPendingMessages_withMaxMessageCount_shouldOnlyIndexThatManyMessages() {
+        backendFolder.saveMessage(createMessage("uid1", "Hello Bob!"), MessageDownloadState.FULL)
+        backendFolder.saveMessage(createMessage("uid2", "Hello Alice!"), MessageDownloadState.FULL)
+
+        val processedMessageCount = fulltextIndexer.indexPendingMessages(account, maxMessageCount = 1)
+
+        assertThat(processedMessageCount).isEqualTo(1)
+        assertThat(fulltextIndexer.getPendingMessageCount(account)).isEqualTo(1)
+    }
+
+    private fun createAccount(): Account {
+        // FIXME: This is a hack to get Preferences into a state where it's safe to call newAccount()
+        preferences.clearAccounts()
+
+        return preferences.newAccount()
+    }
+
+    private fun createBackendFolder(): BackendFolder {
+        val messageStore = messageStoreManager.getMessageStore(account)
+        val backendStorage = K9BackendStorage(
+            messageStore,
+            createFolderSettingsProvider(),
+            saveMessageDataCreator,
+            emptyList()
+        )
+        backendStorage.updateFolders {
+            createFolders(listOf(FolderInfo(FOLDER_SERVER_ID, "Test Folder", FolderType.INBOX)))
+        }
+
+        return K9BackendFolder(messageStore, saveMessageDataCreator, FOLDER_SERVER_ID)
+    }
+
+    private fun createMessage(messageServerId: String, text: String): Message {
+        return MimeMessage().apply {
+            subject = "Test message"
+            setFrom(Address("alice@domain.example"))
+            setHeader("To", "bob@domain.example")
+            MimeMessageHelper.setBody(this, TextBody(text))
+
+            uid = messageServerId
+        }
+    }
+
+    private fun readFulltext(): List<String> {
+        return database.execute(false) { db ->
+            db.rawQuery("SELECT fulltext FROM messages_fulltext", null).use { cursor ->
+                val result = mutableListOf<String>()
+                while (cursor.moveToNext()) {
+                    result.add(cursor.getString(0))
+                }
+                result
+            }
+        }
+    }
+
+    companion object {
+        const val FOLDER_SERVER_ID = "testFolder"
+    }
+}
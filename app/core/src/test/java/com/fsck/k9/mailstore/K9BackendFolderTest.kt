@@ -100,6 +100,31 @@ class K9BackendFolderTest : K9RobolectricTest() {
         }
     }
 
+    @Test
+    fun saveMessages() {
+        val messages = listOf(
+            createMessage(messageServerId = "uid1", flags = setOf(Flag.SEEN)),
+            createMessage(messageServerId = "uid2")
+        )
+
+        backendFolder.saveMessages(messages, MessageDownloadState.FULL)
+
+        assertEquals(setOf("uid1", "uid2"), backendFolder.getMessageServerIds())
+        assertEquals(setOf(Flag.SEEN, Flag.X_DOWNLOADED_FULL), backendFolder.getMessageFlags("uid1"))
+        assertEquals(setOf(Flag.X_DOWNLOADED_FULL), backendFolder.getMessageFlags("uid2"))
+    }
+
+    @Test
+    fun saveMessages_withoutServerId_shouldThrow() {
+        val messages = listOf(createMessage(messageServerId = "uid1"), createMessage(messageServerId = null))
+
+        try {
+            backendFolder.saveMessages(messages, MessageDownloadState.FULL)
+            fail("Expected exception")
+        } catch (e: IllegalStateException) {
+        }
+    }
+
     fun createAccount(): Account {
         // FIXME: This is a hack to get Preferences into a state where it's safe to call newAccount()
         preferences.clearAccounts()
@@ -0,0 +1,134 @@
+package com.fsck.k9.mailstore
+
+import android.net.Uri
+import com.fsck.k9.Account
+import com.fsck.k9.K9RobolectricTest
+import com.fsck.k9.Preferences
+import com.fsck.k9.backend.api.FolderInfo
+import com.fsck.k9.backend.api.updateFolders
+import com.fsck.k9.crypto.PQSignatureResult
+import com.fsck.k9.mail.Address
+import com.fsck.k9.mail.FolderType
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.internet.MimeMessage
+import com.fsck.k9.mail.internet.MimeMessageHelper
+import com.fsck.k9.mail.internet.TextBody
+import com.fsck.k9.provider.EmailProvider
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.koin.core.component.inject
+
+class LocalMessageTest : K9RobolectricTest() {
+    val preferences: Preferences by inject()
+    val localStoreProvider: LocalStoreProvider by inject()
+    val messageStoreManager: MessageStoreManager by inject()
+    val saveMessageDataCreator: SaveMessageDataCreator by inject()
+
+    val account: Account = createAccount()
+
+    @Before
+    fun setUp() {
+        // Set EmailProvider.CONTENT_URI so LocalStore.notifyChange() won't crash
+        EmailProvider.CONTENT_URI = Uri.parse("content://dummy")
+    }
+
+    @After
+    fun tearDown() {
+        preferences.deleteAccount(account)
+    }
+
+    @Test
+    fun getStoredPQSignatureResult_withoutStoredResult_shouldReturnNull() {
+        val message = createLocalMessage()
+
+        assertThat(message.getStoredPQSignatureResult(CONTENT_HASH)).isNull()
+    }
+
+    @Test
+    fun getStoredPQSignatureResult_withStoredResult_shouldReturnResult() {
+        createLocalMessage().setStoredPQSignatureResult(PQSignatureResult(true, ALGORITHM), CONTENT_HASH)
+
+        val result = loadLocalMessage().getStoredPQSignatureResult(CONTENT_HASH)
+
+        assertThat(result).isNotNull()
+        assertThat(result!!.isValidSigned).isTrue()
+        assertThat(result.algorithm).isEqualTo(ALGORITHM)
+    }
+
+    @Test
+    fun getStoredPQSignatureResult_withStoredInvalidResult_shouldReturnInvalidResult() {
+        createLocalMessage().setStoredPQSignatureResult(PQSignatureResult(false, ALGORITHM), CONTENT_HASH)
+
+        val result = loadLocalMessage().getStoredPQSignatureResult(CONTENT_HASH)
+
+        assertThat(result).isNotNull()
+        assertThat(result!!.isValidSigned).isFalse()
+    }
+
+    @Test
+    fun getStoredPQSignatureResult_withDifferentContentHash_shouldReturnNull() {
+        createLocalMessage().setStoredPQSignatureResult(PQSignatureResult(true, ALGORITHM), CONTENT_HASH)
+
+        val result = loadLocalMessage().getStoredPQSignatureResult("other hash")
+
+        assertThat(result).isNull()
+    }
+
+    @Test
+    fun clearStoredPQSignatureResult_shouldRemoveStoredResult() {
+        createLocalMessage().setStoredPQSignatureResult(PQSignatureResult(true, ALGORITHM), CONTENT_HASH)
+
+        loadLocalMessage().clearStoredPQSignatureResult()
+
+        assertThat(loadLocalMessage().getStoredPQSignatureResult(CONTENT_HASH)).isNull()
+    }
+
+    private fun createAccount(): Account {
+        // FIXME: This is a hack to get Preferences into a state where it's safe to call newAccount()
+        preferences.clearAccounts()
+
+        return preferences.newAccount()
+    }
+
+    private fun createLocalMessage(): LocalMessage {
+        val messageStore = messageStoreManager.getMessageStore(account)
+        val backendStorage = K9BackendStorage(
+            messageStore,
+            createFolderSettingsProvider(),
+            saveMessageDataCreator,
+            emptyList()
+        )
+        backendStorage.updateFolders {
+            createFolders(listOf(FolderInfo(FOLDER_SERVER_ID, "Test Folder", FolderType.INBOX)))
+        }
+
+        val backendFolder = K9BackendFolder(messageStore, saveMessageDataCreator, FOLDER_SERVER_ID)
+        val message = MimeMessage().apply {
+            subject = "Test message"
+            setFrom(Address("alice@domain.example"))
+            setHeader("To", "bob@domain.example")
+            MimeMessageHelper.setBody(this, TextBody("Hello Bob!"))
+
+            uid = MESSAGE_SERVER_ID
+        }
+        backendFolder.saveMessage(message, MessageDownloadState.FULL)
+
+        return loadLocalMessage()
+    }
+
+    private fun loadLocalMessage(): LocalMessage {
+        val folder = localStoreProvider.getInstance(account).getFolder(FOLDER_SERVER_ID)
+        folder.open()
+
+        return folder.getMessage(MESSAGE_SERVER_ID) ?: error("Message not found")
+    }
+
+    companion object {
+        const val FOLDER_SERVER_ID = "testFolder"
+        const val MESSAGE_SERVER_ID = "msg001"
+        const val ALGORITHM = "Dilithium2"
+        const val CONTENT_HASH = "0123456789abcdef"
+    }
+}
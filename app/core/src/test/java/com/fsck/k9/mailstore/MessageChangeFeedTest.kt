@@ -0,0 +1,71 @@
+package com.fsck.k9.mailstore
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+private const val ACCOUNT_UUID_1 = "00000000-0000-4000-0000-000000000001"
+private const val ACCOUNT_UUID_2 = "00000000-0000-4000-0000-000000000002"
+
+class MessageChangeFeedTest {
+    private val messageChangeFeed = MessageChangeFeed(maxChangeCount = 3)
+
+    @Test
+    fun recordChange_shouldIncrementSequenceNumber() {
+        val sequenceNumber1 = messageChangeFeed.recordChange(ACCOUNT_UUID_1, listOf(1L))
+        val sequenceNumber2 = messageChangeFeed.recordChange(ACCOUNT_UUID_1, listOf(2L))
+
+        assertThat(sequenceNumber2).isEqualTo(sequenceNumber1 + 1)
+        assertThat(messageChangeFeed.sequenceNumber).isEqualTo(sequenceNumber2)
+    }
+
+    @Test
+    fun getChangedMessageIds_shouldReturnIdsChangedAfterSequenceNumber() {
+        val sequenceNumber = messageChangeFeed.recordChange(ACCOUNT_UUID_1, listOf(1L))
+        messageChangeFeed.recordChange(ACCOUNT_UUID_1, listOf(2L, 3L))
+        messageChangeFeed.recordChange(ACCOUNT_UUID_2, listOf(2L))
+
+        val result = messageChangeFeed.getChangedMessageIds(listOf(ACCOUNT_UUID_1, ACCOUNT_UUID_2), sequenceNumber)
+
+        assertThat(result).isEqualTo(mapOf(ACCOUNT_UUID_1 to setOf(2L, 3L), ACCOUNT_UUID_2 to setOf(2L)))
+    }
+
+    @Test
+    fun getChangedMessageIds_withoutChanges_shouldReturnEmptyMap() {
+        val sequenceNumber = messageChangeFeed.recordChange(ACCOUNT_UUID_1, listOf(1L))
+
+        val result = messageChangeFeed.getChangedMessageIds(listOf(ACCOUNT_UUID_1), sequenceNumber)
+
+        assertThat(result).isEmpty()
+    }
+
+    @Test
+    fun getChangedMessageIds_shouldIgnoreOtherAccounts() {
+        val sequenceNumber = messageChangeFeed.sequenceNumber
+        messageChangeFeed.recordChange(ACCOUNT_UUID_2, messageIds = null)
+
+        val result = messageChangeFeed.getChangedMessageIds(listOf(ACCOUNT_UUID_1), sequenceNumber)
+
+        assertThat(result).isEmpty()
+    }
+
+    @Test
+    fun getChangedMessageIds_withChangeOfUnknownMessages_shouldReturnNull() {
+        val sequenceNumber = messageChangeFeed.sequenceNumber
+        messageChangeFeed.recordChange(ACCOUNT_UUID_1, listOf(1L))
+        messageChangeFeed.recordChange(ACCOUNT_UUID_1, messageIds = null)
+
+        val result = messageChangeFeed.getChangedMessageIds(listOf(ACCOUNT_UUID_1), sequenceNumber)
+
+        assertThat(result).isNull()
+    }
+
+    @Test
+    fun getChangedMessageIds_withDroppedChanges_shouldReturnNull() {
+        val sequenceNumber = messageChangeFeed.sequenceNumber
+        repeat(4) { messageChangeFeed.recordChange(ACCOUNT_UUID_1, listOf(it.toLong())) }
+
+        val result = messageChangeFeed.getChangedMessageIds(listOf(ACCOUNT_UUID_1), sequenceNumber)
+
+        assertThat(result).isNull()
+    }
+}
@@ -0,0 +1,58 @@
+package com.fsck.k9.mailstore
+
+import com.fsck.k9.mail.Flag
+import org.junit.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.inOrder
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.verify
+
+private const val FOLDER_ID = 1L
+
+class NotifierMessageStoreTest {
+    private val messageStore = mock<MessageStore> {
+        on { getMessageIds(FOLDER_ID, setOf("uid1", "uid2")) } doReturn mapOf("uid1" to 10L, "uid2" to 20L)
+        on { getMessageIds(FOLDER_ID, listOf("uid1", "uid2")) } doReturn mapOf("uid1" to 10L, "uid2" to 20L)
+    }
+    private val localStore = mock<LocalStore>()
+    private val notifierMessageStore = NotifierMessageStore(messageStore, localStore)
+
+    @Test
+    fun saveRemoteMessages_shouldNotifyWithIdsOfSavedMessages() {
+        val messages = mapOf("uid1" to mock<SaveMessageData>(), "uid2" to mock())
+
+        notifierMessageStore.saveRemoteMessages(FOLDER_ID, messages)
+
+        verify(localStore).notifyChange(listOf(10L, 20L))
+    }
+
+    @Test
+    fun setFlag_shouldNotifyWithMessageIds() {
+        notifierMessageStore.setFlag(listOf(10L, 20L), Flag.SEEN, true)
+
+        verify(localStore).notifyChange(listOf(10L, 20L))
+    }
+
+    @Test
+    fun moveMessage_shouldNotifyWithOldAndNewMessageId() {
+        val messageStore = mock<MessageStore> {
+            on { moveMessage(10L, 2L) } doReturn 30L
+        }
+        val notifierMessageStore = NotifierMessageStore(messageStore, localStore)
+
+        notifierMessageStore.moveMessage(10L, 2L)
+
+        verify(localStore).notifyChange(listOf(10L, 30L))
+    }
+
+    @Test
+    fun destroyMessages_shouldLookUpIdsBeforeDestroyingMessages() {
+        notifierMessageStore.destroyMessages(FOLDER_ID, listOf("uid1", "uid2"))
+
+        inOrder(messageStore, localStore) {
+            verify(messageStore).getMessageIds(FOLDER_ID, listOf("uid1", "uid2"))
+            verify(messageStore).destroyMessages(FOLDER_ID, listOf("uid1", "uid2"))
+            verify(localStore).notifyChange(listOf(10L, 20L))
+        }
+    }
+}
@@ -66,6 +66,9 @@ class ImapBackendFactory(
             override val logLabel
                 get() = account.uuid
 
+            override val maxConnections
+                get() = account.maxSyncConnections
+
             override fun isSubscribedFoldersOnly() = account.isSubscribedFoldersOnly
 
             override fun useCompression() = account.useCompression
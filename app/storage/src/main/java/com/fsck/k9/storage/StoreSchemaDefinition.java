@@ -12,7 +12,7 @@ import timber.log.Timber;
 
 
 class StoreSchemaDefinition implements SchemaDefinition {
-    static final int DB_VERSION = 84;
+    static final int DB_VERSION = 88;
 
     private final MigrationsHelper migrationsHelper;
 
@@ -141,7 +141,10 @@ class StoreSchemaDefinition implements SchemaDefinition {
                 "forwarded INTEGER default 0, " +
                 "message_part_id INTEGER," +
                 "encryption_type TEXT," +
-                "new_message INTEGER DEFAULT 0" +
+                "new_message INTEGER DEFAULT 0, " +
+                "pq_signature_valid INTEGER, " +
+                "pq_signature_algorithm TEXT, " +
+                "pq_signature_content_hash TEXT" +
                 ")");
 
         db.execSQL("DROP INDEX IF EXISTS new_messages");
@@ -211,10 +214,10 @@ class StoreSchemaDefinition implements SchemaDefinition {
                 ")");
 
         db.execSQL("DROP INDEX IF EXISTS threads_message_id");
-        db.execSQL("CREATE INDEX IF NOT EXISTS threads_message_id ON threads (message_id)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS threads_message_id ON threads (message_id, root)");
 
         db.execSQL("DROP INDEX IF EXISTS threads_root");
-        db.execSQL("CREATE INDEX IF NOT EXISTS threads_root ON threads (root)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS threads_root ON threads (root, message_id)");
 
         db.execSQL("DROP INDEX IF EXISTS threads_parent");
         db.execSQL("CREATE INDEX IF NOT EXISTS threads_parent ON threads (parent)");
@@ -260,6 +263,11 @@ class StoreSchemaDefinition implements SchemaDefinition {
         db.execSQL("DROP TABLE IF EXISTS messages_fulltext");
         db.execSQL("CREATE VIRTUAL TABLE messages_fulltext USING fts4 (fulltext)");
 
+        db.execSQL("DROP TABLE IF EXISTS fulltext_index_queue");
+        db.execSQL("CREATE TABLE fulltext_index_queue (" +
+                "message_id INTEGER PRIMARY KEY NOT NULL REFERENCES messages(id) ON DELETE CASCADE" +
+                ")");
+
         db.execSQL("DROP TABLE IF EXISTS notifications");
         db.execSQL("CREATE TABLE notifications (" +
                 "message_id INTEGER PRIMARY KEY NOT NULL REFERENCES messages(id) ON DELETE CASCADE," +
@@ -269,5 +277,32 @@ class StoreSchemaDefinition implements SchemaDefinition {
 
         db.execSQL("DROP INDEX IF EXISTS notifications_timestamp");
         db.execSQL("CREATE INDEX IF NOT EXISTS notifications_timestamp ON notifications(timestamp)");
+
+        db.execSQL("DROP TABLE IF EXISTS pq_sender_keys");
+        db.execSQL("CREATE TABLE pq_sender_keys (" +
+                "id INTEGER PRIMARY KEY," +
+                "address TEXT NOT NULL," +
+                "fingerprint TEXT NOT NULL," +
+                "algorithm TEXT NOT NULL," +
+                "public_key BLOB NOT NULL," +
+                "first_seen INTEGER NOT NULL" +
+                ")");
+
+        db.execSQL("DROP INDEX IF EXISTS pq_sender_keys_address_fingerprint");
+        db.execSQL("CREATE UNIQUE INDEX pq_sender_keys_address_fingerprint ON pq_sender_keys (address, fingerprint)");
+
+        db.execSQL("DROP INDEX IF EXISTS pq_sender_keys_fingerprint");
+        db.execSQL("CREATE INDEX pq_sender_keys_fingerprint ON pq_sender_keys (fingerprint)");
+
+        db.execSQL("DROP TABLE IF EXISTS pq_key_recipients");
+        db.execSQL("CREATE TABLE pq_key_recipients (" +
+                "id INTEGER PRIMARY KEY," +
+                "address TEXT NOT NULL," +
+                "fingerprint TEXT NOT NULL" +
+                ")");
+
+        db.execSQL("DROP INDEX IF EXISTS pq_key_recipients_address_fingerprint");
+        db.execSQL("CREATE UNIQUE INDEX pq_key_recipients_address_fingerprint " +
+                "ON pq_key_recipients (address, fingerprint)");
     }
 }
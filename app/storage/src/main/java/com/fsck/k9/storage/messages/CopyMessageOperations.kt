@@ -207,6 +207,15 @@ internal class CopyMessageOperations(
             """.trimIndent(),
             arrayOf(newMessageId.toString(), messageId.toString())
         )
+
+        // If the source message hasn't been indexed yet, the copy needs to be indexed as well
+        database.execSQL(
+            """
+            INSERT OR IGNORE INTO fulltext_index_queue (message_id)
+              SELECT ? FROM fulltext_index_queue WHERE message_id = ?
+            """.trimIndent(),
+            arrayOf(newMessageId.toString(), messageId.toString())
+        )
     }
 
     private fun readMessageToContentValues(database: SQLiteDatabase, messageId: Long): ContentValues {
@@ -0,0 +1,80 @@
+package com.fsck.k9.storage.messages
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import com.fsck.k9.mailstore.LockableDatabase
+import com.fsck.k9.mailstore.PendingFulltextMessage
+
+internal class FulltextIndexOperations(private val lockableDatabase: LockableDatabase) {
+    fun getMessagesPendingFulltextIndexing(limit: Int): List<PendingFulltextMessage> {
+        return lockableDatabase.execute(false) { db ->
+            // Newer messages are more likely to be searched for, so we index them first
+            db.rawQuery(
+                """
+                SELECT messages.id, messages.folder_id, messages.message_part_id
+                FROM fulltext_index_queue
+                JOIN messages ON (messages.id = fulltext_index_queue.message_id)
+                ORDER BY messages.date DESC
+                LIMIT $limit
+                """.trimIndent(),
+                null
+            ).use { cursor ->
+                val messages = ArrayList<PendingFulltextMessage>(cursor.count)
+                while (cursor.moveToNext()) {
+                    val messageId = cursor.getLong(0)
+                    val folderId = cursor.getLong(1)
+                    val messagePartId = if (cursor.isNull(2)) null else cursor.getLong(2)
+                    messages.add(PendingFulltextMessage(messageId, folderId, messagePartId))
+                }
+
+                messages
+            }
+        }
+    }
+
+    fun getPendingFulltextIndexCount(): Int {
+        return lockableDatabase.execute(false) { db ->
+            db.rawQuery("SELECT COUNT(*) FROM fulltext_index_queue", null).use { cursor ->
+                if (cursor.moveToFirst()) cursor.getInt(0) else 0
+            }
+        }
+    }
+
+    fun saveFulltextEntries(fulltextEntries: Map<PendingFulltextMessage, String?>) {
+        lockableDatabase.execute(true) { db ->
+            for ((pendingMessage, fulltext) in fulltextEntries) {
+                // The text was created outside of this transaction. Don't save it if the message has been replaced in
+                // the meantime; the new version is already in the queue again.
+                if (!db.isMessageUnchanged(pendingMessage)) continue
+
+                val messageId = pendingMessage.messageId
+                if (fulltext != null) {
+                    val values = ContentValues().apply {
+                        put("docid", messageId)
+                        put("fulltext", fulltext)
+                    }
+                    db.replace("messages_fulltext", null, values)
+                }
+
+                db.delete("fulltext_index_queue", "message_id = ?", arrayOf(messageId.toString()))
+            }
+        }
+    }
+
+    private fun SQLiteDatabase.isMessageUnchanged(pendingMessage: PendingFulltextMessage): Boolean {
+        return query(
+            "messages",
+            arrayOf("message_part_id"),
+            "id = ?",
+            arrayOf(pendingMessage.messageId.toString()),
+            null,
+            null,
+            null
+        ).use { cursor ->
+            if (!cursor.moveToFirst()) return false
+
+            val messagePartId = if (cursor.isNull(0)) null else cursor.getLong(0)
+            messagePartId == pendingMessage.messagePartId
+        }
+    }
+}
@@ -11,6 +11,7 @@ import com.fsck.k9.mailstore.FolderMapper
 import com.fsck.k9.mailstore.LockableDatabase
 import com.fsck.k9.mailstore.MessageStore
 import com.fsck.k9.mailstore.MoreMessages
+import com.fsck.k9.mailstore.PendingFulltextMessage
 import com.fsck.k9.mailstore.SaveMessageData
 import com.fsck.k9.mailstore.StorageManager
 import com.fsck.k9.message.extractors.BasicPartInfoExtractor
@@ -42,12 +43,17 @@ class K9MessageStore(
     private val updateFolderOperations = UpdateFolderOperations(database)
     private val deleteFolderOperations = DeleteFolderOperations(database, attachmentFileManager)
     private val keyValueStoreOperations = KeyValueStoreOperations(database)
+    private val fulltextIndexOperations = FulltextIndexOperations(database)
     private val databaseOperations = DatabaseOperations(database, storageManager, accountUuid)
 
     override fun saveRemoteMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData) {
         saveMessageOperations.saveRemoteMessage(folderId, messageServerId, messageData)
     }
 
+    override fun saveRemoteMessages(folderId: Long, messages: Map<String, SaveMessageData>) {
+        saveMessageOperations.saveRemoteMessages(folderId, messages)
+    }
+
     override fun saveLocalMessage(folderId: Long, messageData: SaveMessageData, existingMessageId: Long?): Long {
         return saveMessageOperations.saveLocalMessage(folderId, messageData, existingMessageId)
     }
@@ -84,6 +90,10 @@ class K9MessageStore(
         return retrieveMessageOperations.getMessageServerIds(messageIds)
     }
 
+    override fun getMessageIds(folderId: Long, messageServerIds: Collection<String>): Map<String, Long> {
+        return retrieveMessageOperations.getMessageIds(folderId, messageServerIds)
+    }
+
     override fun getMessageServerIds(folderId: Long): Set<String> {
         return retrieveMessageOperations.getMessageServerIds(folderId)
     }
@@ -232,6 +242,18 @@ class K9MessageStore(
         return keyValueStoreOperations.setFolderExtraNumber(folderId, name, value)
     }
 
+    override fun getMessagesPendingFulltextIndexing(limit: Int): List<PendingFulltextMessage> {
+        return fulltextIndexOperations.getMessagesPendingFulltextIndexing(limit)
+    }
+
+    override fun getPendingFulltextIndexCount(): Int {
+        return fulltextIndexOperations.getPendingFulltextIndexCount()
+    }
+
+    override fun saveFulltextEntries(fulltextEntries: Map<PendingFulltextMessage, String?>) {
+        fulltextIndexOperations.saveFulltextEntries(fulltextEntries)
+    }
+
     override fun compact() {
         return databaseOperations.compact()
     }
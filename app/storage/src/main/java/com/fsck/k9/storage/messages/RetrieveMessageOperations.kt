@@ -62,6 +62,37 @@ internal class RetrieveMessageOperations(private val lockableDatabase: LockableD
         }
     }
 
+    fun getMessageIds(folderId: Long, messageServerIds: Collection<String>): Map<String, Long> {
+        if (messageServerIds.isEmpty()) return emptyMap()
+
+        return lockableDatabase.execute(false) { database ->
+            val serverIdToDatabaseIdMapping = mutableMapOf<String, Long>()
+            performChunkedOperation(
+                arguments = messageServerIds,
+                argumentTransformation = { it }
+            ) { selectionSet, selectionArguments ->
+                database.query(
+                    "messages",
+                    arrayOf("uid", "id"),
+                    "folder_id = ? AND uid $selectionSet",
+                    arrayOf(folderId.toString(), *selectionArguments),
+                    null,
+                    null,
+                    null
+                ).use { cursor ->
+                    while (cursor.moveToNext()) {
+                        val serverId = cursor.getString(0)
+                        val databaseId = cursor.getLong(1)
+
+                        serverIdToDatabaseIdMapping[serverId] = databaseId
+                    }
+                }
+            }
+
+            serverIdToDatabaseIdMapping
+        }
+    }
+
     fun getMessageServerIds(folderId: Long): Set<String> {
         return lockableDatabase.execute(false) { database ->
             database.rawQuery(
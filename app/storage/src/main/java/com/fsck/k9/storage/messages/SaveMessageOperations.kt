@@ -3,6 +3,7 @@ package com.fsck.k9.storage.messages
 import android.content.ContentValues
 import android.database.sqlite.SQLiteDatabase
 import com.fsck.k9.K9
+import com.fsck.k9.helper.FileHelper
 import com.fsck.k9.mail.Address
 import com.fsck.k9.mail.Body
 import com.fsck.k9.mail.BoundaryGenerator
@@ -34,6 +35,7 @@ import org.apache.commons.io.IOUtils
 import org.apache.james.mime4j.codec.Base64InputStream
 import org.apache.james.mime4j.codec.QuotedPrintableInputStream
 import org.apache.james.mime4j.util.MimeUtil
+import timber.log.Timber
 
 internal const val MAX_BODY_SIZE_FOR_DATABASE = 256 * 1024L
 
@@ -47,6 +49,25 @@ internal class SaveMessageOperations(
         saveMessage(folderId, messageServerId, messageData)
     }
 
+    /**
+     * Save multiple remote messages in a single transaction.
+     *
+     * Full-text search entries are only written after all messages have been saved, so the FTS index isn't updated
+     * in between inserts into the `messages`, `message_parts`, and `threads` tables.
+     */
+    fun saveRemoteMessages(folderId: Long, messages: Map<String, SaveMessageData>) {
+        executeAndMoveFiles { database, fileMoves ->
+            val savedMessages = messages.map { (messageServerId, messageData) ->
+                val messageId = insertOrReplaceMessage(database, fileMoves, folderId, messageServerId, messageData)
+                messageId to messageData
+            }
+
+            for ((messageId, messageData) in savedMessages) {
+                createOrReplaceFulltextEntry(database, messageId, messageData)
+            }
+        }
+    }
+
     fun saveLocalMessage(folderId: Long, messageData: SaveMessageData, existingMessageId: Long?): Long {
         return if (existingMessageId == null) {
             saveLocalMessage(folderId, messageData)
@@ -61,47 +82,105 @@ internal class SaveMessageOperations(
     }
 
     private fun replaceLocalMessage(folderId: Long, messageId: Long, messageData: SaveMessageData): Long {
-        return lockableDatabase.execute(true) { database ->
+        return executeAndMoveFiles { database, fileMoves ->
             val (messageServerId, rootMessagePartId) = getLocalMessageInfo(folderId, messageId)
 
             replaceMessage(
                 database,
+                fileMoves,
                 folderId,
                 messageServerId,
                 existingMessageId = messageId,
                 existingRootMessagePartId = rootMessagePartId,
                 messageData
             )
+            createOrReplaceFulltextEntry(database, messageId, messageData)
 
             messageId
         }
     }
 
     private fun saveMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData): Long {
-        return lockableDatabase.execute(true) { database ->
-            val message = messageData.message
-
-            val existingMessageInfo = getMessage(folderId, messageServerId)
-            return@execute if (existingMessageInfo != null) {
-                val (existingMessageId, existingRootMessagePartId) = existingMessageInfo
-                replaceMessage(
-                    database,
-                    folderId,
-                    messageServerId,
-                    existingMessageId,
-                    existingRootMessagePartId,
-                    messageData
-                )
-
-                existingMessageId
-            } else {
-                insertMessage(database, folderId, messageServerId, message, messageData)
+        return executeAndMoveFiles { database, fileMoves ->
+            insertOrReplaceMessage(database, fileMoves, folderId, messageServerId, messageData).also { messageId ->
+                createOrReplaceFulltextEntry(database, messageId, messageData)
+            }
+        }
+    }
+
+    /**
+     * Runs [block] in a transaction. Bodies stored on disk are moved to the attachment directory at the end of the
+     * transaction, so by the time the message parts become visible to readers their files exist. If the transaction
+     * is rolled back, the moves are undone: the files of [BinaryTempFileBody]s are moved back, so the messages can be
+     * saved again, and temporary copies are deleted. No attachment files are left behind without a database entry.
+     */
+    private fun <T> executeAndMoveFiles(block: (SQLiteDatabase, MutableList<PendingFileMove>) -> T): T {
+        val fileMoves = mutableListOf<PendingFileMove>()
+        val completedFileMoves = mutableListOf<PendingFileMove>()
+        return try {
+            lockableDatabase.execute(true) { database ->
+                block(database, fileMoves).also {
+                    for (fileMove in fileMoves) {
+                        attachmentFileManager.moveTemporaryFile(fileMove.file, fileMove.messagePartId)
+                        completedFileMoves.add(fileMove)
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            undoFileMoves(fileMoves, completedFileMoves)
+            throw e
+        }
+    }
+
+    private fun undoFileMoves(fileMoves: List<PendingFileMove>, completedFileMoves: List<PendingFileMove>) {
+        for (fileMove in fileMoves) {
+            try {
+                val isMoved = fileMove in completedFileMoves
+                if (fileMove.isTemporaryCopy) {
+                    if (isMoved) {
+                        attachmentFileManager.deleteFile(fileMove.messagePartId)
+                    } else {
+                        fileMove.file.delete()
+                    }
+                } else if (isMoved) {
+                    val attachmentFile = attachmentFileManager.getAttachmentFile(fileMove.messagePartId)
+                    FileHelper.renameOrMoveByCopying(attachmentFile, fileMove.file)
+                }
+            } catch (e: Exception) {
+                Timber.e(e, "Error undoing move of body file of message part %d", fileMove.messagePartId)
             }
         }
     }
 
+    private fun insertOrReplaceMessage(
+        database: SQLiteDatabase,
+        fileMoves: MutableList<PendingFileMove>,
+        folderId: Long,
+        messageServerId: String,
+        messageData: SaveMessageData
+    ): Long {
+        val existingMessageInfo = getMessage(folderId, messageServerId)
+        return if (existingMessageInfo != null) {
+            val (existingMessageId, existingRootMessagePartId) = existingMessageInfo
+            replaceMessage(
+                database,
+                fileMoves,
+                folderId,
+                messageServerId,
+                existingMessageId,
+                existingRootMessagePartId,
+                messageData
+            )
+
+            existingMessageId
+        } else {
+            insertMessage(database, fileMoves, folderId, messageServerId, messageData.message, messageData)
+        }
+    }
+
     private fun insertMessage(
         database: SQLiteDatabase,
+        fileMoves: MutableList<PendingFileMove>,
         folderId: Long,
         messageServerId: String,
         message: Message,
@@ -109,7 +188,7 @@ internal class SaveMessageOperations(
     ): Long {
         val threadInfo = threadMessageOperations.doMessageThreading(database, folderId, message.toThreadHeaders())
 
-        val rootMessagePartId = saveMessageParts(database, message)
+        val rootMessagePartId = saveMessageParts(database, fileMoves, message)
         val messageId = saveMessage(
             database,
             folderId,
@@ -123,13 +202,12 @@ internal class SaveMessageOperations(
             threadMessageOperations.createThreadEntry(database, messageId, threadInfo?.rootId, threadInfo?.parentId)
         }
 
-        createOrReplaceFulltextEntry(database, messageId, messageData)
-
         return messageId
     }
 
     private fun replaceMessage(
         database: SQLiteDatabase,
+        fileMoves: MutableList<PendingFileMove>,
         folderId: Long,
         messageServerId: String,
         existingMessageId: Long,
@@ -140,8 +218,8 @@ internal class SaveMessageOperations(
             deleteMessagePartsAndDataFromDisk(database, existingRootMessagePartId)
         }
 
-        val rootMessagePartId = saveMessageParts(database, messageData.message)
-        val messageId = saveMessage(
+        val rootMessagePartId = saveMessageParts(database, fileMoves, messageData.message)
+        saveMessage(
             database,
             folderId,
             messageServerId,
@@ -149,13 +227,15 @@ internal class SaveMessageOperations(
             messageData,
             replaceMessageId = existingMessageId
         )
-
-        createOrReplaceFulltextEntry(database, messageId, messageData)
     }
 
-    private fun saveMessageParts(database: SQLiteDatabase, message: Message): Long {
+    private fun saveMessageParts(
+        database: SQLiteDatabase,
+        fileMoves: MutableList<PendingFileMove>,
+        message: Message
+    ): Long {
         val rootPartContainer = PartContainer(parentId = null, part = message)
-        val rootId = saveMessagePart(database, rootPartContainer, rootId = null, order = 0)
+        val rootId = saveMessagePart(database, fileMoves, rootPartContainer, rootId = null, order = 0)
 
         val partsToSave = Stack<PartContainer>()
         addChildrenToStack(partsToSave, part = message, parentId = rootId)
@@ -163,7 +243,7 @@ internal class SaveMessageOperations(
         var order = 1
         while (partsToSave.isNotEmpty()) {
             val partContainer = partsToSave.pop()
-            val messagePartId = saveMessagePart(database, partContainer, rootId, order)
+            val messagePartId = saveMessagePart(database, fileMoves, partContainer, rootId, order)
             order++
             addChildrenToStack(partsToSave, partContainer.part, parentId = messagePartId)
         }
@@ -173,6 +253,7 @@ internal class SaveMessageOperations(
 
     private fun saveMessagePart(
         database: SQLiteDatabase,
+        fileMoves: MutableList<PendingFileMove>,
         partContainer: PartContainer,
         rootId: Long?,
         order: Int
@@ -185,11 +266,12 @@ internal class SaveMessageOperations(
             put("server_extra", part.serverExtra)
         }
 
-        return updateOrInsertMessagePart(database, values, part, existingMessagePartId = null)
+        return updateOrInsertMessagePart(database, fileMoves, values, part, existingMessagePartId = null)
     }
 
     private fun updateOrInsertMessagePart(
         database: SQLiteDatabase,
+        fileMoves: MutableList<PendingFileMove>,
         values: ContentValues,
         part: Part,
         existingMessagePartId: Long?
@@ -214,7 +296,8 @@ internal class SaveMessageOperations(
         }
 
         if (file != null) {
-            attachmentFileManager.moveTemporaryFile(file, messagePartId)
+            val isTemporaryCopy = part.body !is BinaryTempFileBody
+            fileMoves.add(PendingFileMove(file, messagePartId, isTemporaryCopy))
         }
 
         return messagePartId
@@ -263,7 +346,7 @@ internal class SaveMessageOperations(
         return if (fileSize > MAX_BODY_SIZE_FOR_DATABASE) {
             values.put("data_location", DataLocation.ON_DISK)
             val file = writeBodyToDiskIfNecessary(part)
-            val size = decodeAndCountBytes(file, encoding, fileSize)
+            val size = getDecodedSizeIfKnown(body) ?: decodeAndCountBytes(file, encoding, fileSize)
             values.put("decoded_body_size", size)
 
             file
@@ -271,7 +354,8 @@ internal class SaveMessageOperations(
             values.put("data_location", DataLocation.IN_DATABASE)
             val bodyData = getBodyBytes(body)
             values.put("data", bodyData)
-            val size = decodeAndCountBytes(bodyData.inputStream(), encoding, bodyData.size.toLong())
+            val size = getDecodedSizeIfKnown(body)
+                ?: decodeAndCountBytes(bodyData.inputStream(), encoding, bodyData.size.toLong())
             values.put("decoded_body_size", size)
 
             null
@@ -296,6 +380,14 @@ internal class SaveMessageOperations(
         return file
     }
 
+    /**
+     * Bodies created while parsing a message count their decoded size while the data is written, so we don't have to
+     * read and decode the data a second time.
+     */
+    private fun getDecodedSizeIfKnown(body: Body): Long? {
+        return (body as? BinaryTempFileBody)?.decodedSize?.takeIf { it >= 0 }
+    }
+
     private fun decodeAndCountBytes(file: File?, encoding: String, fallbackValue: Long): Long {
         return FileInputStream(file).use { inputStream ->
             decodeAndCountBytes(inputStream, encoding, fallbackValue)
@@ -431,6 +523,13 @@ internal class SaveMessageOperations(
     }
 
     private fun createOrReplaceFulltextEntry(database: SQLiteDatabase, messageId: Long, messageData: SaveMessageData) {
+        if (messageData.isFulltextIndexingDeferred) {
+            queueFulltextIndexing(database, messageId)
+            return
+        }
+
+        database.delete("fulltext_index_queue", "message_id = ?", arrayOf(messageId.toString()))
+
         val fulltext = messageData.textForSearchIndex ?: return
 
         val values = ContentValues().apply {
@@ -441,6 +540,16 @@ internal class SaveMessageOperations(
         database.replace("messages_fulltext", null, values)
     }
 
+    private fun queueFulltextIndexing(database: SQLiteDatabase, messageId: Long) {
+        // Remove the entry of a message that is being replaced so we don't match outdated text
+        database.delete("messages_fulltext", "docid = ?", arrayOf(messageId.toString()))
+
+        val values = ContentValues().apply {
+            put("message_id", messageId)
+        }
+        database.insertWithOnConflict("fulltext_index_queue", null, values, SQLiteDatabase.CONFLICT_IGNORE)
+    }
+
     private fun getMessage(folderId: Long, messageServerId: String): Pair<Long, Long?>? {
         return lockableDatabase.execute(false) { db ->
             db.query(
@@ -537,3 +646,9 @@ internal object DataLocation {
 }
 
 private data class PartContainer(val parentId: Long?, val part: Part)
+
+/**
+ * A body file that is moved to the attachment directory before the transaction is committed. [isTemporaryCopy]
+ * is `true` if the file was written while saving, rather than being the file of a [BinaryTempFileBody].
+ */
+private class PendingFileMove(val file: File, val messagePartId: Long, val isTemporaryCopy: Boolean)
@@ -0,0 +1,14 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add columns to the 'messages' table to store the result of the post-quantum signature verification.
+ */
+internal class MigrationTo85(private val db: SQLiteDatabase) {
+    fun addPqSignatureColumns() {
+        db.execSQL("ALTER TABLE messages ADD pq_signature_valid INTEGER")
+        db.execSQL("ALTER TABLE messages ADD pq_signature_algorithm TEXT")
+        db.execSQL("ALTER TABLE messages ADD pq_signature_content_hash TEXT")
+    }
+}
@@ -0,0 +1,44 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add tables for the post-quantum sender keyring and to keep track of recipients that received our public key.
+ */
+internal class MigrationTo86(private val db: SQLiteDatabase) {
+    fun addPqKeyringTables() {
+        db.execSQL("DROP TABLE IF EXISTS pq_sender_keys")
+        db.execSQL(
+            "CREATE TABLE pq_sender_keys (" +
+                "id INTEGER PRIMARY KEY," +
+                "address TEXT NOT NULL," +
+                "fingerprint TEXT NOT NULL," +
+                "algorithm TEXT NOT NULL," +
+                "public_key BLOB NOT NULL," +
+                "first_seen INTEGER NOT NULL" +
+                ")"
+        )
+
+        db.execSQL("DROP INDEX IF EXISTS pq_sender_keys_address_fingerprint")
+        db.execSQL(
+            "CREATE UNIQUE INDEX pq_sender_keys_address_fingerprint ON pq_sender_keys (address, fingerprint)"
+        )
+
+        db.execSQL("DROP INDEX IF EXISTS pq_sender_keys_fingerprint")
+        db.execSQL("CREATE INDEX pq_sender_keys_fingerprint ON pq_sender_keys (fingerprint)")
+
+        db.execSQL("DROP TABLE IF EXISTS pq_key_recipients")
+        db.execSQL(
+            "CREATE TABLE pq_key_recipients (" +
+                "id INTEGER PRIMARY KEY," +
+                "address TEXT NOT NULL," +
+                "fingerprint TEXT NOT NULL" +
+                ")"
+        )
+
+        db.execSQL("DROP INDEX IF EXISTS pq_key_recipients_address_fingerprint")
+        db.execSQL(
+            "CREATE UNIQUE INDEX pq_key_recipients_address_fingerprint ON pq_key_recipients (address, fingerprint)"
+        )
+    }
+}
@@ -0,0 +1,17 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add 'fulltext_index_queue' table to keep track of messages whose full-text search entry still needs to be created.
+ */
+internal class MigrationTo87(private val db: SQLiteDatabase) {
+    fun addFulltextIndexQueueTable() {
+        db.execSQL("DROP TABLE IF EXISTS fulltext_index_queue")
+        db.execSQL(
+            "CREATE TABLE fulltext_index_queue (" +
+                "message_id INTEGER PRIMARY KEY NOT NULL REFERENCES messages(id) ON DELETE CASCADE" +
+                ")"
+        )
+    }
+}
@@ -0,0 +1,17 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Include the column on the other side of the thread lookup in the 'threads' indexes, so the joins done when building
+ * the threaded message list can be answered from the indexes alone.
+ */
+internal class MigrationTo88(private val db: SQLiteDatabase) {
+    fun addCoveringThreadIndexes() {
+        db.execSQL("DROP INDEX IF EXISTS threads_message_id")
+        db.execSQL("CREATE INDEX IF NOT EXISTS threads_message_id ON threads (message_id, root)")
+
+        db.execSQL("DROP INDEX IF EXISTS threads_root")
+        db.execSQL("CREATE INDEX IF NOT EXISTS threads_root ON threads (root, message_id)")
+    }
+}
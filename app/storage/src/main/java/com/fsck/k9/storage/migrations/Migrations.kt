@@ -30,5 +30,9 @@ object Migrations {
         if (oldVersion < 82) MigrationTo82(db).addNewMessageColumn()
         if (oldVersion < 83) MigrationTo83(db, migrationsHelper).rewriteHighestKnownUid()
         if (oldVersion < 84) MigrationTo84(db).rewriteAddresses()
+        if (oldVersion < 85) MigrationTo85(db).addPqSignatureColumns()
+        if (oldVersion < 86) MigrationTo86(db).addPqKeyringTables()
+        if (oldVersion < 87) MigrationTo87(db).addFulltextIndexQueueTable()
+        if (oldVersion < 88) MigrationTo88(db).addCoveringThreadIndexes()
     }
 }
@@ -0,0 +1,40 @@
+package com.fsck.k9.storage.messages
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import com.fsck.k9.helper.getLongOrThrow
+import com.fsck.k9.helper.getStringOrNull
+import com.fsck.k9.helper.map
+
+fun SQLiteDatabase.createFulltextEntry(messageId: Long, fulltext: String) {
+    val values = ContentValues().apply {
+        put("docid", messageId)
+        put("fulltext", fulltext)
+    }
+
+    insert("messages_fulltext", null, values)
+}
+
+fun SQLiteDatabase.readFulltextEntries(): Map<Long, String?> {
+    return rawQuery("SELECT docid, fulltext FROM messages_fulltext", null).use { cursor ->
+        cursor.map {
+            cursor.getLongOrThrow("docid") to cursor.getStringOrNull("fulltext")
+        }.toMap()
+    }
+}
+
+fun SQLiteDatabase.createFulltextIndexQueueEntry(messageId: Long) {
+    val values = ContentValues().apply {
+        put("message_id", messageId)
+    }
+
+    insert("fulltext_index_queue", null, values)
+}
+
+fun SQLiteDatabase.readFulltextIndexQueue(): List<Long> {
+    return rawQuery("SELECT message_id FROM fulltext_index_queue", null).use { cursor ->
+        cursor.map {
+            cursor.getLongOrThrow("message_id")
+        }
+    }
+}
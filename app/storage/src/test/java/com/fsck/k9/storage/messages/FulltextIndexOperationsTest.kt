@@ -0,0 +1,76 @@
+package com.fsck.k9.storage.messages
+
+import com.fsck.k9.mailstore.PendingFulltextMessage
+import com.fsck.k9.storage.RobolectricTest
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class FulltextIndexOperationsTest : RobolectricTest() {
+    private val sqliteDatabase = createDatabase()
+    private val lockableDatabase = createLockableDatabaseMock(sqliteDatabase)
+    private val fulltextIndexOperations = FulltextIndexOperations(lockableDatabase)
+
+    @Test
+    fun `get messages pending fulltext indexing`() {
+        val messageId1 = sqliteDatabase.createMessage(folderId = 1, uid = "uid1", date = 1000L, messagePartId = 1)
+        val messageId2 = sqliteDatabase.createMessage(folderId = 2, uid = "uid2", date = 3000L, messagePartId = 2)
+        val messageId3 = sqliteDatabase.createMessage(folderId = 1, uid = "uid3", date = 2000L, messagePartId = 3)
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid4", date = 4000L)
+        sqliteDatabase.createFulltextIndexQueueEntry(messageId1)
+        sqliteDatabase.createFulltextIndexQueueEntry(messageId2)
+        sqliteDatabase.createFulltextIndexQueueEntry(messageId3)
+
+        val result = fulltextIndexOperations.getMessagesPendingFulltextIndexing(limit = 2)
+
+        assertThat(result).containsExactly(
+            PendingFulltextMessage(messageId = messageId2, folderId = 2, messagePartId = 2),
+            PendingFulltextMessage(messageId = messageId3, folderId = 1, messagePartId = 3)
+        ).inOrder()
+    }
+
+    @Test
+    fun `get pending fulltext index count`() {
+        val messageId1 = sqliteDatabase.createMessage(folderId = 1, uid = "uid1")
+        val messageId2 = sqliteDatabase.createMessage(folderId = 1, uid = "uid2")
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid3")
+        sqliteDatabase.createFulltextIndexQueueEntry(messageId1)
+        sqliteDatabase.createFulltextIndexQueueEntry(messageId2)
+
+        val result = fulltextIndexOperations.getPendingFulltextIndexCount()
+
+        assertThat(result).isEqualTo(2)
+    }
+
+    @Test
+    fun `save fulltext entries`() {
+        val messageId1 = sqliteDatabase.createMessage(folderId = 1, uid = "uid1")
+        val messageId2 = sqliteDatabase.createMessage(folderId = 1, uid = "uid2")
+        val messageId3 = sqliteDatabase.createMessage(folderId = 1, uid = "uid3")
+        sqliteDatabase.createFulltextIndexQueueEntry(messageId1)
+        sqliteDatabase.createFulltextIndexQueueEntry(messageId2)
+        sqliteDatabase.createFulltextIndexQueueEntry(messageId3)
+
+        fulltextIndexOperations.saveFulltextEntries(
+            mapOf(
+                PendingFulltextMessage(messageId1, folderId = 1, messagePartId = 0) to "Text",
+                PendingFulltextMessage(messageId2, folderId = 1, messagePartId = 0) to null
+            )
+        )
+
+        assertThat(sqliteDatabase.readFulltextEntries()).containsExactly(messageId1, "Text")
+        assertThat(sqliteDatabase.readFulltextIndexQueue()).containsExactly(messageId3)
+    }
+
+    @Test
+    fun `save fulltext entry of message that has been replaced in the meantime`() {
+        val messageId = sqliteDatabase.createMessage(folderId = 1, uid = "uid1", messagePartId = 1)
+        sqliteDatabase.createFulltextIndexQueueEntry(messageId)
+        val pendingMessage = fulltextIndexOperations.getMessagesPendingFulltextIndexing(limit = 1).single()
+        sqliteDatabase.execSQL("UPDATE messages SET message_part_id = 2 WHERE id = ?", arrayOf(messageId))
+
+        fulltextIndexOperations.saveFulltextEntries(mapOf(pendingMessage to "Old text"))
+
+        assertThat(sqliteDatabase.readFulltextEntries()).isEmpty()
+        assertThat(sqliteDatabase.readFulltextIndexQueue()).containsExactly(messageId)
+    }
+}
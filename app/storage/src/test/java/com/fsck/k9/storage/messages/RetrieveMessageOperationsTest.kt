@@ -50,6 +50,21 @@ class RetrieveMessageOperationsTest : RobolectricTest() {
         )
     }
 
+    @Test
+    fun `get message ids`() {
+        val messageId1 = sqliteDatabase.createMessage(folderId = 1, uid = "uid1")
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid2")
+        val messageId3 = sqliteDatabase.createMessage(folderId = 1, uid = "uid3")
+        sqliteDatabase.createMessage(folderId = 2, uid = "uid1")
+
+        val serverIdToDatabaseIdMapping = retrieveMessageOperations.getMessageIds(
+            folderId = 1,
+            messageServerIds = listOf("uid1", "uid3", "uid4")
+        )
+
+        assertThat(serverIdToDatabaseIdMapping).isEqualTo(mapOf("uid1" to messageId1, "uid3" to messageId3))
+    }
+
     @Test
     fun `get all message server ids`() {
         sqliteDatabase.createMessage(folderId = 1, uid = "uid1")
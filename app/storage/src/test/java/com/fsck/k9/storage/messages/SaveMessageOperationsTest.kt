@@ -2,23 +2,34 @@ package com.fsck.k9.storage.messages
 
 import com.fsck.k9.K9
 import com.fsck.k9.mail.Address
+import com.fsck.k9.mail.Body
 import com.fsck.k9.mail.Flag
 import com.fsck.k9.mail.Message
 import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.MessagingException
 import com.fsck.k9.mail.Multipart
 import com.fsck.k9.mail.Part
 import com.fsck.k9.mail.buildMessage
+import com.fsck.k9.mail.internet.BinaryTempFileBody
+import com.fsck.k9.mailstore.LockableDatabase
 import com.fsck.k9.mailstore.SaveMessageData
 import com.fsck.k9.mailstore.StorageManager
 import com.fsck.k9.message.extractors.BasicPartInfoExtractor
 import com.fsck.k9.message.extractors.PreviewResult
 import com.fsck.k9.storage.RobolectricTest
 import com.google.common.truth.Truth.assertThat
+import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
+import java.io.InputStream
+import java.io.OutputStream
 import java.util.Stack
 import org.junit.After
+import org.junit.Assert.fail
 import org.junit.Test
+import org.mockito.ArgumentMatchers
+import org.mockito.kotlin.any
 import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doAnswer
 import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.eq
 import org.mockito.kotlin.mock
@@ -360,6 +371,159 @@ class SaveMessageOperationsTest : RobolectricTest() {
         assertThat(thread.messageId).isEqualTo(message.id)
     }
 
+    @Test
+    fun `save multiple remote messages`() {
+        val messageData1 = buildMessage {
+            header("Message-ID", "<msg0001@domain.example>")
+
+            textBody("Text 1")
+        }.toSaveMessageData()
+        val messageData2 = buildMessage {
+            header("Message-ID", "<msg0002@domain.example>")
+            header("In-Reply-To", "<msg0001@domain.example>")
+
+            textBody("Text 2")
+        }.toSaveMessageData()
+
+        saveMessageOperations.saveRemoteMessages(
+            folderId = 1,
+            messages = mapOf("uid1" to messageData1, "uid2" to messageData2)
+        )
+
+        val messages = sqliteDatabase.readMessages()
+        assertThat(messages.map { it.uid }).containsExactly("uid1", "uid2")
+        assertThat(messages.map { it.empty }).containsExactly(0, 0)
+        assertThat(sqliteDatabase.readMessageParts()).hasSize(2)
+
+        val message1 = messages.first { it.uid == "uid1" }
+        val message2 = messages.first { it.uid == "uid2" }
+        val threads = sqliteDatabase.readThreads()
+        assertThat(threads).hasSize(2)
+        val thread1 = threads.first { it.messageId == message1.id }
+        val thread2 = threads.first { it.messageId == message2.id }
+        assertThat(thread1.root).isEqualTo(thread1.id)
+        assertThat(thread2.root).isEqualTo(thread1.id)
+        assertThat(thread2.parent).isEqualTo(thread1.id)
+    }
+
+    @Test
+    fun `failed save of multiple remote messages should not leave body files behind`() {
+        val tempDirectory = createRandomTempDirectory()
+        BinaryTempFileBody.setTempDirectory(tempDirectory)
+        val messageData1 = buildMessage {
+            header("Message-ID", "<msg0001@domain.example>")
+
+            textBody("a".repeat(MAX_BODY_SIZE_FOR_DATABASE.toInt() + 1))
+        }.toSaveMessageData()
+        val messageData2 = buildMessage {
+            header("Message-ID", "<msg0002@domain.example>")
+        }.apply {
+            body = UnsizedBody()
+        }.toSaveMessageData(downloadState = MessageDownloadState.FULL)
+
+        try {
+            saveMessageOperations.saveRemoteMessages(
+                folderId = 1,
+                messages = mapOf("uid1" to messageData1, "uid2" to messageData2)
+            )
+            fail("Expected exception")
+        } catch (e: IllegalStateException) {
+            // Expected, the body of the second message isn't SizeAware
+        }
+
+        try {
+            assertThat(messagePartDirectory.listFiles()).isEmpty()
+            assertThat(tempDirectory.listFiles()).isEmpty()
+        } finally {
+            tempDirectory.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun `failed commit should undo moves of body files`() {
+        val tempDirectory = createRandomTempDirectory()
+        BinaryTempFileBody.setTempDirectory(tempDirectory)
+        val bodySize = MAX_BODY_SIZE_FOR_DATABASE.toInt() + 1
+        val binaryTempFileBody = BinaryTempFileBody("7bit").apply {
+            outputStream.use { it.write(ByteArray(bodySize) { 'A'.code.toByte() }) }
+        }
+        val bodyFile = binaryTempFileBody.file
+        val messageData1 = buildMessage {
+            header("Message-ID", "<msg0001@domain.example>")
+            header("Content-Type", "text/plain")
+        }.apply {
+            body = binaryTempFileBody
+        }.toSaveMessageData()
+        val messageData2 = buildMessage {
+            header("Message-ID", "<msg0002@domain.example>")
+
+            textBody("a".repeat(bodySize))
+        }.toSaveMessageData()
+        val failingLockableDatabase = mock<LockableDatabase> {
+            on {
+                execute(ArgumentMatchers.anyBoolean(), any<LockableDatabase.DbCallback<Any>>())
+            } doAnswer { stubbing ->
+                val callback: LockableDatabase.DbCallback<Any> = stubbing.getArgument(1)
+                callback.doDbWork(sqliteDatabase)
+                throw MessagingException("Commit failed")
+            }
+        }
+        val saveMessageOperations = SaveMessageOperations(
+            failingLockableDatabase,
+            attachmentFileManager,
+            basicPartInfoExtractor,
+            threadMessageOperations
+        )
+
+        try {
+            saveMessageOperations.saveRemoteMessages(
+                folderId = 1,
+                messages = mapOf("uid1" to messageData1, "uid2" to messageData2)
+            )
+            fail("Expected exception")
+        } catch (e: MessagingException) {
+            // Expected
+        }
+
+        try {
+            assertThat(messagePartDirectory.listFiles()).isEmpty()
+            assertThat(tempDirectory.listFiles()).asList().containsExactly(bodyFile)
+            assertThat(bodyFile.length()).isEqualTo(bodySize.toLong())
+        } finally {
+            tempDirectory.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun `save message with deferred fulltext indexing should add message to indexing queue`() {
+        val messageData = buildMessage {
+            textBody("Text")
+        }.toSaveMessageData(isFulltextIndexingDeferred = true)
+
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val message = sqliteDatabase.readMessages().first()
+        assertThat(sqliteDatabase.readFulltextIndexQueue()).containsExactly(message.id)
+        assertThat(sqliteDatabase.readFulltextEntries()).isEmpty()
+    }
+
+    @Test
+    fun `replace message with deferred fulltext indexing should remove outdated fulltext entry`() {
+        val existingMessageData = buildMessage {
+            textBody("Old text")
+        }.toSaveMessageData(textForSearchIndex = "Old text")
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", existingMessageData)
+        val messageData = buildMessage {
+            textBody("New text")
+        }.toSaveMessageData(isFulltextIndexingDeferred = true)
+
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val message = sqliteDatabase.readMessages().first()
+        assertThat(sqliteDatabase.readFulltextIndexQueue()).containsExactly(message.id)
+        assertThat(sqliteDatabase.readFulltextEntries()).isEmpty()
+    }
+
     @Test
     fun `save local message`() {
         val messageData = buildMessage {
@@ -505,7 +669,8 @@ class SaveMessageOperationsTest : RobolectricTest() {
         attachmentCount: Int = 0,
         previewResult: PreviewResult = PreviewResult.none(),
         textForSearchIndex: String? = null,
-        encryptionType: String? = null
+        encryptionType: String? = null,
+        isFulltextIndexingDeferred: Boolean = false
     ): SaveMessageData {
         return SaveMessageData(
             message = this,
@@ -516,7 +681,8 @@ class SaveMessageOperationsTest : RobolectricTest() {
             attachmentCount,
             previewResult,
             textForSearchIndex,
-            encryptionType
+            encryptionType,
+            isFulltextIndexingDeferred
         )
     }
 
@@ -548,4 +714,14 @@ class SaveMessageOperationsTest : RobolectricTest() {
     }
 
     private fun Message.boundary(): String? = (body as Multipart).boundary
+
+    private class UnsizedBody : Body {
+        override fun getInputStream(): InputStream = ByteArrayInputStream(ByteArray(0))
+
+        override fun getOutputStream(): OutputStream = throw UnsupportedOperationException()
+
+        override fun setEncoding(encoding: String) = Unit
+
+        override fun writeTo(out: OutputStream) = Unit
+    }
 }
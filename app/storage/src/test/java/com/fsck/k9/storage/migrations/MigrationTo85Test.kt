@@ -0,0 +1,59 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+import androidx.core.content.contentValuesOf
+import com.fsck.k9.storage.RobolectricTest
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class MigrationTo85Test : RobolectricTest() {
+    private val database = createV84Database()
+    private val migration = MigrationTo85(database)
+
+    @Test
+    fun `add pq signature columns`() {
+        migration.addPqSignatureColumns()
+
+        assertThat(database.getColumnNames("messages")).containsAtLeast(
+            "pq_signature_valid",
+            "pq_signature_algorithm",
+            "pq_signature_content_hash"
+        )
+    }
+
+    @Test
+    fun `existing messages should not have a pq signature result`() {
+        database.insert("messages", null, contentValuesOf("subject" to "Test"))
+
+        migration.addPqSignatureColumns()
+
+        database.rawQuery(
+            "SELECT subject, pq_signature_valid, pq_signature_algorithm, pq_signature_content_hash FROM messages",
+            null
+        ).use { cursor ->
+            assertThat(cursor.moveToFirst()).isTrue()
+            assertThat(cursor.getString(0)).isEqualTo("Test")
+            assertThat(cursor.isNull(1)).isTrue()
+            assertThat(cursor.isNull(2)).isTrue()
+            assertThat(cursor.isNull(3)).isTrue()
+        }
+    }
+
+    private fun createV84Database(): SQLiteDatabase {
+        return SQLiteDatabase.create(null).apply {
+            // Only the columns this migration touches are relevant
+            execSQL("CREATE TABLE messages (id INTEGER PRIMARY KEY, subject TEXT)")
+            version = 84
+        }
+    }
+
+    private fun SQLiteDatabase.getColumnNames(table: String): List<String> {
+        return rawQuery("PRAGMA table_info($table)", null).use { cursor ->
+            val columnNames = mutableListOf<String>()
+            while (cursor.moveToNext()) {
+                columnNames.add(cursor.getString(cursor.getColumnIndexOrThrow("name")))
+            }
+            columnNames
+        }
+    }
+}
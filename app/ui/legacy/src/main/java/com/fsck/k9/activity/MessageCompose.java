@@ -1682,6 +1682,11 @@ public class MessageCompose extends K9Activity implements OnClickListener,
             Toast.makeText(MessageCompose.this, R.string.status_invalid_id_error, Toast.LENGTH_LONG).show();
         }
 
+        @Override
+        public void onPQSignatureVerificationFinished(MessageViewInfo messageViewInfo) {
+            // nothing to do here, we don't display the signature status
+        }
+
         @Override
         public void setLoadingProgress(int current, int max) {
             // nvm - we don't have a progress bar
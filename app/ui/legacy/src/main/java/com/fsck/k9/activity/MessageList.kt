@@ -954,6 +954,9 @@ open class MessageList :
         } else if (id == R.id.mark_all_as_read) {
             messageListFragment!!.confirmMarkAllAsRead()
             return true
+        } else if (id == R.id.verify_pq_signatures) {
+            messageListFragment!!.onVerifyPQSignatures()
+            return true
         } else if (id == R.id.next_message) { // MessageView
             showNextMessage()
             return true
@@ -1200,11 +1203,22 @@ open class MessageList :
             menu.findItem(R.id.expunge).isVisible = false
             menu.findItem(R.id.empty_trash).isVisible = false
             menu.findItem(R.id.mark_all_as_read).isVisible = false
+            menu.findItem(R.id.verify_pq_signatures).isVisible = false
         } else {
             menu.findItem(R.id.set_sort).isVisible = true
             menu.findItem(R.id.select_all).isVisible = true
             menu.findItem(R.id.compose).isVisible = true
             menu.findItem(R.id.mark_all_as_read).isVisible = messageListFragment!!.isMarkAllAsReadSupported
+            menu.findItem(R.id.verify_pq_signatures).apply {
+                isVisible = true
+                setTitle(
+                    if (messageListFragment!!.isPQSignatureVerificationRunning) {
+                        R.string.verify_pq_signatures_cancel_action
+                    } else {
+                        R.string.verify_pq_signatures_action
+                    }
+                )
+            }
 
             if (!messageListFragment!!.isSingleAccountMode) {
                 menu.findItem(R.id.expunge).isVisible = false
@@ -1,13 +1,8 @@
 package com.fsck.k9.activity;
 
 
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentSender;
@@ -30,15 +25,12 @@ import com.fsck.k9.controller.MessageReference;
 import com.fsck.k9.controller.MessagingController;
 import com.fsck.k9.controller.MessagingListener;
 import com.fsck.k9.controller.SimpleMessagingListener;
+import com.fsck.k9.crypto.PQSignatureResult;
+import com.fsck.k9.crypto.PQSignatureVerifier;
 import com.fsck.k9.helper.RetainFragment;
-import com.fsck.k9.mail.Body;
-import com.fsck.k9.mail.BodyPart;
 import com.fsck.k9.mail.Flag;
 import com.fsck.k9.mail.MessagingException;
-import com.fsck.k9.mail.Multipart;
-import com.fsck.k9.mail.internet.MessageExtractor;
 import com.fsck.k9.mail.internet.MimeMultipart;
-import com.fsck.k9.mailstore.BinaryMemoryBody;
 import com.fsck.k9.mailstore.LocalMessage;
 import com.fsck.k9.mailstore.MessageCryptoAnnotations;
 import com.fsck.k9.mailstore.MessageViewInfo;
@@ -48,10 +40,8 @@ import com.fsck.k9.ui.crypto.MessageCryptoHelper;
 import com.fsck.k9.ui.crypto.OpenPgpApiFactory;
 import com.fsck.k9.ui.message.LocalMessageExtractorLoader;
 import com.fsck.k9.ui.message.LocalMessageLoader;
-import kotlin.text.MatchResult;
-import kotlin.text.Regex;
+import com.fsck.k9.ui.message.PQSignatureVerificationLoader;
 import org.openintents.openpgp.OpenPgpDecryptionResult;
-import org.openquantumsafe.Signature;
 import timber.log.Timber;
 
 
@@ -83,7 +73,8 @@ import timber.log.Timber;
 public class MessageLoaderHelper {
     private static final int LOCAL_MESSAGE_LOADER_ID = 1;
     private static final int DECODE_MESSAGE_LOADER_ID = 2;
-    private static final String ALGORITHM_REGEX = "------ begin post quantum signature using ([a-z0-9-+]+) ------";
+    private static final int PQ_SIGNATURE_LOADER_ID = 3;
+    private static final String ARG_TRUST_PQ_SENDER_KEY = "trust_pq_sender_key";
 
 
     // injected state - all of this may be cleared to avoid data leakage!
@@ -103,6 +94,7 @@ public class MessageLoaderHelper {
     private LocalMessage localMessage;
     private MessageCryptoAnnotations messageCryptoAnnotations;
     private OpenPgpDecryptionResult cachedDecryptionResult;
+    private MessageViewInfo pqPendingMessageViewInfo;
 
     private MessageCryptoHelper messageCryptoHelper;
 
@@ -171,6 +163,7 @@ public class MessageLoaderHelper {
         if (messageCryptoHelper != null) {
             messageCryptoHelper.cancelIfRunning();
         }
+        cancelAndClearPQSignatureLoader();
 
         callback = null;
         context = null;
@@ -261,63 +254,6 @@ public class MessageLoaderHelper {
         startOrResumeDecodeMessage();
     }
 
-    /**
-     * Main part of PQ signature detection. Here the public key and signature are extracted from the body, the
-     * headers/footers and new lines are removed. Finally a temporary signature is created to verify the message.
-     *
-     * @param body The body of the message to extract the signature from
-     * @return if the message has a valid PQ signature
-     */
-    private boolean beginPQSignatureDetection(final Body body) {
-        String pqEmailMsg = localMessage.getPreview();
-
-        BodyPart pqSigBody = ((Multipart) body).getBodyPart(1);
-        BodyPart pqKeyBody = ((Multipart) body).getBodyPart(2);
-
-        // TODO check pqSigBody.getHeader(...) if it is actually the signature/key
-
-        BinaryMemoryBody pqSigBin = (BinaryMemoryBody) pqSigBody.getBody();
-        BinaryMemoryBody pqKeyBin = (BinaryMemoryBody) pqKeyBody.getBody();
-
-        String pqSigFile = new String(pqSigBin.getData());
-        String pqKeyFile = new String(pqKeyBin.getData());
-
-        String pqKey =
-                MessageExtractor.extractPQKey(pqKeyFile, Objects.requireNonNull(account.getPqSupportedAlgs()));
-        String pqSig =
-                MessageExtractor.extractPQSignature(pqSigFile, Objects.requireNonNull(account.getPqSupportedAlgs()));
-
-        @SuppressLint({ "NewApi", "LocalSuppress" }) byte[] pqKeyBytes = Base64.getDecoder().decode(pqKey);
-        @SuppressLint({ "NewApi", "LocalSuppress" }) byte[] pqSigBytes = Base64.getDecoder().decode(pqSig);
-
-        Signature signature = new Signature(getMessagePQSignatureAlg(body));
-
-        return signature.verify(pqEmailMsg.getBytes(), pqSigBytes, pqKeyBytes);
-    }
-
-    /**
-     * Fetches the algorithm type from the header of the PQ signature. This is done by comparing it to the supported
-     * algorithms.
-     *
-     * @param body
-     * @return
-     */
-    private String getMessagePQSignatureAlg(final Body body) {
-        BodyPart pqSigBody = ((Multipart) body).getBodyPart(1);
-        BinaryMemoryBody pqSigBin = (BinaryMemoryBody) pqSigBody.getBody();
-        String pqSigFile = new String(pqSigBin.getData()).toLowerCase();
-        Pattern p = Pattern.compile(ALGORITHM_REGEX);
-        Matcher m = p.matcher(pqSigFile);
-        if (m.find()) {
-            for (String supportedAlg : account.getPqSupportedAlgs()) {
-                if (supportedAlg.toLowerCase().equals(m.group(1))) {
-                    return supportedAlg;
-                }
-            }
-        }
-        return "NO_MATCH";
-    }
-
     private void onLoadMessageFromDatabaseFailed() {
         if (callback == null) {
             throw new IllegalStateException("unexpected call when callback is already detached");
@@ -454,14 +390,6 @@ public class MessageLoaderHelper {
     }
 
     private void onDecodeMessageFinished(MessageViewInfo messageViewInfo) {
-        try {
-            // When decoding the message is finished, if it has been deemed as PQ signed the correct parameters are set
-            MimeMultipart body = (MimeMultipart) localMessage.getBody();
-            if (body.getBodyParts().size() == 3) {
-                messageViewInfo.isPQValidSigned = beginPQSignatureDetection(localMessage.getBody());
-                messageViewInfo.pqSignatureAlgorithm = getMessagePQSignatureAlg(body);
-            }
-        } catch (ClassCastException ignored) {}
         if (callback == null) {
             throw new IllegalStateException("unexpected call when callback is already detached");
         }
@@ -480,7 +408,15 @@ public class MessageLoaderHelper {
             }
         }
 
+        // PQ signatures are verified by a separate loader, the message is shown in a "verifying" state until then
+        boolean isPQSigned = !onlyLoadMetadata && PQSignatureVerifier.isPQSignedMessage(localMessage);
+        messageViewInfo.isPQVerificationPending = isPQSigned;
+
         callback.onMessageViewInfoLoadFinished(messageViewInfo);
+
+        if (isPQSigned) {
+            startOrResumePQSignatureVerification(messageViewInfo);
+        }
     }
 
     @NonNull
@@ -491,6 +427,7 @@ public class MessageLoaderHelper {
 
     private void cancelAndClearDecodeLoader() {
         loaderManager.destroyLoader(DECODE_MESSAGE_LOADER_ID);
+        cancelAndClearPQSignatureLoader();
     }
 
     private LoaderCallbacks<MessageViewInfo> decodeMessageLoaderCallback = new LoaderCallbacks<MessageViewInfo>() {
@@ -530,6 +467,90 @@ public class MessageLoaderHelper {
     };
 
 
+    // verify post-quantum signature
+
+    private void startOrResumePQSignatureVerification(MessageViewInfo messageViewInfo) {
+        pqPendingMessageViewInfo = messageViewInfo;
+
+        PQSignatureVerificationLoader loader =
+                (PQSignatureVerificationLoader) loaderManager.<PQSignatureResult>getLoader(PQ_SIGNATURE_LOADER_ID);
+        boolean isLoaderStale = (loader == null) || !loader.isCreatedFor(localMessage);
+
+        if (isLoaderStale) {
+            Timber.d("Creating new PQ signature loader");
+            loaderManager.restartLoader(PQ_SIGNATURE_LOADER_ID, null, pqSignatureLoaderCallback);
+        } else {
+            Timber.d("Reusing PQ signature loader");
+            loaderManager.initLoader(PQ_SIGNATURE_LOADER_ID, null, pqSignatureLoaderCallback);
+        }
+    }
+
+    /**
+     * Replaces the stored PQ key of the sender with the key included in the message and verifies the signature again.
+     */
+    @UiThread
+    public void asyncTrustPQSenderKey(MessageViewInfo messageViewInfo) {
+        pqPendingMessageViewInfo = messageViewInfo;
+
+        Bundle args = new Bundle();
+        args.putBoolean(ARG_TRUST_PQ_SENDER_KEY, true);
+        loaderManager.restartLoader(PQ_SIGNATURE_LOADER_ID, args, pqSignatureLoaderCallback);
+    }
+
+    private void onPQSignatureVerificationFinished(PQSignatureResult signatureResult) {
+        if (callback == null) {
+            throw new IllegalStateException("unexpected call when callback is already detached");
+        }
+
+        MessageViewInfo messageViewInfo = pqPendingMessageViewInfo;
+        if (messageViewInfo == null) {
+            return;
+        }
+        pqPendingMessageViewInfo = null;
+
+        messageViewInfo.isPQVerificationPending = false;
+        messageViewInfo.isPQValidSigned = signatureResult.isValidSigned;
+        messageViewInfo.pqSignatureAlgorithm = signatureResult.algorithm;
+        messageViewInfo.isPQKeyMismatch = signatureResult.isKeyMismatch;
+
+        callback.onPQSignatureVerificationFinished(messageViewInfo);
+    }
+
+    private void cancelAndClearPQSignatureLoader() {
+        pqPendingMessageViewInfo = null;
+        loaderManager.destroyLoader(PQ_SIGNATURE_LOADER_ID);
+    }
+
+    private LoaderCallbacks<PQSignatureResult> pqSignatureLoaderCallback = new LoaderCallbacks<PQSignatureResult>() {
+        @Override
+        public Loader<PQSignatureResult> onCreateLoader(int id, Bundle args) {
+            if (id != PQ_SIGNATURE_LOADER_ID) {
+                throw new IllegalStateException("loader id must be pq signature loader id");
+            }
+            boolean trustSenderKey = args != null && args.getBoolean(ARG_TRUST_PQ_SENDER_KEY);
+            return new PQSignatureVerificationLoader(context, localMessage,
+                    Objects.requireNonNull(account.getPqSupportedAlgs()), trustSenderKey);
+        }
+
+        @Override
+        public void onLoadFinished(Loader<PQSignatureResult> loader, PQSignatureResult signatureResult) {
+            if (loader.getId() != PQ_SIGNATURE_LOADER_ID) {
+                throw new IllegalStateException("loader id must be pq signature loader id");
+            }
+
+            onPQSignatureVerificationFinished(signatureResult);
+        }
+
+        @Override
+        public void onLoaderReset(Loader<PQSignatureResult> loader) {
+            if (loader.getId() != PQ_SIGNATURE_LOADER_ID) {
+                throw new IllegalStateException("loader id must be pq signature loader id");
+            }
+            // Do nothing
+        }
+    };
+
+
     // download missing body
 
     private void startDownloadingMessageBody(boolean downloadComplete) {
@@ -600,6 +621,8 @@ public class MessageLoaderHelper {
 
         void onMessageViewInfoLoadFailed(MessageViewInfo messageViewInfo);
 
+        void onPQSignatureVerificationFinished(MessageViewInfo messageViewInfo);
+
         void setLoadingProgress(int current, int max);
 
         void startIntentSenderForMessageLoaderHelper(IntentSender si, int requestCode, Intent fillIntent, int flagsMask,
@@ -27,6 +27,7 @@ public final class MLFProjectionInfo {
             MessageColumns.FOLDER_ID,
             MessageColumns.PREVIEW_TYPE,
             MessageColumns.PREVIEW,
+            MessageColumns.PQ_SIGNATURE_VALID,
             ThreadColumns.ROOT,
             SpecialColumns.ACCOUNT_UUID,
             SpecialColumns.FOLDER_SERVER_ID,
@@ -50,10 +51,11 @@ public final class MLFProjectionInfo {
     public static final int FOLDER_ID_COLUMN = 13;
     public static final int PREVIEW_TYPE_COLUMN = 14;
     public static final int PREVIEW_COLUMN = 15;
-    public static final int THREAD_ROOT_COLUMN = 16;
-    public static final int ACCOUNT_UUID_COLUMN = 17;
-    public static final int FOLDER_SERVER_ID_COLUMN = 18;
-    public static final int THREAD_COUNT_COLUMN = 19;
+    public static final int PQ_SIGNATURE_VALID_COLUMN = 16;
+    public static final int THREAD_ROOT_COLUMN = 17;
+    public static final int ACCOUNT_UUID_COLUMN = 18;
+    public static final int FOLDER_SERVER_ID_COLUMN = 19;
+    public static final int THREAD_COUNT_COLUMN = 20;
 
     public static final String[] PROJECTION = Arrays.copyOf(THREADED_PROJECTION,
             THREAD_COUNT_COLUMN);
@@ -28,8 +28,11 @@ import com.fsck.k9.ui.R
 import com.fsck.k9.ui.helper.RelativeDateTimeFormatter
 import com.fsck.k9.ui.messagelist.MessageListAppearance
 import com.fsck.k9.ui.messagelist.MessageListItem
+import com.fsck.k9.ui.messagelist.PQSignatureState
 import com.fsck.k9.ui.resolveColorAttribute
 import com.fsck.k9.ui.resolveDrawableAttribute
+import java.util.Collections
+import java.util.WeakHashMap
 import kotlin.math.max
 
 class MessageListAdapter internal constructor(
@@ -51,11 +54,22 @@ class MessageListAdapter internal constructor(
     private val selectedItemBackgroundColor: Int = theme.resolveColorAttribute(R.attr.messageListSelectedBackgroundColor)
     private val readItemBackgroundColor: Int = theme.resolveColorAttribute(R.attr.messageListReadItemBackgroundColor)
     private val unreadItemBackgroundColor: Int = theme.resolveColorAttribute(R.attr.messageListUnreadItemBackgroundColor)
+    private val pqSignatureValidColor: Int = theme.resolveColorAttribute(R.attr.openpgp_green)
+    private val pqSignatureInvalidColor: Int = theme.resolveColorAttribute(R.attr.openpgp_red)
+
+    // Views created by this adapter, so they can be rebound without invalidating the whole list
+    private val itemViews: MutableSet<View> = Collections.newSetFromMap(WeakHashMap())
 
     var messages: List<MessageListItem> = emptyList()
         set(value) {
+            val oldMessages = field
             field = value
-            notifyDataSetChanged()
+
+            if (hasSameEntries(oldMessages, value)) {
+                rebindChangedViews(oldMessages)
+            } else {
+                notifyDataSetChanged()
+            }
         }
 
     var activeMessage: MessageReference? = null
@@ -128,10 +142,30 @@ class MessageListAdapter internal constructor(
         holder.flagged.setOnClickListener(flagClickListener)
 
         view.tag = holder
+        itemViews.add(view)
 
         return view
     }
 
+    private fun hasSameEntries(oldMessages: List<MessageListItem>, newMessages: List<MessageListItem>): Boolean {
+        return oldMessages.size == newMessages.size &&
+            oldMessages.indices.all { index -> oldMessages[index].uniqueId == newMessages[index].uniqueId }
+    }
+
+    // The entries and their order didn't change. So the list layout stays the same and only views displaying a changed
+    // message need to be updated.
+    private fun rebindChangedViews(oldMessages: List<MessageListItem>) {
+        for (view in itemViews) {
+            val position = (view.tag as MessageViewHolder).position
+            if (position !in messages.indices) continue
+
+            val message = messages[position]
+            if (message != oldMessages[position]) {
+                bindView(view, context, message)
+            }
+        }
+    }
+
     private fun bindView(view: View, context: Context, message: MessageListItem) {
         val isSelected = selected.contains(message.uniqueId)
         val isActive = isActiveMessage(message)
@@ -198,6 +232,8 @@ class MessageListAdapter internal constructor(
             } else {
                 holder.status.isVisible = false
             }
+
+            updateWithPQSignatureState(holder, pqSignatureState)
         }
     }
 
@@ -280,6 +316,20 @@ class MessageListAdapter internal constructor(
         }
     }
 
+    private fun updateWithPQSignatureState(holder: MessageViewHolder, pqSignatureState: PQSignatureState) {
+        when (pqSignatureState) {
+            PQSignatureState.NONE -> holder.pqSignature.isVisible = false
+            PQSignatureState.VALID -> {
+                holder.pqSignature.setColorFilter(pqSignatureValidColor)
+                holder.pqSignature.isVisible = true
+            }
+            PQSignatureState.INVALID -> {
+                holder.pqSignature.setColorFilter(pqSignatureInvalidColor)
+                holder.pqSignature.isVisible = true
+            }
+        }
+    }
+
     private fun getPreview(isMessageEncrypted: Boolean, previewText: String): String {
         return if (isMessageEncrypted) {
             res.getString(R.string.preview_encrypted)
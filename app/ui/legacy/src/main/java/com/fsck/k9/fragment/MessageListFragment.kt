@@ -10,6 +10,7 @@ import android.view.Menu
 import android.view.MenuItem
 import android.view.View
 import android.view.ViewGroup
+import android.widget.AbsListView
 import android.widget.AdapterView
 import android.widget.AdapterView.OnItemClickListener
 import android.widget.AdapterView.OnItemLongClickListener
@@ -89,6 +90,7 @@ class MessageListFragment :
     private var account: Account? = null
     private var currentFolder: FolderInfoHolder? = null
     private var remoteSearchFuture: Future<*>? = null
+    private var pqSignatureVerificationFuture: Future<*>? = null
     private var extraSearchResults: List<String>? = null
     private var threadTitle: String? = null
     private var allAccounts = false
@@ -97,6 +99,13 @@ class MessageListFragment :
     private var sortDateAscending = false
     private var selectedCount = 0
     private var selected: MutableSet<Long> = HashSet()
+
+    /**
+     * Only the first pages of the message list are loaded. When all messages are selected while the list is partial,
+     * the rest of the list is loaded and selected once it arrives. Batch actions are disabled until then.
+     */
+    private var isSelectAllPending = false
+    private var isPartialList = false
     private var actionMode: ActionMode? = null
     private var hasConnectivity: Boolean? = null
 
@@ -242,6 +251,20 @@ class MessageListFragment :
             isScrollingCacheEnabled = false
             onItemClickListener = this@MessageListFragment
             onItemLongClickListener = this@MessageListFragment
+            setOnScrollListener(object : AbsListView.OnScrollListener {
+                override fun onScrollStateChanged(view: AbsListView, scrollState: Int) = Unit
+
+                override fun onScroll(
+                    view: AbsListView,
+                    firstVisibleItem: Int,
+                    visibleItemCount: Int,
+                    totalItemCount: Int
+                ) {
+                    if (firstVisibleItem + visibleItemCount >= totalItemCount - LOAD_MORE_THRESHOLD) {
+                        viewModel.loadMoreMessages()
+                    }
+                }
+            })
         }
     }
 
@@ -828,6 +851,11 @@ class MessageListFragment :
                 }
             }
 
+            if (isPartialList) {
+                isSelectAllPending = true
+                viewModel.loadAllMessages()
+            }
+
             if (actionMode == null) {
                 startAndPrepareActionMode()
             }
@@ -838,6 +866,7 @@ class MessageListFragment :
         } else {
             this.selected.clear()
             selectedCount = 0
+            isSelectAllPending = false
 
             actionMode?.finish()
             actionMode = null
@@ -855,6 +884,9 @@ class MessageListFragment :
     }
 
     private fun toggleMessageSelect(messageListItem: MessageListItem) {
+        // The selection has been changed by hand, don't select the rest of the list once it has been loaded
+        isSelectAllPending = false
+
         val uniqueId = messageListItem.uniqueId
         val selected = selected.contains(uniqueId)
         if (!selected) {
@@ -909,7 +941,7 @@ class MessageListFragment :
     }
 
     private fun computeSelectAllVisibility() {
-        actionModeCallback.showSelectAll(selected.size != adapter.count)
+        actionModeCallback.showSelectAll(selected.size != adapter.count || (isPartialList && !isSelectAllPending))
     }
 
     private fun computeBatchDirection() {
@@ -1232,6 +1264,12 @@ class MessageListFragment :
             }
         }
 
+        pqSignatureVerificationFuture?.let { future ->
+            Timber.i("Post-quantum signature verification in progress, cancelling...")
+            future.cancel(true)
+            pqSignatureVerificationFuture = null
+        }
+
         super.onStop()
     }
 
@@ -1475,13 +1513,25 @@ class MessageListFragment :
             }
         }
 
+        isPartialList = messageListInfo.isPartialList
         cleanupSelected(messageListItems)
+        val selectAll = isSelectAllPending && !isPartialList
+        if (selectAll) {
+            isSelectAllPending = false
+            messageListItems.mapTo(selected) { it.uniqueId }
+        }
         adapter.selected = selected
 
         adapter.messages = messageListItems
 
+        // The adapter only rebinds changed messages when the entries stay the same
+        if (selectAll) {
+            adapter.notifyDataSetChanged()
+        }
+
         resetActionMode()
         computeBatchDirection()
+        computeSelectAllVisibility()
 
         isLoadFinished = true
 
@@ -1493,7 +1543,8 @@ class MessageListFragment :
         fragmentListener.updateMenu()
 
         currentFolder?.let { currentFolder ->
-            currentFolder.moreMessages = messageListInfo.hasMoreMessages
+            // Only offer to download more messages once all local messages are displayed
+            currentFolder.moreMessages = messageListInfo.hasMoreMessages && !messageListInfo.isPartialList
             updateFooterView()
         }
     }
@@ -1575,6 +1626,40 @@ class MessageListFragment :
         }
     }
 
+    val isPQSignatureVerificationRunning: Boolean
+        get() = pqSignatureVerificationFuture != null
+
+    /**
+     * Starts re-verifying the post-quantum signatures of all messages in this list, or cancels a running
+     * verification.
+     */
+    fun onVerifyPQSignatures() {
+        val future = pqSignatureVerificationFuture
+        if (future != null) {
+            future.cancel(true)
+            pqSignatureVerificationFuture = null
+        } else {
+            pqSignatureVerificationFuture = messagingController.verifyPQSignatures(localSearch, activityListener)
+        }
+
+        fragmentListener.updateMenu()
+    }
+
+    private fun pqSignatureVerificationFinished(numVerified: Int, numValid: Int) {
+        pqSignatureVerificationFuture = null
+        fragmentListener.updateMenu()
+        progress(false)
+        setWindowProgress()
+
+        val text = resources.getQuantityString(
+            R.plurals.pq_signature_verification_finished,
+            numVerified,
+            numVerified,
+            numValid
+        )
+        Toast.makeText(requireContext(), text, Toast.LENGTH_SHORT).show()
+    }
+
     val isCheckMailSupported: Boolean
         get() = allAccounts || !isSingleAccountMode || !isSingleFolderMode || isRemoteFolder
 
@@ -1645,6 +1730,26 @@ class MessageListFragment :
             informUserOfStatus()
         }
 
+        override fun pqSignatureVerificationStarted(total: Int) {
+            handler.progress(true)
+        }
+
+        override fun pqSignatureVerificationProgress(completed: Int, total: Int) {
+            handler.post {
+                if (isAdded) {
+                    fragmentListener.setMessageListProgress(MAX_PROGRESS * completed / total)
+                }
+            }
+        }
+
+        override fun pqSignatureVerificationFinished(numVerified: Int, numValid: Int) {
+            handler.post {
+                if (isAdded) {
+                    pqSignatureVerificationFinished(numVerified, numValid)
+                }
+            }
+        }
+
         private fun informUserOfStatus() {
             handler.refreshTitle()
         }
@@ -1754,6 +1859,14 @@ class MessageListFragment :
             flag = menu.findItem(R.id.flag)
             unflag = menu.findItem(R.id.unflag)
 
+            // Batch actions have to wait until all messages of the list have been loaded and selected
+            for (i in 0 until menu.size()) {
+                val item = menu.getItem(i)
+                if (item.itemId != R.id.select_all) {
+                    item.isEnabled = !isSelectAllPending
+                }
+            }
+
             // we don't support cross account actions atm
             if (!isSingleAccountMode) {
                 val accounts = accountUuidsForSelected.mapNotNull { accountUuid ->
@@ -1955,6 +2068,9 @@ class MessageListFragment :
         private const val STATE_REMOTE_SEARCH_PERFORMED = "remoteSearchPerformed"
         private const val STATE_MESSAGE_LIST = "listState"
 
+        // Number of list items left below the visible ones when we start loading the next page
+        private const val LOAD_MORE_THRESHOLD = 20
+
         fun newInstance(search: LocalSearch, isThreadDisplay: Boolean, threadedList: Boolean): MessageListFragment {
             return MessageListFragment().apply {
                 arguments = bundleOf(
@@ -19,4 +19,5 @@ class MessageViewHolder(view: View) {
     val flagged: CheckBox = view.findViewById(R.id.star)
     val attachment: ImageView = view.findViewById(R.id.attachment)
     val status: ImageView = view.findViewById(R.id.status)
+    val pqSignature: ImageView = view.findViewById(R.id.pq_signature)
 }
@@ -0,0 +1,70 @@
+package com.fsck.k9.ui.message;
+
+
+import android.content.Context;
+
+import androidx.annotation.WorkerThread;
+import androidx.loader.content.AsyncTaskLoader;
+import com.fsck.k9.crypto.PQSignatureResult;
+import com.fsck.k9.crypto.PQSignatureVerifier;
+import com.fsck.k9.mailstore.LocalMessage;
+import timber.log.Timber;
+
+
+/**
+ * Verifies the post-quantum signature of a message in the background, or loads the result of an earlier
+ * verification. The loader is cancelled by the {@link androidx.loader.app.LoaderManager} once the message view goes
+ * away.
+ * <p>
+ * When created to trust the sender's key, the key in the message replaces the one stored for the sender first.
+ */
+public class PQSignatureVerificationLoader extends AsyncTaskLoader<PQSignatureResult> {
+    private final LocalMessage message;
+    private final String[] supportedAlgorithms;
+    private final boolean trustSenderKey;
+    private PQSignatureResult signatureResult;
+
+
+    public PQSignatureVerificationLoader(Context context, LocalMessage message, String[] supportedAlgorithms,
+            boolean trustSenderKey) {
+        super(context);
+        this.message = message;
+        this.supportedAlgorithms = supportedAlgorithms;
+        this.trustSenderKey = trustSenderKey;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (signatureResult != null) {
+            super.deliverResult(signatureResult);
+        }
+
+        if (takeContentChanged() || signatureResult == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    public void deliverResult(PQSignatureResult signatureResult) {
+        this.signatureResult = signatureResult;
+        super.deliverResult(signatureResult);
+    }
+
+    @Override
+    @WorkerThread
+    public PQSignatureResult loadInBackground() {
+        try {
+            if (trustSenderKey) {
+                return PQSignatureVerifier.trustSenderKey(message, supportedAlgorithms);
+            }
+            return PQSignatureVerifier.getOrVerify(message, supportedAlgorithms);
+        } catch (Exception e) {
+            Timber.e(e, "Error while verifying post-quantum signature");
+            return new PQSignatureResult(false, PQSignatureVerifier.NO_MATCH);
+        }
+    }
+
+    public boolean isCreatedFor(LocalMessage localMessage) {
+        return message.equals(localMessage);
+    }
+}
@@ -7,6 +7,6 @@ val messageListUiModule = module {
     viewModel { MessageListViewModel(get()) }
     factory { DefaultFolderProvider() }
     factory { MessageListExtractor(get(), get()) }
-    factory { MessageListLoader(get(), get(), get(), get()) }
-    factory { MessageListLiveDataFactory(get(), get(), get()) }
+    factory { MessageListLoader(get(), get(), get(), get(), get()) }
+    factory { MessageListLiveDataFactory(get(), get(), get(), get()) }
 }
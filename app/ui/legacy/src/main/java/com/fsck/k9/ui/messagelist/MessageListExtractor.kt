@@ -4,17 +4,25 @@ import android.database.Cursor
 import com.fsck.k9.Preferences
 import com.fsck.k9.fragment.MLFProjectionInfo
 import com.fsck.k9.helper.MessageHelper
-import com.fsck.k9.helper.map
 import com.fsck.k9.mail.Address
 import com.fsck.k9.mailstore.DatabasePreviewType
 import com.fsck.k9.ui.helper.DisplayAddressHelper
+import kotlin.math.min
 
 class MessageListExtractor(
     private val preferences: Preferences,
     private val messageHelper: MessageHelper
 ) {
-    fun extractMessageList(cursor: Cursor, uniqueIdColumn: Int, threadCountIncluded: Boolean): List<MessageListItem> {
-        return cursor.map { extractMessageListItem(it, uniqueIdColumn, threadCountIncluded) }
+    fun extractMessageList(
+        cursor: Cursor,
+        uniqueIdColumn: Int,
+        threadCountIncluded: Boolean,
+        maxCount: Int = Int.MAX_VALUE
+    ): List<MessageListItem> {
+        return List(min(cursor.count, maxCount)) { index ->
+            cursor.moveToPosition(index)
+            extractMessageListItem(cursor, uniqueIdColumn, threadCountIncluded)
+        }
     }
 
     private fun extractMessageListItem(
@@ -35,6 +43,7 @@ class MessageListExtractor(
         val toMe = messageHelper.toMe(account, toAddresses)
         val ccMe = messageHelper.toMe(account, ccAddresses)
         val messageDate = cursor.getLong(MLFProjectionInfo.DATE_COLUMN)
+        val internalDate = cursor.getLong(MLFProjectionInfo.INTERNAL_DATE_COLUMN)
         val threadCount = if (threadCountIncluded) cursor.getInt(MLFProjectionInfo.THREAD_COUNT_COLUMN) else 0
         val subject = cursor.getString(MLFProjectionInfo.SUBJECT_COLUMN)
         val isRead = cursor.getBoolean(MLFProjectionInfo.READ_COLUMN)
@@ -46,6 +55,7 @@ class MessageListExtractor(
         val previewType = DatabasePreviewType.fromDatabaseValue(previewTypeString)
         val isMessageEncrypted = previewType == DatabasePreviewType.ENCRYPTED
         val previewText = getPreviewText(previewType, cursor)
+        val pqSignatureState = getPQSignatureState(cursor)
         val uniqueId = cursor.getLong(uniqueIdColumn)
         val folderId = cursor.getLong(MLFProjectionInfo.FOLDER_ID_COLUMN)
         val messageUid = cursor.getString(MLFProjectionInfo.UID_COLUMN)
@@ -65,12 +75,14 @@ class MessageListExtractor(
             subject,
             threadCount,
             messageDate,
+            internalDate,
             displayName,
             displayAddress,
             toMe,
             ccMe,
             previewText,
             isMessageEncrypted,
+            pqSignatureState,
             isRead,
             isStarred,
             isAnswered,
@@ -92,5 +104,13 @@ class MessageListExtractor(
         }
     }
 
+    private fun getPQSignatureState(cursor: Cursor): PQSignatureState {
+        return when {
+            cursor.isNull(MLFProjectionInfo.PQ_SIGNATURE_VALID_COLUMN) -> PQSignatureState.NONE
+            cursor.getBoolean(MLFProjectionInfo.PQ_SIGNATURE_VALID_COLUMN) -> PQSignatureState.VALID
+            else -> PQSignatureState.INVALID
+        }
+    }
+
     private fun Cursor.getBoolean(columnIndex: Int): Boolean = getInt(columnIndex) == 1
 }
@@ -9,12 +9,14 @@ data class MessageListItem(
     val subject: String?,
     val threadCount: Int,
     val messageDate: Long,
+    val internalDate: Long,
     val displayName: CharSequence,
     val displayAddress: Address?,
     val toMe: Boolean,
     val ccMe: Boolean,
     val previewText: String,
     val isMessageEncrypted: Boolean,
+    val pqSignatureState: PQSignatureState,
     val isRead: Boolean,
     val isStarred: Boolean,
     val isAnswered: Boolean,
@@ -26,3 +28,9 @@ data class MessageListItem(
     val databaseId: Long,
     val threadRoot: Long
 )
+
+enum class PQSignatureState {
+    NONE,
+    VALID,
+    INVALID
+}
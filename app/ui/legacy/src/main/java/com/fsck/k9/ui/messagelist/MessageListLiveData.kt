@@ -6,32 +6,140 @@ import android.net.Uri
 import android.os.Handler
 import androidx.lifecycle.LiveData
 import com.fsck.k9.Preferences
+import com.fsck.k9.mailstore.MessageChangeFeed
 import com.fsck.k9.provider.EmailProvider
 import com.fsck.k9.search.getAccountUuids
+import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 
 class MessageListLiveData(
     private val messageListLoader: MessageListLoader,
     private val preferences: Preferences,
     private val contentResolver: ContentResolver,
+    private val messageChangeFeed: MessageChangeFeed,
     private val coroutineScope: CoroutineScope,
-    val config: MessageListConfig
+    val config: MessageListConfig,
+    private val backgroundDispatcher: CoroutineDispatcher = Dispatchers.IO
 ) : LiveData<MessageListInfo>() {
 
     private val contentObserver = object : ContentObserver(Handler()) {
         override fun onChange(selfChange: Boolean) {
-            loadMessageListAsync()
+            scheduleUpdate()
+        }
+    }
+
+    private val loadMutex = Mutex()
+    private var isReloadScheduled = false
+    private var isReloadPending = false
+    private var messageLimit = PAGE_SIZE
+    private var lastSequenceNumber = 0L
+
+    /**
+     * Extend the loaded part of the message list by another page if there are more messages.
+     */
+    fun loadMoreMessages() {
+        val messageListInfo = value ?: return
+
+        // Don't increase the limit again while the previous page is still being loaded
+        if (!messageListInfo.isPartialList || messageListInfo.messageListItems.size < messageLimit) return
+
+        messageLimit += PAGE_SIZE
+        loadMessageListAsync()
+    }
+
+    /**
+     * Load the whole message list, e.g. so all messages can be selected. Stays in effect for subsequent reloads.
+     */
+    fun loadAllMessages() {
+        val messageListInfo = value ?: return
+        if (!messageListInfo.isPartialList || messageLimit == Int.MAX_VALUE) return
+
+        messageLimit = Int.MAX_VALUE
+        loadMessageListAsync()
+    }
+
+    // Syncing usually results in a burst of change notifications. The first notification triggers an update right
+    // away. Notifications arriving while that update is running or within RELOAD_DELAY_MS after it has finished are
+    // coalesced into a single additional update.
+    private fun scheduleUpdate() {
+        if (isReloadScheduled) {
+            isReloadPending = true
+            return
+        }
+        isReloadScheduled = true
+
+        coroutineScope.launch(Dispatchers.Main) {
+            do {
+                isReloadPending = false
+                updateMessageList()
+                delay(RELOAD_DELAY_MS)
+            } while (isReloadPending)
+
+            isReloadScheduled = false
         }
     }
 
     private fun loadMessageListAsync() {
         coroutineScope.launch(Dispatchers.Main) {
-            value = withContext(Dispatchers.IO) {
-                messageListLoader.getMessageList(config)
+            loadMessageList()
+        }
+    }
+
+    // Loads are serialized so an older result can't overwrite a newer one
+    private suspend fun loadMessageList() {
+        loadMutex.withLock {
+            val messageLimit = messageLimit
+            val sequenceNumber = messageChangeFeed.sequenceNumber
+            val messageListInfo = withContext(backgroundDispatcher) {
+                messageListLoader.getMessageList(config, messageLimit)
+            }
+
+            setMessageListInfo(messageListInfo, sequenceNumber)
+        }
+    }
+
+    // Only re-query the messages that have changed since the last load or update and patch them into the current list.
+    // Falls back to loading the whole list if the changed messages aren't known or can't be placed.
+    private suspend fun updateMessageList() {
+        loadMutex.withLock {
+            val messageLimit = messageLimit
+            val sequenceNumber = messageChangeFeed.sequenceNumber
+            val currentMessageListInfo = value
+            val messageListInfo = withContext(backgroundDispatcher) {
+                val accountUuids = config.search.getAccountUuids(preferences)
+                val changedMessageIds = messageChangeFeed.getChangedMessageIds(accountUuids, lastSequenceNumber)
+                when {
+                    currentMessageListInfo == null || changedMessageIds == null -> {
+                        messageListLoader.getMessageList(config, messageLimit)
+                    }
+                    changedMessageIds.isEmpty() -> currentMessageListInfo
+                    else -> {
+                        messageListLoader.updateMessageList(
+                            config,
+                            currentMessageListInfo,
+                            changedMessageIds,
+                            messageLimit
+                        ) ?: messageListLoader.getMessageList(config, messageLimit)
+                    }
+                }
             }
+
+            setMessageListInfo(messageListInfo, sequenceNumber)
+        }
+    }
+
+    private fun setMessageListInfo(messageListInfo: MessageListInfo, sequenceNumber: Long) {
+        lastSequenceNumber = sequenceNumber
+
+        // Many changes don't affect the displayed part of the list. Don't make the UI rebind all items then.
+        if (messageListInfo != value) {
+            value = messageListInfo
         }
     }
 
@@ -49,7 +157,7 @@ class MessageListLiveData(
 
     private fun registerContentObserverAsync() {
         coroutineScope.launch(Dispatchers.Main) {
-            val notificationUris = withContext(Dispatchers.IO) {
+            val notificationUris = withContext(backgroundDispatcher) {
                 getNotificationUris()
             }
 
@@ -65,4 +173,10 @@ class MessageListLiveData(
             EmailProvider.getNotificationUri(accountUuid)
         }
     }
+
+    companion object {
+        const val PAGE_SIZE = 100
+
+        internal const val RELOAD_DELAY_MS = 300L
+    }
 }
@@ -2,14 +2,23 @@ package com.fsck.k9.ui.messagelist
 
 import android.content.ContentResolver
 import com.fsck.k9.Preferences
+import com.fsck.k9.mailstore.MessageChangeFeed
 import kotlinx.coroutines.CoroutineScope
 
 class MessageListLiveDataFactory(
     private val messageListLoader: MessageListLoader,
     private val preferences: Preferences,
-    private val contentResolver: ContentResolver
+    private val contentResolver: ContentResolver,
+    private val messageChangeFeed: MessageChangeFeed
 ) {
     fun create(coroutineScope: CoroutineScope, config: MessageListConfig): MessageListLiveData {
-        return MessageListLiveData(messageListLoader, preferences, contentResolver, coroutineScope, config)
+        return MessageListLiveData(
+            messageListLoader,
+            preferences,
+            contentResolver,
+            messageChangeFeed,
+            coroutineScope,
+            config
+        )
     }
 }
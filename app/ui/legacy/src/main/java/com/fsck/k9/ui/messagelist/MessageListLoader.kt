@@ -22,6 +22,7 @@ import com.fsck.k9.fragment.MessageListFragmentComparators.SenderComparator
 import com.fsck.k9.fragment.MessageListFragmentComparators.SubjectComparator
 import com.fsck.k9.fragment.MessageListFragmentComparators.UnreadComparator
 import com.fsck.k9.helper.MergeCursorWithUniqueId
+import com.fsck.k9.mailstore.FulltextIndexer
 import com.fsck.k9.mailstore.LocalStoreProvider
 import com.fsck.k9.provider.EmailProvider
 import com.fsck.k9.search.LocalSearch
@@ -36,12 +37,19 @@ class MessageListLoader(
     private val preferences: Preferences,
     private val contentResolver: ContentResolver,
     private val localStoreProvider: LocalStoreProvider,
-    private val messageListExtractor: MessageListExtractor
+    private val messageListExtractor: MessageListExtractor,
+    private val fulltextIndexer: FulltextIndexer
 ) {
 
-    fun getMessageList(config: MessageListConfig): MessageListInfo {
+    /**
+     * Load the first [messageLimit] entries of the message list described by [config].
+     *
+     * Sorting and limiting is done by the database. When the list spans multiple accounts, the (already sorted)
+     * per-account results are merged.
+     */
+    fun getMessageList(config: MessageListConfig, messageLimit: Int = Int.MAX_VALUE): MessageListInfo {
         return try {
-            getMessageListInfo(config)
+            getMessageListInfo(config, messageLimit)
         } catch (e: Exception) {
             Timber.e(e, "Error while fetching message list")
 
@@ -50,10 +58,38 @@ class MessageListLoader(
         }
     }
 
-    private fun getMessageListInfo(config: MessageListConfig): MessageListInfo {
+    /**
+     * Update [messageListInfo], the result of an earlier call to [getMessageList], after the messages with the
+     * database IDs [changedMessageIds] (by account UUID) have been inserted, updated, or deleted.
+     *
+     * Only the changed messages are queried, using the selection of the message list. They are then placed in the
+     * existing list. Returns `null` if the list can't be updated this way and has to be reloaded instead.
+     */
+    fun updateMessageList(
+        config: MessageListConfig,
+        messageListInfo: MessageListInfo,
+        changedMessageIds: Map<String, Set<Long>>,
+        messageLimit: Int = Int.MAX_VALUE
+    ): MessageListInfo? {
+        return try {
+            updateMessageListInfo(config, messageListInfo, changedMessageIds, messageLimit)
+        } catch (e: Exception) {
+            Timber.e(e, "Error while updating message list")
+            null
+        }
+    }
+
+    private fun getMessageListInfo(config: MessageListConfig, requestedMessageLimit: Int): MessageListInfo {
+        // Threads are displayed in full
+        val messageLimit = if (getThreadId(config.search) != null) Int.MAX_VALUE else requestedMessageLimit
+
         val accounts = config.search.getAccounts(preferences)
+        if (isMessageContentsSearch(config.search)) {
+            indexPendingMessages(accounts)
+        }
+
         val cursors = accounts
-            .mapNotNull { loadMessageListForAccount(it, config) }
+            .mapNotNull { loadMessageListForAccount(it, config, messageLimit) }
             .toTypedArray()
 
         if (cursors.isEmpty()) {
@@ -71,20 +107,110 @@ class MessageListLoader(
             uniqueIdColumn = cursor.getColumnIndex("_id")
         }
 
+        // Every account contributes at most messageLimit rows. So if none of them hit the limit, we've got everything.
+        val isPartialList = cursors.any { it.count >= messageLimit }
+
         val messageListItems = cursor.use {
             messageListExtractor.extractMessageList(
                 cursor,
                 uniqueIdColumn,
-                threadCountIncluded = config.showingThreadedList
+                threadCountIncluded = config.showingThreadedList,
+                maxCount = messageLimit
             )
         }
         val hasMoreMessages = loadHasMoreMessages(accounts, config.search.folderIds)
 
-        return MessageListInfo(messageListItems, hasMoreMessages)
+        return MessageListInfo(messageListItems, hasMoreMessages, isPartialList)
+    }
+
+    private fun updateMessageListInfo(
+        config: MessageListConfig,
+        messageListInfo: MessageListInfo,
+        changedMessageIds: Map<String, Set<Long>>,
+        messageLimit: Int
+    ): MessageListInfo? {
+        if (!canUpdateMessageList(config, changedMessageIds)) return null
+
+        fun MessageListItem.isChanged() = changedMessageIds[account.uuid]?.contains(databaseId) == true
+
+        // Messages past the end of a partial list aren't known. So we can only place changed messages that sort before
+        // the last entry.
+        val messageListItems = messageListInfo.messageListItems
+        val lastMessageListItem = if (messageListInfo.isPartialList) {
+            messageListItems.lastOrNull()?.takeUnless { it.isChanged() } ?: return null
+        } else {
+            null
+        }
+
+        // Use the same cursor order as getMessageListInfo() so MergeCursorWithUniqueId creates the same unique IDs
+        val accounts = config.search.getAccounts(preferences)
+        val cursors = accounts.map { account ->
+            val messageIds = changedMessageIds[account.uuid]
+            if (messageIds == null) {
+                MatrixCursor(MLFProjectionInfo.PROJECTION)
+            } else {
+                loadMessageListForAccount(account, config, Int.MAX_VALUE, messageIds) ?: return null
+            }
+        }.toTypedArray()
+
+        if (cursors.isEmpty()) return null
+
+        val cursor: Cursor
+        val uniqueIdColumn: Int
+        if (cursors.size == 1) {
+            cursor = cursors[0]
+            uniqueIdColumn = MLFProjectionInfo.ID_COLUMN
+        } else {
+            cursor = MergeCursorWithUniqueId(cursors, getComparator(config))
+            uniqueIdColumn = cursor.getColumnIndex("_id")
+        }
+
+        val changedMessageListItems = cursor.use {
+            messageListExtractor.extractMessageList(
+                cursor,
+                uniqueIdColumn,
+                threadCountIncluded = false,
+                maxCount = Int.MAX_VALUE
+            )
+        }
+
+        val comparator = getMessageListItemComparator(config)
+        val updatedMessageListItems = messageListItems.filterNotTo(ArrayList()) { it.isChanged() }
+        for (messageListItem in changedMessageListItems) {
+            if (lastMessageListItem != null && comparator.compare(messageListItem, lastMessageListItem) > 0) continue
+
+            val index = updatedMessageListItems.binarySearch(messageListItem, comparator)
+            updatedMessageListItems.add(-(index + 1), messageListItem)
+        }
+
+        // Messages past the end of a partial list would have to move up
+        if (messageListInfo.isPartialList && updatedMessageListItems.size < messageLimit) return null
+
+        val isPartialList = messageListInfo.isPartialList || updatedMessageListItems.size > messageLimit
+        val updatedMessageList = updatedMessageListItems.take(messageLimit).mapIndexed { position, messageListItem ->
+            if (messageListItem.position == position) messageListItem else messageListItem.copy(position = position)
+        }
+
+        return MessageListInfo(updatedMessageList, messageListInfo.hasMoreMessages, isPartialList)
+    }
+
+    // Threads are grouped and the full text index is updated by the database, and the database sorts senders and
+    // subjects differently than our comparators. Reload the list in those cases.
+    private fun canUpdateMessageList(config: MessageListConfig, changedMessageIds: Map<String, Set<Long>>): Boolean {
+        return !config.showingThreadedList &&
+            getThreadId(config.search) == null &&
+            !isMessageContentsSearch(config.search) &&
+            config.sortType in MESSAGE_LIST_ITEM_SORT_COMPARATORS &&
+            changedMessageIds.values.sumOf { it.size } <= MAX_CHANGED_MESSAGE_COUNT
     }
 
     @SuppressLint("Recycle")
-    private fun loadMessageListForAccount(account: Account, config: MessageListConfig): Cursor? {
+    private fun loadMessageListForAccount(
+        account: Account,
+        config: MessageListConfig,
+        messageLimit: Int,
+        messageIds: Collection<Long>? = null
+    ): Cursor? {
         val accountUuid = account.uuid
         val threadId: String? = getThreadId(config.search)
 
@@ -99,11 +225,13 @@ class MessageListLoader(
             }
             config.showingThreadedList -> {
                 uri = Uri.withAppendedPath(EmailProvider.CONTENT_URI, "account/$accountUuid/messages/threaded")
+                    .withLimit(messageLimit)
                 projection = MLFProjectionInfo.THREADED_PROJECTION
                 needConditions = true
             }
             else -> {
                 uri = Uri.withAppendedPath(EmailProvider.CONTENT_URI, "account/$accountUuid/messages")
+                    .withLimit(messageLimit)
                 projection = MLFProjectionInfo.PROJECTION
                 needConditions = true
             }
@@ -125,6 +253,14 @@ class MessageListLoader(
             if (selectActive) {
                 query.append(')')
             }
+
+            if (messageIds != null) {
+                if (query.isNotEmpty()) {
+                    query.insert(0, '(').append(") AND ")
+                }
+                query.append("${EmailProvider.MessageColumns.ID} IN (${messageIds.joinToString { "?" }})")
+                messageIds.mapTo(queryArgs) { it.toString() }
+            }
         }
 
         val selection = query.toString()
@@ -145,6 +281,26 @@ class MessageListLoader(
         }
     }
 
+    private fun Uri.withLimit(messageLimit: Int): Uri {
+        if (messageLimit == Int.MAX_VALUE) return this
+
+        return buildUpon()
+            .appendQueryParameter(EmailProvider.QUERY_PARAMETER_LIMIT, messageLimit.toString())
+            .build()
+    }
+
+    private fun isMessageContentsSearch(search: LocalSearch): Boolean {
+        return search.leafSet.any { it.condition.field == SearchField.MESSAGE_CONTENTS }
+    }
+
+    // Messages saved during sync are indexed later. Index the newest of them now so they show up in the results.
+    // Older messages not yet indexed are still matched by their preview text (see SqlQueryBuilder).
+    private fun indexPendingMessages(accounts: List<Account>) {
+        for (account in accounts) {
+            fulltextIndexer.indexPendingMessages(account, maxMessageCount = ON_DEMAND_FULLTEXT_INDEX_LIMIT)
+        }
+    }
+
     private fun getThreadId(search: LocalSearch): String? {
         return search.leafSet.firstOrNull { it.condition.field == SearchField.THREAD_ID }?.condition?.value
     }
@@ -203,6 +359,31 @@ class MessageListLoader(
         return ComparatorChain(chain)
     }
 
+    // Mirrors the sort order of the database (see buildSortOrder()), including the message ID as last criterion
+    private fun getMessageListItemComparator(config: MessageListConfig): Comparator<MessageListItem> {
+        val chain: MutableList<Comparator<MessageListItem>> = ArrayList(3)
+
+        val comparator = MESSAGE_LIST_ITEM_SORT_COMPARATORS.getValue(config.sortType)
+        if (config.sortAscending) {
+            chain.add(comparator)
+        } else {
+            chain.add(ReverseComparator(comparator))
+        }
+
+        if (config.sortType != SortType.SORT_DATE && config.sortType != SortType.SORT_ARRIVAL) {
+            val dateComparator = MESSAGE_LIST_ITEM_SORT_COMPARATORS.getValue(SortType.SORT_DATE)
+            if (config.sortDateAscending) {
+                chain.add(dateComparator)
+            } else {
+                chain.add(ReverseComparator(dateComparator))
+            }
+        }
+
+        chain.add(ReverseComparator(compareBy<MessageListItem> { it.databaseId }.thenBy { it.uniqueId }))
+
+        return ComparatorChain(chain)
+    }
+
     private fun loadHasMoreMessages(accounts: List<Account>, folderIds: List<Long>): Boolean {
         return if (accounts.size == 1 && folderIds.size == 1) {
             val account = accounts[0]
@@ -217,6 +398,9 @@ class MessageListLoader(
     }
 
     companion object {
+        private const val ON_DEMAND_FULLTEXT_INDEX_LIMIT = 200
+        private const val MAX_CHANGED_MESSAGE_COUNT = 500
+
         private val SORT_COMPARATORS = mapOf(
             SortType.SORT_ATTACHMENT to AttachmentComparator(),
             SortType.SORT_DATE to DateComparator(),
@@ -226,7 +410,24 @@ class MessageListLoader(
             SortType.SORT_SENDER to SenderComparator(),
             SortType.SORT_UNREAD to UnreadComparator()
         )
+
+        // Counterparts of SORT_COMPARATORS for already extracted entries
+        private val MESSAGE_LIST_ITEM_SORT_COMPARATORS = mapOf(
+            SortType.SORT_ATTACHMENT to compareBy<MessageListItem> { !it.hasAttachments },
+            SortType.SORT_DATE to compareBy<MessageListItem> { it.messageDate },
+            SortType.SORT_ARRIVAL to compareBy<MessageListItem> { it.internalDate },
+            SortType.SORT_FLAGGED to compareBy<MessageListItem> { !it.isStarred },
+            SortType.SORT_UNREAD to compareBy<MessageListItem> { it.isRead }
+        )
     }
 }
 
-data class MessageListInfo(val messageListItems: List<MessageListItem>, val hasMoreMessages: Boolean)
+/**
+ * @param hasMoreMessages `true` if more messages can be downloaded from the server.
+ * @param isPartialList `true` if there are more local messages than included in [messageListItems].
+ */
+data class MessageListInfo(
+    val messageListItems: List<MessageListItem>,
+    val hasMoreMessages: Boolean,
+    val isPartialList: Boolean = false
+)
@@ -26,6 +26,14 @@ class MessageListViewModel(private val messageListLiveDataFactory: MessageListLi
         }
     }
 
+    fun loadMoreMessages() {
+        currentMessageListLiveData?.loadMoreMessages()
+    }
+
+    fun loadAllMessages() {
+        currentMessageListLiveData?.loadAllMessages()
+    }
+
     private fun removeCurrentMessageListLiveData() {
         currentMessageListLiveData?.let {
             currentMessageListLiveData = null
@@ -90,6 +90,17 @@ public class CryptoInfoDialog extends DialogFragment {
                     ((OnClickShowCryptoKeyListener) frag).onClickSearchKey();
                 }
             });
+        } else if (displayStatus.isPQKeyChanged()) {
+            b.setNeutralButton(R.string.crypto_info_trust_pq_key, new OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialogInterface, int i) {
+                    Fragment frag = getTargetFragment();
+                    if (! (frag instanceof OnClickShowCryptoKeyListener)) {
+                        throw new AssertionError("Displaying activity must implement OnClickShowCryptoKeyListener!");
+                    }
+                    ((OnClickShowCryptoKeyListener) frag).onClickTrustPQSenderKey();
+                }
+            });
         } else if (displayStatus.hasAssociatedKey()) {
             int buttonLabel = displayStatus.isUnencryptedSigned() ?
                     R.string.crypto_info_view_signer : R.string.crypto_info_view_sender;
@@ -137,5 +148,6 @@ public class CryptoInfoDialog extends DialogFragment {
         void onClickShowCryptoKey();
         void onClickShowSecurityWarning();
         void onClickSearchKey();
+        void onClickTrustPQSenderKey();
     }
 }
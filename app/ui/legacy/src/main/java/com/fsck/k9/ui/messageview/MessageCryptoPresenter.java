@@ -107,10 +107,35 @@ public class MessageCryptoPresenter implements OnCryptoClickListener {
         return true;
     }
 
+    /**
+     * Updates only the crypto status in the message header once the PQ signature of the displayed message has been
+     * verified. The message itself is already displayed and isn't touched.
+     *
+     * @return {@code false} if the message has no crypto status to display.
+     */
+    public boolean maybeUpdatePQSignatureStatus(MessageTopView messageView, MessageViewInfo messageViewInfo) {
+        this.cryptoResultAnnotation = messageViewInfo.cryptoResultAnnotation;
+        this.messageViewInfo = messageViewInfo;
+
+        MessageCryptoDisplayStatus displayStatus =
+                MessageCryptoDisplayStatus.fromResultAnnotation(messageViewInfo.cryptoResultAnnotation);
+
+        displayStatus = getMessagePQCryptoDisplayStatus(messageViewInfo, displayStatus);
+
+        if (displayStatus == MessageCryptoDisplayStatus.DISABLED) {
+            return false;
+        }
+
+        messageView.getMessageHeaderView().setCryptoStatus(displayStatus);
+        return true;
+    }
+
     private MessageCryptoDisplayStatus getMessagePQCryptoDisplayStatus(MessageViewInfo messageViewInfo,
             MessageCryptoDisplayStatus displayStatus) {
         // Change the display status if the message has been PQ signed
-        if (messageViewInfo.isPQValidSigned) {
+        if (messageViewInfo.isPQVerificationPending) {
+            displayStatus = MessageCryptoDisplayStatus.UNENCRYPTED_PQ_SIGN_VERIFYING;
+        } else if (messageViewInfo.isPQValidSigned) {
             switch (messageViewInfo.pqSignatureAlgorithm) {
                 case "Dilithium5":
                     displayStatus = MessageCryptoDisplayStatus.UNENCRYPTED_PQ_SIGN_VERIFIED_DILITHIUM;
@@ -131,6 +156,8 @@ public class MessageCryptoPresenter implements OnCryptoClickListener {
                     displayStatus = MessageCryptoDisplayStatus.UNENCRYPTED_PQ_SIGN_VERIFIED_SPHINCS_SHAKE;
                     break;
             }
+        } else if (messageViewInfo.isPQKeyMismatch) {
+            displayStatus = MessageCryptoDisplayStatus.UNSIGNED_PQ_KEY_CHANGED;
         } else {
             if (!messageViewInfo.pqSignatureAlgorithm.equals("")) {
                 displayStatus = MessageCryptoDisplayStatus.UNSIGNED_PQ;
@@ -141,7 +168,8 @@ public class MessageCryptoPresenter implements OnCryptoClickListener {
 
     @Override
     public void onCryptoClick() {
-        if (cryptoResultAnnotation == null && messageViewInfo.pqSignatureAlgorithm.equals("")) {
+        if (cryptoResultAnnotation == null && messageViewInfo.pqSignatureAlgorithm.equals("")
+                && !messageViewInfo.isPQVerificationPending) {
             return;
         }
         MessageCryptoDisplayStatus displayStatus =
@@ -170,7 +198,8 @@ public class MessageCryptoPresenter implements OnCryptoClickListener {
     }
 
     private void displayCryptoInfoDialog(MessageCryptoDisplayStatus displayStatus) {
-        if (messageViewInfo.isPQValidSigned || !messageViewInfo.pqSignatureAlgorithm.equals("")) {
+        if (messageViewInfo.isPQValidSigned || messageViewInfo.isPQVerificationPending
+                || !messageViewInfo.pqSignatureAlgorithm.equals("")) {
             messageCryptoMvpView.showCryptoInfoDialog(displayStatus, false);
         } else {
             messageCryptoMvpView.showCryptoInfoDialog(
@@ -178,6 +207,10 @@ public class MessageCryptoPresenter implements OnCryptoClickListener {
         }
     }
 
+    void onClickTrustPQSenderKey() {
+        messageCryptoMvpView.trustPQSenderKey(messageViewInfo);
+    }
+
     void onClickSearchKey() {
         try {
             PendingIntent pendingIntent = cryptoResultAnnotation.getOpenPgpSigningKeyIntentIfAny();
@@ -245,6 +278,7 @@ public class MessageCryptoPresenter implements OnCryptoClickListener {
     public interface MessageCryptoMvpView {
         void redisplayMessage();
         void restartMessageCryptoProcessing();
+        void trustPQSenderKey(MessageViewInfo messageViewInfo);
 
         void startPendingIntentForCryptoPresenter(IntentSender si, Integer requestCode, Intent fillIntent,
                 int flagsMask, int flagValues, int extraFlags) throws IntentSender.SendIntentException;
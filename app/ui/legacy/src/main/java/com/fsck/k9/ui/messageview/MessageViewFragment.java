@@ -264,11 +264,7 @@ public class MessageViewFragment extends Fragment implements ConfirmationDialogF
             mMessageView.showMessage(mAccount, messageViewInfo);
         } else if (!handledByCryptoPresenter) {
             mMessageView.showMessage(mAccount, messageViewInfo);
-            if (mAccount.isOpenPgpProviderConfigured()) {
-                mMessageView.getMessageHeaderView().setCryptoStatusDisabled();
-            } else {
-                mMessageView.getMessageHeaderView().hideCryptoStatus();
-            }
+            showCryptoStatusDisabled();
         }
 
         if (messageViewInfo.subject != null) {
@@ -276,6 +272,14 @@ public class MessageViewFragment extends Fragment implements ConfirmationDialogF
         }
     }
 
+    private void showCryptoStatusDisabled() {
+        if (mAccount.isOpenPgpProviderConfigured()) {
+            mMessageView.getMessageHeaderView().setCryptoStatusDisabled();
+        } else {
+            mMessageView.getMessageHeaderView().hideCryptoStatus();
+        }
+    }
+
     private void displayHeaderForLoadingMessage(LocalMessage message) {
         boolean showStar = !isOutbox();
         mMessageView.setHeaders(message, mAccount, showStar);
@@ -745,6 +749,13 @@ public class MessageViewFragment extends Fragment implements ConfirmationDialogF
             messageLoaderHelper.asyncRestartMessageCryptoProcessing();
         }
 
+        @Override
+        public void trustPQSenderKey(MessageViewInfo messageViewInfo) {
+            messageViewInfo.isPQVerificationPending = true;
+            showMessage(messageViewInfo);
+            messageLoaderHelper.asyncTrustPQSenderKey(messageViewInfo);
+        }
+
         @Override
         public void showCryptoConfigDialog() {
             AccountSettingsActivity.startCryptoSettings(getActivity(), mAccount.getUuid());
@@ -761,6 +772,11 @@ public class MessageViewFragment extends Fragment implements ConfirmationDialogF
         messageCryptoPresenter.onClickSearchKey();
     }
 
+    @Override
+    public void onClickTrustPQSenderKey() {
+        messageCryptoPresenter.onClickTrustPQSenderKey();
+    }
+
     @Override
     public void onClickShowCryptoKey() {
         messageCryptoPresenter.onClickShowCryptoKey();
@@ -813,6 +829,14 @@ public class MessageViewFragment extends Fragment implements ConfirmationDialogF
             showProgressThreshold = null;
         }
 
+        @Override
+        public void onPQSignatureVerificationFinished(MessageViewInfo messageViewInfo) {
+            // The message is already displayed, only the signature status in the header changes
+            if (!messageCryptoPresenter.maybeUpdatePQSignatureStatus(mMessageView, messageViewInfo)) {
+                showCryptoStatusDisabled();
+            }
+        }
+
         @Override
         public void setLoadingProgress(int current, int max) {
             if (showProgressThreshold == null) {
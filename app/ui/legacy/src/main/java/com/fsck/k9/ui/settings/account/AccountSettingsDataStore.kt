@@ -118,6 +118,7 @@ class AccountSettingsDataStore(
             "delete_policy" -> account.deletePolicy.name
             "expunge_policy" -> account.expungePolicy.name
             "max_push_folders" -> account.maxPushFolders.toString()
+            "max_sync_connections" -> account.maxSyncConnections.toString()
             "idle_refresh_period" -> account.idleRefreshMinutes.toString()
             "message_format" -> account.messageFormat.name
             "quote_style" -> account.quoteStyle.name
@@ -166,6 +167,7 @@ class AccountSettingsDataStore(
             "delete_policy" -> account.deletePolicy = Account.DeletePolicy.valueOf(value)
             "expunge_policy" -> account.expungePolicy = Account.Expunge.valueOf(value)
             "max_push_folders" -> account.maxPushFolders = value.toInt()
+            "max_sync_connections" -> account.maxSyncConnections = value.toInt()
             "idle_refresh_period" -> account.idleRefreshMinutes = value.toInt()
             "message_format" -> account.messageFormat = Account.MessageFormat.valueOf(value)
             "quote_style" -> account.quoteStyle = Account.QuoteStyle.valueOf(value)
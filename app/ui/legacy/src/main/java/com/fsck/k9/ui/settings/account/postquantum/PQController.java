@@ -13,6 +13,7 @@ import androidx.annotation.RequiresApi;
 import com.fsck.k9.Account;
 import com.fsck.k9.mail.internet.MimeUtility;
 import org.openquantumsafe.Signature;
+import org.openquantumsafe.SignatureContextPool;
 
 import static com.fsck.k9.Preferences.getPreferences;
 
@@ -31,14 +32,15 @@ public class PQController {
 
     /**
      * The properties saved in the controller are the account (needed for saving PQ fields), context (needed for saving
-     * the account changes) and signature (needed for PQ operations).
+     * the account changes) and the decoded keys (needed for PQ operations).
      */
     private final Account account;
     private final Context context;
-    private Signature signature;
+    private byte[] publicKey;
+    private byte[] privateKey;
 
     /**
-     * When instantiating the controller, using the context and uuid a new Signature is created.
+     * When instantiating the controller, using the context and uuid the keys of the account are decoded.
      *
      * @param context The context is needed in order to fetch the account.
      * @param uuid    The uuid is needed in order to fetch the correct account.
@@ -46,13 +48,11 @@ public class PQController {
     public PQController(final Context context, final String uuid) {
         this.context = context;
         this.account = getPreferences(context).getAccount(uuid);
-        if (account != null) {
-            String publicKeyStr = MimeUtility.unfold(account.getPqPublicKey());
-            String privateKeyStr = MimeUtility.unfold(account.getPqPrivateKey());
+        if (account != null && account.getPqPublicKey() != null && account.getPqPrivateKey() != null) {
             if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
-                byte[] publicKey = Base64.getDecoder().decode(publicKeyStr);
-                byte[] privateKey = Base64.getDecoder().decode(privateKeyStr);
-                this.signature = new Signature(account.getPqAlgorithm(), privateKey, publicKey);
+                SignatureContextPool signatureContextPool = SignatureContextPool.get_instance();
+                this.publicKey = signatureContextPool.get_decoded_key(account.getPqPublicKey());
+                this.privateKey = signatureContextPool.get_decoded_key(account.getPqPrivateKey());
             }
         }
     }
@@ -80,8 +80,11 @@ public class PQController {
      * preferences.
      */
     public void generateKeys() {
-        signature = new Signature(account.getPqAlgorithm());
-        signature.generate_keypair();
+        try (Signature keyGenerator = new Signature(account.getPqAlgorithm())) {
+            publicKey = keyGenerator.generate_keypair();
+            // The secret key is wiped when the signature is disposed
+            privateKey = keyGenerator.export_secret_key().clone();
+        }
         account.setPqPublicKey(getPublicKeyStr());
         account.setPqPrivateKey(getPrivateKeyStr());
         account.setPqKeysetExists(true);
@@ -94,7 +97,7 @@ public class PQController {
      * @return The public key
      */
     public byte[] getPublicKey() {
-        return signature.export_public_key();
+        return publicKey;
     }
 
     /**
@@ -103,7 +106,7 @@ public class PQController {
      * @return The private key
      */
     public byte[] getPrivateKey() {
-        return signature.export_secret_key();
+        return privateKey;
     }
 
     /**
@@ -113,7 +116,7 @@ public class PQController {
      */
     @SuppressLint("NewApi")
     public String getPublicKeyStr() {
-        return Base64.getMimeEncoder().encodeToString(signature.export_public_key());
+        return Base64.getMimeEncoder().encodeToString(publicKey);
     }
 
     /**
@@ -123,7 +126,7 @@ public class PQController {
      */
     @SuppressLint("NewApi")
     public String getPrivateKeyStr() {
-        return Base64.getMimeEncoder().encodeToString(signature.export_secret_key());
+        return Base64.getMimeEncoder().encodeToString(privateKey);
     }
 
     /**
@@ -133,13 +136,7 @@ public class PQController {
      * @return {@code true} if both keys are valid, {@code false} if not
      */
     public boolean verifyKeys() {
-        try {
-            byte[] textToVerify = UUID.randomUUID().toString().getBytes();
-            byte[] sign = signature.sign(textToVerify);
-            return signature.verify(textToVerify, sign, getPublicKey());
-        } catch (RuntimeException e) {
-            return false;
-        }
+        return verifyKeyPair(publicKey, privateKey);
     }
 
     /**
@@ -157,8 +154,8 @@ public class PQController {
             account.setPqKeysetExists(true);
             account.setPqPublicKey(publicKey);
             account.setPqPrivateKey(privateKey);
-            signature = new Signature(account.getPqAlgorithm(),
-                    Base64.getDecoder().decode(trimmedPrivateKey), Base64.getDecoder().decode(trimmedPublicKey));
+            this.publicKey = Base64.getDecoder().decode(trimmedPublicKey);
+            this.privateKey = Base64.getDecoder().decode(trimmedPrivateKey);
             return true;
         }
         return false;
@@ -174,11 +171,28 @@ public class PQController {
     @RequiresApi(api = VERSION_CODES.O)
     public boolean verifyNewKeys(final String publicKey, final String privateKey) {
         try {
-            Signature tmpSig = new Signature(account.getPqAlgorithm(),
-                    Base64.getDecoder().decode(privateKey), Base64.getDecoder().decode(publicKey));
+            return verifyKeyPair(Base64.getDecoder().decode(publicKey), Base64.getDecoder().decode(privateKey));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Signs a random text with the private key and verifies it with the public key, using a pooled signature context.
+     *
+     * @param publicKey  The decoded public key
+     * @param privateKey The decoded private key
+     * @return if the keys belong together and match the chosen algorithm
+     */
+    private boolean verifyKeyPair(final byte[] publicKey, final byte[] privateKey) {
+        if (publicKey == null || privateKey == null) {
+            return false;
+        }
+        try (SignatureContextPool.Lease lease = SignatureContextPool.get_instance().acquire(account.getPqAlgorithm())) {
+            Signature signature = lease.get_signature();
             byte[] textToVerify = UUID.randomUUID().toString().getBytes();
-            byte[] sign = tmpSig.sign(textToVerify);
-            return tmpSig.verify(textToVerify, sign, Base64.getDecoder().decode(publicKey));
+            byte[] sign = signature.sign(textToVerify, privateKey);
+            return signature.verify(textToVerify, sign, publicKey);
         } catch (RuntimeException e) {
             return false;
         }
@@ -109,12 +109,24 @@ enum class MessageCryptoDisplayStatus(
         titleTextRes = R.string.crypto_msg_title_pq_signed,
         descriptionTextRes = R.string.crypto_msg_unencrypted_sign_verified_sphincs_shake
     ),
+    UNENCRYPTED_PQ_SIGN_VERIFYING(
+        colorAttr = R.attr.openpgp_grey,
+        statusIconRes = R.drawable.status_signature_pqs,
+        titleTextRes = R.string.crypto_msg_title_pq_signed,
+        descriptionTextRes = R.string.crypto_msg_pq_verifying
+    ),
     UNSIGNED_PQ(
         colorAttr = R.attr.openpgp_red,
         statusIconRes = R.drawable.status_lock_error,
         titleTextRes = R.string.crypto_msg_unsigned_pq,
         descriptionTextRes = R.string.crypto_msg_unsigned_pq_desc
     ),
+    UNSIGNED_PQ_KEY_CHANGED(
+        colorAttr = R.attr.openpgp_red,
+        statusIconRes = R.drawable.status_lock_error,
+        titleTextRes = R.string.crypto_msg_unsigned_pq,
+        descriptionTextRes = R.string.crypto_msg_unsigned_pq_key_changed_desc
+    ),
     UNENCRYPTED_SIGN_UNVERIFIED(
         colorAttr = R.attr.openpgp_blue,
         statusIconRes = R.drawable.status_signature,
@@ -268,7 +280,9 @@ enum class MessageCryptoDisplayStatus(
             UNENCRYPTED_PQ_SIGN_VERIFIED_SPHINCS_HARAKA,
             UNENCRYPTED_PQ_SIGN_VERIFIED_SPHINCS_SHA,
             UNENCRYPTED_PQ_SIGN_VERIFIED_SPHINCS_SHAKE,
+            UNENCRYPTED_PQ_SIGN_VERIFYING,
             UNSIGNED_PQ,
+            UNSIGNED_PQ_KEY_CHANGED,
             UNENCRYPTED_SIGN_UNVERIFIED,
             UNENCRYPTED_SIGN_MISMATCH,
             UNENCRYPTED_SIGN_EXPIRED,
@@ -283,6 +297,9 @@ enum class MessageCryptoDisplayStatus(
             else -> false
         }
 
+    val isPQKeyChanged: Boolean
+        get() = this == UNSIGNED_PQ_KEY_CHANGED
+
     companion object {
         @JvmStatic
         fun fromResultAnnotation(cryptoResult: CryptoResultAnnotation?): MessageCryptoDisplayStatus {
@@ -1,6 +1,7 @@
 package com.fsck.k9.fragment
 
 import android.content.Context
+import android.database.DataSetObserver
 import android.text.Spannable
 import android.text.style.AbsoluteSizeSpan
 import android.view.ContextThemeWrapper
@@ -25,6 +26,7 @@ import com.fsck.k9.ui.R
 import com.fsck.k9.ui.helper.RelativeDateTimeFormatter
 import com.fsck.k9.ui.messagelist.MessageListAppearance
 import com.fsck.k9.ui.messagelist.MessageListItem
+import com.fsck.k9.ui.messagelist.PQSignatureState
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
 import org.junit.Assert.assertNull
@@ -283,6 +285,59 @@ class MessageListAdapterTest : RobolectricTest() {
         assertTrue(view.attachmentCountView.isVisible)
     }
 
+    @Test
+    fun withoutPQSignature_shouldHidePQSignatureView() {
+        val adapter = createAdapter()
+        val messageListItem = createMessageListItem(pqSignatureState = PQSignatureState.NONE)
+
+        val view = adapter.createAndBindView(messageListItem)
+
+        assertTrue(view.pqSignatureView.isGone)
+    }
+
+    @Test
+    fun withVerifiedPQSignature_shouldShowPQSignatureView() {
+        val adapter = createAdapter()
+        val messageListItem = createMessageListItem(pqSignatureState = PQSignatureState.VALID)
+
+        val view = adapter.createAndBindView(messageListItem)
+
+        assertTrue(view.pqSignatureView.isVisible)
+    }
+
+    @Test
+    fun messages_withChangedEntry_shouldRebindViewWithoutNotifyingDataSetChanged() {
+        val adapter = createAdapter()
+        val view = adapter.createAndBindView(createMessageListItem(uniqueId = 1L, hasAttachments = false))
+        var dataSetChangedCount = 0
+        adapter.registerDataSetObserver(object : DataSetObserver() {
+            override fun onChanged() {
+                dataSetChangedCount++
+            }
+        })
+
+        adapter.messages = listOf(createMessageListItem(uniqueId = 1L, hasAttachments = true))
+
+        assertEquals(0, dataSetChangedCount)
+        assertTrue(view.attachmentCountView.isVisible)
+    }
+
+    @Test
+    fun messages_withDifferentEntries_shouldNotifyDataSetChanged() {
+        val adapter = createAdapter()
+        adapter.createAndBindView(createMessageListItem(uniqueId = 1L))
+        var dataSetChangedCount = 0
+        adapter.registerDataSetObserver(object : DataSetObserver() {
+            override fun onChanged() {
+                dataSetChangedCount++
+            }
+        })
+
+        adapter.messages = listOf(createMessageListItem(uniqueId = 2L))
+
+        assertEquals(1, dataSetChangedCount)
+    }
+
     @Test
     fun withoutSenderAboveSubjectAndDefaultFontSize_shouldNotSetTextSizeOfFirstLineView() {
         val adapter = createAdapter(
@@ -474,12 +529,14 @@ class MessageListAdapterTest : RobolectricTest() {
         subject: String? = "irrelevant",
         threadCount: Int = 0,
         messageDate: Long = 0L,
+        internalDate: Long = 0L,
         displayName: CharSequence = "irrelevant",
         displayAddress: Address? = Address.parse("irrelevant@domain.example").first(),
         toMe: Boolean = false,
         ccMe: Boolean = false,
         previewText: String = "irrelevant",
         isMessageEncrypted: Boolean = false,
+        pqSignatureState: PQSignatureState = PQSignatureState.NONE,
         isRead: Boolean = false,
         isStarred: Boolean = false,
         isAnswered: Boolean = false,
@@ -497,12 +554,14 @@ class MessageListAdapterTest : RobolectricTest() {
             subject,
             threadCount,
             messageDate,
+            internalDate,
             displayName,
             displayAddress,
             toMe,
             ccMe,
             previewText,
             isMessageEncrypted,
+            pqSignatureState,
             isRead,
             isStarred,
             isAnswered,
@@ -531,6 +590,7 @@ class MessageListAdapterTest : RobolectricTest() {
     val View.secondLineView: TextView get() = findViewById(R.id.preview)
     val View.attachmentCountView: View get() = findViewById(R.id.attachment)
     val View.dateView: TextView get() = findViewById(R.id.date)
+    val View.pqSignatureView: View get() = findViewById(R.id.pq_signature)
 
     fun TextView.containsToMeIndicator() = textString.startsWith("»")
     fun TextView.containsCcMeIndicator() = textString.startsWith("›")
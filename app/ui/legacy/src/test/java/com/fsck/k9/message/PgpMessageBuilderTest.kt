@@ -24,6 +24,7 @@ import com.fsck.k9.mail.internet.MimeMessage
 import com.fsck.k9.mail.internet.MimeMultipart
 import com.fsck.k9.mail.internet.MimeUtility
 import com.fsck.k9.mail.internet.TextBody
+import com.fsck.k9.mailstore.LocalStoreProvider
 import com.fsck.k9.message.MessageBuilder.Callback
 import com.fsck.k9.message.quote.InsertableHtmlContent
 import com.fsck.k9.view.RecipientSelectView
@@ -708,7 +709,8 @@ class PgpMessageBuilderTest : K9RobolectricTest() {
         ): PgpMessageBuilder {
             val builder = PgpMessageBuilder(
                 MessageIdGenerator.getInstance(), BoundaryGenerator.getInstance(),
-                AutocryptOperations.getInstance(), autocryptOpenPgpApiInteractor, resourceProvider
+                AutocryptOperations.getInstance(), autocryptOpenPgpApiInteractor, resourceProvider,
+                mock(LocalStoreProvider::class.java)
             )
             builder.setOpenPgpApi(openPgpApi)
 
@@ -0,0 +1,242 @@
+package com.fsck.k9.ui.messagelist
+
+import android.content.ContentResolver
+import android.database.ContentObserver
+import android.net.Uri
+import androidx.lifecycle.Observer
+import com.fsck.k9.Account
+import com.fsck.k9.Account.SortType
+import com.fsck.k9.Preferences
+import com.fsck.k9.RobolectricTest
+import com.fsck.k9.mailstore.MessageChangeFeed
+import com.fsck.k9.provider.EmailProvider
+import com.fsck.k9.search.LocalSearch
+import com.google.common.truth.Truth.assertThat
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestCoroutineDispatcher
+import kotlinx.coroutines.test.resetMain
+import kotlinx.coroutines.test.setMain
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.argumentCaptor
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+
+private const val ACCOUNT_UUID = "00000000-0000-4000-0000-000000000000"
+private const val PAGE_SIZE = MessageListLiveData.PAGE_SIZE
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class MessageListLiveDataTest : RobolectricTest() {
+    private val testCoroutineDispatcher = TestCoroutineDispatcher()
+    private val preferences = mock<Preferences> {
+        on { accounts } doReturn listOf(Account(ACCOUNT_UUID))
+    }
+    private val contentResolver = mock<ContentResolver>()
+    private val messageChangeFeed = MessageChangeFeed()
+    private val messageListLoader = mock<MessageListLoader> {
+        on { getMessageList(any(), any()) } doReturn MessageListInfo(emptyList(), hasMoreMessages = false)
+    }
+    private val config = MessageListConfig(
+        search = LocalSearch().apply { addAccountUuid(ACCOUNT_UUID) },
+        showingThreadedList = false,
+        sortType = SortType.SORT_DATE,
+        sortAscending = false,
+        sortDateAscending = false,
+        activeMessage = null
+    )
+    private val messageListLiveData = MessageListLiveData(
+        messageListLoader,
+        preferences,
+        contentResolver,
+        messageChangeFeed,
+        CoroutineScope(testCoroutineDispatcher),
+        config,
+        testCoroutineDispatcher
+    )
+    private val observer = Observer<MessageListInfo> { }
+
+    @Before
+    fun setUp() {
+        // Set EmailProvider.CONTENT_URI so EmailProvider.getNotificationUri() won't crash
+        EmailProvider.CONTENT_URI = Uri.parse("content://dummy")
+        Dispatchers.setMain(testCoroutineDispatcher)
+    }
+
+    @After
+    fun tearDown() {
+        messageListLiveData.removeObserver(observer)
+        Dispatchers.resetMain()
+    }
+
+    @Test
+    fun onActive_shouldLoadFirstPage() {
+        messageListLiveData.observeForever(observer)
+
+        verify(messageListLoader).getMessageList(config, PAGE_SIZE)
+    }
+
+    @Test
+    fun onChange_shouldReloadImmediately() {
+        messageListLiveData.observeForever(observer)
+
+        notifyChange()
+
+        verify(messageListLoader, times(2)).getMessageList(config, PAGE_SIZE)
+    }
+
+    @Test
+    fun onChange_withBurstOfNotifications_shouldCoalesceFollowingReloads() {
+        messageListLiveData.observeForever(observer)
+
+        notifyChange()
+        notifyChange()
+        notifyChange()
+
+        verify(messageListLoader, times(2)).getMessageList(config, PAGE_SIZE)
+
+        testCoroutineDispatcher.advanceTimeBy(MessageListLiveData.RELOAD_DELAY_MS)
+        verify(messageListLoader, times(3)).getMessageList(config, PAGE_SIZE)
+
+        testCoroutineDispatcher.advanceUntilIdle()
+        verify(messageListLoader, times(3)).getMessageList(config, PAGE_SIZE)
+    }
+
+    @Test
+    fun onChange_afterReloadDelay_shouldReloadImmediately() {
+        messageListLiveData.observeForever(observer)
+        notifyChange()
+        testCoroutineDispatcher.advanceUntilIdle()
+
+        notifyChange()
+
+        verify(messageListLoader, times(3)).getMessageList(config, PAGE_SIZE)
+    }
+
+    @Test
+    fun loadMoreMessages_withPartialList_shouldLoadNextPage() {
+        whenever(messageListLoader.getMessageList(any(), any())).thenReturn(createPartialMessageListInfo())
+        messageListLiveData.observeForever(observer)
+
+        messageListLiveData.loadMoreMessages()
+
+        verify(messageListLoader).getMessageList(config, 2 * PAGE_SIZE)
+    }
+
+    @Test
+    fun loadMoreMessages_withCompleteList_shouldNotReload() {
+        messageListLiveData.observeForever(observer)
+
+        messageListLiveData.loadMoreMessages()
+
+        verify(messageListLoader).getMessageList(config, PAGE_SIZE)
+        verify(messageListLoader, never()).getMessageList(config, 2 * PAGE_SIZE)
+    }
+
+    @Test
+    fun loadAllMessages_withPartialList_shouldLoadWithoutLimit() {
+        whenever(messageListLoader.getMessageList(any(), any())).thenReturn(createPartialMessageListInfo())
+        messageListLiveData.observeForever(observer)
+
+        messageListLiveData.loadAllMessages()
+
+        verify(messageListLoader).getMessageList(config, Int.MAX_VALUE)
+    }
+
+    @Test
+    fun loadAllMessages_withCompleteList_shouldNotReload() {
+        messageListLiveData.observeForever(observer)
+
+        messageListLiveData.loadAllMessages()
+
+        verify(messageListLoader, never()).getMessageList(config, Int.MAX_VALUE)
+    }
+
+    @Test
+    fun onChange_afterLoadAllMessages_shouldReloadWholeList() {
+        whenever(messageListLoader.getMessageList(any(), any())).thenReturn(createPartialMessageListInfo())
+        messageListLiveData.observeForever(observer)
+        messageListLiveData.loadAllMessages()
+
+        notifyChange()
+
+        verify(messageListLoader, times(2)).getMessageList(config, Int.MAX_VALUE)
+    }
+
+    @Test
+    fun onChange_withKnownMessageIds_shouldUpdateMessageList() {
+        val messageListInfo = createPartialMessageListInfo()
+        val updatedMessageListInfo = createPartialMessageListInfo()
+        whenever(messageListLoader.getMessageList(any(), any())).thenReturn(messageListInfo)
+        whenever(messageListLoader.updateMessageList(any(), any(), any(), any())).thenReturn(updatedMessageListInfo)
+        messageListLiveData.observeForever(observer)
+
+        notifyChange(messageIds = listOf(23L))
+
+        verify(messageListLoader).updateMessageList(
+            config,
+            messageListInfo,
+            changedMessageIds = mapOf(ACCOUNT_UUID to setOf(23L)),
+            messageLimit = PAGE_SIZE
+        )
+        verify(messageListLoader).getMessageList(config, PAGE_SIZE)
+        assertThat(messageListLiveData.value).isSameInstanceAs(updatedMessageListInfo)
+    }
+
+    @Test
+    fun onChange_withMessageListThatCantBeUpdated_shouldReloadMessageList() {
+        messageListLiveData.observeForever(observer)
+
+        notifyChange(messageIds = listOf(23L))
+
+        verify(messageListLoader).updateMessageList(any(), any(), any(), any())
+        verify(messageListLoader, times(2)).getMessageList(config, PAGE_SIZE)
+    }
+
+    @Test
+    fun onChange_withoutNewChanges_shouldNotReload() {
+        messageListLiveData.observeForever(observer)
+
+        getContentObserver().onChange(false)
+
+        verify(messageListLoader).getMessageList(config, PAGE_SIZE)
+        verify(messageListLoader, never()).updateMessageList(any(), any(), any(), any())
+    }
+
+    @Test
+    fun onChange_withChangesOfOtherAccount_shouldNotReload() {
+        messageListLiveData.observeForever(observer)
+        messageChangeFeed.recordChange("other", messageIds = null)
+
+        getContentObserver().onChange(false)
+
+        verify(messageListLoader).getMessageList(config, PAGE_SIZE)
+    }
+
+    private fun notifyChange(messageIds: Collection<Long>? = null) {
+        messageChangeFeed.recordChange(ACCOUNT_UUID, messageIds)
+        getContentObserver().onChange(false)
+    }
+
+    private fun getContentObserver(): ContentObserver {
+        val contentObserverCaptor = argumentCaptor<ContentObserver>()
+        verify(contentResolver).registerContentObserver(any(), eq(false), contentObserverCaptor.capture())
+        return contentObserverCaptor.firstValue
+    }
+
+    private fun createPartialMessageListInfo(): MessageListInfo {
+        return MessageListInfo(
+            messageListItems = List(PAGE_SIZE) { mock() },
+            hasMoreMessages = false,
+            isPartialList = true
+        )
+    }
+}
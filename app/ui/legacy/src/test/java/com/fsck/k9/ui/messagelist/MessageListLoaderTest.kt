@@ -0,0 +1,371 @@
+package com.fsck.k9.ui.messagelist
+
+import android.content.ContentResolver
+import android.database.Cursor
+import android.database.CursorWrapper
+import android.database.MatrixCursor
+import android.net.Uri
+import com.fsck.k9.Account
+import com.fsck.k9.Account.SortType
+import com.fsck.k9.Preferences
+import com.fsck.k9.RobolectricTest
+import com.fsck.k9.fragment.MLFProjectionInfo
+import com.fsck.k9.mailstore.FulltextIndexer
+import com.fsck.k9.provider.EmailProvider
+import com.fsck.k9.search.LocalSearch
+import com.google.common.truth.Truth.assertThat
+import kotlin.math.min
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.verify
+
+private const val ACCOUNT_UUID_1 = "00000000-0000-4000-0000-000000000001"
+private const val ACCOUNT_UUID_2 = "00000000-0000-4000-0000-000000000002"
+
+class MessageListLoaderTest : RobolectricTest() {
+    private val account1 = Account(ACCOUNT_UUID_1)
+    private val account2 = Account(ACCOUNT_UUID_2)
+    private val preferences = mock<Preferences> {
+        on { accounts } doReturn listOf(account1, account2)
+    }
+    private val accountCursors = mutableMapOf<String, Cursor>()
+    private val queriedUris = mutableListOf<Uri>()
+    private val querySelections = mutableListOf<String>()
+    private val querySelectionArgs = mutableListOf<List<String>>()
+    private val contentResolver = mock<ContentResolver> {
+        on { query(any(), any(), anyOrNull(), anyOrNull(), anyOrNull()) } doAnswer { invocation ->
+            val uri = invocation.getArgument<Uri>(0)
+            queriedUris.add(uri)
+            querySelections.add(invocation.getArgument(2))
+            querySelectionArgs.add(invocation.getArgument<Array<String>>(3).toList())
+
+            val accountUuid = uri.pathSegments[1]
+            accountCursors.getValue(accountUuid)
+        }
+    }
+
+    // Records the (account UUID, message ID) pairs of the rows the message list is created from
+    private val extractedRows = mutableListOf<Pair<String, Long>>()
+    private val messageListExtractor = mock<MessageListExtractor> {
+        on { extractMessageList(any(), any(), any(), any()) } doAnswer { invocation ->
+            val cursor = invocation.getArgument<Cursor>(0)
+            val uniqueIdColumn = invocation.getArgument<Int>(1)
+            val maxCount = invocation.getArgument<Int>(3)
+            List(min(cursor.count, maxCount)) { index ->
+                cursor.moveToPosition(index)
+                val accountUuid = cursor.getString(MLFProjectionInfo.ACCOUNT_UUID_COLUMN)
+                val messageId = cursor.getLong(MLFProjectionInfo.ID_COLUMN)
+                extractedRows.add(accountUuid to messageId)
+
+                createMessageListItem(
+                    position = index,
+                    account = if (accountUuid == ACCOUNT_UUID_1) account1 else account2,
+                    messageDate = cursor.getLong(MLFProjectionInfo.DATE_COLUMN),
+                    uniqueId = cursor.getLong(uniqueIdColumn),
+                    databaseId = messageId
+                )
+            }
+        }
+    }
+    private val messageListLoader = MessageListLoader(
+        preferences,
+        contentResolver,
+        localStoreProvider = mock(),
+        messageListExtractor,
+        fulltextIndexer = mock<FulltextIndexer>()
+    )
+
+    @Before
+    fun setUp() {
+        // Set EmailProvider.CONTENT_URI so the message list URIs can be built
+        EmailProvider.CONTENT_URI = Uri.parse("content://dummy")
+    }
+
+    @Test
+    fun getMessageList_shouldPassLimitToQuery() {
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 2000L)
+
+        messageListLoader.getMessageList(createConfig(ACCOUNT_UUID_1), messageLimit = 2)
+
+        assertThat(queriedUris.single().getQueryParameter(EmailProvider.QUERY_PARAMETER_LIMIT)).isEqualTo("2")
+        verify(messageListExtractor).extractMessageList(any(), any(), eq(false), eq(2))
+    }
+
+    @Test
+    fun getMessageList_withoutLimit_shouldNotAddLimitToQuery() {
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 2000L)
+
+        messageListLoader.getMessageList(createConfig(ACCOUNT_UUID_1))
+
+        assertThat(queriedUris.single().getQueryParameter(EmailProvider.QUERY_PARAMETER_LIMIT)).isNull()
+    }
+
+    @Test
+    fun getMessageList_withAsManyMessagesAsLimit_shouldReturnPartialList() {
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 2000L, 2L to 1000L)
+
+        val messageListInfo = messageListLoader.getMessageList(createConfig(ACCOUNT_UUID_1), messageLimit = 2)
+
+        assertThat(messageListInfo.messageListItems).hasSize(2)
+        assertThat(messageListInfo.isPartialList).isTrue()
+    }
+
+    @Test
+    fun getMessageList_withFewerMessagesThanLimit_shouldReturnCompleteList() {
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 2000L)
+
+        val messageListInfo = messageListLoader.getMessageList(createConfig(ACCOUNT_UUID_1), messageLimit = 2)
+
+        assertThat(messageListInfo.messageListItems).hasSize(1)
+        assertThat(messageListInfo.isPartialList).isFalse()
+    }
+
+    @Test
+    fun getMessageList_withMultipleAccounts_shouldMergeByDateAndApplyLimit() {
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 5000L, 2L to 1000L)
+        accountCursors[ACCOUNT_UUID_2] = createCursor(ACCOUNT_UUID_2, 1L to 3000L, 2L to 2000L)
+
+        val messageListInfo = messageListLoader.getMessageList(
+            createConfig(ACCOUNT_UUID_1, ACCOUNT_UUID_2),
+            messageLimit = 3
+        )
+
+        assertThat(queriedUris.map { it.getQueryParameter(EmailProvider.QUERY_PARAMETER_LIMIT) })
+            .containsExactly("3", "3")
+        assertThat(extractedRows).containsExactly(
+            ACCOUNT_UUID_1 to 1L,
+            ACCOUNT_UUID_2 to 1L,
+            ACCOUNT_UUID_2 to 2L
+        ).inOrder()
+        assertThat(messageListInfo.isPartialList).isFalse()
+    }
+
+    @Test
+    fun getMessageList_withMultipleAccountsAndOneAccountReachingLimit_shouldReturnPartialList() {
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 5000L, 2L to 1000L)
+        accountCursors[ACCOUNT_UUID_2] = createCursor(ACCOUNT_UUID_2, 1L to 3000L)
+
+        val messageListInfo = messageListLoader.getMessageList(
+            createConfig(ACCOUNT_UUID_1, ACCOUNT_UUID_2),
+            messageLimit = 2
+        )
+
+        assertThat(extractedRows).containsExactly(ACCOUNT_UUID_1 to 1L, ACCOUNT_UUID_2 to 1L).inOrder()
+        assertThat(messageListInfo.isPartialList).isTrue()
+    }
+
+    @Test
+    fun updateMessageList_shouldOnlyQueryChangedMessages() {
+        val config = createConfig(ACCOUNT_UUID_1)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 3000L, 2L to 2000L)
+        val messageListInfo = messageListLoader.getMessageList(config)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 2L to 2000L)
+
+        messageListLoader.updateMessageList(config, messageListInfo, mapOf(ACCOUNT_UUID_1 to setOf(2L, 5L)))
+
+        assertThat(querySelections.last()).endsWith("id IN (?, ?)")
+        assertThat(querySelectionArgs.last()).containsAtLeast("2", "5").inOrder()
+        assertThat(queriedUris.last().getQueryParameter(EmailProvider.QUERY_PARAMETER_LIMIT)).isNull()
+    }
+
+    @Test
+    fun updateMessageList_shouldPlaceChangedMessagesAccordingToSortOrder() {
+        val config = createConfig(ACCOUNT_UUID_1)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 5000L, 2L to 3000L, 3L to 1000L)
+        val messageListInfo = messageListLoader.getMessageList(config)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 4L to 4000L, 2L to 500L)
+
+        val updatedMessageListInfo = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            mapOf(ACCOUNT_UUID_1 to setOf(2L, 4L))
+        )
+
+        assertThat(updatedMessageListInfo!!.messageListItems.map { it.databaseId }).containsExactly(1L, 4L, 3L, 2L)
+            .inOrder()
+        assertThat(updatedMessageListInfo.messageListItems.map { it.position }).containsExactly(0, 1, 2, 3).inOrder()
+        assertThat(updatedMessageListInfo.isPartialList).isFalse()
+    }
+
+    @Test
+    fun updateMessageList_withMessageNoLongerMatching_shouldRemoveMessage() {
+        val config = createConfig(ACCOUNT_UUID_1)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 3000L, 2L to 2000L)
+        val messageListInfo = messageListLoader.getMessageList(config)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1)
+
+        val updatedMessageListInfo = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            mapOf(ACCOUNT_UUID_1 to setOf(1L))
+        )
+
+        assertThat(updatedMessageListInfo!!.messageListItems.map { it.databaseId }).containsExactly(2L)
+        assertThat(updatedMessageListInfo.messageListItems.single().position).isEqualTo(0)
+    }
+
+    @Test
+    fun updateMessageList_withMultipleAccounts_shouldKeepUniqueIds() {
+        val config = createConfig(ACCOUNT_UUID_1, ACCOUNT_UUID_2)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 5000L)
+        accountCursors[ACCOUNT_UUID_2] = createCursor(ACCOUNT_UUID_2, 1L to 3000L)
+        val messageListInfo = messageListLoader.getMessageList(config)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1)
+        accountCursors[ACCOUNT_UUID_2] = createCursor(ACCOUNT_UUID_2, 1L to 6000L)
+
+        val updatedMessageListInfo = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            mapOf(ACCOUNT_UUID_2 to setOf(1L))
+        )
+
+        assertThat(updatedMessageListInfo!!.messageListItems.map { it.uniqueId })
+            .containsExactly(messageListInfo.messageListItems[1].uniqueId, messageListInfo.messageListItems[0].uniqueId)
+            .inOrder()
+    }
+
+    @Test
+    fun updateMessageList_withPartialList_shouldDropMessagesAfterLastEntry() {
+        val config = createConfig(ACCOUNT_UUID_1)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 5000L, 2L to 3000L)
+        val messageListInfo = messageListLoader.getMessageList(config, messageLimit = 2)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 4L to 4000L, 5L to 1000L)
+
+        val updatedMessageListInfo = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            mapOf(ACCOUNT_UUID_1 to setOf(4L, 5L)),
+            messageLimit = 2
+        )
+
+        assertThat(updatedMessageListInfo!!.messageListItems.map { it.databaseId }).containsExactly(1L, 4L).inOrder()
+        assertThat(updatedMessageListInfo.isPartialList).isTrue()
+    }
+
+    @Test
+    fun updateMessageList_withPartialListAndRemovedMessage_shouldReturnNull() {
+        val config = createConfig(ACCOUNT_UUID_1)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 5000L, 2L to 3000L)
+        val messageListInfo = messageListLoader.getMessageList(config, messageLimit = 2)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1)
+
+        val updatedMessageListInfo = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            mapOf(ACCOUNT_UUID_1 to setOf(1L)),
+            messageLimit = 2
+        )
+
+        assertThat(updatedMessageListInfo).isNull()
+    }
+
+    @Test
+    fun updateMessageList_withCompleteListGrowingPastLimit_shouldReturnPartialList() {
+        val config = createConfig(ACCOUNT_UUID_1)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 1L to 5000L)
+        val messageListInfo = messageListLoader.getMessageList(config, messageLimit = 2)
+        accountCursors[ACCOUNT_UUID_1] = createCursor(ACCOUNT_UUID_1, 2L to 6000L, 3L to 4000L)
+
+        val updatedMessageListInfo = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            mapOf(ACCOUNT_UUID_1 to setOf(2L, 3L)),
+            messageLimit = 2
+        )
+
+        assertThat(updatedMessageListInfo!!.messageListItems.map { it.databaseId }).containsExactly(2L, 1L).inOrder()
+        assertThat(updatedMessageListInfo.isPartialList).isTrue()
+    }
+
+    @Test
+    fun updateMessageList_withThreadedList_shouldReturnNull() {
+        val config = createConfig(ACCOUNT_UUID_1).copy(showingThreadedList = true)
+        val messageListInfo = MessageListInfo(messageListItems = emptyList(), hasMoreMessages = false)
+
+        val updatedMessageListInfo = messageListLoader.updateMessageList(
+            config,
+            messageListInfo,
+            mapOf(ACCOUNT_UUID_1 to setOf(1L))
+        )
+
+        assertThat(updatedMessageListInfo).isNull()
+    }
+
+    private fun createConfig(vararg accountUuids: String): MessageListConfig {
+        return MessageListConfig(
+            search = LocalSearch().apply { accountUuids.forEach { addAccountUuid(it) } },
+            showingThreadedList = false,
+            sortType = SortType.SORT_DATE,
+            sortAscending = false,
+            sortDateAscending = false,
+            activeMessage = null
+        )
+    }
+
+    private fun createMessageListItem(
+        position: Int,
+        account: Account,
+        messageDate: Long,
+        uniqueId: Long,
+        databaseId: Long
+    ): MessageListItem {
+        return MessageListItem(
+            position = position,
+            account = account,
+            subject = null,
+            threadCount = 0,
+            messageDate = messageDate,
+            internalDate = 0L,
+            displayName = "",
+            displayAddress = null,
+            toMe = false,
+            ccMe = false,
+            previewText = "",
+            isMessageEncrypted = false,
+            pqSignatureState = PQSignatureState.NONE,
+            isRead = false,
+            isStarred = false,
+            isAnswered = false,
+            isForwarded = false,
+            hasAttachments = false,
+            uniqueId = uniqueId,
+            folderId = 1L,
+            messageUid = databaseId.toString(),
+            databaseId = databaseId,
+            threadRoot = databaseId
+        )
+    }
+
+    private fun createCursor(accountUuid: String, vararg messages: Pair<Long, Long>): Cursor {
+        val matrixCursor = MatrixCursor(MLFProjectionInfo.PROJECTION).apply {
+            for ((messageId, date) in messages) {
+                val row = arrayOfNulls<Any>(MLFProjectionInfo.PROJECTION.size)
+                row[MLFProjectionInfo.ID_COLUMN] = messageId
+                row[MLFProjectionInfo.DATE_COLUMN] = date
+                row[MLFProjectionInfo.ACCOUNT_UUID_COLUMN] = accountUuid
+                addRow(row)
+            }
+        }
+
+        // Like EmailProvider, map "_id" to the message ID column
+        return object : CursorWrapper(matrixCursor) {
+            override fun getColumnIndex(columnName: String): Int {
+                return if (columnName == "_id") MLFProjectionInfo.ID_COLUMN else super.getColumnIndex(columnName)
+            }
+
+            override fun getColumnIndexOrThrow(columnName: String): Int {
+                return if (columnName == "_id") {
+                    MLFProjectionInfo.ID_COLUMN
+                } else {
+                    super.getColumnIndexOrThrow(columnName)
+                }
+            }
+        }
+    }
+}
@@ -23,6 +23,13 @@ interface Backend {
     // TODO: Add a way to cancel the sync process
     fun sync(folder: String, syncConfig: SyncConfig, listener: SyncListener)
 
+    /**
+     * Returns the server IDs of the folders that might have changed on the server since they were last synced, or
+     * `null` if the backend can't detect changes without syncing the folders.
+     */
+    @Throws(MessagingException::class)
+    fun getChangedFolders(folderServerIds: Collection<String>, syncConfig: SyncConfig): Set<String>?
+
     @Throws(MessagingException::class)
     fun downloadMessage(syncConfig: SyncConfig, folderServerId: String, messageServerId: String)
 
@@ -22,6 +22,7 @@ interface BackendFolder {
     fun getMessageFlags(messageServerId: String): Set<Flag>
     fun setMessageFlag(messageServerId: String, flag: Flag, value: Boolean)
     fun saveMessage(message: Message, downloadState: MessageDownloadState)
+    fun saveMessages(messages: List<Message>, downloadState: MessageDownloadState)
     fun getOldestMessageDate(): Date?
     fun getFolderExtraString(name: String): String?
     fun setFolderExtraString(name: String, value: String?)
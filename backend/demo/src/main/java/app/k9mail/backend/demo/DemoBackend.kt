@@ -84,6 +84,8 @@ class DemoBackend(private val backendStorage: BackendStorage) : Backend {
         listener.syncFinished(folderServerId)
     }
 
+    override fun getChangedFolders(folderServerIds: Collection<String>, syncConfig: SyncConfig): Set<String>? = null
+
     override fun downloadMessage(syncConfig: SyncConfig, folderServerId: String, messageServerId: String) {
         throw UnsupportedOperationException("not implemented")
     }
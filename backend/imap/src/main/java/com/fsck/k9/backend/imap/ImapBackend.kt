@@ -55,6 +55,10 @@ class ImapBackend(
         imapSync.sync(folder, syncConfig, listener)
     }
 
+    override fun getChangedFolders(folderServerIds: Collection<String>, syncConfig: SyncConfig): Set<String> {
+        return imapSync.getChangedFolders(folderServerIds, syncConfig)
+    }
+
     override fun downloadMessage(syncConfig: SyncConfig, folderServerId: String, messageServerId: String) {
         imapSync.downloadMessage(syncConfig, folderServerId, messageServerId)
     }
@@ -23,6 +23,9 @@ private const val UNEXPECTED_ERROR_TIMEOUT = 60 * 60 * 1000L
 
 /**
  * Manages [ImapFolderPusher] instances that listen for changes to individual folders.
+ *
+ * If the server supports the NOTIFY extension a single [ImapNotifyPusher] is used to listen for changes to all push
+ * folders instead. We fall back to per-folder pushers when the server doesn't support NOTIFY or rejects our request.
  */
 internal class ImapBackendPusher(
     private val imapStore: ImapStore,
@@ -32,12 +35,18 @@ internal class ImapBackendPusher(
     private val callback: BackendPusherCallback,
     private val accountName: String,
     backgroundDispatcher: CoroutineDispatcher = Dispatchers.IO
-) : BackendPusher, ImapPusherCallback {
+) : BackendPusher, ImapPusherCallback, ImapNotifyPusherCallback {
     private val coroutineScope = CoroutineScope(backgroundDispatcher)
     private val lock = Any()
     private val pushFolders = mutableMapOf<String, ImapFolderPusher>()
     private var currentFolderServerIds: Collection<String> = emptySet()
     private val pushFolderSleeping = mutableMapOf<String, IdleRefreshTimer>()
+    private var notifyPusher: ImapNotifyPusher? = null
+    private var notifyFolderServerIds: Set<String> = emptySet()
+    private var notifyRetryTimer: IdleRefreshTimer? = null
+
+    @Volatile
+    private var isNotifySupported = true
 
     private val idleRefreshTimeoutProvider = object : IdleRefreshTimeoutProvider {
         override val idleRefreshTimeoutMs
@@ -71,6 +80,7 @@ internal class ImapBackendPusher(
             for (pushFolder in pushFolders.values) {
                 pushFolder.refresh()
             }
+            notifyPusher?.refresh()
         }
     }
 
@@ -94,6 +104,37 @@ internal class ImapBackendPusher(
             folderServerIds
         }
 
+        if (isNotifySupported) {
+            updateNotifyPusher(folderServerIds, pushFolderServerIds.toSet())
+        } else {
+            updateFolderPushers(folderServerIds, pushFolderServerIds)
+        }
+    }
+
+    private fun updateNotifyPusher(folderServerIds: Collection<String>, pushFolderServerIds: Set<String>) {
+        val stopNotifyPusher: ImapNotifyPusher?
+        val startNotifyPusher: ImapNotifyPusher?
+        synchronized(lock) {
+            currentFolderServerIds = folderServerIds
+
+            val isRunning = notifyPusher != null && notifyFolderServerIds == pushFolderServerIds
+            if (isRunning || notifyRetryTimer?.isWaiting == true) return
+
+            // NOTIFY SET replaces the previous event list. But the old connection might be in the middle of IDLE, so
+            // it's simpler to start over with a new connection.
+            stopNotifyPusher = notifyPusher
+            startNotifyPusher = pushFolderServerIds.takeIf { it.isNotEmpty() }?.let { createImapNotifyPusher(it) }
+
+            notifyPusher = startNotifyPusher
+            notifyFolderServerIds = pushFolderServerIds
+            notifyRetryTimer = null
+        }
+
+        stopNotifyPusher?.stop()
+        startNotifyPusher?.start()
+    }
+
+    private fun updateFolderPushers(folderServerIds: Collection<String>, pushFolderServerIds: Collection<String>) {
         val stopFolderPushers: List<ImapFolderPusher>
         val startFolderPushers: List<ImapFolderPusher>
         synchronized(lock) {
@@ -147,6 +188,8 @@ internal class ImapBackendPusher(
             }
             pushFolderSleeping.clear()
 
+            stopNotifyPusher()
+
             currentFolderServerIds = emptySet()
         }
     }
@@ -164,6 +207,8 @@ internal class ImapBackendPusher(
                 retryTimer.cancel()
             }
             pushFolderSleeping.clear()
+
+            stopNotifyPusher()
         }
 
         imapStore.closeAllConnections()
@@ -183,6 +228,27 @@ internal class ImapBackendPusher(
         )
     }
 
+    private fun createImapNotifyPusher(folderServerIds: Set<String>): ImapNotifyPusher {
+        return ImapNotifyPusher(
+            imapStore,
+            powerManager,
+            idleRefreshManager,
+            this,
+            accountName,
+            folderServerIds,
+            idleRefreshTimeoutProvider
+        )
+    }
+
+    private fun stopNotifyPusher() {
+        notifyPusher?.stop()
+        notifyPusher = null
+        notifyFolderServerIds = emptySet()
+
+        notifyRetryTimer?.cancel()
+        notifyRetryTimer = null
+    }
+
     override fun onPushEvent(folderServerId: String) {
         callback.onPushEvent(folderServerId)
         idleRefreshManager.resetTimers()
@@ -192,33 +258,7 @@ internal class ImapBackendPusher(
         synchronized(lock) {
             pushFolders.remove(folderServerId)
 
-            when (exception) {
-                is AuthenticationFailedException -> {
-                    Timber.v(exception, "Authentication failure when attempting to use IDLE")
-                    // TODO: This could be happening because of too many connections to the host. Ideally we'd want to
-                    //  detect this case and use a lower timeout.
-
-                    startRetryTimer(folderServerId, UNEXPECTED_ERROR_TIMEOUT)
-                }
-                is IOException -> {
-                    Timber.v(exception, "I/O error while trying to use IDLE")
-
-                    startRetryTimer(folderServerId, IO_ERROR_TIMEOUT)
-                }
-                is MessagingException -> {
-                    Timber.v(exception, "MessagingException")
-
-                    if (exception.isPermanentFailure) {
-                        startRetryTimer(folderServerId, UNEXPECTED_ERROR_TIMEOUT)
-                    } else {
-                        startRetryTimer(folderServerId, IO_ERROR_TIMEOUT)
-                    }
-                }
-                else -> {
-                    Timber.v(exception, "Unexpected error")
-                    startRetryTimer(folderServerId, UNEXPECTED_ERROR_TIMEOUT)
-                }
-            }
+            startRetryTimer(folderServerId, getRetryTimeout(exception))
 
             if (pushFolders.isEmpty()) {
                 callback.onPushError(exception)
@@ -230,6 +270,56 @@ internal class ImapBackendPusher(
         callback.onPushNotSupported()
     }
 
+    override fun onNotifyError(exception: Exception) {
+        synchronized(lock) {
+            notifyPusher = null
+
+            val timeout = getRetryTimeout(exception)
+            Timber.v("ImapNotifyPusher sleeping for %d ms", timeout)
+            notifyRetryTimer = idleRefreshManager.startTimer(timeout, ::restartFolderPushers)
+
+            callback.onPushError(exception)
+        }
+    }
+
+    override fun onNotifyNotSupported() {
+        Timber.v("Server doesn't support NOTIFY; using one connection per push folder")
+
+        synchronized(lock) {
+            isNotifySupported = false
+            notifyPusher = null
+            notifyFolderServerIds = emptySet()
+        }
+
+        updateFolders()
+    }
+
+    private fun getRetryTimeout(exception: Exception): Long {
+        return when (exception) {
+            is AuthenticationFailedException -> {
+                Timber.v(exception, "Authentication failure when attempting to use IDLE")
+                // TODO: This could be happening because of too many connections to the host. Ideally we'd want to
+                //  detect this case and use a lower timeout.
+
+                UNEXPECTED_ERROR_TIMEOUT
+            }
+            is IOException -> {
+                Timber.v(exception, "I/O error while trying to use IDLE")
+
+                IO_ERROR_TIMEOUT
+            }
+            is MessagingException -> {
+                Timber.v(exception, "MessagingException")
+
+                if (exception.isPermanentFailure) UNEXPECTED_ERROR_TIMEOUT else IO_ERROR_TIMEOUT
+            }
+            else -> {
+                Timber.v(exception, "Unexpected error")
+                UNEXPECTED_ERROR_TIMEOUT
+            }
+        }
+    }
+
     private fun startRetryTimer(folderServerId: String, timeout: Long) {
         Timber.v("ImapBackendPusher for folder %s sleeping for %d ms", folderServerId, timeout)
         pushFolderSleeping[folderServerId] = idleRefreshManager.startTimer(timeout, ::restartFolderPushers)
@@ -0,0 +1,112 @@
+package com.fsck.k9.backend.imap
+
+import com.fsck.k9.mail.power.PowerManager
+import com.fsck.k9.mail.store.imap.IdleRefreshManager
+import com.fsck.k9.mail.store.imap.IdleRefreshTimeoutProvider
+import com.fsck.k9.mail.store.imap.ImapNotifyIdler
+import com.fsck.k9.mail.store.imap.ImapStore
+import com.fsck.k9.mail.store.imap.NotifyIdleResult
+import kotlin.concurrent.thread
+import timber.log.Timber
+
+/**
+ * Listens for changes to multiple IMAP folders over a single connection in a dedicated thread.
+ *
+ * Requires the server to support the NOTIFY extension (RFC 5465).
+ */
+class ImapNotifyPusher(
+    private val imapStore: ImapStore,
+    private val powerManager: PowerManager,
+    private val idleRefreshManager: IdleRefreshManager,
+    private val callback: ImapNotifyPusherCallback,
+    private val accountName: String,
+    private val folderServerIds: Set<String>,
+    private val idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider
+) {
+    @Volatile
+    private var notifyIdler: ImapNotifyIdler? = null
+
+    @Volatile
+    private var stopPushing = false
+
+    fun start() {
+        Timber.v("Starting ImapNotifyPusher for %s / %s", accountName, folderServerIds)
+
+        thread(name = "ImapNotifyPusher-$accountName") {
+            Timber.v("Starting ImapNotifyPusher thread for %s", accountName)
+
+            runPushLoop()
+
+            Timber.v("Exiting ImapNotifyPusher thread for %s", accountName)
+        }
+    }
+
+    fun refresh() {
+        Timber.v("Refreshing ImapNotifyPusher for %s", accountName)
+
+        notifyIdler?.refresh()
+    }
+
+    fun stop() {
+        Timber.v("Stopping ImapNotifyPusher for %s", accountName)
+
+        stopPushing = true
+        notifyIdler?.stop()
+    }
+
+    private fun runPushLoop() {
+        val wakeLock = powerManager.newWakeLock("ImapNotifyPusher-$accountName")
+        wakeLock.acquire()
+
+        performInitialSync()
+
+        val notifyIdler = ImapNotifyIdler.create(
+            idleRefreshManager,
+            wakeLock,
+            imapStore,
+            folderServerIds,
+            idleRefreshTimeoutProvider
+        ).also {
+            notifyIdler = it
+        }
+
+        try {
+            while (!stopPushing) {
+                when (val idleResult = notifyIdler.idle()) {
+                    is NotifyIdleResult.Changes -> {
+                        for (folderServerId in idleResult.folderServerIds) {
+                            callback.onPushEvent(folderServerId)
+                        }
+                    }
+                    NotifyIdleResult.Stopped -> {
+                        stopPushing = true
+                    }
+                    NotifyIdleResult.NotSupported -> {
+                        if (!stopPushing) {
+                            stopPushing = true
+                            callback.onNotifyNotSupported()
+                        }
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            Timber.v(e, "Exception in ImapNotifyPusher")
+
+            this.notifyIdler = null
+
+            // Errors caused by stopping this pusher (e.g. closing the connection) don't concern the replacement
+            if (!stopPushing) {
+                callback.onNotifyError(e)
+            }
+        }
+
+        wakeLock.release()
+    }
+
+    private fun performInitialSync() {
+        for (folderServerId in folderServerIds) {
+            if (stopPushing) break
+            callback.onPushEvent(folderServerId)
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.fsck.k9.backend.imap
+
+interface ImapNotifyPusherCallback {
+    fun onPushEvent(folderServerId: String)
+    fun onNotifyError(exception: Exception)
+    fun onNotifyNotSupported()
+}
@@ -15,10 +15,12 @@ import com.fsck.k9.mail.Flag
 import com.fsck.k9.mail.MessageDownloadState
 import com.fsck.k9.mail.internet.MessageExtractor
 import com.fsck.k9.mail.store.imap.FetchListener
+import com.fsck.k9.mail.store.imap.FolderStatus
 import com.fsck.k9.mail.store.imap.ImapFolder
 import com.fsck.k9.mail.store.imap.ImapMessage
 import com.fsck.k9.mail.store.imap.ImapStore
 import com.fsck.k9.mail.store.imap.OpenMode
+import com.fsck.k9.mail.store.imap.QresyncResponse
 import java.util.Collections
 import java.util.Date
 import java.util.concurrent.atomic.AtomicInteger
@@ -34,6 +36,39 @@ internal class ImapSync(
         synchronizeMailboxSynchronous(folder, syncConfig, listener)
     }
 
+    /**
+     * Compares the status of the folders on the server with the status seen before their last successful sync.
+     *
+     * The status of a changed folder is remembered, and becomes the folder's synced status once the next sync of the
+     * folder succeeded. Because that status was retrieved before the sync started, any change made later will show up
+     * in a later status.
+     *
+     * Only folders that report `HIGHESTMODSEQ` (CONDSTORE) can be skipped. Without it, flag changes, messages marked
+     * as `\Deleted` but not expunged, and read/unread changes that cancel each other out don't show up in the status.
+     *
+     * @return the server IDs of the folders that need to be synced
+     */
+    fun getChangedFolders(folderServerIds: Collection<String>, syncConfig: SyncConfig): Set<String> {
+        val folderStatuses = imapStore.getFolderStatuses(folderServerIds)
+
+        return folderServerIds.filterTo(mutableSetOf()) { folderServerId ->
+            val folderStatus = folderStatuses[folderServerId] ?: return@filterTo true
+            if (folderStatus.highestModSeq == null) return@filterTo true
+
+            val backendFolder = backendStorage.getFolder(folderServerId)
+
+            val status = folderStatus.toExtraString()
+            val hasChanged = status != backendFolder.getFolderExtraString(EXTRA_SYNCED_FOLDER_STATUS) ||
+                !isSyncWindowUnchanged(backendFolder, syncConfig, getVisibleLimit(backendFolder, syncConfig))
+
+            if (hasChanged) {
+                backendFolder.setFolderExtraString(EXTRA_PENDING_FOLDER_STATUS, status)
+            }
+
+            hasChanged
+        }
+    }
+
     private fun synchronizeMailboxSynchronous(folder: String, syncConfig: SyncConfig, listener: SyncListener) {
         Timber.i("Synchronizing folder %s:%s", accountName, folder)
 
@@ -47,6 +82,8 @@ internal class ImapSync(
 
             listener.syncStarted(folder)
 
+            val pendingFolderStatus = backendFolder.getFolderExtraString(EXTRA_PENDING_FOLDER_STATUS)
+
             Timber.v("SYNC: About to get remote folder %s", folder)
             remoteFolder = imapStore.getFolder(folder)
 
@@ -78,12 +115,18 @@ internal class ImapSync(
                 remoteFolder.expunge()
             }
 
-            remoteFolder.open(OpenMode.READ_ONLY)
+            val oldUidValidity = backendFolder.getFolderExtraNumber(EXTRA_UID_VALIDITY)
+            val oldHighestModSeq = backendFolder.getFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ)
+            val qresyncResponse = if (oldUidValidity != null && oldHighestModSeq != null) {
+                remoteFolder.openWithQresync(OpenMode.READ_ONLY, oldUidValidity, oldHighestModSeq)
+            } else {
+                remoteFolder.open(OpenMode.READ_ONLY)
+                null
+            }
 
             listener.syncAuthenticationSuccess()
 
             val uidValidity = remoteFolder.getUidValidity()
-            val oldUidValidity = backendFolder.getFolderExtraNumber(EXTRA_UID_VALIDITY)
             if (oldUidValidity == null && uidValidity != null) {
                 Timber.d("SYNC: Saving UIDVALIDITY for %s", folder)
                 backendFolder.setFolderExtraNumber(EXTRA_UID_VALIDITY, uidValidity)
@@ -94,116 +137,46 @@ internal class ImapSync(
                 backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_KNOWN_UID, 0)
             }
 
-            /*
-             * Get the message list from the local store and create an index of
-             * the uids within the list.
-             */
-
             val highestKnownUid = backendFolder.getFolderExtraNumber(EXTRA_HIGHEST_KNOWN_UID) ?: 0
-            var localUidMap: Map<String, Long?>? = backendFolder.getAllMessagesAndEffectiveDates()
-
-            /*
-             * Get the remote message count.
-             */
-            val remoteMessageCount = remoteFolder.messageCount
-
-            var visibleLimit = backendFolder.visibleLimit
-            if (visibleLimit < 0) {
-                visibleLimit = syncConfig.defaultVisibleLimit
-            }
 
-            val remoteMessages = mutableListOf<ImapMessage>()
-            val remoteUidMap = mutableMapOf<String, ImapMessage>()
-
-            Timber.v("SYNC: Remote message count for folder %s is %d", folder, remoteMessageCount)
-
-            val earliestDate = syncConfig.earliestPollDate
-            val earliestTimestamp = earliestDate?.time ?: 0L
-
-            var remoteStart = 1
-            if (remoteMessageCount > 0) {
-                /* Message numbers start at 1.  */
-                remoteStart = if (visibleLimit > 0) {
-                    max(0, remoteMessageCount - visibleLimit) + 1
-                } else {
-                    1
-                }
-
-                Timber.v(
-                    "SYNC: About to get messages %d through %d for folder %s",
-                    remoteStart, remoteMessageCount, folder
+            val visibleLimit = getVisibleLimit(backendFolder, syncConfig)
+
+            val highestModSeq = remoteFolder.getHighestModSeq()
+            if (qresyncResponse != null && oldUidValidity == uidValidity && highestModSeq != null &&
+                isSyncWindowUnchanged(backendFolder, syncConfig, visibleLimit)
+            ) {
+                Timber.v("SYNC: Using QRESYNC changes since mod-sequence %d for folder %s", oldHighestModSeq, folder)
+
+                newHighestKnownUid = synchronizeChangedMessages(
+                    syncConfig,
+                    remoteFolder,
+                    backendFolder,
+                    qresyncResponse,
+                    visibleLimit,
+                    highestKnownUid,
+                    listener
+                )
+            } else {
+                newHighestKnownUid = synchronizeVisibleMessages(
+                    syncConfig,
+                    remoteFolder,
+                    backendFolder,
+                    visibleLimit,
+                    highestKnownUid,
+                    listener
                 )
 
-                val headerProgress = AtomicInteger(0)
-                listener.syncHeadersStarted(folder)
-
-                val remoteMessageArray = remoteFolder.getMessages(remoteStart, remoteMessageCount, earliestDate, null)
-
-                val messageCount = remoteMessageArray.size
-
-                for (thisMess in remoteMessageArray) {
-                    headerProgress.incrementAndGet()
-                    listener.syncHeadersProgress(folder, headerProgress.get(), messageCount)
-
-                    val uid = thisMess.uid.toLong()
-                    if (uid > highestKnownUid && uid > newHighestKnownUid) {
-                        newHighestKnownUid = uid
-                    }
-
-                    val localMessageTimestamp = localUidMap!![thisMess.uid]
-                    if (localMessageTimestamp == null || localMessageTimestamp >= earliestTimestamp) {
-                        remoteMessages.add(thisMess)
-                        remoteUidMap[thisMess.uid] = thisMess
-                    }
-                }
-
-                Timber.v("SYNC: Got %d messages for folder %s", remoteUidMap.size, folder)
-
-                listener.syncHeadersFinished(folder, headerProgress.get(), remoteUidMap.size)
-            } else if (remoteMessageCount < 0) {
-                throw Exception("Message count $remoteMessageCount for folder $folder")
+                saveSyncWindow(backendFolder, syncConfig, visibleLimit)
             }
 
-            /*
-             * Remove any messages that are in the local store but no longer on the remote store or are too old
-             */
-            var moreMessages = backendFolder.getMoreMessages()
-            if (syncConfig.syncRemoteDeletions) {
-                val destroyMessageUids = mutableListOf<String>()
-                for (localMessageUid in localUidMap!!.keys) {
-                    if (remoteUidMap[localMessageUid] == null) {
-                        destroyMessageUids.add(localMessageUid)
-                    }
-                }
-
-                if (destroyMessageUids.isNotEmpty()) {
-                    moreMessages = MoreMessages.UNKNOWN
-                    backendFolder.destroyMessages(destroyMessageUids)
-                    for (uid in destroyMessageUids) {
-                        listener.syncRemovedMessage(folder, uid)
-                    }
-                }
+            if (highestModSeq != null) {
+                backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ, highestModSeq)
             }
 
-            @Suppress("UNUSED_VALUE") // free memory early? (better break up the method!)
-            localUidMap = null
-
-            if (moreMessages === MoreMessages.UNKNOWN) {
-                updateMoreMessages(remoteFolder, backendFolder, earliestDate, remoteStart)
+            if (pendingFolderStatus != null) {
+                backendFolder.setFolderExtraString(EXTRA_SYNCED_FOLDER_STATUS, pendingFolderStatus)
             }
 
-            /*
-             * Now we download the actual content of messages.
-             */
-            downloadMessages(
-                syncConfig,
-                remoteFolder,
-                backendFolder,
-                remoteMessages,
-                highestKnownUid,
-                listener
-            )
-
             listener.folderStatusChanged(folder)
 
             /* Notify listeners that we're finally done. */
@@ -216,6 +189,7 @@ internal class ImapSync(
             listener.syncFinished(folder)
 
             Timber.i("Done synchronizing folder %s:%s", accountName, folder)
+            Timber.v("IMAP connection statistics for %s: %s", accountName, imapStore.getConnectionStatistics())
         } catch (e: AuthenticationFailedException) {
             listener.syncFailed(folder, "Authentication failure", e)
         } catch (e: Exception) {
@@ -247,6 +221,276 @@ internal class ImapSync(
         }
     }
 
+    /**
+     * Synchronizes the newest [visibleLimit] messages of the folder by listing them and comparing them to the local
+     * messages.
+     *
+     * @return the new highest known UID, or 0 if it didn't change
+     */
+    private fun synchronizeVisibleMessages(
+        syncConfig: SyncConfig,
+        remoteFolder: ImapFolder,
+        backendFolder: BackendFolder,
+        visibleLimit: Int,
+        highestKnownUid: Long,
+        listener: SyncListener
+    ): Long {
+        val folder = remoteFolder.serverId
+        var newHighestKnownUid: Long = 0
+
+        /*
+         * Get the message list from the local store and create an index of
+         * the uids within the list.
+         */
+
+        var localUidMap: Map<String, Long?>? = backendFolder.getAllMessagesAndEffectiveDates()
+
+        /*
+         * Get the remote message count.
+         */
+        val remoteMessageCount = remoteFolder.messageCount
+
+        val remoteMessages = mutableListOf<ImapMessage>()
+        val remoteUidMap = mutableMapOf<String, ImapMessage>()
+
+        Timber.v("SYNC: Remote message count for folder %s is %d", folder, remoteMessageCount)
+
+        val earliestDate = syncConfig.earliestPollDate
+        val earliestTimestamp = earliestDate?.time ?: 0L
+
+        var remoteStart = 1
+        if (remoteMessageCount > 0) {
+            /* Message numbers start at 1.  */
+            remoteStart = if (visibleLimit > 0) {
+                max(0, remoteMessageCount - visibleLimit) + 1
+            } else {
+                1
+            }
+
+            Timber.v(
+                "SYNC: About to get messages %d through %d for folder %s",
+                remoteStart, remoteMessageCount, folder
+            )
+
+            val headerProgress = AtomicInteger(0)
+            listener.syncHeadersStarted(folder)
+
+            val remoteMessageArray = remoteFolder.getMessages(remoteStart, remoteMessageCount, earliestDate, null)
+
+            val messageCount = remoteMessageArray.size
+
+            for (thisMess in remoteMessageArray) {
+                headerProgress.incrementAndGet()
+                listener.syncHeadersProgress(folder, headerProgress.get(), messageCount)
+
+                val uid = thisMess.uid.toLong()
+                if (uid > highestKnownUid && uid > newHighestKnownUid) {
+                    newHighestKnownUid = uid
+                }
+
+                val localMessageTimestamp = localUidMap!![thisMess.uid]
+                if (localMessageTimestamp == null || localMessageTimestamp >= earliestTimestamp) {
+                    remoteMessages.add(thisMess)
+                    remoteUidMap[thisMess.uid] = thisMess
+                }
+            }
+
+            Timber.v("SYNC: Got %d messages for folder %s", remoteUidMap.size, folder)
+
+            listener.syncHeadersFinished(folder, headerProgress.get(), remoteUidMap.size)
+        } else if (remoteMessageCount < 0) {
+            throw Exception("Message count $remoteMessageCount for folder $folder")
+        }
+
+        /*
+         * Remove any messages that are in the local store but no longer on the remote store or are too old
+         */
+        var moreMessages = backendFolder.getMoreMessages()
+        if (syncConfig.syncRemoteDeletions) {
+            val destroyMessageUids = mutableListOf<String>()
+            for (localMessageUid in localUidMap!!.keys) {
+                if (remoteUidMap[localMessageUid] == null) {
+                    destroyMessageUids.add(localMessageUid)
+                }
+            }
+
+            if (destroyMessageUids.isNotEmpty()) {
+                moreMessages = MoreMessages.UNKNOWN
+                backendFolder.destroyMessages(destroyMessageUids)
+                for (uid in destroyMessageUids) {
+                    listener.syncRemovedMessage(folder, uid)
+                }
+            }
+        }
+
+        @Suppress("UNUSED_VALUE") // free memory early? (better break up the method!)
+        localUidMap = null
+
+        if (moreMessages === MoreMessages.UNKNOWN) {
+            updateMoreMessages(remoteFolder, backendFolder, earliestDate, remoteStart)
+        }
+
+        /*
+         * Now we download the actual content of messages.
+         */
+        downloadMessages(
+            syncConfig,
+            remoteFolder,
+            backendFolder,
+            remoteMessages,
+            highestKnownUid,
+            listener
+        )
+
+        return newHighestKnownUid
+    }
+
+    /**
+     * Applies the changes reported by the server when the folder was opened with QRESYNC. Only messages that were
+     * expunged, changed or added since the last sync are looked at, so nothing has to be listed or fetched when the
+     * folder didn't change.
+     *
+     * @return the new highest known UID, or 0 if it didn't change
+     */
+    private fun synchronizeChangedMessages(
+        syncConfig: SyncConfig,
+        remoteFolder: ImapFolder,
+        backendFolder: BackendFolder,
+        qresyncResponse: QresyncResponse,
+        visibleLimit: Int,
+        highestKnownUid: Long,
+        listener: SyncListener
+    ): Long {
+        val folder = remoteFolder.serverId
+        var newHighestKnownUid: Long = 0
+        var moreMessages = backendFolder.getMoreMessages()
+
+        val earliestDate = syncConfig.earliestPollDate
+        if (syncConfig.syncRemoteDeletions) {
+            val destroyMessageUids = mutableSetOf<String>()
+
+            // Only the local UIDs are looked at. The vanished UID set can cover far more UIDs than we ever had.
+            val vanishedUids = qresyncResponse.vanishedUids
+            if (!vanishedUids.isEmpty()) {
+                backendFolder.getMessageServerIds().filterTo(destroyMessageUids) { messageServerId ->
+                    val uid = messageServerId.toLongOrNull()
+                    uid != null && uid in vanishedUids
+                }
+            }
+
+            // Only read the dates of all local messages if some of them are outside of the sync window
+            if (earliestDate != null && backendFolder.getOldestMessageDate()?.before(earliestDate) == true) {
+                val earliestTimestamp = earliestDate.time
+                for ((messageServerId, timestamp) in backendFolder.getAllMessagesAndEffectiveDates()) {
+                    if (timestamp != null && timestamp < earliestTimestamp) {
+                        destroyMessageUids.add(messageServerId)
+                    }
+                }
+            }
+
+            if (destroyMessageUids.isNotEmpty()) {
+                moreMessages = MoreMessages.UNKNOWN
+                destroyMessages(folder, backendFolder, destroyMessageUids.toList(), listener)
+            }
+        }
+
+        val changedMessages = qresyncResponse.changedMessages
+        listener.syncHeadersStarted(folder)
+
+        // Changed messages we don't have locally are only interesting if they are new. Older ones are outside of
+        // the synchronized window.
+        val remoteMessages = mutableListOf<ImapMessage>()
+        for ((index, message) in changedMessages.withIndex()) {
+            listener.syncHeadersProgress(folder, index + 1, changedMessages.size)
+
+            val uid = message.uid.toLong()
+            if (uid > highestKnownUid && uid > newHighestKnownUid) {
+                newHighestKnownUid = uid
+            }
+
+            if (uid > highestKnownUid || backendFolder.isMessagePresent(message.uid)) {
+                remoteMessages.add(message)
+            }
+        }
+
+        Timber.v("SYNC: Got %d changed messages for folder %s", remoteMessages.size, folder)
+
+        listener.syncHeadersFinished(folder, changedMessages.size, remoteMessages.size)
+
+        // The FETCH responses to the QRESYNC select already contain the current flags
+        downloadMessages(
+            syncConfig,
+            remoteFolder,
+            backendFolder,
+            remoteMessages,
+            highestKnownUid,
+            listener,
+            fetchFlags = false
+        )
+
+        // New messages push the oldest ones out of the visible window, like a full sync would
+        if (syncConfig.syncRemoteDeletions && visibleLimit > 0 && newHighestKnownUid > 0) {
+            val evictMessageUids = backendFolder.getMessageServerIds()
+                .sortedByDescending { it.toLongOrNull() ?: 0L }
+                .drop(visibleLimit)
+
+            if (evictMessageUids.isNotEmpty()) {
+                moreMessages = MoreMessages.UNKNOWN
+                destroyMessages(folder, backendFolder, evictMessageUids, listener)
+            }
+        }
+
+        if (moreMessages === MoreMessages.UNKNOWN) {
+            val remoteMessageCount = remoteFolder.messageCount
+            val remoteStart = if (visibleLimit > 0) max(0, remoteMessageCount - visibleLimit) + 1 else 1
+            updateMoreMessages(remoteFolder, backendFolder, earliestDate, remoteStart)
+        }
+
+        return newHighestKnownUid
+    }
+
+    private fun destroyMessages(
+        folder: String,
+        backendFolder: BackendFolder,
+        messageServerIds: List<String>,
+        listener: SyncListener
+    ) {
+        backendFolder.destroyMessages(messageServerIds)
+        for (uid in messageServerIds) {
+            listener.syncRemovedMessage(folder, uid)
+        }
+    }
+
+    /**
+     * The changes reported by QRESYNC only cover the messages that were synchronized before. A full sync is needed
+     * when the window of synchronized messages was extended, e.g. by loading more messages.
+     */
+    private fun isSyncWindowUnchanged(
+        backendFolder: BackendFolder,
+        syncConfig: SyncConfig,
+        visibleLimit: Int
+    ): Boolean {
+        val syncedVisibleLimit = backendFolder.getFolderExtraNumber(EXTRA_SYNCED_VISIBLE_LIMIT) ?: return false
+        val syncedEarliestPollDate = backendFolder.getFolderExtraNumber(EXTRA_SYNCED_EARLIEST_POLL_DATE) ?: return false
+        val earliestPollDate = syncConfig.earliestPollDate?.time ?: 0L
+
+        return syncedVisibleLimit == visibleLimit.toLong() && earliestPollDate >= syncedEarliestPollDate
+    }
+
+    private fun getVisibleLimit(backendFolder: BackendFolder, syncConfig: SyncConfig): Int {
+        val visibleLimit = backendFolder.visibleLimit
+        return if (visibleLimit < 0) syncConfig.defaultVisibleLimit else visibleLimit
+    }
+
+    private fun FolderStatus.toExtraString(): String {
+        return listOf(messageCount, uidNext, uidValidity, highestModSeq, unseenCount).joinToString(separator = ",")
+    }
+
+    private fun saveSyncWindow(backendFolder: BackendFolder, syncConfig: SyncConfig, visibleLimit: Int) {
+        backendFolder.setFolderExtraNumber(EXTRA_SYNCED_VISIBLE_LIMIT, visibleLimit.toLong())
+        backendFolder.setFolderExtraNumber(EXTRA_SYNCED_EARLIEST_POLL_DATE, syncConfig.earliestPollDate?.time ?: 0L)
+    }
+
     fun downloadMessage(syncConfig: SyncConfig, folderServerId: String, messageServerId: String) {
         val backendFolder = backendStorage.getFolder(folderServerId)
         val remoteFolder = imapStore.getFolder(folderServerId)
@@ -276,6 +520,9 @@ internal class ImapSync(
      * The [BackendFolder] instance corresponding to the remote folder.
      * @param inputMessages
      * A list of messages objects that store the UIDs of which messages to download.
+     * @param fetchFlags
+     * Whether the flags of messages that are already present locally need to be fetched, `false` if the input
+     * messages already carry their current flags.
      */
     private fun downloadMessages(
         syncConfig: SyncConfig,
@@ -283,7 +530,8 @@ internal class ImapSync(
         backendFolder: BackendFolder,
         inputMessages: List<ImapMessage>,
         highestKnownUid: Long?,
-        listener: SyncListener
+        listener: SyncListener,
+        fetchFlags: Boolean = true
     ) {
         val folder = remoteFolder.serverId
 
@@ -381,7 +629,16 @@ internal class ImapSync(
          * Refresh the flags for any messages in the local store that we didn't just
          * download.
          */
-        refreshLocalMessageFlags(syncConfig, remoteFolder, backendFolder, syncFlagMessages, progress, todo, listener)
+        refreshLocalMessageFlags(
+            syncConfig,
+            remoteFolder,
+            backendFolder,
+            syncFlagMessages,
+            fetchFlags,
+            progress,
+            todo,
+            listener
+        )
 
         Timber.d("SYNC: Synced remote messages for folder %s, %d new messages", folder, downloadedMessageCount.get())
     }
@@ -504,42 +761,76 @@ internal class ImapSync(
 
         Timber.d("SYNC: Fetching %d small messages for folder %s", smallMessages.size, folder)
 
+        // Messages are saved in batches so we don't pay for a database transaction per message
+        val pendingMessages = mutableListOf<Pair<ImapMessage, Boolean>>()
+
+        fun savePendingMessages() {
+            if (pendingMessages.isEmpty()) return
+
+            val savedMessages = try {
+                backendFolder.saveMessages(pendingMessages.map { it.first }, MessageDownloadState.FULL)
+                pendingMessages.toList()
+            } catch (e: Exception) {
+                Timber.w(e, "SYNC: Error saving batch of small messages. Saving messages individually.")
+                pendingMessages.filter { (message, _) -> saveSmallMessage(backendFolder, message) }
+            }
+            pendingMessages.clear()
+
+            for ((message, isFirstResponse) in savedMessages) {
+                if (isFirstResponse) {
+                    progress.incrementAndGet()
+                    downloadedMessageCount.incrementAndGet()
+                }
+
+                // This runs inside the FetchListener, an exception would abort the fetch with responses left unread
+                try {
+                    val messageServerId = message.uid
+                    Timber.v(
+                        "About to notify listeners that we got a new small message %s:%s:%s",
+                        accountName, folder, messageServerId
+                    )
+
+                    // Update the listener with what we've found
+                    listener.syncProgress(folder, progress.get(), todo)
+
+                    val isOldMessage = isOldMessage(messageServerId, highestKnownUid)
+                    listener.syncNewMessage(folder, messageServerId, isOldMessage)
+                } catch (e: Exception) {
+                    Timber.e(e, "SYNC: fetch small messages")
+                }
+            }
+        }
+
         remoteFolder.fetch(
             smallMessages,
             fetchProfile,
             object : FetchListener {
                 override fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean) {
-                    try {
-                        // Store the updated message locally
-                        backendFolder.saveMessage(message, MessageDownloadState.FULL)
-
-                        if (isFirstResponse) {
-                            progress.incrementAndGet()
-                            downloadedMessageCount.incrementAndGet()
-                        }
+                    pendingMessages.add(message to isFirstResponse)
 
-                        val messageServerId = message.uid
-                        Timber.v(
-                            "About to notify listeners that we got a new small message %s:%s:%s",
-                            accountName, folder, messageServerId
-                        )
-
-                        // Update the listener with what we've found
-                        listener.syncProgress(folder, progress.get(), todo)
-
-                        val isOldMessage = isOldMessage(messageServerId, highestKnownUid)
-                        listener.syncNewMessage(folder, messageServerId, isOldMessage)
-                    } catch (e: Exception) {
-                        Timber.e(e, "SYNC: fetch small messages")
+                    if (pendingMessages.size >= SAVE_BATCH_SIZE) {
+                        savePendingMessages()
                     }
                 }
             },
             -1
         )
 
+        savePendingMessages()
+
         Timber.d("SYNC: Done fetching small messages for folder %s", folder)
     }
 
+    private fun saveSmallMessage(backendFolder: BackendFolder, message: ImapMessage): Boolean {
+        return try {
+            backendFolder.saveMessage(message, MessageDownloadState.FULL)
+            true
+        } catch (e: Exception) {
+            Timber.e(e, "SYNC: fetch small messages")
+            false
+        }
+    }
+
     private fun downloadLargeMessages(
         remoteFolder: ImapFolder,
         backendFolder: BackendFolder,
@@ -590,6 +881,7 @@ internal class ImapSync(
         remoteFolder: ImapFolder,
         backendFolder: BackendFolder,
         syncFlagMessages: List<ImapMessage>,
+        fetchFlags: Boolean,
         progress: AtomicInteger,
         todo: Int,
         listener: SyncListener
@@ -597,18 +889,17 @@ internal class ImapSync(
         val folder = remoteFolder.serverId
         Timber.d("SYNC: About to sync flags for %d remote messages for folder %s", syncFlagMessages.size, folder)
 
-        val fetchProfile = FetchProfile()
-        fetchProfile.add(FetchProfile.Item.FLAGS)
-
-        val undeletedMessages = mutableListOf<ImapMessage>()
-        for (message in syncFlagMessages) {
-            if (!message.isSet(Flag.DELETED)) {
-                undeletedMessages.add(message)
+        if (fetchFlags) {
+            val undeletedMessages = mutableListOf<ImapMessage>()
+            for (message in syncFlagMessages) {
+                if (!message.isSet(Flag.DELETED)) {
+                    undeletedMessages.add(message)
+                }
             }
+
+            remoteFolder.fetchFlags(undeletedMessages)
         }
 
-        val maxDownloadSize = syncConfig.maximumAutoDownloadMessageSize
-        remoteFolder.fetch(undeletedMessages, fetchProfile, null, maxDownloadSize)
         for (remoteMessage in syncFlagMessages) {
             val messageChanged = syncFlags(syncConfig, backendFolder, remoteMessage)
             if (messageChanged) {
@@ -711,7 +1002,14 @@ internal class ImapSync(
     }
 
     companion object {
+        private const val SAVE_BATCH_SIZE = 25
+
         private const val EXTRA_UID_VALIDITY = "imapUidValidity"
         private const val EXTRA_HIGHEST_KNOWN_UID = "imapHighestKnownUid"
+        private const val EXTRA_HIGHEST_MOD_SEQ = "imapHighestModSeq"
+        private const val EXTRA_SYNCED_VISIBLE_LIMIT = "imapSyncedVisibleLimit"
+        private const val EXTRA_SYNCED_EARLIEST_POLL_DATE = "imapSyncedEarliestPollDate"
+        private const val EXTRA_PENDING_FOLDER_STATUS = "imapPendingFolderStatus"
+        private const val EXTRA_SYNCED_FOLDER_STATUS = "imapSyncedFolderStatus"
     }
 }
@@ -1,6 +1,7 @@
 package com.fsck.k9.backend.imap
 
 import app.k9mail.backend.testing.InMemoryBackendStorage
+import com.fsck.k9.backend.api.BackendFolder.MoreMessages
 import com.fsck.k9.backend.api.FolderInfo
 import com.fsck.k9.backend.api.SyncConfig
 import com.fsck.k9.backend.api.SyncConfig.ExpungePolicy
@@ -212,6 +213,161 @@ class ImapSyncTest {
         verify(syncListener).syncNewMessage(FOLDER_SERVER_ID, messageServerId = "1", isOldMessage = false)
     }
 
+    @Test
+    fun `sync with QRESYNC and unchanged folder should not list messages`() {
+        enableQresync()
+        addMessageToImapFolder(uid = 1)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(imapFolder.numberOfGetMessagesCalls).isEqualTo(1)
+        assertThat(backendFolder.getMessageServerIds()).containsExactly("1")
+    }
+
+    @Test
+    fun `sync with QRESYNC should remove vanished messages`() {
+        enableQresync()
+        addMessageToImapFolder(uid = 1)
+        addMessageToImapFolder(uid = 2)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        imapFolder.removeMessage(uid = 1)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(imapFolder.numberOfGetMessagesCalls).isEqualTo(1)
+        assertThat(backendFolder.getMessageServerIds()).containsExactly("2")
+        verify(syncListener).syncRemovedMessage(FOLDER_SERVER_ID, "1")
+    }
+
+    @Test
+    fun `sync with QRESYNC should update flags and download new messages`() {
+        enableQresync()
+        addMessageToImapFolder(uid = 1)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        imapFolder.setFlags(listOf(imapFolder.getMessage("1")), setOf(Flag.SEEN), true)
+        addMessageToImapFolder(uid = 2)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(imapFolder.numberOfGetMessagesCalls).isEqualTo(1)
+        assertThat(backendFolder.getMessageServerIds()).containsExactly("1", "2")
+        assertThat(backendFolder.getMessageFlags(messageServerId = "1")).contains(Flag.SEEN)
+        verify(syncListener).syncNewMessage(FOLDER_SERVER_ID, messageServerId = "2", isOldMessage = false)
+    }
+
+    @Test
+    fun `sync with QRESYNC should only remove local messages covered by vanished UIDs`() {
+        enableQresync()
+        addMessageToImapFolder(uid = 1)
+        addMessageToImapFolder(uid = 5)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        imapFolder.removeMessage(uid = 1)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactly("5")
+        verify(syncListener, never()).syncRemovedMessage(FOLDER_SERVER_ID, "5")
+    }
+
+    @Test
+    fun `sync with QRESYNC and new messages exceeding visible limit should remove oldest messages`() {
+        enableQresync()
+        backendFolder.visibleLimit = 2
+        addMessageToImapFolder(uid = 1)
+        addMessageToImapFolder(uid = 2)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        addMessageToImapFolder(uid = 3)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(imapFolder.numberOfGetMessagesCalls).isEqualTo(1)
+        assertThat(backendFolder.getMessageServerIds()).containsExactly("2", "3")
+        assertThat(backendFolder.getMoreMessages()).isEqualTo(MoreMessages.TRUE)
+        verify(syncListener).syncRemovedMessage(FOLDER_SERVER_ID, "1")
+    }
+
+    @Test
+    fun `sync with QRESYNC after visible limit change should list messages`() {
+        enableQresync()
+        addMessageToImapFolder(uid = 1)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        backendFolder.visibleLimit = 50
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(imapFolder.numberOfGetMessagesCalls).isEqualTo(2)
+    }
+
+    @Test
+    fun `getChangedFolders with folder that was never synced should return folder`() {
+        addMessageToImapFolder(uid = 1)
+
+        val result = imapSync.getChangedFolders(listOf(FOLDER_SERVER_ID), defaultSyncConfig)
+
+        assertThat(result).containsExactly(FOLDER_SERVER_ID)
+    }
+
+    @Test
+    fun `getChangedFolders with unchanged folder should not return folder`() {
+        imapFolder.enableQresync()
+        addMessageToImapFolder(uid = 1)
+        imapSync.getChangedFolders(listOf(FOLDER_SERVER_ID), defaultSyncConfig)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        val result = imapSync.getChangedFolders(listOf(FOLDER_SERVER_ID), defaultSyncConfig)
+
+        assertThat(result).isEmpty()
+    }
+
+    @Test
+    fun `getChangedFolders with unchanged folder without CONDSTORE should return folder`() {
+        addMessageToImapFolder(uid = 1)
+        imapSync.getChangedFolders(listOf(FOLDER_SERVER_ID), defaultSyncConfig)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        val result = imapSync.getChangedFolders(listOf(FOLDER_SERVER_ID), defaultSyncConfig)
+
+        assertThat(result).containsExactly(FOLDER_SERVER_ID)
+    }
+
+    @Test
+    fun `getChangedFolders with new message should return folder`() {
+        imapFolder.enableQresync()
+        addMessageToImapFolder(uid = 1)
+        imapSync.getChangedFolders(listOf(FOLDER_SERVER_ID), defaultSyncConfig)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        addMessageToImapFolder(uid = 2)
+        val result = imapSync.getChangedFolders(listOf(FOLDER_SERVER_ID), defaultSyncConfig)
+
+        assertThat(result).containsExactly(FOLDER_SERVER_ID)
+    }
+
+    @Test
+    fun `getChangedFolders with message marked as read should return folder`() {
+        imapFolder.enableQresync()
+        addMessageToImapFolder(uid = 1)
+        imapSync.getChangedFolders(listOf(FOLDER_SERVER_ID), defaultSyncConfig)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        imapFolder.setFlags(listOf(imapFolder.getMessage("1")), setOf(Flag.SEEN), true)
+        val result = imapSync.getChangedFolders(listOf(FOLDER_SERVER_ID), defaultSyncConfig)
+
+        assertThat(result).containsExactly(FOLDER_SERVER_ID)
+    }
+
+    @Test
+    fun `getChangedFolders without sync in between should return folder again`() {
+        imapFolder.enableQresync()
+        addMessageToImapFolder(uid = 1)
+        imapSync.getChangedFolders(listOf(FOLDER_SERVER_ID), defaultSyncConfig)
+
+        val result = imapSync.getChangedFolders(listOf(FOLDER_SERVER_ID), defaultSyncConfig)
+
+        assertThat(result).containsExactly(FOLDER_SERVER_ID)
+    }
+
     @Test
     fun `sync with multiple FETCH responses when downloading small message should report correct progress`() {
         val folderServerId = "FOLDER_TWO"
@@ -241,6 +397,11 @@ class ImapSyncTest {
         verify(syncListener, never()).syncProgress(folderServerId, completed = 2, total = 1)
     }
 
+    private fun enableQresync() {
+        imapFolder.setUidValidity(1)
+        imapFolder.enableQresync()
+    }
+
     private fun addMessageToBackendFolder(uid: Long, date: String = DEFAULT_MESSAGE_DATE) {
         val messageServerId = uid.toString()
         val message = createSimpleMessage(messageServerId, date).apply {
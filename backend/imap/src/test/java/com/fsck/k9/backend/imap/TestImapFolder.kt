@@ -7,9 +7,12 @@ import com.fsck.k9.mail.Message
 import com.fsck.k9.mail.MessageRetrievalListener
 import com.fsck.k9.mail.Part
 import com.fsck.k9.mail.store.imap.FetchListener
+import com.fsck.k9.mail.store.imap.FolderStatus
 import com.fsck.k9.mail.store.imap.ImapFolder
 import com.fsck.k9.mail.store.imap.ImapMessage
 import com.fsck.k9.mail.store.imap.OpenMode
+import com.fsck.k9.mail.store.imap.QresyncResponse
+import com.fsck.k9.mail.store.imap.UidSet
 import com.fsck.k9.mail.store.imap.createImapMessage
 import java.util.Date
 
@@ -22,6 +25,9 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
     var wasExpunged: Boolean = false
         private set
 
+    var numberOfGetMessagesCalls: Int = 0
+        private set
+
     val isClosed: Boolean
         get() = mode == null
 
@@ -29,6 +35,13 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
     private val messageFlags = mutableMapOf<Long, MutableSet<Flag>>()
     private var uidValidity: Long? = null
 
+    /**
+     * `null` if the folder doesn't support QRESYNC.
+     */
+    private var highestModSeq: Long? = null
+    private val messageModSeqs = mutableMapOf<Long, Long>()
+    private val vanishedModSeqs = mutableMapOf<Long, Long>()
+
     fun addMessage(uid: Long, message: Message) {
         require(!messages.containsKey(uid)) {
             "Folder '$serverId' already contains a message with the UID $uid"
@@ -36,10 +49,27 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
 
         messages[uid] = message
         messageFlags[uid] = mutableSetOf()
+        updateModSeq(uid)
+
+        messageCount = messages.size
+    }
+
+    fun removeMessage(uid: Long) {
+        messages.remove(uid) ?: error("Unknown message with UID $uid")
+        messageFlags.remove(uid)
+        messageModSeqs.remove(uid)
+        highestModSeq?.let { modSeq ->
+            highestModSeq = modSeq + 1
+            vanishedModSeqs[uid] = modSeq + 1
+        }
 
         messageCount = messages.size
     }
 
+    fun enableQresync(highestModSeq: Long = 1) {
+        this.highestModSeq = highestModSeq
+    }
+
     fun removeAllMessages() {
         messages.clear()
         messageFlags.clear()
@@ -49,10 +79,36 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         uidValidity = value
     }
 
+    fun getStatus(): FolderStatus {
+        return FolderStatus(
+            messageCount = messageCount,
+            uidNext = (messages.keys.maxOrNull() ?: 0L) + 1,
+            uidValidity = uidValidity,
+            highestModSeq = highestModSeq,
+            unseenCount = messageFlags.values.count { Flag.SEEN !in it }
+        )
+    }
+
     override fun open(mode: OpenMode) {
         this.mode = mode
     }
 
+    override fun openWithQresync(mode: OpenMode, uidValidity: Long, highestModSeq: Long): QresyncResponse? {
+        open(mode)
+
+        if (this.highestModSeq == null) return null
+        if (uidValidity != this.uidValidity) return QresyncResponse(UidSet.EMPTY, emptyList())
+
+        val vanishedUids = UidSet.of(vanishedModSeqs.filterValues { it > highestModSeq }.keys.map { it..it })
+        val changedMessages = messageModSeqs.filterValues { it > highestModSeq }.keys.sortedDescending().map { uid ->
+            createImapMessage(uid.toString()).apply {
+                setFlags(messageFlags[uid].orEmpty().toSet(), true)
+            }
+        }
+
+        return QresyncResponse(vanishedUids, changedMessages)
+    }
+
     override fun close() {
         mode = null
     }
@@ -63,6 +119,8 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
 
     override fun getUidValidity() = uidValidity
 
+    override fun getHighestModSeq() = highestModSeq
+
     override fun getMessage(uid: String): ImapMessage {
         return createImapMessage(uid)
     }
@@ -81,13 +139,15 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         require(end >= start)
         require(end <= messages.size)
 
+        numberOfGetMessagesCalls++
+
         return messages.keys.sortedDescending()
             .slice((start - 1) until end)
             .map { createImapMessage(uid = it.toString()) }
     }
 
     override fun areMoreMessagesAvailable(indexOfOldestMessage: Int, earliestDate: Date?): Boolean {
-        throw UnsupportedOperationException("not implemented")
+        return indexOfOldestMessage > 1
     }
 
     override fun fetch(
@@ -114,6 +174,15 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         }
     }
 
+    override fun fetchFlags(messages: List<ImapMessage>) {
+        for (imapMessage in messages) {
+            val uid = imapMessage.uid.toLong()
+
+            val flags = messageFlags[uid].orEmpty().toSet()
+            imapMessage.setFlags(flags, true)
+        }
+    }
+
     override fun fetchPart(
         message: ImapMessage,
         part: Part,
@@ -157,9 +226,16 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
             } else {
                 messageFlagSet.removeAll(flags)
             }
+            updateModSeq(uid)
         }
     }
 
+    private fun updateModSeq(uid: Long) {
+        val modSeq = highestModSeq ?: return
+        highestModSeq = modSeq + 1
+        messageModSeqs[uid] = modSeq + 1
+    }
+
     override fun copyMessages(messages: List<ImapMessage>, folder: ImapFolder): Map<String, String>? {
         throw UnsupportedOperationException("not implemented")
     }
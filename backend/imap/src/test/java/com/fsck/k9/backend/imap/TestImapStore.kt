@@ -2,6 +2,8 @@ package com.fsck.k9.backend.imap
 
 import com.fsck.k9.mail.FolderType
 import com.fsck.k9.mail.store.imap.FolderListItem
+import com.fsck.k9.mail.store.imap.FolderStatus
+import com.fsck.k9.mail.store.imap.ImapConnectionStatistics
 import com.fsck.k9.mail.store.imap.ImapFolder
 import com.fsck.k9.mail.store.imap.ImapStore
 
@@ -38,6 +40,12 @@ class TestImapStore : ImapStore {
         }
     }
 
+    override fun getFolderStatuses(folderServerIds: Collection<String>): Map<String, FolderStatus> {
+        return folderServerIds
+            .mapNotNull { serverId -> (folders[serverId] as? TestImapFolder)?.let { serverId to it.getStatus() } }
+            .toMap()
+    }
+
     override fun checkSettings() {
         throw UnsupportedOperationException("not implemented")
     }
@@ -45,4 +53,8 @@ class TestImapStore : ImapStore {
     override fun closeAllConnections() {
         throw UnsupportedOperationException("not implemented")
     }
+
+    override fun getConnectionStatistics(): ImapConnectionStatistics {
+        return ImapConnectionStatistics(createdConnections = 0, reusedConnections = 0)
+    }
 }
@@ -49,6 +49,8 @@ class JmapBackend(
         commandSync.sync(folder, syncConfig, listener)
     }
 
+    override fun getChangedFolders(folderServerIds: Collection<String>, syncConfig: SyncConfig): Set<String>? = null
+
     override fun downloadMessage(syncConfig: SyncConfig, folderServerId: String, messageServerId: String) {
         throw UnsupportedOperationException("not implemented")
     }
@@ -42,6 +42,8 @@ class Pop3Backend(
         pop3Sync.sync(folder, syncConfig, listener)
     }
 
+    override fun getChangedFolders(folderServerIds: Collection<String>, syncConfig: SyncConfig): Set<String>? = null
+
     override fun downloadMessage(syncConfig: SyncConfig, folderServerId: String, messageServerId: String) {
         throw UnsupportedOperationException("not implemented")
     }
@@ -127,6 +127,12 @@ class InMemoryBackendFolder(override var name: String, var type: FolderType) : B
         messageFlags[messageServerId] = flags
     }
 
+    override fun saveMessages(messages: List<Message>, downloadState: MessageDownloadState) {
+        for (message in messages) {
+            saveMessage(message, downloadState)
+        }
+    }
+
     override fun getOldestMessageDate(): Date? {
         throw UnsupportedOperationException("not implemented")
     }
@@ -0,0 +1,79 @@
+package com.fsck.k9.mail.filter;
+
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.james.mime4j.util.MimeUtil;
+
+
+/**
+ * Passes the data written to it through unchanged and counts how many bytes the data will decode to, so the decoded
+ * size doesn't have to be determined in a second pass over the data.
+ * <p>
+ * Only base64 and the identity encodings are supported. For any other encoding {@link #getDecodedSize()} returns
+ * {@code -1}.
+ */
+public class DecodedSizeCountingOutputStream extends FilterOutputStream {
+    private final boolean base64;
+    private final boolean supported;
+
+    private long count;
+    private boolean base64PaddingSeen;
+
+
+    public DecodedSizeCountingOutputStream(OutputStream out, String encoding) {
+        super(out);
+        base64 = MimeUtil.ENC_BASE64.equalsIgnoreCase(encoding);
+        supported = base64 || encoding == null ||
+                MimeUtil.ENC_7BIT.equalsIgnoreCase(encoding) ||
+                MimeUtil.ENC_8BIT.equalsIgnoreCase(encoding) ||
+                MimeUtil.ENC_BINARY.equalsIgnoreCase(encoding);
+    }
+
+    public long getDecodedSize() {
+        if (!supported) {
+            return -1;
+        }
+
+        return base64 ? count * 6 / 8 : count;
+    }
+
+    @Override
+    public void write(int oneByte) throws IOException {
+        out.write(oneByte);
+        countByte(oneByte);
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int len) throws IOException {
+        out.write(b, offset, len);
+
+        if (!base64) {
+            count += len;
+            return;
+        }
+
+        for (int i = offset, end = offset + len; i < end; i++) {
+            countByte(b[i]);
+        }
+    }
+
+    private void countByte(int oneByte) {
+        if (!base64) {
+            count++;
+        } else if (!base64PaddingSeen) {
+            // Like the decoder we ignore characters outside the base64 alphabet and everything following the padding
+            if (oneByte == '=') {
+                base64PaddingSeen = true;
+            } else if (isBase64Character(oneByte)) {
+                count++;
+            }
+        }
+    }
+
+    private static boolean isBase64Character(int c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '/';
+    }
+}
@@ -1,6 +1,7 @@
 package com.fsck.k9.mail.internet;
 
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -12,7 +13,9 @@ import java.io.OutputStream;
 import com.fsck.k9.logging.Timber;
 import com.fsck.k9.mail.MessagingException;
 import com.fsck.k9.mail.filter.Base64OutputStream;
+import com.fsck.k9.mail.filter.DecodedSizeCountingOutputStream;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.james.mime4j.codec.QuotedPrintableOutputStream;
 import org.apache.james.mime4j.util.MimeUtil;
 
@@ -22,11 +25,18 @@ import org.apache.james.mime4j.util.MimeUtil;
  * the user to write to the temp file. After the write the body is available via getInputStream
  * and writeTo one time. After writeTo is called, or the InputStream returned from
  * getInputStream is closed the file is deleted and the Body should be considered disposed of.
+ * <p>
+ * Bodies not larger than {@link #MEMORY_BACKED_THRESHOLD} are kept in memory instead. The temp file is only created
+ * if {@link #getFile()} is called for such a body.
  */
 public class BinaryTempFileBody implements RawDataBody, SizeAware {
+    public static final int MEMORY_BACKED_THRESHOLD = 64 * 1024;
+
     private static File mTempDirectory;
 
     private File mFile;
+    private byte[] mData;
+    private long mDecodedSize = -1;
 
     String mEncoding = null;
 
@@ -53,9 +63,10 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
             throw new RuntimeException("Can't convert from encoding: " + mEncoding);
         }
 
+        // Changing the transfer encoding doesn't change the decoded data
+        long decodedSize = mDecodedSize;
         try {
-            File newFile = File.createTempFile("body", null, mTempDirectory);
-            final OutputStream out = new FileOutputStream(newFile);
+            final OutputStream out = createOutputStream(encoding);
             try {
                 OutputStream wrappedOut;
                 if (MimeUtil.ENC_QUOTED_PRINTABLE.equals(encoding)) {
@@ -77,8 +88,8 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
                 IOUtils.closeQuietly(out);
             }
 
-            mFile = newFile;
             mEncoding = encoding;
+            mDecodedSize = decodedSize;
         } catch (IOException e) {
             throw new MessagingException("Unable to convert body", e);
         }
@@ -94,12 +105,36 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
 
     @Override
     public OutputStream getOutputStream() throws IOException {
-        mFile = File.createTempFile("body", null, mTempDirectory);
-        mFile.deleteOnExit();
-        return new FileOutputStream(mFile);
+        return createOutputStream(mEncoding);
+    }
+
+    private OutputStream createOutputStream(String encoding) {
+        final DeferredFileOutputStream deferredFileOutputStream =
+                new DeferredFileOutputStream(MEMORY_BACKED_THRESHOLD, "body", null, mTempDirectory);
+
+        return new DecodedSizeCountingOutputStream(deferredFileOutputStream, encoding) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+
+                if (deferredFileOutputStream.isInMemory()) {
+                    mData = deferredFileOutputStream.getData();
+                    mFile = null;
+                } else {
+                    mData = null;
+                    mFile = deferredFileOutputStream.getFile();
+                    mFile.deleteOnExit();
+                }
+                mDecodedSize = getDecodedSize();
+            }
+        };
     }
 
     public InputStream getInputStream() throws MessagingException {
+        if (mData != null) {
+            return new ByteArrayInputStream(mData);
+        }
+
         try {
             return new BinaryTempFileBodyInputStream(new FileInputStream(mFile));
         } catch (IOException ioe) {
@@ -118,10 +153,39 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
 
     @Override
     public long getSize() {
-        return mFile.length();
+        return mData != null ? mData.length : mFile.length();
     }
 
-    public File getFile() {
+    /**
+     * Returns the size of the body after decoding the content transfer encoding, or {@code -1} if it couldn't be
+     * determined while the body was written.
+     */
+    public long getDecodedSize() {
+        return mDecodedSize;
+    }
+
+    public boolean isInMemory() {
+        return mData != null;
+    }
+
+    /**
+     * Returns the temp file containing the body. A memory-backed body is written to a new temp file first.
+     */
+    public File getFile() throws IOException {
+        if (mData != null) {
+            File file = File.createTempFile("body", null, mTempDirectory);
+            file.deleteOnExit();
+            OutputStream out = new FileOutputStream(file);
+            try {
+                out.write(mData);
+            } finally {
+                out.close();
+            }
+
+            mFile = file;
+            mData = null;
+        }
+
         return mFile;
     }
 
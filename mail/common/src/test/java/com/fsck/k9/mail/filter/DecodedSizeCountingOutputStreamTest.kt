@@ -0,0 +1,48 @@
+package com.fsck.k9.mail.filter
+
+import com.google.common.truth.Truth.assertThat
+import java.io.ByteArrayOutputStream
+import org.apache.james.mime4j.util.MimeUtil
+import org.junit.Test
+
+class DecodedSizeCountingOutputStreamTest {
+    private val outputStream = ByteArrayOutputStream()
+
+    @Test
+    fun base64_shouldCountDecodedBytes() {
+        val data = "SGVsbG8g\r\nV29ybGQh"
+
+        val decodedSize = writeAndGetDecodedSize(data, MimeUtil.ENC_BASE64)
+
+        assertThat(decodedSize).isEqualTo("Hello World!".length.toLong())
+        assertThat(outputStream.toString()).isEqualTo(data)
+    }
+
+    @Test
+    fun base64_withPadding_shouldIgnoreDataAfterPadding() {
+        val decodedSize = writeAndGetDecodedSize("SGk=\r\nSGk=", MimeUtil.ENC_BASE64)
+
+        assertThat(decodedSize).isEqualTo(2L)
+    }
+
+    @Test
+    fun eightBit_shouldCountRawBytes() {
+        val decodedSize = writeAndGetDecodedSize("Hello\r\n", MimeUtil.ENC_8BIT)
+
+        assertThat(decodedSize).isEqualTo(7L)
+    }
+
+    @Test
+    fun quotedPrintable_shouldReturnUnknownSize() {
+        val decodedSize = writeAndGetDecodedSize("a=3Db", MimeUtil.ENC_QUOTED_PRINTABLE)
+
+        assertThat(decodedSize).isEqualTo(-1L)
+    }
+
+    private fun writeAndGetDecodedSize(data: String, encoding: String): Long {
+        val countingOutputStream = DecodedSizeCountingOutputStream(outputStream, encoding)
+        countingOutputStream.use { it.write(data.toByteArray()) }
+
+        return countingOutputStream.decodedSize
+    }
+}
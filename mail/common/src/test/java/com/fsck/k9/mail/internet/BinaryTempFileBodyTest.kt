@@ -0,0 +1,78 @@
+package com.fsck.k9.mail.internet
+
+import com.google.common.truth.Truth.assertThat
+import java.io.File
+import java.nio.file.Files
+import org.apache.james.mime4j.util.MimeUtil
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class BinaryTempFileBodyTest {
+    private lateinit var tempDirectory: File
+
+    @Before
+    fun setUp() {
+        tempDirectory = Files.createTempDirectory("BinaryTempFileBodyTest").toFile()
+        BinaryTempFileBody.setTempDirectory(tempDirectory)
+    }
+
+    @After
+    fun tearDown() {
+        tempDirectory.deleteRecursively()
+    }
+
+    @Test
+    fun smallBody_shouldBeKeptInMemory() {
+        val body = createBody(ByteArray(100) { 'a'.code.toByte() })
+
+        assertThat(body.isInMemory).isTrue()
+        assertThat(body.size).isEqualTo(100L)
+        assertThat(body.inputStream.use { it.readBytes() }).hasLength(100)
+        assertThat(tempDirectory.list()).isEmpty()
+    }
+
+    @Test
+    fun largeBody_shouldBeWrittenToTempFile() {
+        val body = createBody(ByteArray(BinaryTempFileBody.MEMORY_BACKED_THRESHOLD + 1))
+
+        assertThat(body.isInMemory).isFalse()
+        assertThat(body.size).isEqualTo(BinaryTempFileBody.MEMORY_BACKED_THRESHOLD + 1L)
+        assertThat(tempDirectory.list()).hasLength(1)
+    }
+
+    @Test
+    fun getFile_withMemoryBackedBody_shouldWriteDataToTempFile() {
+        val data = "body data".toByteArray()
+        val body = createBody(data)
+
+        val file = body.file
+
+        assertThat(file.parentFile).isEqualTo(tempDirectory)
+        assertThat(file.readBytes()).isEqualTo(data)
+        assertThat(body.isInMemory).isFalse()
+    }
+
+    @Test
+    fun setEncoding_withMemoryBackedBody_shouldConvertData() {
+        val body = createBody("a=b".toByteArray())
+
+        body.setEncoding(MimeUtil.ENC_QUOTED_PRINTABLE)
+
+        assertThat(body.isInMemory).isTrue()
+        assertThat(String(body.inputStream.use { it.readBytes() })).isEqualTo("a=3Db")
+    }
+
+    @Test
+    fun getDecodedSize_withBase64Body_shouldReturnSizeOfDecodedData() {
+        val body = createBody("SGVsbG8=".toByteArray(), MimeUtil.ENC_BASE64)
+
+        assertThat(body.decodedSize).isEqualTo("Hello".length.toLong())
+    }
+
+    private fun createBody(data: ByteArray, encoding: String = MimeUtil.ENC_8BIT): BinaryTempFileBody {
+        return BinaryTempFileBody(encoding).apply {
+            outputStream.use { it.write(data) }
+        }
+    }
+}
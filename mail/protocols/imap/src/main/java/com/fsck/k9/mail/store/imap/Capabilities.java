@@ -4,6 +4,7 @@ package com.fsck.k9.mail.store.imap;
 class Capabilities {
     public static final String IDLE = "IDLE";
     public static final String CONDSTORE = "CONDSTORE";
+    public static final String QRESYNC = "QRESYNC";
     public static final String SASL_IR = "SASL-IR";
     public static final String AUTH_XOAUTH2 = "AUTH=XOAUTH2";
     public static final String AUTH_OAUTHBEARER = "AUTH=OAUTHBEARER";
@@ -17,4 +18,6 @@ class Capabilities {
     public static final String SPECIAL_USE = "SPECIAL-USE";
     public static final String UID_PLUS = "UIDPLUS";
     public static final String LIST_EXTENDED = "LIST-EXTENDED";
+    public static final String LIST_STATUS = "LIST-STATUS";
+    public static final String NOTIFY = "NOTIFY";
 }
@@ -0,0 +1,64 @@
+package com.fsck.k9.mail.store.imap
+
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Decides how many messages are fetched with a single `UID FETCH` command.
+ *
+ * When fetching message bodies a window is limited by the sum of the (expected) message sizes, so a window of large
+ * messages doesn't take forever while a window of small messages isn't needlessly short.
+ *
+ * For all other fetches the response size per message is roughly the same. The window starts at
+ * [MIN_WINDOW_SIZE] messages and is adjusted so that fetching a window takes about [TARGET_WINDOW_DURATION]
+ * milliseconds. Connections with a high round-trip time but good throughput end up with large windows.
+ */
+internal class FetchWindowSizer(private val isBodyFetch: Boolean, private val maxDownloadSize: Int) {
+    private var windowSize = MIN_WINDOW_SIZE
+
+    /**
+     * Returns the (exclusive) end index of the window starting at [start].
+     */
+    fun getWindowEnd(messages: List<ImapMessage>, start: Int): Int {
+        val maxEnd = min(start + if (isBodyFetch) MAX_WINDOW_SIZE else windowSize, messages.size)
+        if (!isBodyFetch) return maxEnd
+
+        var end = start
+        var windowBytes = 0L
+        while (end < maxEnd) {
+            windowBytes += getExpectedDownloadSize(messages[end])
+            if (windowBytes > WINDOW_BYTE_BUDGET && end > start) break
+            end++
+        }
+
+        return end
+    }
+
+    /**
+     * Records how long it took to receive the responses for a window of [messageCount] messages.
+     */
+    fun onWindowCompleted(messageCount: Int, durationMillis: Long) {
+        // A partial window at the end doesn't tell us anything about the connection
+        if (isBodyFetch || messageCount < windowSize) return
+
+        windowSize = when {
+            durationMillis < TARGET_WINDOW_DURATION / 2 -> min(windowSize * 2, MAX_WINDOW_SIZE)
+            durationMillis > TARGET_WINDOW_DURATION * 2 -> max(windowSize / 2, MIN_WINDOW_SIZE)
+            else -> windowSize
+        }
+    }
+
+    private fun getExpectedDownloadSize(message: ImapMessage): Long {
+        val size = message.size.takeIf { it > 0 } ?: UNKNOWN_MESSAGE_SIZE
+        return if (maxDownloadSize > 0) min(size, maxDownloadSize.toLong()) else size
+    }
+
+    companion object {
+        const val MIN_WINDOW_SIZE = 100
+        const val MAX_WINDOW_SIZE = 500
+        const val WINDOW_BYTE_BUDGET = 2L * 1024 * 1024
+        const val TARGET_WINDOW_DURATION = 1000L
+
+        private const val UNKNOWN_MESSAGE_SIZE = 64L * 1024
+    }
+}
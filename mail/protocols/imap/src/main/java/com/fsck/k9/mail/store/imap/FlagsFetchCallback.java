@@ -0,0 +1,26 @@
+package com.fsck.k9.mail.store.imap;
+
+/**
+ * Receives the contents of untagged {@code FETCH} responses to {@code UID FETCH … (UID FLAGS)} while they are read.
+ *
+ * @see ImapResponseParser#readFlagsFetchResponse(FlagsFetchCallback)
+ */
+interface FlagsFetchCallback {
+    int SEEN = 1;
+    int ANSWERED = 1 << 1;
+    int FLAGGED = 1 << 2;
+    int DELETED = 1 << 3;
+    int DRAFT = 1 << 4;
+    int FORWARDED = 1 << 5;
+
+    /**
+     * Called for every {@code FETCH} response that contains a UID.
+     *
+     * @param uid
+     *         The UID of the message.
+     * @param flags
+     *         The flags of the message as a combination of {@link #SEEN}, {@link #ANSWERED}, {@link #FLAGGED},
+     *         {@link #DELETED}, {@link #DRAFT}, and {@link #FORWARDED}. Other flags are ignored.
+     */
+    void onFlagsFetched(long uid, int flags);
+}
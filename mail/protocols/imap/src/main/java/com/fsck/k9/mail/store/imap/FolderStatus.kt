@@ -0,0 +1,13 @@
+package com.fsck.k9.mail.store.imap
+
+/**
+ * Values of a `STATUS` response (RFC 3501). Values the server didn't return are `null`. [highestModSeq] is only
+ * requested from servers supporting CONDSTORE.
+ */
+data class FolderStatus(
+    val messageCount: Int?,
+    val uidNext: Long?,
+    val uidValidity: Long?,
+    val highestModSeq: Long?,
+    val unseenCount: Int?
+)
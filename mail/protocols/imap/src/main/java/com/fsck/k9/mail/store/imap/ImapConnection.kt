@@ -21,6 +21,9 @@ internal interface ImapConnection {
     @Throws(IOException::class, MessagingException::class)
     fun hasCapability(capability: String): Boolean
 
+    @Throws(IOException::class, MessagingException::class)
+    fun isQresyncEnabled(): Boolean
+
     @Throws(IOException::class, MessagingException::class)
     fun executeSimpleCommand(command: String): List<ImapResponse>
 
@@ -39,6 +42,15 @@ internal interface ImapConnection {
     @Throws(IOException::class)
     fun readResponse(callback: ImapResponseCallback?): ImapResponse
 
+    /**
+     * Read the next response to a `UID FETCH … (UID FLAGS)` command. Untagged `FETCH` responses are passed to
+     * [callback] instead of being returned.
+     *
+     * @return The response, or `null` if it was an untagged `FETCH` response.
+     */
+    @Throws(IOException::class)
+    fun readFlagsFetchResponse(callback: FlagsFetchCallback): ImapResponse?
+
     @Throws(SocketException::class)
     fun setSocketDefaultReadTimeout()
 
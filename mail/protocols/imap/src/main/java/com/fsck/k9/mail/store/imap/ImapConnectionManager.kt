@@ -7,4 +7,10 @@ internal interface ImapConnectionManager {
     fun getConnection(): ImapConnection
 
     fun releaseConnection(connection: ImapConnection?)
+
+    /**
+     * Stops counting [connection] against the connection limit without returning it to the pool, e.g. because it's
+     * kept open for `IDLE` or has been closed.
+     */
+    fun detachConnection(connection: ImapConnection)
 }
@@ -2,4 +2,9 @@ package com.fsck.k9.mail.store.imap
 
 internal interface ImapConnectionProvider {
     fun getConnection(folder: ImapFolder): ImapConnection?
+
+    /**
+     * Stops counting the connection of [folder] against the connection limit because it's about to be used for `IDLE`.
+     */
+    fun detachConnection(folder: ImapFolder)
 }
@@ -0,0 +1,7 @@
+package com.fsck.k9.mail.store.imap
+
+/**
+ * Counts how many connections an [ImapStore] had to establish, i.e. how many TCP/TLS handshakes and logins were
+ * necessary, and how often an idle connection could be reused instead.
+ */
+data class ImapConnectionStatistics(val createdConnections: Int, val reusedConnections: Int)
@@ -21,10 +21,24 @@ interface ImapFolder {
     @Throws(MessagingException::class)
     fun open(mode: OpenMode)
 
+    /**
+     * Opens the folder and asks the server for all changes since [highestModSeq] (QRESYNC, RFC 7162).
+     *
+     * @return the changes, or `null` if QRESYNC isn't enabled on the connection. In that case the folder has been
+     * opened as if [open] had been called.
+     */
+    @Throws(MessagingException::class)
+    fun openWithQresync(mode: OpenMode, uidValidity: Long, highestModSeq: Long): QresyncResponse?
+
     fun close()
 
     fun getUidValidity(): Long?
 
+    /**
+     * Returns the `HIGHESTMODSEQ` of the folder, or `null` if the server doesn't support mod-sequences for it.
+     */
+    fun getHighestModSeq(): Long?
+
     fun getMessage(uid: String): ImapMessage
 
     @Throws(MessagingException::class)
@@ -49,6 +63,15 @@ interface ImapFolder {
         maxDownloadSize: Int
     )
 
+    /**
+     * Fetch the flags of [messages] and set them on the message objects.
+     *
+     * Unlike [fetch] with [FetchProfile.Item.FLAGS] this processes the responses while they are read, without building
+     * a parse tree for every message.
+     */
+    @Throws(MessagingException::class)
+    fun fetchFlags(messages: List<ImapMessage>)
+
     @Throws(MessagingException::class)
     fun fetchPart(
         message: ImapMessage,
@@ -90,3 +113,9 @@ interface ImapFolder {
 interface FetchListener {
     fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean)
 }
+
+/**
+ * Changes reported by the server when a folder was opened with QRESYNC: the UIDs of expunged messages and the
+ * messages whose flags changed or that were added, with their current flags.
+ */
+class QresyncResponse(val vanishedUids: UidSet, val changedMessages: List<ImapMessage>)
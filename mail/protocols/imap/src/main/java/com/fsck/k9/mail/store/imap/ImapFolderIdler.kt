@@ -13,6 +13,11 @@ interface ImapFolderIdler {
                 require(folder is RealImapFolder)
                 return folder.connection
             }
+
+            override fun detachConnection(folder: ImapFolder) {
+                require(folder is RealImapFolder)
+                folder.detachConnection()
+            }
         }
 
         fun create(
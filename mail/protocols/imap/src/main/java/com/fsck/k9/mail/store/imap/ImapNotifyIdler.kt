@@ -0,0 +1,41 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.power.WakeLock
+
+/**
+ * Listens for changes to multiple folders over a single connection using the NOTIFY extension (RFC 5465).
+ */
+interface ImapNotifyIdler {
+    fun idle(): NotifyIdleResult
+    fun refresh()
+    fun stop()
+
+    companion object {
+        fun create(
+            idleRefreshManager: IdleRefreshManager,
+            wakeLock: WakeLock,
+            imapStore: ImapStore,
+            folderServerIds: Collection<String>,
+            idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider
+        ): ImapNotifyIdler {
+            require(imapStore is RealImapStore)
+            val folderServerIdsByMailboxName = folderServerIds.associateBy { folderServerId ->
+                imapStore.getEncodedMailboxName(folderServerId)
+            }
+
+            return RealImapNotifyIdler(
+                idleRefreshManager,
+                wakeLock,
+                imapStore,
+                folderServerIdsByMailboxName,
+                idleRefreshTimeoutProvider
+            )
+        }
+    }
+}
+
+sealed class NotifyIdleResult {
+    class Changes(val folderServerIds: Set<String>) : NotifyIdleResult()
+    object Stopped : NotifyIdleResult()
+    object NotSupported : NotifyIdleResult()
+}
@@ -15,6 +15,16 @@ import static com.fsck.k9.mail.K9MailLib.DEBUG_PROTOCOL_IMAP;
 
 
 class ImapResponseParser {
+    /**
+     * Atoms that are part of almost every response, e.g. the data items of FETCH responses and the system flags. They
+     * are returned as shared instances instead of creating a new string for every occurrence, indexed by length.
+     */
+    private static final String[][] WELL_KNOWN_ATOMS = groupByLength(
+            "FETCH", "UID", "FLAGS", "INTERNALDATE", "RFC822.SIZE", "BODYSTRUCTURE", "BODY", "MODSEQ", "NIL",
+            Responses.OK, Responses.EXISTS, Responses.EXPUNGE, Responses.VANISHED,
+            "\\Seen", "\\Answered", "\\Flagged", "\\Deleted", "\\Draft", "\\Recent", "$Forwarded");
+
+    private final StringBuilder stringBuilder = new StringBuilder();
     private PeekableInputStream inputStream;
     private ImapResponse response;
     private Exception exception;
@@ -53,6 +63,128 @@ class ImapResponseParser {
         }
     }
 
+    /**
+     * Reads the next response available on the stream like {@link #readResponse()}. But untagged {@code FETCH}
+     * responses are passed to {@code callback} while they are read, without creating an {@code ImapResponse}.
+     *
+     * <p>
+     * Meant for the responses to {@code UID FETCH … (UID FLAGS)}. Data items other than {@code UID} and {@code FLAGS}
+     * are skipped.
+     * </p>
+     *
+     * @return The response, or {@code null} if it was an untagged {@code FETCH} response.
+     */
+    public ImapResponse readFlagsFetchResponse(FlagsFetchCallback callback) throws IOException {
+        if (inputStream.peek() != '*') {
+            return readResponse();
+        }
+
+        try {
+            parseUntaggedResponse();
+            response = ImapResponse.newUntaggedResponse(null);
+
+            if (!isDigit(inputStream.peek())) {
+                readTokens(response);
+                return response;
+            }
+
+            long number = readNumber();
+            String symbol = null;
+            if (inputStream.peek() == ' ') {
+                expect(' ');
+                symbol = parseBareString(true);
+            }
+
+            if (!equalsIgnoreCase(symbol, "FETCH") || inputStream.peek() != ' ') {
+                response.add(Long.toString(number));
+                if (symbol != null) {
+                    response.add(symbol);
+                }
+                readRemainingTokens(response);
+                return response;
+            }
+
+            expect(' ');
+            parseFlagsFetchList(callback);
+            expectEndOfLine();
+
+            return null;
+        } finally {
+            response = null;
+            exception = null;
+        }
+    }
+
+    private void parseFlagsFetchList(FlagsFetchCallback callback) throws IOException {
+        expect('(');
+
+        long uid = -1;
+        int flags = 0;
+        while (true) {
+            int ch = inputStream.peek();
+            if (ch == ')') {
+                expect(')');
+                break;
+            } else if (ch == ' ') {
+                expect(' ');
+                continue;
+            }
+
+            String dataItem = parseBareString(true);
+            if (inputStream.peek() == '[') {
+                parseList(new ImapList(), '[', ']');
+            }
+            expect(' ');
+
+            if (equalsIgnoreCase(dataItem, "UID")) {
+                uid = readNumber();
+            } else if (equalsIgnoreCase(dataItem, "FLAGS")) {
+                flags = parseFlagList();
+            } else if (parseToken(new ImapList()) == null) {
+                throw new IOException("parseFlagsFetchList(): Missing value of " + dataItem);
+            }
+        }
+
+        if (uid != -1) {
+            callback.onFlagsFetched(uid, flags);
+        }
+    }
+
+    private int parseFlagList() throws IOException {
+        expect('(');
+
+        int flags = 0;
+        while (true) {
+            int ch = inputStream.peek();
+            if (ch == ')') {
+                expect(')');
+                return flags;
+            } else if (ch == ' ') {
+                expect(' ');
+            } else {
+                flags |= getFlagBit(parseBareString(true));
+            }
+        }
+    }
+
+    private static int getFlagBit(String flag) {
+        if (flag.equalsIgnoreCase("\\Seen")) {
+            return FlagsFetchCallback.SEEN;
+        } else if (flag.equalsIgnoreCase("\\Answered")) {
+            return FlagsFetchCallback.ANSWERED;
+        } else if (flag.equalsIgnoreCase("\\Flagged")) {
+            return FlagsFetchCallback.FLAGGED;
+        } else if (flag.equalsIgnoreCase("\\Deleted")) {
+            return FlagsFetchCallback.DELETED;
+        } else if (flag.equalsIgnoreCase("\\Draft")) {
+            return FlagsFetchCallback.DRAFT;
+        } else if (flag.equalsIgnoreCase("$Forwarded")) {
+            return FlagsFetchCallback.FORWARDED;
+        }
+
+        return 0;
+    }
+
     private void readContinuationRequest(ImapResponseCallback callback) throws IOException {
         parseCommandContinuationRequest();
         response = ImapResponse.newContinuationRequest(callback);
@@ -136,11 +268,15 @@ class ImapResponseParser {
         } else if (equalsIgnoreCase(symbol, Responses.LIST) || equalsIgnoreCase(symbol, Responses.LSUB)) {
             parseListResponse(response);
         } else {
-            Object token;
-            while ((token = readToken(response)) != null) {
-                if (!(token instanceof ImapList)) {
-                    response.add(token);
-                }
+            readRemainingTokens(response);
+        }
+    }
+
+    private void readRemainingTokens(ImapResponse response) throws IOException {
+        Object token;
+        while ((token = readToken(response)) != null) {
+            if (!(token instanceof ImapList)) {
+                response.add(token);
             }
         }
     }
@@ -290,7 +426,7 @@ class ImapResponseParser {
         ImapList list = new ImapList();
         parent.add(list);
 
-        String endString = String.valueOf(end);
+        String endString = end == ')' ? ")" : "]";
 
         Object token;
         while (true) {
@@ -308,7 +444,8 @@ class ImapResponseParser {
     }
 
     private String parseBareString(boolean allowBrackets) throws IOException {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = stringBuilder;
+        sb.setLength(0);
 
         int ch;
         while (true) {
@@ -325,7 +462,7 @@ class ImapResponseParser {
                     throw new IOException(String.format("parseBareString(): (%04x %c)", ch, ch));
                 }
 
-                return sb.toString();
+                return toAtomString(sb);
             } else {
                 sb.append((char) inputStream.read());
             }
@@ -338,7 +475,7 @@ class ImapResponseParser {
      */
     private Object parseLiteral() throws IOException {
         expect('{');
-        int size = Integer.parseInt(readStringUntil('}'));
+        int size = readNumberUntil('}');
         expect('\r');
         expect('\n');
 
@@ -396,7 +533,8 @@ class ImapResponseParser {
     private String parseQuoted() throws IOException {
         expect('"');
 
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = stringBuilder;
+        sb.setLength(0);
         int ch;
         boolean escape = false;
         while ((ch = inputStream.read()) != -1) {
@@ -430,7 +568,8 @@ class ImapResponseParser {
     }
 
     private String readStringUntil(char end) throws IOException {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = stringBuilder;
+        sb.setLength(0);
 
         int ch;
         while ((ch = inputStream.read()) != -1) {
@@ -445,6 +584,79 @@ class ImapResponseParser {
                 "Read: \"" + sb.toString() + "\" while waiting for " + formatChar(end));
     }
 
+    private int readNumberUntil(char end) throws IOException {
+        int number = 0;
+        int digits = 0;
+
+        int ch;
+        while ((ch = inputStream.read()) != -1) {
+            if (ch == end && digits > 0) {
+                return number;
+            } else if (ch >= '0' && ch <= '9' && digits < 9) {
+                number = number * 10 + (ch - '0');
+                digits++;
+            } else {
+                throw new IOException("readNumberUntil(): Invalid number, got " + formatChar((char) ch) +
+                        " while waiting for " + formatChar(end));
+            }
+        }
+
+        throw new IOException("readNumberUntil(): end of stream reached while waiting for " + formatChar(end));
+    }
+
+    private long readNumber() throws IOException {
+        long number = 0;
+        int digits = 0;
+
+        while (isDigit(inputStream.peek()) && digits < 18) {
+            number = number * 10 + (inputStream.read() - '0');
+            digits++;
+        }
+
+        if (digits == 0 || isDigit(inputStream.peek())) {
+            throw new IOException("readNumber(): Invalid number, got " + formatChar((char) inputStream.peek()));
+        }
+
+        return number;
+    }
+
+    private static boolean isDigit(int ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private String toAtomString(StringBuilder sb) {
+        int length = sb.length();
+        if (length < WELL_KNOWN_ATOMS.length) {
+            for (String atom : WELL_KNOWN_ATOMS[length]) {
+                if (atom.contentEquals(sb)) {
+                    return atom;
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String[][] groupByLength(String... atoms) {
+        int maxLength = 0;
+        for (String atom : atoms) {
+            maxLength = Math.max(maxLength, atom.length());
+        }
+
+        String[][] atomsByLength = new String[maxLength + 1][];
+        for (int length = 0; length <= maxLength; length++) {
+            List<String> atomsWithLength = new ArrayList<>();
+            for (String atom : atoms) {
+                if (atom.length() == length) {
+                    atomsWithLength.add(atom);
+                }
+            }
+            atomsByLength[length] = atomsWithLength.toArray(new String[0]);
+        }
+
+        return atomsByLength;
+    }
+
     private String formatChar(char value) {
         return value < 32 ? "[" + Integer.toString(value) + "]" : "'" + value + "'";
     }
@@ -456,6 +668,13 @@ class ImapResponseParser {
         return rest;
     }
 
+    private void expectEndOfLine() throws IOException {
+        if (inputStream.peek() == '\r') {
+            expect('\r');
+        }
+        expect('\n');
+    }
+
     private void expect(char expected) throws IOException {
         int readByte = inputStream.read();
         if (readByte != expected) {
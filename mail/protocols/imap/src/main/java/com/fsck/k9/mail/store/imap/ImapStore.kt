@@ -14,8 +14,18 @@ interface ImapStore {
     @Throws(MessagingException::class)
     fun getFolders(): List<FolderListItem>
 
+    /**
+     * Returns the status of the given folders without selecting them. Uses a single `LIST-STATUS` command if the
+     * server supports it, otherwise pipelined `STATUS` commands. Folders the server returned no status for are missing
+     * from the result.
+     */
+    @Throws(MessagingException::class)
+    fun getFolderStatuses(folderServerIds: Collection<String>): Map<String, FolderStatus>
+
     fun closeAllConnections()
 
+    fun getConnectionStatistics(): ImapConnectionStatistics
+
     companion object {
         fun create(
             serverSettings: ServerSettings,
@@ -2,6 +2,13 @@ package com.fsck.k9.mail.store.imap
 
 interface ImapStoreConfig {
     val logLabel: String
+
+    /**
+     * Maximum number of connections that are open at the same time, including unused connections kept open for reuse.
+     * Connections used for `IDLE` don't count against this limit.
+     */
+    val maxConnections: Int
+
     fun isSubscribedFoldersOnly(): Boolean
     fun useCompression(): Boolean
 }
@@ -90,6 +90,7 @@ class RealImapConnection implements ImapConnection {
     private Exception stacktraceForClose;
     private boolean open = false;
     private boolean retryOAuthWithNewToken = true;
+    private boolean qresyncEnabled = false;
 
 
     public RealImapConnection(ImapSettings settings, TrustedSocketFactory socketFactory,
@@ -144,6 +145,7 @@ class RealImapConnection implements ImapConnection {
             extractOrRequestCapabilities(responses);
 
             enableCompressionIfRequested();
+            enableQresyncIfSupported();
 
             retrievePathPrefixIfNecessary();
             retrievePathDelimiterIfNecessary();
@@ -606,6 +608,34 @@ class RealImapConnection implements ImapConnection {
         }
     }
 
+    private void enableQresyncIfSupported() throws IOException, MessagingException {
+        if (!hasCapability(Capabilities.QRESYNC)) {
+            return;
+        }
+
+        List<ImapResponse> responses;
+        try {
+            responses = executeSimpleCommand(Commands.ENABLE_QRESYNC);
+        } catch (NegativeImapResponseException e) {
+            Timber.d(e, "Unable to enable QRESYNC");
+            return;
+        }
+
+        for (ImapResponse response : responses) {
+            if (!response.isTagged() && equalsIgnoreCase(response.get(0), Responses.ENABLED)) {
+                for (int i = 1, size = response.size(); i < size; i++) {
+                    if (equalsIgnoreCase(response.get(i), Capabilities.QRESYNC)) {
+                        qresyncEnabled = true;
+                    }
+                }
+            }
+        }
+
+        if (K9MailLib.isDebug()) {
+            Timber.d("QRESYNC enabled: %b for %s", qresyncEnabled, getLogId());
+        }
+    }
+
     private void retrievePathPrefixIfNecessary() throws IOException, MessagingException {
         if (settings.getPathPrefix() != null) {
             return;
@@ -697,6 +727,19 @@ class RealImapConnection implements ImapConnection {
         return hasCapability(Capabilities.CONDSTORE);
     }
 
+    /**
+     * Returns whether QRESYNC (RFC 7162) has been enabled for this connection. Once enabled the server reports
+     * expunged messages with VANISHED instead of EXPUNGE responses.
+     */
+    @Override
+    public boolean isQresyncEnabled() throws IOException, MessagingException {
+        if (!open) {
+            open();
+        }
+
+        return qresyncEnabled;
+    }
+
     @Override
     public boolean isIdleCapable() {
         if (K9MailLib.isDebug()) {
@@ -870,6 +913,23 @@ class RealImapConnection implements ImapConnection {
         }
     }
 
+    @Override
+    @Nullable
+    public ImapResponse readFlagsFetchResponse(@NotNull FlagsFetchCallback callback) throws IOException {
+        try {
+            ImapResponse response = responseParser.readFlagsFetchResponse(callback);
+
+            if (response != null && K9MailLib.isDebug() && DEBUG_PROTOCOL_IMAP) {
+                Timber.v("%s<<<%s", getLogId(), response);
+            }
+
+            return response;
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
     private ImapResponse readContinuationResponse(String tag) throws IOException, MessagingException {
         ImapResponse response;
         do {
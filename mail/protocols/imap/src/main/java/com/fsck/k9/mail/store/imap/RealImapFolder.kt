@@ -37,8 +37,10 @@ internal class RealImapFolder(
         private set
     private var exists = false
     private var inSearch = false
+    private var isQresyncOpen = false
     private var canCreateKeywords = false
     private var uidValidity: Long? = null
+    private var highestModSeq: Long? = null
 
     override var messageCount = -1
         private set
@@ -54,6 +56,11 @@ internal class RealImapFolder(
         return uidValidity
     }
 
+    override fun getHighestModSeq(): Long? {
+        check(isOpen) { "ImapFolder needs to be open" }
+        return highestModSeq
+    }
+
     @get:Throws(MessagingException::class)
     private val prefixedName: String
         get() {
@@ -94,8 +101,40 @@ internal class RealImapFolder(
     }
 
     @Throws(MessagingException::class)
-    private fun internalOpen(mode: OpenMode): List<ImapResponse> {
-        if (isOpen && this.mode == mode) {
+    override fun openWithQresync(mode: OpenMode, uidValidity: Long, highestModSeq: Long): QresyncResponse? {
+        val responses = internalOpen(mode, QresyncParameters(uidValidity, highestModSeq))
+
+        if (messageCount == -1) {
+            throw MessagingException("Did not find message count during open")
+        }
+
+        if (!isQresyncOpen) {
+            return null
+        }
+
+        val vanishedUids = UidSet.union(
+            responses.mapNotNull { VanishedResponse.parse(it) }
+                .filter { it.isEarlier }
+                .map { it.uids }
+        )
+
+        val changedMessages = responses.mapNotNull { response ->
+            if (response.tag == null && ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")) {
+                val fetchList = response.getKeyedValue("FETCH") as ImapList
+                fetchList.getKeyedString("UID")?.let { uid ->
+                    ImapMessage(uid).also { message -> handleFetchResponse(message, fetchList) }
+                }
+            } else {
+                null
+            }
+        }
+
+        return QresyncResponse(vanishedUids, changedMessages)
+    }
+
+    @Throws(MessagingException::class)
+    private fun internalOpen(mode: OpenMode, qresyncParameters: QresyncParameters? = null): List<ImapResponse> {
+        if (isOpen && this.mode == mode && qresyncParameters == null) {
             // Make sure the connection is valid. If it's not we'll close it down and continue on to get a new one.
             try {
                 return executeSimpleCommand(Commands.NOOP)
@@ -114,7 +153,17 @@ internal class RealImapFolder(
             val openCommand = if (mode == OpenMode.READ_WRITE) "SELECT" else "EXAMINE"
             val encodedFolderName = folderNameCodec.encode(prefixedName)
             val escapedFolderName = ImapUtility.encodeString(encodedFolderName)
-            val command = String.format("%s %s", openCommand, escapedFolderName)
+            isQresyncOpen = qresyncParameters != null && connection!!.isQresyncEnabled()
+            val command = if (isQresyncOpen) {
+                String.format(
+                    Locale.US, "%s %s (QRESYNC (%d %d))",
+                    openCommand, escapedFolderName, qresyncParameters!!.uidValidity, qresyncParameters.highestModSeq
+                )
+            } else {
+                String.format("%s %s", openCommand, escapedFolderName)
+            }
+
+            highestModSeq = null
             val responses = executeSimpleCommand(command)
 
             /*
@@ -125,6 +174,7 @@ internal class RealImapFolder(
 
             for (response in responses) {
                 extractUidValidity(response)
+                extractHighestModSeq(response)
                 handlePermanentFlags(response)
             }
 
@@ -148,6 +198,13 @@ internal class RealImapFolder(
         }
     }
 
+    private fun extractHighestModSeq(response: ImapResponse) {
+        val highestModSeqResponse = HighestModSeqResponse.parse(response)
+        if (highestModSeqResponse != null) {
+            highestModSeq = highestModSeqResponse.highestModSeq
+        }
+    }
+
     private fun handlePermanentFlags(response: ImapResponse) {
         val permanentFlagsResponse = PermanentFlagsResponse.parse(response) ?: return
 
@@ -175,6 +232,7 @@ internal class RealImapFolder(
             if (inSearch && connection != null) {
                 Timber.i("IMAP search was aborted, shutting down connection.")
                 connection!!.close()
+                connectionManager.detachConnection(connection!!)
             } else {
                 connectionManager.releaseConnection(connection)
             }
@@ -183,6 +241,10 @@ internal class RealImapFolder(
         }
     }
 
+    internal fun detachConnection() {
+        connection?.let { connectionManager.detachConnection(it) }
+    }
+
     @Throws(MessagingException::class)
     private fun exists(escapedFolderName: String): Boolean {
         return try {
@@ -525,7 +587,6 @@ internal class RealImapFolder(
         checkOpen()
 
         val messageMap = messages.associateBy { it.uid }
-        val uids = messages.map { it.uid }
 
         val fetchFields: MutableSet<String> = LinkedHashSet()
         fetchFields.add("UID")
@@ -560,71 +621,143 @@ internal class RealImapFolder(
         }
 
         val spaceSeparatedFetchFields = ImapUtility.join(" ", fetchFields)
-        var windowStart = 0
+        val isBodyFetch = fetchProfile.contains(FetchProfile.Item.BODY) ||
+            fetchProfile.contains(FetchProfile.Item.BODY_SANE)
+        val callback: ImapResponseCallback? = if (isBodyFetch) FetchBodyCallback(messageMap) else null
+        val windowSizer = FetchWindowSizer(isBodyFetch, maxDownloadSize)
         val processedUids = mutableSetOf<String>()
-        while (windowStart < messages.size) {
-            val windowEnd = min(windowStart + FETCH_WINDOW_SIZE, messages.size)
-            val uidWindow = uids.subList(windowStart, windowEnd)
 
-            try {
-                val commaSeparatedUids = ImapUtility.join(",", uidWindow)
-                val command = String.format("UID FETCH %s (%s)", commaSeparatedUids, spaceSeparatedFetchFields)
-                connection!!.sendCommand(command, false)
+        fetchInWindows(messages, spaceSeparatedFetchFields, windowSizer) {
+            readFetchResponses(messageMap, callback, processedUids, listener)
+        }
+    }
+
+    @Throws(MessagingException::class)
+    override fun fetchFlags(messages: List<ImapMessage>) {
+        if (messages.isEmpty()) {
+            return
+        }
+
+        checkOpen()
+
+        // Look up messages by their numeric UID, so processing a response doesn't allocate
+        val sortedMessages = messages.sortedBy { it.uid.toLong() }
+        val sortedUids = LongArray(sortedMessages.size) { index -> sortedMessages[index].uid.toLong() }
+        val callback = FlagsFetchCallback { uid, flags ->
+            val index = sortedUids.binarySearch(uid)
+            if (index >= 0) {
+                setFetchedFlags(sortedMessages[index], flags)
+            } else if (K9MailLib.isDebug()) {
+                Timber.d("Do not have message for UID %d for %s", uid, logId)
+            }
+        }
+        val windowSizer = FetchWindowSizer(isBodyFetch = false, maxDownloadSize = 0)
+
+        fetchInWindows(messages, "UID FLAGS", windowSizer) {
+            readFlagsFetchResponses(callback)
+        }
+    }
+
+    /**
+     * Sends `UID FETCH` commands for [messages] in windows determined by [windowSizer]. [readResponses] is called to
+     * read the responses to one command at a time.
+     */
+    private fun fetchInWindows(
+        messages: List<ImapMessage>,
+        spaceSeparatedFetchFields: String,
+        windowSizer: FetchWindowSizer,
+        readResponses: () -> Unit
+    ) {
+        val uids = messages.map { it.uid }
+        val pendingWindows = ArrayDeque<FetchWindow>()
+        var windowStart = 0
+        var lastCompletionTime = 0L
+        try {
+            while (windowStart < messages.size || pendingWindows.isNotEmpty()) {
+                // Send the command for the next window before reading the responses to the current one, so the
+                // server can already work on it while the responses are in transit.
+                while (windowStart < messages.size && pendingWindows.size < MAX_PIPELINED_FETCH_COMMANDS) {
+                    val windowEnd = windowSizer.getWindowEnd(messages, windowStart)
+                    val commaSeparatedUids = ImapUtility.join(",", uids.subList(windowStart, windowEnd))
+                    val command = String.format("UID FETCH %s (%s)", commaSeparatedUids, spaceSeparatedFetchFields)
+                    connection!!.sendCommand(command, false)
+
+                    pendingWindows.addLast(FetchWindow(windowEnd - windowStart, System.nanoTime()))
+                    windowStart = windowEnd
+                }
+
+                readResponses()
+
+                val window = pendingWindows.removeFirst()
+                val completionTime = System.nanoTime()
+                val durationMillis = (completionTime - max(window.sendTime, lastCompletionTime)) / 1_000_000
+                windowSizer.onWindowCompleted(window.messageCount, durationMillis)
+                lastCompletionTime = completionTime
+            }
+        } catch (ioe: IOException) {
+            throw ioExceptionHandler(connection, ioe)
+        } catch (e: Exception) {
+            if (pendingWindows.isNotEmpty()) {
+                // Responses to commands that have already been sent haven't been read. Make sure the connection isn't
+                // reused in that state.
+                Timber.w("Closing connection with unread FETCH responses for %s", logId)
+                connection?.close()
+                close()
+            }
+            throw e
+        }
+    }
 
-                var callback: ImapResponseCallback? = null
-                if (fetchProfile.contains(FetchProfile.Item.BODY) ||
-                    fetchProfile.contains(FetchProfile.Item.BODY_SANE)
-                ) {
-                    callback = FetchBodyCallback(messageMap)
+    /**
+     * Reads the responses to a `UID FETCH` command up to and including the tagged response.
+     */
+    private fun readFetchResponses(
+        messageMap: Map<String, ImapMessage>,
+        callback: ImapResponseCallback?,
+        processedUids: MutableSet<String>,
+        listener: FetchListener?
+    ) {
+        var response: ImapResponse
+        do {
+            response = connection!!.readResponse(callback)
+            if (response.tag == null && ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")) {
+                val fetchList = response.getKeyedValue("FETCH") as ImapList
+                val uid = fetchList.getKeyedString("UID")
+
+                val message = messageMap[uid]
+                if (message == null) {
+                    if (K9MailLib.isDebug()) {
+                        Timber.d("Do not have message in messageMap for UID %s for %s", uid, logId)
+                    }
+                    handleUntaggedResponse(response)
+                    continue
                 }
 
-                var response: ImapResponse
-                do {
-                    response = connection!!.readResponse(callback)
-                    if (response.tag == null && ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")) {
-                        val fetchList = response.getKeyedValue("FETCH") as ImapList
-                        val uid = fetchList.getKeyedString("UID")
-
-                        val message = messageMap[uid]
-                        if (message == null) {
-                            if (K9MailLib.isDebug()) {
-                                Timber.d("Do not have message in messageMap for UID %s for %s", uid, logId)
-                            }
-                            handleUntaggedResponse(response)
-                            continue
+                val literal = handleFetchResponse(message, fetchList)
+                if (literal != null) {
+                    when (literal) {
+                        is String -> {
+                            val bodyStream: InputStream = literal.toByteArray().inputStream()
+                            message.parse(bodyStream)
                         }
-
-                        val literal = handleFetchResponse(message, fetchList)
-                        if (literal != null) {
-                            when (literal) {
-                                is String -> {
-                                    val bodyStream: InputStream = literal.toByteArray().inputStream()
-                                    message.parse(bodyStream)
-                                }
-                                is Int -> {
-                                    // All the work was done in FetchBodyCallback.foundLiteral()
-                                }
-                                else -> {
-                                    // This shouldn't happen
-                                    throw MessagingException("Got FETCH response with bogus parameters")
-                                }
-                            }
+                        is Int -> {
+                            // All the work was done in FetchBodyCallback.foundLiteral()
+                        }
+                        else -> {
+                            // This shouldn't happen
+                            throw MessagingException("Got FETCH response with bogus parameters")
                         }
+                    }
+                }
 
-                        val isFirstResponse = uid !in processedUids
-                        processedUids.add(uid)
+                val isFirstResponse = uid !in processedUids
+                processedUids.add(uid)
 
-                        listener?.onFetchResponse(message, isFirstResponse)
-                    } else {
-                        handleUntaggedResponse(response)
-                    }
-                } while (response.tag == null)
-            } catch (ioe: IOException) {
-                throw ioExceptionHandler(connection, ioe)
+                listener?.onFetchResponse(message, isFirstResponse)
+            } else {
+                handleUntaggedResponse(response)
             }
-
-            windowStart += FETCH_WINDOW_SIZE
-        }
+        } while (response.tag == null)
     }
 
     @Throws(MessagingException::class)
@@ -695,6 +828,42 @@ internal class RealImapFolder(
         }
     }
 
+    /**
+     * Reads the responses to a `UID FETCH … (UID FLAGS)` command up to and including the tagged response.
+     */
+    private fun readFlagsFetchResponses(callback: FlagsFetchCallback) {
+        var response: ImapResponse?
+        do {
+            response = connection!!.readFlagsFetchResponse(callback)
+            if (response != null) {
+                handleUntaggedResponse(response)
+            }
+        } while (response == null || response.tag == null)
+    }
+
+    private fun setFetchedFlags(message: ImapMessage, flags: Int) {
+        if (flags and FlagsFetchCallback.DELETED != 0) {
+            message.setFlag(Flag.DELETED, true)
+        }
+        if (flags and FlagsFetchCallback.ANSWERED != 0) {
+            message.setFlag(Flag.ANSWERED, true)
+        }
+        if (flags and FlagsFetchCallback.SEEN != 0) {
+            message.setFlag(Flag.SEEN, true)
+        }
+        if (flags and FlagsFetchCallback.FLAGGED != 0) {
+            message.setFlag(Flag.FLAGGED, true)
+        }
+        if (flags and FlagsFetchCallback.FORWARDED != 0) {
+            message.setFlag(Flag.FORWARDED, true)
+            // a message contains FORWARDED FLAG -> so we can also create them
+            internalImapStore.getPermanentFlagsIndex().add(Flag.FORWARDED)
+        }
+        if (flags and FlagsFetchCallback.DRAFT != 0) {
+            message.setFlag(Flag.DRAFT, true)
+        }
+    }
+
     // Returns value of body field
     @Throws(MessagingException::class)
     private fun handleFetchResponse(message: ImapMessage, fetchList: ImapList): Any? {
@@ -811,6 +980,15 @@ internal class RealImapFolder(
                     Timber.d("Got untagged EXPUNGE with messageCount %d for %s", messageCount, logId)
                 }
             }
+
+            // With QRESYNC enabled the server sends VANISHED instead of EXPUNGE responses
+            val vanishedResponse = VanishedResponse.parse(response)
+            if (vanishedResponse != null && !vanishedResponse.isEarlier && messageCount > 0) {
+                messageCount = max(0L, messageCount - vanishedResponse.uids.size).toInt()
+                if (K9MailLib.isDebug()) {
+                    Timber.d("Got untagged VANISHED with messageCount %d for %s", messageCount, logId)
+                }
+            }
         }
     }
 
@@ -1194,7 +1372,7 @@ internal class RealImapFolder(
 
     companion object {
         private const val MORE_MESSAGES_WINDOW_SIZE = 500
-        private const val FETCH_WINDOW_SIZE = 100
+        private const val MAX_PIPELINED_FETCH_COMMANDS = 2
 
         const val INBOX = "INBOX"
 
@@ -1210,3 +1388,7 @@ enum class OpenMode {
     READ_WRITE,
     READ_ONLY
 }
+
+private class QresyncParameters(val uidValidity: Long, val highestModSeq: Long)
+
+private class FetchWindow(val messageCount: Int, val sendTime: Long)
@@ -78,6 +78,8 @@ internal class RealImapFolderIdler(
             return IdleResult.NOT_SUPPORTED
         }
 
+        connectionProvider.detachConnection(this)
+
         stopIdle = false
         do {
             synchronized(this) {
@@ -184,7 +186,8 @@ internal class RealImapFolderIdler(
             return if (!isTagged && size >= 2) {
                 ImapResponseParser.equalsIgnoreCase(get(1), "EXISTS") ||
                     ImapResponseParser.equalsIgnoreCase(get(1), "EXPUNGE") ||
-                    ImapResponseParser.equalsIgnoreCase(get(1), "FETCH")
+                    ImapResponseParser.equalsIgnoreCase(get(1), "FETCH") ||
+                    ImapResponseParser.equalsIgnoreCase(get(0), Responses.VANISHED)
             } else {
                 false
             }
@@ -0,0 +1,273 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.logging.Timber
+import com.fsck.k9.mail.MessagingException
+import com.fsck.k9.mail.power.WakeLock
+import java.io.IOException
+
+private const val SOCKET_EXTRA_TIMEOUT_MS = 2 * 60 * 1000L
+private const val NOTIFICATION_OVERFLOW = "NOTIFICATIONOVERFLOW"
+
+/**
+ * Uses `NOTIFY SET` to register for events in all folders and then waits for them using `IDLE`.
+ *
+ * Events for mailboxes that are not selected are reported as untagged `STATUS` responses. The connection is kept open
+ * between calls to [idle] and is never returned to the connection pool, because it's in a state the other users of
+ * the pool don't expect.
+ */
+internal class RealImapNotifyIdler(
+    private val idleRefreshManager: IdleRefreshManager,
+    private val wakeLock: WakeLock,
+    private val connectionManager: ImapConnectionManager,
+    private val folderServerIdsByMailboxName: Map<String, String>,
+    private val idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider
+) : ImapNotifyIdler {
+    private val logTag = "ImapNotifyIdler"
+
+    @Volatile
+    private var connection: ImapConnection? = null
+
+    @get:Synchronized
+    @set:Synchronized
+    private var idleRefreshTimer: IdleRefreshTimer? = null
+
+    @Volatile
+    private var stopIdle = false
+
+    private var idleSent = false
+    private var doneSent = false
+
+    override fun idle(): NotifyIdleResult {
+        Timber.v("%s.idle()", logTag)
+
+        val connection = connection ?: openConnection() ?: return NotifyIdleResult.NotSupported
+
+        try {
+            return connection.idle().also { idleResult ->
+                Timber.v("%s.idle(): result=%s", logTag, idleResult)
+
+                if (idleResult !is NotifyIdleResult.Changes) {
+                    closeConnection()
+                }
+            }
+        } catch (e: Exception) {
+            closeConnection()
+            throw e
+        }
+    }
+
+    @Synchronized
+    override fun refresh() {
+        Timber.v("%s.refresh()", logTag)
+        endIdle()
+    }
+
+    @Synchronized
+    override fun stop() {
+        Timber.v("%s.stop()", logTag)
+        stopIdle = true
+        endIdle()
+    }
+
+    private fun openConnection(): ImapConnection? {
+        val connection = connectionManager.getConnection()
+        try {
+            connection.open()
+
+            if (!connection.hasCapability(Capabilities.NOTIFY) || !connection.isIdleCapable) {
+                Timber.v("%s: NOTIFY not supported by server", logTag)
+                connectionManager.releaseConnection(connection)
+                return null
+            }
+
+            if (!connection.setNotify()) {
+                Timber.w("%s: Server rejected NOTIFY SET command", logTag)
+                connectionManager.releaseConnection(connection)
+                return null
+            }
+        } catch (e: Exception) {
+            connection.close()
+            connectionManager.detachConnection(connection)
+            throw e
+        }
+
+        // The connection is kept for IDLE and never returned to the pool
+        connectionManager.detachConnection(connection)
+
+        this.connection = connection
+        return connection
+    }
+
+    private fun ImapConnection.setNotify(): Boolean {
+        val mailboxNames = folderServerIdsByMailboxName.keys.joinToString(separator = " ") { mailboxName ->
+            ImapUtility.encodeString(mailboxName)
+        }
+
+        // Some servers only support FlagChange for mailboxes other than the selected one with CONDSTORE. Try again
+        // without it before giving up.
+        return executeNotifySet("($mailboxNames)", "(MessageNew MessageExpunge FlagChange)") ||
+            executeNotifySet("($mailboxNames)", "(MessageNew MessageExpunge)")
+    }
+
+    private fun ImapConnection.executeNotifySet(mailboxes: String, events: String): Boolean {
+        val tag = sendCommand("NOTIFY SET (mailboxes $mailboxes $events)", false)
+
+        var response: ImapResponse
+        do {
+            response = readResponse()
+        } while (response.tag != tag)
+
+        return response.isOk
+    }
+
+    private fun closeConnection() {
+        connection?.close()
+        connection = null
+    }
+
+    private fun endIdle() {
+        if (idleSent && !doneSent) {
+            idleRefreshTimer?.cancel()
+
+            try {
+                sendDone()
+            } catch (e: IOException) {
+                Timber.v(e, "%s: IOException while sending DONE", logTag)
+            }
+        }
+    }
+
+    private fun ImapConnection.idle(): NotifyIdleResult {
+        val changedFolderServerIds = mutableSetOf<String>()
+        var notificationOverflow = false
+
+        stopIdle = false
+        do {
+            synchronized(this@RealImapNotifyIdler) {
+                idleSent = false
+                doneSent = false
+            }
+
+            val tag = sendCommand("IDLE", false)
+
+            synchronized(this@RealImapNotifyIdler) {
+                idleSent = true
+            }
+
+            do {
+                val response = readResponse()
+                if (response.tag == tag) {
+                    Timber.w("%s.idle(): IDLE command completed without a continuation request response", logTag)
+                    return NotifyIdleResult.NotSupported
+                }
+
+                notificationOverflow = notificationOverflow || response.isNotificationOverflow
+                response.changedFolderServerId?.let { changedFolderServerIds.add(it) }
+            } while (!response.isContinuationRequested)
+
+            if (changedFolderServerIds.isNotEmpty() || notificationOverflow) {
+                Timber.v("%s.idle(): Received a relevant untagged response right after sending IDLE command", logTag)
+                stopIdle = true
+                sendDone()
+            } else {
+                setSocketIdleReadTimeout()
+            }
+
+            var response: ImapResponse
+            do {
+                idleRefreshTimer = idleRefreshManager.startTimer(
+                    timeout = idleRefreshTimeoutProvider.idleRefreshTimeoutMs,
+                    callback = ::idleRefresh
+                )
+
+                wakeLock.release()
+
+                try {
+                    response = readResponse()
+                } finally {
+                    wakeLock.acquire()
+                    idleRefreshTimer?.cancel()
+                }
+
+                notificationOverflow = notificationOverflow || response.isNotificationOverflow
+                val changedFolderServerId = response.changedFolderServerId
+                if (changedFolderServerId != null) {
+                    changedFolderServerIds.add(changedFolderServerId)
+                }
+
+                if ((changedFolderServerId != null || notificationOverflow) && !stopIdle) {
+                    Timber.v("%s.idle(): Received a relevant untagged response during IDLE", logTag)
+                    stopIdle = true
+                    sendDone()
+                } else if (!response.isTagged) {
+                    Timber.v("%s.idle(): Ignoring untagged response", logTag)
+                }
+            } while (response.tag != tag)
+
+            if (!response.isOk) {
+                throw MessagingException("Received non-OK response to IDLE command")
+            }
+        } while (!stopIdle)
+
+        if (notificationOverflow) {
+            // The server stopped sending notifications. Sync all folders and set up NOTIFY again on a new connection.
+            Timber.v("%s.idle(): Server reported notification overflow", logTag)
+            closeConnection()
+            return NotifyIdleResult.Changes(folderServerIdsByMailboxName.values.toSet())
+        }
+
+        return if (changedFolderServerIds.isEmpty()) {
+            NotifyIdleResult.Stopped
+        } else {
+            NotifyIdleResult.Changes(changedFolderServerIds)
+        }
+    }
+
+    @Synchronized
+    private fun idleRefresh() {
+        Timber.v("%s.idleRefresh()", logTag)
+
+        if (!idleSent || doneSent) {
+            Timber.v("%s: Connection is not in a state where it can be refreshed.", logTag)
+            return
+        }
+
+        try {
+            sendDone()
+        } catch (e: IOException) {
+            Timber.v(e, "%s: IOException while sending DONE", logTag)
+        }
+    }
+
+    @Synchronized
+    private fun sendDone() {
+        val connection = connection ?: return
+
+        synchronized(connection) {
+            if (connection.isConnected) {
+                doneSent = true
+                connection.setSocketDefaultReadTimeout()
+                connection.sendContinuation("DONE")
+            }
+        }
+    }
+
+    private fun ImapConnection.setSocketIdleReadTimeout() {
+        setSocketReadTimeout((idleRefreshTimeoutProvider.idleRefreshTimeoutMs + SOCKET_EXTRA_TIMEOUT_MS).toInt())
+    }
+
+    private val ImapResponse.changedFolderServerId: String?
+        get() {
+            val statusResponse = StatusResponse.parse(this) ?: return null
+            return folderServerIdsByMailboxName[statusResponse.mailboxName]
+        }
+
+    private val ImapResponse.isNotificationOverflow: Boolean
+        get() {
+            return !isTagged && size >= 2 && ImapResponseParser.equalsIgnoreCase(get(0), Responses.OK) &&
+                ImapResponseParser.equalsIgnoreCase(ResponseCodeExtractor.getResponseCode(this), NOTIFICATION_OVERFLOW)
+        }
+
+    private val ImapResponse.isOk: Boolean
+        get() = isTagged && size >= 1 && ImapResponseParser.equalsIgnoreCase(get(0), Responses.OK)
+}
@@ -4,14 +4,17 @@ package com.fsck.k9.mail.store.imap;
 import java.io.IOException;
 import java.nio.charset.CharacterCodingException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.fsck.k9.logging.Timber;
 import com.fsck.k9.mail.AuthType;
@@ -32,6 +35,18 @@ import org.jetbrains.annotations.Nullable;
  * </pre>
  */
 class RealImapStore implements ImapStore, ImapConnectionManager, InternalImapStore {
+    private static final String STATUS_ITEMS = "(MESSAGES UIDNEXT UIDVALIDITY UNSEEN)";
+    private static final String STATUS_ITEMS_WITH_MOD_SEQ = "(MESSAGES UIDNEXT UIDVALIDITY UNSEEN HIGHESTMODSEQ)";
+    /**
+     * Maximum number of STATUS commands sent before reading their responses.
+     */
+    private static final int MAX_PIPELINED_STATUS_COMMANDS = 32;
+    /**
+     * Idle connections older than this are closed instead of being reused. RFC 3501 allows servers to log out clients
+     * after 30 minutes of inactivity, so checking such a connection with NOOP would most likely only add a timeout.
+     */
+    private static final long IDLE_CONNECTION_TIMEOUT = 25 * 60 * 1000L;
+
     private final ImapStoreConfig config;
     private final TrustedSocketFactory trustedSocketFactory;
     private Set<Flag> permanentFlagsIndex = EnumSet.noneOf(Flag.class);
@@ -47,7 +62,14 @@ class RealImapStore implements ImapStore, ImapConnectionManager, InternalImapSto
     private String pathPrefix;
     private String combinedPrefix = null;
     private String pathDelimiter = null;
-    private final Deque<ImapConnection> connections = new LinkedList<>();
+    private final Deque<IdleConnection> connections = new LinkedList<>();
+    /**
+     * Connections handed out by {@link #getConnection()} and the thread that requested them. Guarded by the lock on
+     * {@link #connections}.
+     */
+    private final Map<ImapConnection, Thread> activeConnections = new IdentityHashMap<>();
+    private final AtomicInteger createdConnectionCount = new AtomicInteger();
+    private final AtomicInteger reusedConnectionCount = new AtomicInteger();
     private FolderNameCodec folderNameCodec;
     private volatile int connectionGeneration = 1;
 
@@ -206,6 +228,106 @@ class RealImapStore implements ImapStore, ImapConnectionManager, InternalImapSto
         return folders;
     }
 
+    @Override
+    @NotNull
+    public Map<String, FolderStatus> getFolderStatuses(@NotNull Collection<String> folderServerIds)
+            throws MessagingException {
+        if (folderServerIds.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        ImapConnection connection = getConnection();
+
+        try {
+            connection.open();
+
+            Map<String, String> serverIdsByMailboxName = new HashMap<>(folderServerIds.size());
+            for (String serverId : folderServerIds) {
+                serverIdsByMailboxName.put(getEncodedMailboxName(serverId), serverId);
+            }
+
+            String statusItems = connection.hasCapability(Capabilities.CONDSTORE) ?
+                    STATUS_ITEMS_WITH_MOD_SEQ : STATUS_ITEMS;
+
+            List<ImapResponse> responses;
+            if (connection.hasCapability(Capabilities.LIST_STATUS)) {
+                responses = connection.executeSimpleCommand(
+                        String.format("LIST \"\" %s RETURN (STATUS %s)", getListStatusPattern(), statusItems));
+            } else {
+                responses = executePipelinedStatusCommands(connection, serverIdsByMailboxName.keySet(), statusItems);
+            }
+
+            Map<String, FolderStatus> folderStatuses = new HashMap<>(folderServerIds.size());
+            for (ImapResponse response : responses) {
+                StatusResponse statusResponse = StatusResponse.parse(response);
+                if (statusResponse == null) {
+                    continue;
+                }
+
+                String serverId = serverIdsByMailboxName.get(statusResponse.getMailboxName());
+                if (serverId != null) {
+                    folderStatuses.put(serverId, statusResponse.getFolderStatus());
+                }
+            }
+
+            return folderStatuses;
+        } catch (IOException | MessagingException e) {
+            connection.close();
+            throw new MessagingException("Unable to get folder status.", e);
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    private String getListStatusPattern() {
+        String prefix = getCombinedPrefix();
+        String encodedListPrefix = ImapUtility.encodeString(prefix + "*");
+        if (prefix.isEmpty()) {
+            return encodedListPrefix;
+        }
+
+        // The INBOX isn't located below the prefix
+        return "(" + encodedListPrefix + " " + RealImapFolder.INBOX + ")";
+    }
+
+    private List<ImapResponse> executePipelinedStatusCommands(ImapConnection connection,
+            Collection<String> mailboxNames, String statusItems) throws IOException, MessagingException {
+        List<ImapResponse> responses = new ArrayList<>();
+        List<String> remainingMailboxNames = new ArrayList<>(mailboxNames);
+
+        while (!remainingMailboxNames.isEmpty()) {
+            int batchSize = Math.min(remainingMailboxNames.size(), MAX_PIPELINED_STATUS_COMMANDS);
+            List<String> batch = remainingMailboxNames.subList(0, batchSize);
+
+            Set<String> pendingTags = new HashSet<>(batchSize);
+            for (String mailboxName : batch) {
+                String command = String.format("STATUS %s %s", ImapUtility.encodeString(mailboxName), statusItems);
+                pendingTags.add(connection.sendCommand(command, false));
+            }
+            batch.clear();
+
+            while (!pendingTags.isEmpty()) {
+                ImapResponse response = connection.readResponse();
+                if (response.isTagged()) {
+                    // A NO response means the folder doesn't exist anymore; it's simply missing from the result
+                    pendingTags.remove(response.getTag());
+                } else {
+                    responses.add(response);
+                }
+            }
+        }
+
+        return responses;
+    }
+
+    String getEncodedMailboxName(String serverId) {
+        if (RealImapFolder.INBOX.equalsIgnoreCase(serverId)) {
+            return folderNameCodec.encode(serverId);
+        }
+
+        return folderNameCodec.encode(getCombinedPrefix() + serverId);
+    }
+
     private String getFolderDisplayName(String serverId) {
         String decodedFolderName;
         try {
@@ -265,38 +387,91 @@ class RealImapStore implements ImapStore, ImapConnectionManager, InternalImapSto
     @Override
     @NotNull
     public ImapConnection getConnection() throws MessagingException {
-        ImapConnection connection;
-        while ((connection = pollConnection()) != null) {
+        while (true) {
+            IdleConnection idleConnection;
+            synchronized (connections) {
+                // Most recently used connections first, they are the most likely to still be alive
+                idleConnection = connections.pollLast();
+                if (idleConnection == null) {
+                    awaitConnectionSlot();
+                    idleConnection = connections.pollLast();
+                }
+
+                if (idleConnection == null) {
+                    ImapConnection connection = createImapConnection();
+                    activeConnections.put(connection, Thread.currentThread());
+                    createdConnectionCount.incrementAndGet();
+                    return connection;
+                }
+
+                activeConnections.put(idleConnection.connection, Thread.currentThread());
+            }
+
+            ImapConnection connection = idleConnection.connection;
+            if (getCurrentTime() - idleConnection.idleSince > IDLE_CONNECTION_TIMEOUT) {
+                Timber.v("Closing connection %s that has been idle for too long", connection.getLogId());
+                connection.close();
+                detachConnection(connection);
+                continue;
+            }
+
             try {
                 connection.executeSimpleCommand(Commands.NOOP);
-                break;
+                reusedConnectionCount.incrementAndGet();
+                return connection;
             } catch (IOException ioe) {
                 connection.close();
+                detachConnection(connection);
             }
         }
+    }
 
-        if (connection == null) {
-            connection = createImapConnection();
+    /**
+     * Waits until a new connection can be opened without exceeding {@link ImapStoreConfig#getMaxConnections()}, or a
+     * connection has been returned to the pool. Must be called while holding the lock on {@link #connections}.
+     */
+    private void awaitConnectionSlot() throws MessagingException {
+        // A thread that already holds a connection may need a second one, e.g. to check whether the destination
+        // folder of a copy exists. Making it wait could deadlock.
+        Thread currentThread = Thread.currentThread();
+        while (connections.isEmpty() && activeConnections.size() >= config.getMaxConnections() &&
+                !activeConnections.containsValue(currentThread)) {
+            try {
+                connections.wait();
+            } catch (InterruptedException e) {
+                currentThread.interrupt();
+                throw new MessagingException("Interrupted while waiting for a connection", e);
+            }
         }
-
-        return connection;
     }
 
-    private ImapConnection pollConnection() {
+    @Override
+    public void releaseConnection(ImapConnection connection) {
+        if (connection == null) {
+            return;
+        }
+
         synchronized (connections) {
-            return connections.poll();
+            activeConnections.remove(connection);
+            connections.notifyAll();
+
+            if (connection.isConnected() && connection.getConnectionGeneration() == connectionGeneration &&
+                    activeConnections.size() + connections.size() < config.getMaxConnections()) {
+                connections.offer(new IdleConnection(connection, getCurrentTime()));
+                return;
+            }
+        }
+
+        if (connection.isConnected()) {
+            connection.close();
         }
     }
 
     @Override
-    public void releaseConnection(ImapConnection connection) {
-        if (connection != null && connection.isConnected()) {
-            if (connection.getConnectionGeneration() == connectionGeneration) {
-                synchronized (connections) {
-                    connections.offer(connection);
-                }
-            } else {
-                connection.close();
+    public void detachConnection(ImapConnection connection) {
+        synchronized (connections) {
+            if (activeConnections.remove(connection) != null) {
+                connections.notifyAll();
             }
         }
     }
@@ -305,18 +480,28 @@ class RealImapStore implements ImapStore, ImapConnectionManager, InternalImapSto
     public void closeAllConnections() {
         Timber.v("ImapStore.closeAllConnections()");
 
-        List<ImapConnection> connectionsToClose;
+        List<IdleConnection> connectionsToClose;
         synchronized (connections) {
             connectionGeneration++;
             connectionsToClose = new ArrayList<>(connections);
             connections.clear();
         }
 
-        for (ImapConnection connection : connectionsToClose) {
-            connection.close();
+        for (IdleConnection idleConnection : connectionsToClose) {
+            idleConnection.connection.close();
         }
     }
 
+    @Override
+    @NotNull
+    public ImapConnectionStatistics getConnectionStatistics() {
+        return new ImapConnectionStatistics(createdConnectionCount.get(), reusedConnectionCount.get());
+    }
+
+    long getCurrentTime() {
+        return System.currentTimeMillis();
+    }
+
     ImapConnection createImapConnection() {
         return new RealImapConnection(
                 new StoreImapSettings(),
@@ -404,4 +589,14 @@ class RealImapStore implements ImapStore, ImapConnectionManager, InternalImapSto
             combinedPrefix = prefix;
         }
     }
+
+    private static class IdleConnection {
+        final ImapConnection connection;
+        final long idleSince;
+
+        IdleConnection(ImapConnection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.store.imap.ImapResponseParser.equalsIgnoreCase
+
+/**
+ * An untagged `STATUS` response, either to a `STATUS` command or as part of a `LIST-STATUS` (RFC 5819) response.
+ * [mailboxName] is the encoded name of the mailbox as sent by the server.
+ */
+internal class StatusResponse private constructor(val mailboxName: String, val folderStatus: FolderStatus) {
+    companion object {
+        @JvmStatic
+        fun parse(response: ImapResponse): StatusResponse? {
+            if (response.isTagged || response.size < 3 || !equalsIgnoreCase(response[0], Responses.STATUS) ||
+                !response.isString(1) || !response.isList(2)
+            ) return null
+
+            val mailboxName = response.getString(1)
+            val attributes = response.getList(2)
+            if (attributes.size % 2 != 0) return null
+
+            var messageCount: Int? = null
+            var uidNext: Long? = null
+            var uidValidity: Long? = null
+            var highestModSeq: Long? = null
+            var unseenCount: Int? = null
+            for (i in 0 until attributes.size step 2) {
+                if (!attributes.isLong(i + 1)) return null
+                val value = attributes.getLong(i + 1)
+
+                when (attributes.getString(i).uppercase()) {
+                    "MESSAGES" -> messageCount = value.toInt()
+                    "UIDNEXT" -> uidNext = value
+                    "UIDVALIDITY" -> uidValidity = value
+                    "HIGHESTMODSEQ" -> highestModSeq = value
+                    "UNSEEN" -> unseenCount = value.toInt()
+                }
+            }
+
+            return StatusResponse(
+                mailboxName,
+                FolderStatus(messageCount, uidNext, uidValidity, highestModSeq, unseenCount)
+            )
+        }
+    }
+}
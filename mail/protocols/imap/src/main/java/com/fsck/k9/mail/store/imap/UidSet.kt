@@ -0,0 +1,90 @@
+package com.fsck.k9.mail.store.imap
+
+import timber.log.Timber
+
+/**
+ * A set of UIDs kept as sorted, non-overlapping ranges. Sets like `1:300000` in a `VANISHED (EARLIER)` response
+ * commonly cover far more UIDs than the client ever had, so they are never expanded into individual UIDs.
+ */
+class UidSet private constructor(private val ranges: List<LongRange>) {
+    val size: Long
+        get() = ranges.sumOf { it.last - it.first + 1 }
+
+    fun isEmpty(): Boolean = ranges.isEmpty()
+
+    operator fun contains(uid: Long): Boolean {
+        var low = 0
+        var high = ranges.lastIndex
+        while (low <= high) {
+            val middle = (low + high) ushr 1
+            val range = ranges[middle]
+            when {
+                uid < range.first -> high = middle - 1
+                uid > range.last -> low = middle + 1
+                else -> return true
+            }
+        }
+
+        return false
+    }
+
+    override fun toString(): String {
+        return ranges.joinToString(separator = ",") { range ->
+            if (range.first == range.last) range.first.toString() else "${range.first}:${range.last}"
+        }
+    }
+
+    companion object {
+        @JvmField
+        val EMPTY = UidSet(emptyList())
+
+        /**
+         * Parses a `sequence-set` (RFC 3501) of UIDs. Invalid items are skipped.
+         */
+        @JvmStatic
+        fun parse(sequenceSet: String): UidSet {
+            val ranges = sequenceSet.split(',').mapNotNull { item ->
+                val colonIndex = item.indexOf(':')
+                if (colonIndex == -1) {
+                    parseUid(item)?.let { it..it }
+                } else {
+                    val first = parseUid(item.substring(0, colonIndex))
+                    val second = parseUid(item.substring(colonIndex + 1))
+                    if (first != null && second != null) minOf(first, second)..maxOf(first, second) else null
+                }
+            }
+
+            return of(ranges)
+        }
+
+        fun of(ranges: Collection<LongRange>): UidSet {
+            if (ranges.isEmpty()) return EMPTY
+
+            val mergedRanges = mutableListOf<LongRange>()
+            for (range in ranges.filterNot { it.isEmpty() }.sortedBy { it.first }) {
+                val previous = mergedRanges.lastOrNull()
+                if (previous != null && range.first <= previous.last + 1) {
+                    mergedRanges[mergedRanges.lastIndex] = previous.first..maxOf(previous.last, range.last)
+                } else {
+                    mergedRanges.add(range)
+                }
+            }
+
+            return UidSet(mergedRanges)
+        }
+
+        fun union(uidSets: Collection<UidSet>): UidSet {
+            return of(uidSets.flatMap { it.ranges })
+        }
+
+        private fun parseUid(value: String): Long? {
+            val uid = value.toLongOrNull()
+            if (uid == null || uid < 1 || uid > 0xFFFFFFFFL) {
+                Timber.d("Invalid UID value: %s", value)
+                return null
+            }
+
+            return uid
+        }
+    }
+}
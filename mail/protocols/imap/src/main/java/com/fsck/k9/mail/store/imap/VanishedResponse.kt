@@ -0,0 +1,28 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.store.imap.ImapResponseParser.equalsIgnoreCase
+
+/**
+ * A `VANISHED` response (RFC 7162) listing the UIDs of expunged messages. [isEarlier] is `true` for the response to a
+ * QRESYNC select, which reports messages that were expunged while the client was disconnected.
+ */
+internal class VanishedResponse private constructor(val isEarlier: Boolean, val uids: UidSet) {
+    companion object {
+        @JvmStatic
+        fun parse(response: ImapResponse): VanishedResponse? {
+            if (response.isTagged || response.size < 2 || !equalsIgnoreCase(response[0], Responses.VANISHED)) {
+                return null
+            }
+
+            val isEarlier = response.isList(1) && response.getList(1).let { list ->
+                list.size == 1 && equalsIgnoreCase(list[0], Responses.EARLIER)
+            }
+
+            val uidSetIndex = if (isEarlier) 2 else 1
+            if (response.size <= uidSetIndex || !response.isString(uidSetIndex)) return null
+
+            val uids = UidSet.parse(response.getString(uidSetIndex))
+            return VanishedResponse(isEarlier, uids)
+        }
+    }
+}
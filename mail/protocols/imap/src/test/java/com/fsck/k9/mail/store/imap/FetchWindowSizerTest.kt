@@ -0,0 +1,92 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.store.imap.FetchWindowSizer.Companion.MAX_WINDOW_SIZE
+import com.fsck.k9.mail.store.imap.FetchWindowSizer.Companion.MIN_WINDOW_SIZE
+import com.fsck.k9.mail.store.imap.FetchWindowSizer.Companion.TARGET_WINDOW_DURATION
+import com.fsck.k9.mail.store.imap.FetchWindowSizer.Companion.WINDOW_BYTE_BUDGET
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+
+class FetchWindowSizerTest {
+    private val messages = List(1000) { createImapMessage(size = 1024L) }
+
+    @Test
+    fun getWindowEnd_withFlagsFetch_shouldStartWithMinimumWindowSize() {
+        val windowSizer = FetchWindowSizer(isBodyFetch = false, maxDownloadSize = 0)
+
+        assertThat(windowSizer.getWindowEnd(messages, 0)).isEqualTo(MIN_WINDOW_SIZE)
+    }
+
+    @Test
+    fun onWindowCompleted_withFastWindow_shouldGrowWindow() {
+        val windowSizer = FetchWindowSizer(isBodyFetch = false, maxDownloadSize = 0)
+
+        windowSizer.onWindowCompleted(MIN_WINDOW_SIZE, durationMillis = TARGET_WINDOW_DURATION / 10)
+
+        assertThat(windowSizer.getWindowEnd(messages, 0)).isEqualTo(MIN_WINDOW_SIZE * 2)
+    }
+
+    @Test
+    fun onWindowCompleted_withManyFastWindows_shouldNotExceedMaximumWindowSize() {
+        val windowSizer = FetchWindowSizer(isBodyFetch = false, maxDownloadSize = 0)
+
+        repeat(10) {
+            windowSizer.onWindowCompleted(MAX_WINDOW_SIZE, durationMillis = 1)
+        }
+
+        assertThat(windowSizer.getWindowEnd(messages, 0)).isEqualTo(MAX_WINDOW_SIZE)
+    }
+
+    @Test
+    fun onWindowCompleted_withSlowWindow_shouldShrinkWindow() {
+        val windowSizer = FetchWindowSizer(isBodyFetch = false, maxDownloadSize = 0)
+        windowSizer.onWindowCompleted(MIN_WINDOW_SIZE, durationMillis = 1)
+        windowSizer.onWindowCompleted(MIN_WINDOW_SIZE * 2, durationMillis = 1)
+
+        windowSizer.onWindowCompleted(MIN_WINDOW_SIZE * 4, durationMillis = TARGET_WINDOW_DURATION * 10)
+
+        assertThat(windowSizer.getWindowEnd(messages, 0)).isEqualTo(MIN_WINDOW_SIZE * 2)
+    }
+
+    @Test
+    fun onWindowCompleted_withPartialWindow_shouldKeepWindowSize() {
+        val windowSizer = FetchWindowSizer(isBodyFetch = false, maxDownloadSize = 0)
+
+        windowSizer.onWindowCompleted(MIN_WINDOW_SIZE - 1, durationMillis = 1)
+
+        assertThat(windowSizer.getWindowEnd(messages, 0)).isEqualTo(MIN_WINDOW_SIZE)
+    }
+
+    @Test
+    fun getWindowEnd_withBodyFetch_shouldLimitWindowByMessageSize() {
+        val windowSizer = FetchWindowSizer(isBodyFetch = true, maxDownloadSize = 0)
+        val largeMessages = List(10) { createImapMessage(size = WINDOW_BYTE_BUDGET / 2) }
+
+        assertThat(windowSizer.getWindowEnd(largeMessages, 0)).isEqualTo(2)
+        assertThat(windowSizer.getWindowEnd(largeMessages, 8)).isEqualTo(10)
+    }
+
+    @Test
+    fun getWindowEnd_withBodyFetchAndMessageLargerThanBudget_shouldReturnWindowWithOneMessage() {
+        val windowSizer = FetchWindowSizer(isBodyFetch = true, maxDownloadSize = 0)
+        val hugeMessages = List(3) { createImapMessage(size = WINDOW_BYTE_BUDGET * 2) }
+
+        assertThat(windowSizer.getWindowEnd(hugeMessages, 1)).isEqualTo(2)
+    }
+
+    @Test
+    fun getWindowEnd_withBodyFetchAndMaxDownloadSize_shouldOnlyCountPartialDownload() {
+        val windowSizer = FetchWindowSizer(isBodyFetch = true, maxDownloadSize = 1024)
+        val largeMessages = List(MAX_WINDOW_SIZE + 1) { createImapMessage(size = WINDOW_BYTE_BUDGET) }
+
+        assertThat(windowSizer.getWindowEnd(largeMessages, 0)).isEqualTo(MAX_WINDOW_SIZE)
+    }
+
+    private fun createImapMessage(size: Long): ImapMessage {
+        return mock {
+            on { this.size } doReturn size
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.fsck.k9.mail.store.imap
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class HighestModSeqResponseTest {
+    @Test
+    fun validResponse() {
+        val response = ImapResponseHelper.createImapResponse("* OK [HIGHESTMODSEQ 715194045007] Highest")
+
+        val result = HighestModSeqResponse.parse(response)
+
+        assertNotNull(result)
+        assertEquals(715194045007L, result!!.highestModSeq)
+    }
+
+    @Test
+    fun noModSeqResponse_shouldReturnNullModSeq() {
+        val response = ImapResponseHelper.createImapResponse("* OK [NOMODSEQ] Sorry, this mailbox format doesn't support modsequences")
+
+        val result = HighestModSeqResponse.parse(response)
+
+        assertNotNull(result)
+        assertNull(result!!.highestModSeq)
+    }
+
+    @Test
+    fun taggedResponse_shouldReturnNull() {
+        assertNotValid("99 OK [HIGHESTMODSEQ 42]")
+    }
+
+    @Test
+    fun highestModSeqIsNotANumber_shouldReturnNull() {
+        assertNotValid("* OK [HIGHESTMODSEQ fourtytwo]")
+    }
+
+    @Test
+    fun otherResponseCode_shouldReturnNull() {
+        assertNotValid("* OK [UIDVALIDITY 42]")
+    }
+
+    private fun assertNotValid(response: String) {
+        val result = HighestModSeqResponse.parse(ImapResponseHelper.createImapResponse(response))
+        assertNull(result)
+    }
+}
@@ -13,6 +13,8 @@ import org.junit.Test;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -483,6 +485,104 @@ public class ImapResponseParserTest {
         }
     }
 
+    @Test
+    public void readResponse_withFetchResponse_shouldReturnSharedInstancesOfWellKnownAtoms() throws Exception {
+        ImapResponseParser parser = createParser("* 1 FETCH (UID 23 FLAGS (\\Seen))\r\n" +
+                "* 2 FETCH (UID 24 FLAGS (\\Seen))\r\n");
+
+        ImapList first = parser.readResponse().getList(2);
+        ImapList second = parser.readResponse().getList(2);
+
+        assertSame(first.getString(0), second.getString(0));
+        assertSame(first.getString(2), second.getString(2));
+        assertSame(first.getList(3).getString(0), second.getList(3).getString(0));
+        assertEquals("\\Seen", second.getList(3).getString(0));
+    }
+
+    @Test
+    public void readResponse_withWellKnownAtoms_shouldReturnSharedInstances() throws Exception {
+        ImapResponseParser parser = createParser("* 1 FETCH (UID 23 FLAGS (\\Seen $Forwarded) RFC822.SIZE 42)\r\n");
+
+        ImapResponse response = parser.readResponse();
+
+        assertSame("FETCH", response.getString(1));
+        ImapList fetchList = response.getList(2);
+        assertSame("UID", fetchList.getString(0));
+        assertSame("FLAGS", fetchList.getString(2));
+        assertSame("\\Seen", fetchList.getList(3).getString(0));
+        assertSame("$Forwarded", fetchList.getList(3).getString(1));
+        assertSame("RFC822.SIZE", fetchList.getString(4));
+    }
+
+    @Test
+    public void readFlagsFetchResponse_withFetchResponse_shouldPassUidAndFlagsToCallback() throws Exception {
+        ImapResponseParser parser = createParser("* 1 FETCH (UID 23 FLAGS (\\Seen \\flagged $Forwarded NonJunk))\r\n");
+        TestFlagsFetchCallback callback = new TestFlagsFetchCallback();
+
+        ImapResponse response = parser.readFlagsFetchResponse(callback);
+
+        assertNull(response);
+        assertEquals(asList(23L), callback.uids);
+        assertEquals(asList(FlagsFetchCallback.SEEN | FlagsFetchCallback.FLAGGED | FlagsFetchCallback.FORWARDED),
+                callback.flags);
+        assertAllInputConsumed();
+    }
+
+    @Test
+    public void readFlagsFetchResponse_withOtherDataItems_shouldSkipThem() throws Exception {
+        ImapResponseParser parser = createParser("* 5 FETCH (FLAGS () MODSEQ (90060115205545359) UID 100)\r\n");
+        TestFlagsFetchCallback callback = new TestFlagsFetchCallback();
+
+        ImapResponse response = parser.readFlagsFetchResponse(callback);
+
+        assertNull(response);
+        assertEquals(asList(100L), callback.uids);
+        assertEquals(asList(0), callback.flags);
+        assertAllInputConsumed();
+    }
+
+    @Test
+    public void readFlagsFetchResponse_withFetchResponseWithoutUid_shouldNotCallCallback() throws Exception {
+        ImapResponseParser parser = createParser("* 5 FETCH (FLAGS (\\Seen))\r\n");
+        TestFlagsFetchCallback callback = new TestFlagsFetchCallback();
+
+        ImapResponse response = parser.readFlagsFetchResponse(callback);
+
+        assertNull(response);
+        assertTrue(callback.uids.isEmpty());
+        assertAllInputConsumed();
+    }
+
+    @Test
+    public void readFlagsFetchResponse_withOtherResponses_shouldReturnThem() throws Exception {
+        ImapResponseParser parser = createParser("* 23 EXISTS\r\n" +
+                "* OK [UIDNEXT 42] Predicted next UID\r\n" +
+                "* 1 FETCH (UID 5 FLAGS ())\r\n" +
+                "1 OK Fetch completed\r\n");
+        TestFlagsFetchCallback callback = new TestFlagsFetchCallback();
+
+        ImapResponse existsResponse = parser.readFlagsFetchResponse(callback);
+        ImapResponse okResponse = parser.readFlagsFetchResponse(callback);
+        ImapResponse fetchResponse = parser.readFlagsFetchResponse(callback);
+        ImapResponse taggedResponse = parser.readFlagsFetchResponse(callback);
+
+        assertEquals(asList("23", "EXISTS"), existsResponse);
+        assertEquals("OK", okResponse.getString(0));
+        assertEquals("UIDNEXT", okResponse.getList(1).getString(0));
+        assertNull(fetchResponse);
+        assertEquals("1", taggedResponse.getTag());
+        assertEquals("OK", taggedResponse.getString(0));
+        assertEquals(asList(5L), callback.uids);
+        assertAllInputConsumed();
+    }
+
+    @Test(expected = IOException.class)
+    public void readResponse_withInvalidLiteralSize_shouldThrow() throws Exception {
+        ImapResponseParser parser = createParser("* {1x}\r\nx\r\n");
+
+        parser.readResponse();
+    }
+
     private ImapResponseParser createParser(String response) {
         ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(response.getBytes());
         peekableInputStream = new PeekableInputStream(byteArrayInputStream);
@@ -494,6 +594,17 @@ public class ImapResponseParserTest {
     }
 
 
+    static class TestFlagsFetchCallback implements FlagsFetchCallback {
+        final List<Long> uids = new ArrayList<>();
+        final List<Integer> flags = new ArrayList<>();
+
+        @Override
+        public void onFlagsFetched(long uid, int flags) {
+            uids.add(uid);
+            this.flags.add(flags);
+        }
+    }
+
     static class TestImapResponseCallback implements ImapResponseCallback {
         private final int readNumberOfBytes;
         private final Object returnValue;
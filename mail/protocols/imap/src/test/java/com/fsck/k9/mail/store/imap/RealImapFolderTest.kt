@@ -35,10 +35,13 @@ import org.mockito.Mockito.atLeastOnce
 import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
 import org.mockito.Mockito.verifyNoMoreInteractions
+import org.mockito.kotlin.any
 import org.mockito.kotlin.anyOrNull
 import org.mockito.kotlin.argumentCaptor
+import org.mockito.kotlin.doAnswer
 import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.doThrow
+import org.mockito.kotlin.inOrder
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.whenever
 
@@ -191,6 +194,42 @@ class RealImapFolderTest {
         }
     }
 
+    @Test
+    fun openWithQresync_shouldReturnVanishedAndChangedMessages() {
+        val imapFolder = createFolder("Folder")
+        whenever(imapConnection.isQresyncEnabled()).thenReturn(true)
+        val imapResponses = listOf(
+            createImapResponse("* 23 EXISTS"),
+            createImapResponse("* OK [UIDVALIDITY 1125022061] UIDs valid"),
+            createImapResponse("* OK [HIGHESTMODSEQ 90060128194045007] Highest"),
+            createImapResponse("* VANISHED (EARLIER) 41,43:44"),
+            createImapResponse("* 5 FETCH (UID 100 FLAGS (\\Seen \\Flagged) MODSEQ (90060115205545359))"),
+            createImapResponse("2 OK [READ-ONLY] Examine completed.")
+        )
+        whenever(imapConnection.executeSimpleCommand("EXAMINE \"Folder\" (QRESYNC (1125022061 90060115194045000))"))
+            .thenReturn(imapResponses)
+
+        val result = imapFolder.openWithQresync(OpenMode.READ_ONLY, 1125022061L, 90060115194045000L)
+
+        assertNotNull(result)
+        assertThat(result!!.vanishedUids.toString()).isEqualTo("41,43:44")
+        assertThat(result.changedMessages.map { it.uid }).containsExactly("100")
+        assertThat(result.changedMessages.first().flags).containsExactly(Flag.SEEN, Flag.FLAGGED)
+        assertEquals(90060128194045007L, imapFolder.getHighestModSeq())
+    }
+
+    @Test
+    fun openWithQresync_withoutQresyncEnabled_shouldOpenFolderNormally() {
+        val imapFolder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+
+        val result = imapFolder.openWithQresync(OpenMode.READ_ONLY, 1125022061L, 42L)
+
+        assertNull(result)
+        assertTrue(imapFolder.isOpen)
+        assertNull(imapFolder.getHighestModSeq())
+    }
+
     @Test
     fun close_shouldCloseImapFolder() {
         val imapFolder = createFolder("Folder")
@@ -792,6 +831,93 @@ class RealImapFolderTest {
         verify(messages[0]).setFlag(Flag.SEEN, true)
     }
 
+    @Test
+    fun fetchFlags_shouldIssueUidFetchFlagsCommand() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.readFlagsFetchResponse(any())).thenReturn(createImapResponse("x OK"))
+        val messages = createImapMessages("1", "2")
+
+        folder.fetchFlags(messages)
+
+        verify(imapConnection).sendCommand("UID FETCH 1,2 (UID FLAGS)", false)
+    }
+
+    @Test
+    fun fetchFlags_shouldSetFlagsOfMessageWithFetchedUid() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        val messages = createImapMessages("10", "2")
+        whenever(imapConnection.readFlagsFetchResponse(any()))
+            .doAnswer { invocation ->
+                invocation.getArgument<FlagsFetchCallback>(0)
+                    .onFlagsFetched(10L, FlagsFetchCallback.SEEN or FlagsFetchCallback.FLAGGED)
+                null
+            }
+            .thenReturn(createImapResponse("x OK"))
+
+        folder.fetchFlags(messages)
+
+        verify(messages[0]).setFlag(Flag.SEEN, true)
+        verify(messages[0]).setFlag(Flag.FLAGGED, true)
+        verify(messages[0], times(0)).setFlag(Flag.ANSWERED, true)
+        verify(messages[1], times(0)).setFlag(Flag.SEEN, true)
+    }
+
+    @Test
+    fun fetchFlags_withUntaggedResponse_shouldHandleIt() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.readFlagsFetchResponse(any()))
+            .thenReturn(createImapResponse("* 42 EXISTS"))
+            .thenReturn(createImapResponse("x OK"))
+
+        folder.fetchFlags(createImapMessages("1"))
+
+        assertEquals(42, folder.messageCount)
+    }
+
+    @Test
+    fun fetch_withMoreMessagesThanFitInOneWindow_shouldSendNextCommandBeforeReadingResponses() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.readResponse(anyOrNull())).thenReturn(createImapResponse("x OK"))
+        val messages = createImapMessages(*Array(FetchWindowSizer.MIN_WINDOW_SIZE + 1) { (it + 1).toString() })
+        val fetchProfile = createFetchProfile(FetchProfile.Item.FLAGS)
+
+        folder.fetch(messages, fetchProfile, null, MAX_DOWNLOAD_SIZE)
+
+        val firstWindowUids = (1..FetchWindowSizer.MIN_WINDOW_SIZE).joinToString(",")
+        val inOrder = inOrder(imapConnection)
+        inOrder.verify(imapConnection).sendCommand("UID FETCH $firstWindowUids (UID FLAGS)", false)
+        inOrder.verify(imapConnection).sendCommand("UID FETCH ${messages.size} (UID FLAGS)", false)
+        inOrder.verify(imapConnection, times(2)).readResponse(anyOrNull())
+    }
+
+    @Test
+    fun fetch_withErrorWhileCommandsArePending_shouldCloseConnection() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.readResponse(anyOrNull())).thenThrow(IllegalStateException("Parser error"))
+        val messages = createImapMessages(*Array(FetchWindowSizer.MIN_WINDOW_SIZE + 1) { (it + 1).toString() })
+        val fetchProfile = createFetchProfile(FetchProfile.Item.FLAGS)
+
+        try {
+            folder.fetch(messages, fetchProfile, null, MAX_DOWNLOAD_SIZE)
+            fail("Expected exception")
+        } catch (e: IllegalStateException) {
+            assertEquals("Parser error", e.message)
+        }
+
+        verify(imapConnection).close()
+        assertFalse(folder.isOpen)
+    }
+
     @Test
     fun fetchPart_withTextSection_shouldIssueRespectiveCommand() {
         val folder = createFolder("Folder")
@@ -1133,4 +1259,6 @@ internal class TestConnectionManager(private val connection: ImapConnection) : I
     }
 
     override fun releaseConnection(connection: ImapConnection?) = Unit
+
+    override fun detachConnection(connection: ImapConnection) = Unit
 }
@@ -0,0 +1,232 @@
+package com.fsck.k9.mail.store.imap
+
+import com.google.common.truth.Truth.assertThat
+import com.google.common.truth.Truth.assertWithMessage
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import org.junit.Test
+
+private const val TEST_TIMEOUT_SECONDS = 5L
+private const val IDLE_TIMEOUT_MS = 28 * 60 * 1000L
+private const val NOTIFY_SET_COMMAND =
+    "NOTIFY SET (mailboxes (\"INBOX\" \"Work\") (MessageNew MessageExpunge FlagChange))"
+
+class RealImapNotifyIdlerTest {
+    private val idleRefreshManager = TestIdleRefreshManager()
+    private val wakeLock = TestWakeLock(timeoutSeconds = TEST_TIMEOUT_SECONDS, isHeld = true)
+    private val imapConnection = TestImapConnection(timeout = TEST_TIMEOUT_SECONDS).apply {
+        capabilities.add(Capabilities.NOTIFY)
+    }
+    private val connectionManager = TestImapConnectionManager(imapConnection)
+    private val idleRefreshTimeoutProvider = object : IdleRefreshTimeoutProvider {
+        override val idleRefreshTimeoutMs = IDLE_TIMEOUT_MS
+    }
+    private val idler = RealImapNotifyIdler(
+        idleRefreshManager,
+        wakeLock,
+        connectionManager,
+        mapOf("INBOX" to "inbox", "Work" to "work"),
+        idleRefreshTimeoutProvider
+    )
+
+    @Test
+    fun `new message in one folder during IDLE`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            val idleResult = idler.idle()
+
+            assertThat(idleResult).isInstanceOf(NotifyIdleResult.Changes::class.java)
+            assertThat((idleResult as NotifyIdleResult.Changes).folderServerIds).containsExactly("work")
+            latch.countDown()
+        }
+
+        setUpNotify()
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("STATUS \"Work\" (MESSAGES 3 UIDNEXT 4)")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapConnection.isConnected).isTrue()
+        assertThat(connectionManager.releasedConnections).isEmpty()
+    }
+
+    @Test
+    fun `connection is reused by subsequent idle() call`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            idler.idle()
+            val idleResult = idler.idle()
+
+            assertThat((idleResult as NotifyIdleResult.Changes).folderServerIds).containsExactly("inbox")
+            latch.countDown()
+        }
+
+        setUpNotify()
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("STATUS \"Work\" (MESSAGES 3)")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("STATUS \"INBOX\" (MESSAGES 10)")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(connectionManager.connectionCount).isEqualTo(1)
+    }
+
+    @Test
+    fun `untagged response for unknown mailbox should be ignored`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            val idleResult = idler.idle()
+
+            assertThat((idleResult as NotifyIdleResult.Changes).folderServerIds).containsExactly("inbox")
+            latch.countDown()
+        }
+
+        setUpNotify()
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("STATUS \"Other\" (MESSAGES 1)")
+        wakeLock.waitForRelease()
+        imapConnection.enqueueUntaggedServerResponse("STATUS \"INBOX\" (MESSAGES 10)")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+    }
+
+    @Test
+    fun `notification overflow should report all folders and close connection`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            val idleResult = idler.idle()
+
+            assertThat((idleResult as NotifyIdleResult.Changes).folderServerIds).containsExactly("inbox", "work")
+            latch.countDown()
+        }
+
+        setUpNotify()
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("OK [NOTIFICATIONOVERFLOW] Too many events")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapConnection.isConnected).isFalse()
+    }
+
+    @Test
+    fun `stop while IDLE`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            val idleResult = idler.idle()
+
+            assertThat(idleResult).isEqualTo(NotifyIdleResult.Stopped)
+            latch.countDown()
+        }
+
+        setUpNotify()
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        wakeLock.waitForRelease()
+        idler.stop()
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapConnection.isConnected).isFalse()
+    }
+
+    @Test
+    fun `NOTIFY not supported`() {
+        imapConnection.capabilities.clear()
+
+        val idleResult = idler.idle()
+
+        assertThat(idleResult).isEqualTo(NotifyIdleResult.NotSupported)
+        assertThat(connectionManager.releasedConnections).containsExactly(imapConnection)
+    }
+
+    @Test
+    fun `FlagChange event rejected by server`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            val idleResult = idler.idle()
+
+            assertThat((idleResult as NotifyIdleResult.Changes).folderServerIds).containsExactly("inbox")
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand(NOTIFY_SET_COMMAND)
+        imapConnection.enqueueTaggedServerResponse("NO Unsupported event")
+        imapConnection.waitForCommand("NOTIFY SET (mailboxes (\"INBOX\" \"Work\") (MessageNew MessageExpunge))")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("STATUS \"INBOX\" (MESSAGES 10)")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+    }
+
+    @Test
+    fun `NOTIFY SET rejected by server`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            val idleResult = idler.idle()
+
+            assertThat(idleResult).isEqualTo(NotifyIdleResult.NotSupported)
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand(NOTIFY_SET_COMMAND)
+        imapConnection.enqueueTaggedServerResponse("BAD Unknown command")
+        imapConnection.enqueueTaggedServerResponse("BAD Unknown command")
+
+        latch.awaitWithTimeout()
+        assertThat(connectionManager.releasedConnections).containsExactly(imapConnection)
+    }
+
+    private fun setUpNotify() {
+        imapConnection.waitForCommand(NOTIFY_SET_COMMAND)
+        imapConnection.enqueueTaggedServerResponse("OK NOTIFY completed")
+    }
+}
+
+private class TestImapConnectionManager(private val connection: ImapConnection) : ImapConnectionManager {
+    val releasedConnections = mutableListOf<ImapConnection>()
+    var connectionCount = 0
+        private set
+
+    override fun getConnection(): ImapConnection {
+        connectionCount++
+        return connection
+    }
+
+    override fun releaseConnection(connection: ImapConnection?) {
+        releasedConnections.add(connection!!)
+    }
+
+    override fun detachConnection(connection: ImapConnection) = Unit
+}
+
+private fun CountDownLatch.awaitWithTimeout() {
+    assertWithMessage("Test timed out").that(await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+}
@@ -11,6 +11,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.fsck.k9.mail.AuthType;
 import com.fsck.k9.mail.ConnectionSecurity;
@@ -26,10 +27,13 @@ import org.mockito.internal.util.collections.Sets;
 
 import static com.fsck.k9.mail.store.imap.ImapResponseHelper.createImapResponse;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -46,6 +50,7 @@ public class RealImapStoreTest {
         ServerSettings serverSettings = createServerSettings();
         TrustedSocketFactory trustedSocketFactory = mock(TrustedSocketFactory.class);
         OAuth2TokenProvider oauth2TokenProvider = mock(OAuth2TokenProvider.class);
+        when(config.getMaxConnections()).thenReturn(2);
 
         imapStore = new TestImapStore(serverSettings, config, trustedSocketFactory,
                 oauth2TokenProvider);
@@ -275,6 +280,54 @@ public class RealImapStoreTest {
         verify(imapConnection).close();
     }
 
+    @Test
+    public void getFolderStatuses_withListStatusCapability_shouldUseSingleListCommand() throws Exception {
+        ImapConnection imapConnection = createMockConnection();
+        when(imapConnection.hasCapability(Capabilities.LIST_STATUS)).thenReturn(true);
+        when(imapConnection.hasCapability(Capabilities.CONDSTORE)).thenReturn(true);
+        List<ImapResponse> imapResponses = Arrays.asList(
+                createImapResponse("* LIST () \"/\" \"INBOX\""),
+                createImapResponse("* STATUS \"INBOX\" (MESSAGES 17 UIDNEXT 4392 UIDVALIDITY 1 UNSEEN 2 " +
+                        "HIGHESTMODSEQ 7011231777)"),
+                createImapResponse("* LIST () \"/\" \"Archive\""),
+                createImapResponse("* STATUS \"Archive\" (MESSAGES 1203 UIDNEXT 1300 UIDVALIDITY 2 UNSEEN 0 " +
+                        "HIGHESTMODSEQ 7011231000)"),
+                createImapResponse("* LIST () \"/\" \"Other\""),
+                createImapResponse("* STATUS \"Other\" (MESSAGES 3 UIDNEXT 4 UIDVALIDITY 3 UNSEEN 0 " +
+                        "HIGHESTMODSEQ 5)"),
+                createImapResponse("5 OK Success")
+        );
+        when(imapConnection.executeSimpleCommand("LIST \"\" \"*\" RETURN (STATUS " +
+                "(MESSAGES UIDNEXT UIDVALIDITY UNSEEN HIGHESTMODSEQ))")).thenReturn(imapResponses);
+        imapStore.enqueueImapConnection(imapConnection);
+
+        Map<String, FolderStatus> result = imapStore.getFolderStatuses(Arrays.asList("INBOX", "Archive"));
+
+        assertEquals(2, result.size());
+        assertEquals(new FolderStatus(17, 4392L, 1L, 7011231777L, 2), result.get("INBOX"));
+        assertEquals(new FolderStatus(1203, 1300L, 2L, 7011231000L, 0), result.get("Archive"));
+        verify(imapConnection, never()).sendCommand(anyString(), eq(false));
+    }
+
+    @Test
+    public void getFolderStatuses_withoutListStatusCapability_shouldPipelineStatusCommands() throws Exception {
+        ImapConnection imapConnection = createMockConnection();
+        when(imapConnection.sendCommand(anyString(), eq(false))).thenReturn("1", "2");
+        when(imapConnection.readResponse()).thenReturn(
+                createImapResponse("* STATUS \"INBOX\" (MESSAGES 17 UIDNEXT 4392 UIDVALIDITY 1 UNSEEN 2)"),
+                createImapResponse("1 OK STATUS completed"),
+                createImapResponse("2 NO Mailbox doesn't exist")
+        );
+        imapStore.enqueueImapConnection(imapConnection);
+
+        Map<String, FolderStatus> result = imapStore.getFolderStatuses(Arrays.asList("INBOX", "Deleted"));
+
+        assertEquals(1, result.size());
+        assertEquals(new FolderStatus(17, 4392L, 1L, null, 2), result.get("INBOX"));
+        verify(imapConnection).sendCommand("STATUS \"INBOX\" (MESSAGES UIDNEXT UIDVALIDITY UNSEEN)", false);
+        verify(imapConnection).sendCommand("STATUS \"Deleted\" (MESSAGES UIDNEXT UIDVALIDITY UNSEEN)", false);
+    }
+
     @Test
     public void getConnection_shouldCreateImapConnection() throws Exception {
         ImapConnection imapConnection = createMockConnection();
@@ -312,6 +365,119 @@ public class RealImapStoreTest {
         assertSame(imapConnection, result);
     }
 
+    @Test
+    public void releaseConnection_withConnectionLimitReached_shouldCloseConnection() throws Exception {
+        ImapConnection imapConnectionOne = createMockConnection();
+        ImapConnection imapConnectionTwo = createMockConnection();
+        ImapConnection imapConnectionThree = createMockConnection();
+        imapStore.enqueueImapConnection(imapConnectionOne);
+        imapStore.enqueueImapConnection(imapConnectionTwo);
+        imapStore.enqueueImapConnection(imapConnectionThree);
+        imapStore.getConnection();
+        imapStore.getConnection();
+        imapStore.getConnection();
+        when(imapConnectionOne.isConnected()).thenReturn(true);
+        when(imapConnectionTwo.isConnected()).thenReturn(true);
+        when(imapConnectionThree.isConnected()).thenReturn(true);
+
+        imapStore.releaseConnection(imapConnectionOne);
+        imapStore.releaseConnection(imapConnectionTwo);
+        imapStore.releaseConnection(imapConnectionThree);
+
+        verify(imapConnectionOne).close();
+        verify(imapConnectionTwo, never()).close();
+        verify(imapConnectionThree, never()).close();
+    }
+
+    @Test
+    public void getConnection_withConnectionLimitReached_shouldWaitForRelease() throws Exception {
+        ImapConnection imapConnectionOne = createMockConnection();
+        ImapConnection imapConnectionTwo = createMockConnection();
+        when(imapConnectionOne.isConnected()).thenReturn(true);
+        imapStore.enqueueImapConnection(imapConnectionOne);
+        imapStore.enqueueImapConnection(imapConnectionTwo);
+        imapStore.getConnection();
+        imapStore.getConnection();
+        AtomicReference<ImapConnection> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.set(imapStore.getConnection());
+            } catch (MessagingException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        thread.start();
+        thread.join(100);
+        assertTrue(thread.isAlive());
+
+        imapStore.releaseConnection(imapConnectionOne);
+        thread.join(5000);
+
+        assertFalse(thread.isAlive());
+        assertSame(imapConnectionOne, result.get());
+    }
+
+    @Test
+    public void getConnection_withDetachedConnection_shouldNotCountItAgainstLimit() throws Exception {
+        ImapConnection imapConnectionOne = createMockConnection();
+        ImapConnection imapConnectionTwo = createMockConnection();
+        ImapConnection imapConnectionThree = createMockConnection();
+        imapStore.enqueueImapConnection(imapConnectionOne);
+        imapStore.enqueueImapConnection(imapConnectionTwo);
+        imapStore.enqueueImapConnection(imapConnectionThree);
+        imapStore.getConnection();
+        imapStore.getConnection();
+        imapStore.detachConnection(imapConnectionOne);
+        AtomicReference<ImapConnection> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.set(imapStore.getConnection());
+            } catch (MessagingException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        thread.start();
+        thread.join(5000);
+
+        assertSame(imapConnectionThree, result.get());
+    }
+
+    @Test
+    public void getConnection_withConnectionIdleForTooLong_shouldCloseItAndReturnNewImapConnectionInstance()
+            throws Exception {
+        ImapConnection imapConnectionOne = createMockConnection();
+        ImapConnection imapConnectionTwo = createMockConnection();
+        imapStore.enqueueImapConnection(imapConnectionOne);
+        imapStore.enqueueImapConnection(imapConnectionTwo);
+        imapStore.getConnection();
+        when(imapConnectionOne.isConnected()).thenReturn(true);
+        imapStore.releaseConnection(imapConnectionOne);
+        imapStore.setCurrentTime(30 * 60 * 1000L);
+
+        ImapConnection result = imapStore.getConnection();
+
+        assertSame(imapConnectionTwo, result);
+        verify(imapConnectionOne).close();
+        verify(imapConnectionOne, never()).executeSimpleCommand(Commands.NOOP);
+    }
+
+    @Test
+    public void getConnectionStatistics_shouldCountCreatedAndReusedConnections() throws Exception {
+        ImapConnection imapConnection = createMockConnection();
+        when(imapConnection.isConnected()).thenReturn(true);
+        imapStore.enqueueImapConnection(imapConnection);
+        imapStore.releaseConnection(imapStore.getConnection());
+        imapStore.releaseConnection(imapStore.getConnection());
+        imapStore.getConnection();
+
+        ImapConnectionStatistics statistics = imapStore.getConnectionStatistics();
+
+        assertEquals(1, statistics.getCreatedConnections());
+        assertEquals(2, statistics.getReusedConnections());
+    }
+
     @Test
     public void getConnection_calledAfterReleaseWithAClosedConnection_shouldReturnNewImapConnectionInstance()
             throws Exception {
@@ -458,6 +624,7 @@ public class RealImapStoreTest {
     static class TestImapStore extends RealImapStore {
         private Deque<ImapConnection> imapConnections = new ArrayDeque<>();
         private String testCombinedPrefix;
+        private long currentTime = 0L;
 
         public TestImapStore(ServerSettings serverSettings, ImapStoreConfig config,
                 TrustedSocketFactory trustedSocketFactory, OAuth2TokenProvider oauth2TokenProvider) {
@@ -485,5 +652,14 @@ public class RealImapStoreTest {
         void setTestCombinedPrefix(String prefix) {
             testCombinedPrefix = prefix;
         }
+
+        @Override
+        long getCurrentTime() {
+            return currentTime;
+        }
+
+        void setCurrentTime(long currentTime) {
+            this.currentTime = currentTime;
+        }
     }
 }
@@ -0,0 +1,55 @@
+package com.fsck.k9.mail.store.imap
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class StatusResponseTest {
+    @Test
+    fun validResponse() {
+        val response = ImapResponseHelper.createImapResponse(
+            "* STATUS \"Sent Items\" (MESSAGES 231 UIDNEXT 44292 UIDVALIDITY 3857529045 UNSEEN 1 " +
+                "HIGHESTMODSEQ 7011231777)"
+        )
+
+        val result = StatusResponse.parse(response)
+
+        assertEquals("Sent Items", result!!.mailboxName)
+        assertEquals(FolderStatus(231, 44292L, 3857529045L, 7011231777L, 1), result.folderStatus)
+    }
+
+    @Test
+    fun missingItems_shouldBeNull() {
+        val response = ImapResponseHelper.createImapResponse("* STATUS INBOX (MESSAGES 2)")
+
+        val result = StatusResponse.parse(response)
+
+        assertEquals("INBOX", result!!.mailboxName)
+        assertEquals(FolderStatus(2, null, null, null, null), result.folderStatus)
+    }
+
+    @Test
+    fun taggedResponse_shouldReturnNull() {
+        assertNotValid("1 STATUS INBOX (MESSAGES 2)")
+    }
+
+    @Test
+    fun valueIsNotANumber_shouldReturnNull() {
+        assertNotValid("* STATUS INBOX (MESSAGES two)")
+    }
+
+    @Test
+    fun missingValue_shouldReturnNull() {
+        assertNotValid("* STATUS INBOX (MESSAGES 2 UIDNEXT)")
+    }
+
+    @Test
+    fun listResponse_shouldReturnNull() {
+        assertNotValid("* LIST () \"/\" INBOX")
+    }
+
+    private fun assertNotValid(response: String) {
+        val result = StatusResponse.parse(ImapResponseHelper.createImapResponse(response))
+        assertNull(result)
+    }
+}
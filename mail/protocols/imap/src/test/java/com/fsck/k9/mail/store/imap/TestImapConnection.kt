@@ -16,6 +16,8 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
     override var isIdleCapable: Boolean = true
         protected set
 
+    val capabilities = mutableSetOf<String>()
+
     val defaultSocketReadTimeout = 30 * 1000
     var currentSocketReadTimeout = defaultSocketReadTimeout
         protected set
@@ -38,6 +40,10 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
     }
 
     override fun hasCapability(capability: String): Boolean {
+        return capabilities.any { it.equals(capability, ignoreCase = true) }
+    }
+
+    override fun isQresyncEnabled(): Boolean {
         throw UnsupportedOperationException("not implemented")
     }
 
@@ -86,6 +92,10 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
         throw UnsupportedOperationException("not implemented")
     }
 
+    override fun readFlagsFetchResponse(callback: FlagsFetchCallback): ImapResponse? {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun setSocketDefaultReadTimeout() {
         currentSocketReadTimeout = defaultSocketReadTimeout
     }
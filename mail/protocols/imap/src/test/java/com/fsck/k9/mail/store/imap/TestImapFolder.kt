@@ -34,6 +34,10 @@ internal open class TestImapFolder(
         isOpen = true
     }
 
+    override fun openWithQresync(mode: OpenMode, uidValidity: Long, highestModSeq: Long): QresyncResponse? {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun close() {
         connection.close()
         isOpen = false
@@ -44,6 +48,10 @@ internal open class TestImapFolder(
         throw UnsupportedOperationException("not implemented")
     }
 
+    override fun getHighestModSeq(): Long? {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun getMessage(uid: String): ImapMessage {
         throw UnsupportedOperationException("not implemented")
     }
@@ -74,6 +82,10 @@ internal open class TestImapFolder(
         throw UnsupportedOperationException("not implemented")
     }
 
+    override fun fetchFlags(messages: List<ImapMessage>) {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun fetchPart(
         message: ImapMessage,
         part: Part,
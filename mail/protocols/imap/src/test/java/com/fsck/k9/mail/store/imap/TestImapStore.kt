@@ -13,12 +13,22 @@ internal class TestImapStore(private val folder: ImapFolder) : ImapStore, ImapCo
         throw UnsupportedOperationException("not implemented")
     }
 
+    override fun getFolderStatuses(folderServerIds: Collection<String>): Map<String, FolderStatus> {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun getConnection(folder: ImapFolder): ImapConnection {
         if (folder !is TestImapFolder) throw AssertionError("getConnection() called with unknown ImapFolder instance")
         return folder.connection
     }
 
+    override fun detachConnection(folder: ImapFolder) = Unit
+
     override fun closeAllConnections() {
         throw UnsupportedOperationException("not implemented")
     }
+
+    override fun getConnectionStatistics(): ImapConnectionStatistics {
+        throw UnsupportedOperationException("not implemented")
+    }
 }
@@ -0,0 +1,53 @@
+package com.fsck.k9.mail.store.imap
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class UidSetTest {
+    @Test
+    fun parse_withLargeRange_shouldNotExpandRange() {
+        val uidSet = UidSet.parse("1:300000")
+
+        assertThat(uidSet.size).isEqualTo(300000L)
+        assertThat(uidSet.toString()).isEqualTo("1:300000")
+    }
+
+    @Test
+    fun parse_shouldSortAndMergeRanges() {
+        val uidSet = UidSet.parse("20:10,5,6,8,9")
+
+        assertThat(uidSet.toString()).isEqualTo("5:6,8:20")
+    }
+
+    @Test
+    fun parse_shouldSkipInvalidItems() {
+        val uidSet = UidSet.parse("0,3,x,4:*,4294967296")
+
+        assertThat(uidSet.toString()).isEqualTo("3")
+    }
+
+    @Test
+    fun contains() {
+        val uidSet = UidSet.parse("2,5:7,100:200")
+
+        assertThat(1L in uidSet).isFalse()
+        assertThat(2L in uidSet).isTrue()
+        assertThat(4L in uidSet).isFalse()
+        assertThat(6L in uidSet).isTrue()
+        assertThat(150L in uidSet).isTrue()
+        assertThat(201L in uidSet).isFalse()
+    }
+
+    @Test
+    fun union() {
+        val uidSet = UidSet.union(listOf(UidSet.parse("1:3"), UidSet.parse("4,10")))
+
+        assertThat(uidSet.toString()).isEqualTo("1:4,10")
+    }
+
+    @Test
+    fun empty() {
+        assertThat(UidSet.parse("").isEmpty()).isTrue()
+        assertThat(3L in UidSet.EMPTY).isFalse()
+    }
+}
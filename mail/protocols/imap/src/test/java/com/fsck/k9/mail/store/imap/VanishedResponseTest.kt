@@ -0,0 +1,41 @@
+package com.fsck.k9.mail.store.imap
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class VanishedResponseTest {
+    @Test
+    fun earlierResponse() {
+        val response = ImapResponseHelper.createImapResponse("* VANISHED (EARLIER) 41,43:45")
+
+        val result = VanishedResponse.parse(response)
+
+        assertThat(result!!.isEarlier).isTrue()
+        assertThat(result.uids.toString()).isEqualTo("41,43:45")
+    }
+
+    @Test
+    fun unsolicitedResponse() {
+        val response = ImapResponseHelper.createImapResponse("* VANISHED 23")
+
+        val result = VanishedResponse.parse(response)
+
+        assertThat(result!!.isEarlier).isFalse()
+        assertThat(result.uids.toString()).isEqualTo("23")
+    }
+
+    @Test
+    fun expungeResponse_shouldReturnNull() {
+        val result = VanishedResponse.parse(ImapResponseHelper.createImapResponse("* 23 EXPUNGE"))
+
+        assertNull(result)
+    }
+
+    @Test
+    fun missingUidSet_shouldReturnNull() {
+        val result = VanishedResponse.parse(ImapResponseHelper.createImapResponse("* VANISHED (EARLIER)"))
+
+        assertNull(result)
+    }
+}
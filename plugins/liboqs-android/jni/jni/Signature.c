@@ -1,3 +1,4 @@
+#include <stdlib.h>
 #include <oqs/oqs.h>
 #include "Signature.h"
 #include "handle.h"
@@ -101,8 +102,9 @@ JNIEXPORT jint JNICALL Java_org_openquantumsafe_Signature_generate_1keypair
     // Invoke liboqs sig keypair generation function
     OQS_STATUS rv_ = OQS_SIG_keypair(sig, (uint8_t*) public_key_native, (uint8_t*) secret_key_native);
 
-    (*env)->ReleaseByteArrayElements(env, jpublic_key, public_key_native, JNI_COMMIT);
-    (*env)->ReleaseByteArrayElements(env, jsecret_key, secret_key_native, JNI_COMMIT);
+    // Copy back and free the native copies (JNI_COMMIT would keep them alive)
+    (*env)->ReleaseByteArrayElements(env, jpublic_key, public_key_native, 0);
+    (*env)->ReleaseByteArrayElements(env, jsecret_key, secret_key_native, 0);
     return (rv_ == OQS_SUCCESS) ? 0 : -1;
 }
 
@@ -126,9 +128,6 @@ JNIEXPORT jint JNICALL Java_org_openquantumsafe_Signature_sign
                                     (uint8_t*)message_native, message_len,
                                     (uint8_t*)secret_key_native);
 
-    // fill java signature bytes
-    (*env)->SetByteArrayRegion(env, jsignature, 0, len_sig, (jbyte*) signature_native);
-
     // fill java object signature length
     jfieldID value_fid = (*env)->GetFieldID(env,
                                     (*env)->GetObjectClass(env, sig_len_obj),
@@ -139,8 +138,8 @@ JNIEXPORT jint JNICALL Java_org_openquantumsafe_Signature_sign
                                 (jlong) len_sig);
     (*env)->SetObjectField(env, sig_len_obj, value_fid, jlong_obj);
 
-    // Release C memory
-    (*env)->ReleaseByteArrayElements(env, jsignature, signature_native, JNI_COMMIT);
+    // Release C memory, copying the signature back to the java array
+    (*env)->ReleaseByteArrayElements(env, jsignature, signature_native, 0);
     (*env)->ReleaseByteArrayElements(env, jmessage, message_native, JNI_ABORT);
     (*env)->ReleaseByteArrayElements(env, jsecret_key, secret_key_native, JNI_ABORT);
 
@@ -173,3 +172,70 @@ JNIEXPORT jboolean JNICALL Java_org_openquantumsafe_Signature_verify
 
     return (rv_ == OQS_SUCCESS) ? JNI_TRUE : JNI_FALSE;
 }
+
+/*
+ * Class:     org_openquantumsafe_Signature
+ * Method:    sign_direct
+ * Signature: (Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;IJ[B)J
+ */
+JNIEXPORT jlong JNICALL Java_org_openquantumsafe_Signature_sign_1direct
+  (JNIEnv *env, jobject obj, jobject jsignature, jint signature_offset,
+      jobject jmessage, jint message_offset, jlong message_len, jbyteArray jsecret_key)
+{
+    // Direct buffers are accessed in place, no copies are made
+    uint8_t *signature_native = (uint8_t *) (*env)->GetDirectBufferAddress(env, jsignature);
+    uint8_t *message_native = (uint8_t *) (*env)->GetDirectBufferAddress(env, jmessage);
+    if (signature_native == NULL || message_native == NULL) {
+        return -1;
+    }
+
+    OQS_SIG *sig = (OQS_SIG *) getHandle(env, obj, "native_sig_handle_");
+    if ((size_t) (*env)->GetArrayLength(env, jsecret_key) < sig->length_secret_key) {
+        return -1;
+    }
+
+    // Signing can take a while (e.g. SPHINCS+), so the secret key is copied instead of pinned.
+    // Holding a critical region that long would block the garbage collector.
+    uint8_t *secret_key_native = malloc(sig->length_secret_key);
+    if (secret_key_native == NULL) {
+        return -1;
+    }
+    (*env)->GetByteArrayRegion(env, jsecret_key, 0, (jsize) sig->length_secret_key,
+                                    (jbyte *) secret_key_native);
+
+    size_t len_sig;
+    OQS_STATUS rv_ = OQS_SIG_sign(sig, signature_native + signature_offset, &len_sig,
+                                    message_native + message_offset, message_len,
+                                    secret_key_native);
+
+    // Wipe the copy of the secret key before freeing it
+    OQS_MEM_secure_free(secret_key_native, sig->length_secret_key);
+
+    return (rv_ == OQS_SUCCESS) ? (jlong) len_sig : -1;
+}
+
+/*
+ * Class:     org_openquantumsafe_Signature
+ * Method:    verify_direct
+ * Signature: (Ljava/nio/ByteBuffer;IJLjava/nio/ByteBuffer;IJLjava/nio/ByteBuffer;I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_openquantumsafe_Signature_verify_1direct
+  (JNIEnv *env, jobject obj, jobject jmessage, jint message_offset, jlong message_len,
+      jobject jsignature, jint signature_offset, jlong signature_len,
+      jobject jpublic_key, jint public_key_offset)
+{
+    // Direct buffers are accessed in place, no copies are made
+    uint8_t *message_native = (uint8_t *) (*env)->GetDirectBufferAddress(env, jmessage);
+    uint8_t *signature_native = (uint8_t *) (*env)->GetDirectBufferAddress(env, jsignature);
+    uint8_t *public_key_native = (uint8_t *) (*env)->GetDirectBufferAddress(env, jpublic_key);
+    if (message_native == NULL || signature_native == NULL || public_key_native == NULL) {
+        return JNI_FALSE;
+    }
+
+    OQS_SIG *sig = (OQS_SIG *) getHandle(env, obj, "native_sig_handle_");
+    OQS_STATUS rv_ = OQS_SIG_verify(sig, message_native + message_offset, message_len,
+                                    signature_native + signature_offset, signature_len,
+                                    public_key_native + public_key_offset);
+
+    return (rv_ == OQS_SUCCESS) ? JNI_TRUE : JNI_FALSE;
+}
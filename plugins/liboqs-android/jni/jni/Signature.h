@@ -79,6 +79,22 @@ JNIEXPORT jint JNICALL Java_org_openquantumsafe_Signature_sign
 JNIEXPORT jboolean JNICALL Java_org_openquantumsafe_Signature_verify
   (JNIEnv *, jobject, jbyteArray, jlong, jbyteArray, jlong, jbyteArray);
 
+/*
+ * Class:     org_openquantumsafe_Signature
+ * Method:    sign_direct
+ * Signature: (Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;IJ[B)J
+ */
+JNIEXPORT jlong JNICALL Java_org_openquantumsafe_Signature_sign_1direct
+  (JNIEnv *, jobject, jobject, jint, jobject, jint, jlong, jbyteArray);
+
+/*
+ * Class:     org_openquantumsafe_Signature
+ * Method:    verify_direct
+ * Signature: (Ljava/nio/ByteBuffer;IJLjava/nio/ByteBuffer;IJLjava/nio/ByteBuffer;I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_openquantumsafe_Signature_verify_1direct
+  (JNIEnv *, jobject, jobject, jint, jlong, jobject, jint, jlong, jobject, jint);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,164 @@
+package org.openquantumsafe;
+
+import java.io.OutputStream;
+
+/**
+ * \brief Incremental SHA3-512 digest (FIPS 202). Data is absorbed by writing
+ * it to the stream, so a message of arbitrary size can be hashed without
+ * holding it in memory.
+ * The Keccak permutation is implemented in Java because liboqs doesn't export
+ * its incremental SHA3 functions.
+ */
+public class SHA3Digest extends OutputStream {
+
+    /**
+     * Length of a SHA3-512 digest in bytes.
+     */
+    public static final int SHA3_512_DIGEST_LENGTH = 64;
+
+    /**
+     * Number of bytes absorbed per permutation.
+     */
+    private static final int RATE = 200 - 2 * SHA3_512_DIGEST_LENGTH;
+
+    private static final long[] ROUND_CONSTANTS = {
+        0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL,
+        0x8000000080008000L, 0x000000000000808bL, 0x0000000080000001L,
+        0x8000000080008081L, 0x8000000000008009L, 0x000000000000008aL,
+        0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL,
+        0x000000008000808bL, 0x800000000000008bL, 0x8000000000008089L,
+        0x8000000000008003L, 0x8000000000008002L, 0x8000000000000080L,
+        0x000000000000800aL, 0x800000008000000aL, 0x8000000080008081L,
+        0x8000000000008080L, 0x0000000080000001L, 0x8000000080008008L
+    };
+
+    private static final int[] ROTATION_OFFSETS = {
+        1, 3, 6, 10, 15, 21, 28, 36, 45, 55, 2, 14,
+        27, 41, 56, 8, 25, 43, 62, 18, 39, 61, 20, 44
+    };
+
+    private static final int[] PI_LANES = {
+        10, 7, 11, 17, 18, 3, 5, 16, 8, 21, 24, 4,
+        15, 23, 19, 13, 12, 2, 20, 14, 22, 9, 6, 1
+    };
+
+    private final long[] state = new long[25];
+    private final byte[] block = new byte[RATE];
+    private int block_length_ = 0;
+    private boolean finished_ = false;
+
+    @Override
+    public synchronized void write(int b) {
+        check_state();
+        absorb((byte) b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        check_state();
+        while (len > 0) {
+            int count = Math.min(len, RATE - block_length_);
+            System.arraycopy(b, off, block, block_length_, count);
+            block_length_ += count;
+            off += count;
+            len -= count;
+            if (block_length_ == RATE) {
+                absorb_block();
+            }
+        }
+    }
+
+    /**
+     * \brief Finish the computation. The digest can't be used afterwards.
+     * \return The SHA3-512 digest
+     */
+    public synchronized byte[] digest() {
+        check_state();
+        finished_ = true;
+
+        // SHA3 domain separation bits and pad10*1
+        for (int i = block_length_; i < RATE; i++) {
+            block[i] = 0;
+        }
+        block[block_length_] ^= 0x06;
+        block[RATE - 1] ^= (byte) 0x80;
+        absorb_block();
+
+        byte[] digest = new byte[SHA3_512_DIGEST_LENGTH];
+        for (int i = 0; i < SHA3_512_DIGEST_LENGTH; i++) {
+            digest[i] = (byte) (state[i / 8] >>> (8 * (i % 8)));
+        }
+        return digest;
+    }
+
+    /**
+     * \brief Nothing to release, the digest only holds Java memory. Kept so
+     * the digest can be used with try-with-resources.
+     */
+    @Override
+    public void close() {
+    }
+
+    private void absorb(byte b) {
+        block[block_length_++] = b;
+        if (block_length_ == RATE) {
+            absorb_block();
+        }
+    }
+
+    private void absorb_block() {
+        for (int i = 0; i < RATE; i++) {
+            state[i / 8] ^= (block[i] & 0xFFL) << (8 * (i % 8));
+        }
+        block_length_ = 0;
+        keccak_f(state);
+    }
+
+    private static void keccak_f(long[] a) {
+        long[] c = new long[5];
+        for (int round = 0; round < 24; round++) {
+            // Theta
+            for (int x = 0; x < 5; x++) {
+                c[x] = a[x] ^ a[x + 5] ^ a[x + 10] ^ a[x + 15] ^ a[x + 20];
+            }
+            for (int x = 0; x < 5; x++) {
+                long d = c[(x + 4) % 5] ^ Long.rotateLeft(c[(x + 1) % 5], 1);
+                for (int y = 0; y < 25; y += 5) {
+                    a[y + x] ^= d;
+                }
+            }
+
+            // Rho and pi
+            long current = a[1];
+            for (int i = 0; i < 24; i++) {
+                int lane = PI_LANES[i];
+                long next = a[lane];
+                a[lane] = Long.rotateLeft(current, ROTATION_OFFSETS[i]);
+                current = next;
+            }
+
+            // Chi
+            for (int y = 0; y < 25; y += 5) {
+                long a0 = a[y], a1 = a[y + 1], a2 = a[y + 2], a3 = a[y + 3], a4 = a[y + 4];
+                a[y] = a0 ^ (~a1 & a2);
+                a[y + 1] = a1 ^ (~a2 & a3);
+                a[y + 2] = a2 ^ (~a3 & a4);
+                a[y + 3] = a3 ^ (~a4 & a0);
+                a[y + 4] = a4 ^ (~a0 & a1);
+            }
+
+            // Iota
+            a[0] ^= ROUND_CONSTANTS[round];
+        }
+    }
+
+    private void check_state() {
+        if (finished_) {
+            throw new IllegalStateException("SHA3-512 digest has already been finished");
+        }
+    }
+
+}
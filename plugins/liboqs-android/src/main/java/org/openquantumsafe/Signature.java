@@ -1,6 +1,7 @@
 package org.openquantumsafe;
 
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import androidx.annotation.NonNull;
@@ -8,8 +9,10 @@ import androidx.annotation.NonNull;
 
 /**
  * \brief Signature Mechanisms
+ * Instances own a native OQS_SIG handle, which is released by dispose_sig()
+ * or close(). Use SignatureContextPool to reuse instances across operations.
  */
-public class Signature {
+public class Signature implements AutoCloseable {
 
     /**
      * \brief Signature algorithm details
@@ -174,11 +177,56 @@ public class Signature {
                                 byte[] public_key);
 
     /**
-     * \brief Invoke native free_sig
+     * \brief Same as sign, but operating in place on direct ByteBuffers.
+     * \param signature Direct buffer to write the signature to
+     * \param signature_offset Offset of the signature in the buffer
+     * \param message Direct buffer containing the message
+     * \param message_offset Offset of the message in the buffer
+     * \param message_len
+     * \param secret_key
+     * \return Length of the signature, or -1 on failure
+     */
+    private native long sign_direct(ByteBuffer signature, int signature_offset,
+                        ByteBuffer message, int message_offset, long message_len,
+                        byte[] secret_key);
+
+    /**
+     * \brief Same as verify, but operating in place on direct ByteBuffers.
+     * \return True if the signature is valid, false otherwise
+     */
+    private native boolean verify_direct(ByteBuffer message, int message_offset,
+                                long message_len,
+                                ByteBuffer signature, int signature_offset,
+                                long signature_len,
+                                ByteBuffer public_key, int public_key_offset);
+
+    /**
+     * \brief Invoke native free_sig. Calling it more than once has no effect.
      */
-    public void dispose_sig() {
-        Common.wipe(this.secret_key_);
+    public synchronized void dispose_sig() {
+        if (native_sig_handle_ == 0) {
+            return;
+        }
+        if (this.secret_key_ != null) {
+            Common.wipe(this.secret_key_);
+        }
         free_sig();
+        native_sig_handle_ = 0;
+    }
+
+    /**
+     * \brief Same as dispose_sig(), allows the use in try-with-resources
+     */
+    @Override
+    public void close() {
+        dispose_sig();
+    }
+
+    /**
+     * \brief Return the name of the signature algorithm
+     */
+    public String get_method_name() {
+        return alg_details_.method_name;
     }
 
     /**
@@ -211,7 +259,20 @@ public class Signature {
      * \return signature
      */
     public byte[] sign(byte[] message) throws RuntimeException {
-        if (this.secret_key_.length != alg_details_.length_secret_key) {
+        return sign(message, this.secret_key_);
+    }
+
+    /**
+     * \brief Invoke native sign method with a secret key that is not stored
+     * in this instance. This allows reusing one instance for several keys.
+     * \param message
+     * \param secret_key
+     * \return signature
+     */
+    public byte[] sign(byte[] message, byte[] secret_key)
+                                                    throws RuntimeException {
+        if (secret_key == null ||
+                secret_key.length != alg_details_.length_secret_key) {
             throw new RuntimeException("Incorrect secret key length, " +
                                     "make sure you specify one in the " +
                                     "constructor or run generate_keypair()");
@@ -219,13 +280,56 @@ public class Signature {
         byte[] signature = new byte[(int) alg_details_.max_length_signature];
         Mutable<Long> signature_len_ret = new Mutable<>();
         int rv_= sign(signature, signature_len_ret,
-                        message, message.length, this.secret_key_);
-        long actual_signature_len = signature_len_ret.value;
-        byte[] actual_signature = new byte[(int) actual_signature_len];
-        System.arraycopy(signature, 0,
-                            actual_signature, 0, (int) actual_signature_len);
+                        message, message.length, secret_key);
         if (rv_ != 0) throw new RuntimeException("Cannot sign message");
-        return actual_signature;
+        long actual_signature_len = signature_len_ret.value;
+        if (actual_signature_len == signature.length) {
+            return signature;
+        }
+        return Arrays.copyOf(signature, (int) actual_signature_len);
+    }
+
+    /**
+     * \brief Sign without copying the message or the signature. The message
+     * is read from the position to the limit of the buffer, its position is
+     * not changed. The signature is written at the position of the output
+     * buffer, which is then advanced by the length of the signature.
+     * \param message Direct buffer containing the message
+     * \param signature Direct buffer with room for max_length_signature bytes
+     * \return Length of the signature
+     */
+    public int sign(ByteBuffer message, ByteBuffer signature)
+                                                    throws RuntimeException {
+        return sign(message, signature, this.secret_key_);
+    }
+
+    /**
+     * \brief Same as sign(ByteBuffer, ByteBuffer), using a secret key that is
+     * not stored in this instance.
+     * \param message Direct buffer containing the message
+     * \param signature Direct buffer with room for max_length_signature bytes
+     * \param secret_key
+     * \return Length of the signature
+     */
+    public int sign(ByteBuffer message, ByteBuffer signature, byte[] secret_key)
+                                                    throws RuntimeException {
+        if (secret_key == null ||
+                secret_key.length != alg_details_.length_secret_key) {
+            throw new RuntimeException("Incorrect secret key length, " +
+                                    "make sure you specify one in the " +
+                                    "constructor or run generate_keypair()");
+        }
+        check_direct(message);
+        check_direct(signature);
+        if (signature.remaining() < alg_details_.max_length_signature) {
+            throw new RuntimeException("Signature buffer too small");
+        }
+        long signature_len = sign_direct(signature, signature.position(),
+                        message, message.position(), message.remaining(),
+                        secret_key);
+        if (signature_len < 0) throw new RuntimeException("Cannot sign message");
+        signature.position(signature.position() + (int) signature_len);
+        return (int) signature_len;
     }
 
     /**
@@ -247,6 +351,46 @@ public class Signature {
         return verify(message, message.length, signature, signature.length, public_key);
     }
 
+    /**
+     * \brief Verify without copying any of the buffers. Each buffer is read
+     * from its position to its limit, positions are not changed.
+     * \param message Direct buffer containing the message
+     * \param signature Direct buffer containing the signature
+     * \param public_key Direct buffer containing the public key
+     * \return True if the signature is valid, false otherwise
+     */
+    public boolean verify(ByteBuffer message, ByteBuffer signature,
+                                ByteBuffer public_key) throws RuntimeException {
+        check_direct(message);
+        check_direct(signature);
+        check_direct(public_key);
+        if (public_key.remaining() != alg_details_.length_public_key) {
+            throw new RuntimeException("Incorrect public key length");
+        }
+        if (signature.remaining() > alg_details_.max_length_signature) {
+            throw new RuntimeException("Incorrect signature length");
+        }
+
+        return verify_direct(message, message.position(), message.remaining(),
+                                signature, signature.position(),
+                                signature.remaining(),
+                                public_key, public_key.position());
+    }
+
+    /**
+     * \brief Return the maximum length of a signature, e.g. to size the
+     * output buffer of sign(ByteBuffer, ByteBuffer)
+     */
+    public int get_max_signature_length() {
+        return (int) alg_details_.max_length_signature;
+    }
+
+    private static void check_direct(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("Only direct buffers are supported");
+        }
+    }
+
     /**
      * \brief Print Signature. If a SignatureDetails object is not
      * initialized, initialize it and fill it using native C code.
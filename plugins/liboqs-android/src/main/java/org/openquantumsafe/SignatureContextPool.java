@@ -0,0 +1,177 @@
+package org.openquantumsafe;
+
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.os.Build.VERSION_CODES;
+
+import androidx.annotation.RequiresApi;
+
+
+/**
+ * \brief Thread-safe pool of Signature contexts, keyed by algorithm name.
+ * Creating a Signature involves several JNI calls and allocates a native
+ * OQS_SIG object. The pool keeps a limited number of idle contexts per
+ * algorithm around and frees all others with dispose_sig().
+ * Pooled contexts never hold keys, pass them to sign/verify instead.
+ */
+public class SignatureContextPool {
+
+    /**
+     * Enough to keep one context per core around when verifying in
+     * parallel.
+     */
+    private static final int MAX_IDLE_CONTEXTS_PER_ALGORITHM =
+            Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int MAX_CACHED_KEYS = 8;
+
+    /**
+     * The single SignatureContextPool class instance.
+     */
+    private static SignatureContextPool single_instance = null;
+
+    private final Map<String, ArrayDeque<Signature>> idle_contexts_ = new HashMap<>();
+
+    /**
+     * Decoded key bytes, keyed by their Base64 representation. The least
+     * recently used entry is wiped and removed once the cache is full. The
+     * arrays never leave the pool, so wiping them can't affect callers.
+     */
+    private final Map<String, byte[]> decoded_keys_ =
+            new LinkedHashMap<String, byte[]>(MAX_CACHED_KEYS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                    if (size() > MAX_CACHED_KEYS) {
+                        Common.wipe(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    private SignatureContextPool() {}
+
+    /**
+     * \brief Make sure that at most one instance is generated.
+     * \return Singleton instance
+     */
+    public static synchronized SignatureContextPool get_instance() {
+        if (single_instance == null) {
+            single_instance = new SignatureContextPool();
+        }
+        return single_instance;
+    }
+
+    /**
+     * \brief Hand out a context for the given algorithm. An idle context is
+     * reused if there is one, otherwise a new one is created.
+     * The returned lease must be closed to give the context back to the pool.
+     * \param alg_name Cryptographic algorithm name
+     * \return Lease of a Signature context
+     */
+    public Lease acquire(String alg_name) throws RuntimeException {
+        synchronized (this) {
+            ArrayDeque<Signature> contexts = idle_contexts_.get(alg_name);
+            if (contexts != null && !contexts.isEmpty()) {
+                return new Lease(alg_name, contexts.pop());
+            }
+        }
+        // Create the context outside of the lock, this includes several JNI calls
+        return new Lease(alg_name, new Signature(alg_name));
+    }
+
+    private void release(String alg_name, Signature signature) {
+        synchronized (this) {
+            ArrayDeque<Signature> contexts = idle_contexts_.get(alg_name);
+            if (contexts == null) {
+                contexts = new ArrayDeque<>();
+                idle_contexts_.put(alg_name, contexts);
+            }
+            if (contexts.size() < MAX_IDLE_CONTEXTS_PER_ALGORITHM) {
+                contexts.push(signature);
+                return;
+            }
+        }
+        signature.dispose_sig();
+    }
+
+    /**
+     * \brief Decode a Base64 encoded key, as it is stored in the account
+     * settings. Line breaks are ignored. The decoding is cached, but every
+     * call returns a new copy that belongs to the caller, who should wipe it
+     * once it's no longer needed.
+     * \param encoded_key Base64 encoded key
+     * \return Decoded key
+     */
+    @RequiresApi(api = VERSION_CODES.O)
+    public synchronized byte[] get_decoded_key(String encoded_key) {
+        byte[] key = decoded_keys_.get(encoded_key);
+        if (key == null) {
+            key = Base64.getMimeDecoder().decode(encoded_key);
+            decoded_keys_.put(encoded_key, key);
+        }
+        return Arrays.copyOf(key, key.length);
+    }
+
+    /**
+     * \brief Free all idle contexts and wipe all cached keys.
+     */
+    public void clear() {
+        ArrayDeque<Signature> contexts_to_dispose = new ArrayDeque<>();
+        synchronized (this) {
+            for (ArrayDeque<Signature> contexts : idle_contexts_.values()) {
+                contexts_to_dispose.addAll(contexts);
+            }
+            idle_contexts_.clear();
+
+            Iterator<byte[]> keys = decoded_keys_.values().iterator();
+            while (keys.hasNext()) {
+                Common.wipe(keys.next());
+                keys.remove();
+            }
+        }
+        for (Signature signature : contexts_to_dispose) {
+            signature.dispose_sig();
+        }
+    }
+
+    /**
+     * \brief A Signature context borrowed from the pool. Closing the lease
+     * returns the context to the pool.
+     */
+    public class Lease implements AutoCloseable {
+
+        private final String alg_name_;
+        private Signature signature_;
+
+        private Lease(String alg_name, Signature signature) {
+            this.alg_name_ = alg_name;
+            this.signature_ = signature;
+        }
+
+        /**
+         * \brief Return the borrowed context
+         */
+        public Signature get_signature() {
+            if (signature_ == null) {
+                throw new IllegalStateException("Lease has already been closed");
+            }
+            return signature_;
+        }
+
+        @Override
+        public void close() {
+            if (signature_ != null) {
+                release(alg_name_, signature_);
+                signature_ = null;
+            }
+        }
+    }
+
+}
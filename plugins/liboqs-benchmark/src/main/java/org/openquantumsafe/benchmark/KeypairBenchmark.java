@@ -0,0 +1,48 @@
+package org.openquantumsafe.benchmark;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openquantumsafe.Signature;
+
+
+/**
+ * Key pair generation for a single algorithm. Each benchmark thread owns its own native context.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KeypairBenchmark {
+    /**
+     * Overridden by {@link SignatureBenchmarkRunner} with all usable algorithms.
+     */
+    @Param({ "Dilithium5" })
+    public String algorithm;
+
+    private Signature signature;
+
+
+    @Setup
+    public void setUp() {
+        signature = new Signature(algorithm);
+    }
+
+    @TearDown
+    public void tearDown() {
+        signature.dispose_sig();
+    }
+
+    @Benchmark
+    public byte[] generateKeypair() {
+        return signature.generate_keypair();
+    }
+}
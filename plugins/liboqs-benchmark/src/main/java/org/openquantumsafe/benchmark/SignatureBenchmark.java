@@ -0,0 +1,108 @@
+package org.openquantumsafe.benchmark;
+
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openquantumsafe.Signature;
+
+
+/**
+ * Signing and verification for a single algorithm and message size, both through the {@code byte[]} wrapper and the
+ * direct {@link ByteBuffer} entry points. The key pair and message are shared by all threads, the native contexts and
+ * output buffers are per thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SignatureBenchmark {
+    /**
+     * Overridden by {@link SignatureBenchmarkRunner} with all usable algorithms.
+     */
+    @Param({ "Dilithium5" })
+    public String algorithm;
+
+    @Param({ "1024", "65536", "1048576", "10485760" })
+    public int messageSize;
+
+    private byte[] publicKey;
+    private byte[] secretKey;
+    private byte[] message;
+    private byte[] messageSignature;
+
+    private ByteBuffer directPublicKey;
+    private ByteBuffer directMessage;
+    private ByteBuffer directMessageSignature;
+
+
+    @Setup
+    public void setUp() {
+        try (Signature keyGenerator = new Signature(algorithm)) {
+            publicKey = keyGenerator.generate_keypair();
+            secretKey = keyGenerator.export_secret_key().clone();
+
+            message = new byte[messageSize];
+            new Random(messageSize).nextBytes(message);
+            messageSignature = keyGenerator.sign(message, secretKey);
+        }
+
+        directPublicKey = toDirectBuffer(publicKey);
+        directMessage = toDirectBuffer(message);
+        directMessageSignature = toDirectBuffer(messageSignature);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadContext {
+        Signature signature;
+        ByteBuffer signatureOutput;
+
+        @Setup
+        public void setUp(SignatureBenchmark benchmark) {
+            signature = new Signature(benchmark.algorithm);
+            signatureOutput = ByteBuffer.allocateDirect(signature.get_max_signature_length());
+        }
+
+        @TearDown
+        public void tearDown() {
+            signature.dispose_sig();
+        }
+    }
+
+    @Benchmark
+    public byte[] sign(ThreadContext context) {
+        return context.signature.sign(message, secretKey);
+    }
+
+    @Benchmark
+    public boolean verify(ThreadContext context) {
+        return context.signature.verify(message, messageSignature, publicKey);
+    }
+
+    @Benchmark
+    public int signDirect(ThreadContext context) {
+        context.signatureOutput.clear();
+        return context.signature.sign(directMessage, context.signatureOutput, secretKey);
+    }
+
+    @Benchmark
+    public boolean verifyDirect(ThreadContext context) {
+        return context.signature.verify(directMessage, directMessageSignature, directPublicKey);
+    }
+
+    private static ByteBuffer toDirectBuffer(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data);
+        buffer.flip();
+        return buffer;
+    }
+}
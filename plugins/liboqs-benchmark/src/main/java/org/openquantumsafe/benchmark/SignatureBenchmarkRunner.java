@@ -0,0 +1,56 @@
+package org.openquantumsafe.benchmark;
+
+
+import java.io.File;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openquantumsafe.Sigs;
+
+
+/**
+ * Runs {@link KeypairBenchmark} and {@link SignatureBenchmark} for every algorithm returned by
+ * {@link Sigs#get_usable_sigs()}, once per thread count. Results including latency percentiles and the allocation
+ * rate reported by the GC profiler are written as one JSON file per thread count.
+ * <p>
+ * Arguments: {@code <report directory> <thread counts> <message sizes>}, the latter two as comma separated lists.
+ */
+public class SignatureBenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        if (args.length != 3) {
+            System.err.println("Usage: SignatureBenchmarkRunner <report directory> <threads> <message sizes>");
+            System.exit(1);
+        }
+
+        File reportDirectory = new File(args[0]);
+        String[] threadCounts = args[1].split(",");
+        String[] messageSizes = args[2].split(",");
+        String[] algorithms = Sigs.get_usable_sigs();
+
+        for (String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount.trim());
+            File result = new File(reportDirectory, "signatures-threads-" + threads + ".json");
+
+            Options options = new OptionsBuilder()
+                    .include(KeypairBenchmark.class.getSimpleName())
+                    .include(SignatureBenchmark.class.getSimpleName())
+                    .param("algorithm", algorithms)
+                    .param("messageSize", messageSizes)
+                    .threads(threads)
+                    .forks(1)
+                    .warmupIterations(3)
+                    .measurementIterations(5)
+                    .jvmArgsAppend("-Djava.library.path=" + System.getProperty("java.library.path"))
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(result.getPath())
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+}
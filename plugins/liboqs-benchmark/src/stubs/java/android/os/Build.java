@@ -0,0 +1,15 @@
+package android.os;
+
+
+/**
+ * Host replacement for the parts of {@code android.os.Build} used by the liboqs wrapper.
+ */
+public class Build {
+    public static final String CPU_ABI = System.getProperty("os.arch");
+
+
+    public static class VERSION_CODES {
+        public static final int N = 24;
+        public static final int O = 26;
+    }
+}